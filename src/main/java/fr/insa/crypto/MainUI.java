@@ -15,13 +15,28 @@ import javafx.application.Platform;
 import javafx.stage.Stage;
 
 import javax.mail.Message;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 /**
  * Main application entry point
  */
 public class MainUI extends Application {
     private ViewManager viewManager;
-    private TrustAuthorityClient trustClient;
+
+    // Shared trust authority client, created in the background at startup and reused by every login
+    private volatile TrustAuthorityClient trustClient;
+    private volatile CompletableFuture<TrustAuthorityClient> trustClientReady;
+
+    // Login work that runs off the FX thread (mail store connection, inbox prefetch)
+    private final ExecutorService loginExecutor = Executors.newCachedThreadPool(r -> {
+        Thread thread = new Thread(r, "login-worker");
+        thread.setDaemon(true);
+        return thread;
+    });
     
     // Current session state
     private Authentication currentAuth;
@@ -29,6 +44,9 @@ public class MainUI extends Application {
     private KeyPair userKeyPair;
     private IdentityBasedEncryption ibeEngine;
     private Message currentMessage;
+
+    // Inbox fetched speculatively while the user types the TOTP code (null once handed to the inbox view)
+    private CompletableFuture<Message[]> inboxPrefetch;
     
     // Gestionnaire de session
     private final SessionManager sessionManager = SessionManager.getInstance();
@@ -51,31 +69,53 @@ public class MainUI extends Application {
     }
 
     /**
-     * Initialize connection to the trust authority
+     * Initialize connection to the trust authority in the background.
+     * The public parameters are loaded (local copy or download) and the secure channel is established
+     * while the user types their credentials; login waits for this only if it is not done yet.
      */
-    private void connectToTrustAuthority() {
-        try {
-            trustClient = new TrustAuthorityClient(Config.TRUST_AUTHORITY_URL);
-            
-            // Établir proactivement le canal sécurisé
+    private CompletableFuture<TrustAuthorityClient> connectToTrustAuthority() {
+        CompletableFuture<TrustAuthorityClient> ready = CompletableFuture.supplyAsync(() -> {
             try {
-                boolean success = trustClient.establishSecureChannel();
+                return new TrustAuthorityClient(Config.TRUST_AUTHORITY_URL);
+            } catch (Exception e) {
+                throw new CompletionException(e);
+            }
+        }, loginExecutor);
+        trustClientReady = ready;
+
+        ready.whenComplete((client, error) -> {
+            if (error != null) {
+                Throwable cause = error instanceof CompletionException ? error.getCause() : error;
+                Logger.error("Failed to connect to trust authority: " + cause.getMessage());
+                Platform.runLater(() -> viewManager.showErrorAlert("Connection Error",
+                    "Unable to connect to trust authority: " + cause.getMessage() +
+                    "\nThis may cause issues with encryption features."));
+                return;
+            }
+            trustClient = client;
+            Logger.info("Connected to trust authority at " + Config.TRUST_AUTHORITY_URL);
+
+            // Établir proactivement le canal sécurisé, sans retarder l'écran de connexion
+            client.establishSecureChannelAsync().thenAccept(success -> {
                 if (success) {
                     Logger.info("Canal sécurisé établi avec l'autorité de confiance");
                 } else {
                     Logger.warning("Impossible d'établir un canal sécurisé, les communications ne seront pas chiffrées");
                 }
-            } catch (Exception e) {
-                Logger.warning("Échec de l'établissement du canal sécurisé: " + e.getMessage());
-            }
-            
-            Logger.info("Connected to trust authority at " + Config.TRUST_AUTHORITY_URL);
-        } catch (Exception e) {
-            Logger.error("Failed to connect to trust authority: " + e.getMessage());
-            viewManager.showErrorAlert("Connection Error", 
-                "Unable to connect to trust authority: " + e.getMessage() + 
-                "\nThis may cause issues with encryption features.");
+            });
+        });
+        return ready;
+    }
+
+    /**
+     * @return The shared trust authority client, reconnecting if the startup attempt failed
+     */
+    private CompletableFuture<TrustAuthorityClient> trustAuthorityReady() {
+        CompletableFuture<TrustAuthorityClient> ready = trustClientReady;
+        if (ready == null || ready.isCompletedExceptionally()) {
+            ready = connectToTrustAuthority();
         }
+        return ready;
     }
 
     /**
@@ -88,38 +128,103 @@ public class MainUI extends Application {
     }
 
     /**
-     * Login method - initiates the authentication process
+     * Login method - initiates the authentication process.
+     * The mail store connection and the trust authority client (parameters and secure channel) are
+     * independent and run side by side; once the mailbox is open, the inbox is fetched speculatively
+     * while the user types their TOTP code.
      */
     public void login(String email, String password) {
+        CompletableFuture<MailReceiver> mailConnection = null;
         try {
             // Store credentials in SessionManager
             sessionManager.storeCredentials(email, password);
             Logger.info("Identifiants stockés dans le SessionManager pour " + email);
-            
-            // First step: authenticate with email and password
-            currentAuth = new Authentication(email, password);
+
+            // Reject a malformed address before opening any connection
+            if (!Config.isValidEmail(email)) {
+                throw new IllegalArgumentException("Format d'adresse email invalide: " + email);
+            }
+
+            // Mail store connection, concurrently with the trust authority client
+            mailConnection = CompletableFuture.supplyAsync(() -> {
+                try {
+                    MailReceiver receiver = new MailReceiver();
+                    receiver.connect(email, password);
+                    Logger.info("MailReceiver connecté pour " + email);
+                    return receiver;
+                } catch (Exception e) {
+                    throw new CompletionException(e);
+                }
+            }, loginExecutor);
+            CompletableFuture<TrustAuthorityClient> trustAuthority = trustAuthorityReady();
+
+            currentMailReceiver = await(mailConnection);
+
+            // Speculative inbox fetch: discarded if the user never gets past 2FA
+            MailReceiver receiver = currentMailReceiver;
+            inboxPrefetch = CompletableFuture.supplyAsync(() -> {
+                try {
+                    Message[] messages = receiver.fetchInbox();
+                    Logger.info("Boîte de réception préchargée: " + messages.length + " messages");
+                    return messages;
+                } catch (Exception e) {
+                    Logger.warning("Préchargement de la boîte de réception impossible: " + e.getMessage());
+                    throw new CompletionException(e);
+                }
+            }, loginExecutor);
+
+            // Authenticate with email and password, sharing the trust authority client
+            trustClient = await(trustAuthority);
+            currentAuth = new Authentication(email, password, trustClient);
             
             // Store auth session in SessionManager
             sessionManager.storeAuthSession(currentAuth);
             Logger.info("Session d'authentification stockée dans le SessionManager");
             
-            // Initialize mail receiver
-            currentMailReceiver = new MailReceiver();
-            currentMailReceiver.connect(email, password);
-            Logger.info("MailReceiver connecté pour " + email);
-            
             // Start 2FA process - Ensure this happens on the JavaFX thread
             Platform.runLater(() -> {
                 startAuthProcess(email);
             });
         } catch (Exception e) {
             Logger.error("Login failed: " + e.getMessage());
+            closeQuietly(mailConnection);
             Platform.runLater(() -> {
                 viewManager.showErrorAlert("Login Failed", "Authentication error: " + e.getMessage());
             });
         }
     }
 
+    /**
+     * Waits for a login step, rethrowing its own exception
+     */
+    private static <T> T await(CompletableFuture<T> future) throws Exception {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause() instanceof CompletionException && e.getCause().getCause() != null
+                    ? e.getCause().getCause() : e.getCause();
+            throw cause instanceof Exception ? (Exception) cause : e;
+        }
+    }
+
+    /**
+     * Closes the mail connection of a failed login, once it completes
+     */
+    private void closeQuietly(CompletableFuture<MailReceiver> mailConnection) {
+        if (mailConnection == null) {
+            return;
+        }
+        inboxPrefetch = null;
+        currentMailReceiver = null;
+        mailConnection.thenAccept(receiver -> {
+            try {
+                receiver.close();
+            } catch (Exception e) {
+                Logger.error("Error closing mail connection: " + e.getMessage());
+            }
+        });
+    }
+
     /**
      * Starts the 2FA authentication process
      */
@@ -164,6 +269,15 @@ public class MainUI extends Application {
      * Complete authentication after successful 2FA
      */
     public void completeAuthentication(String email, String totpCode) {
+        completeAuthentication(email, totpCode, null);
+    }
+
+    /**
+     * Complete authentication after successful 2FA
+     *
+     * @param keyPair Private key already obtained along with the TOTP check, or null to request it
+     */
+    public void completeAuthentication(String email, String totpCode, KeyPair keyPair) {
         try {
             // Log authentication state
             Logger.info("Tentative de complétion de l'authentification pour: " + email);
@@ -182,7 +296,7 @@ public class MainUI extends Application {
                     try {
                         // Recreate authentication
                         String storedPassword = sessionManager.getPassword();
-                        currentAuth = new Authentication(email, storedPassword);
+                        currentAuth = new Authentication(email, storedPassword, trustClient);
                         Logger.info("Réauthentification réussie pour " + email);
                         
                         // Reconnect mail receiver if needed
@@ -212,15 +326,26 @@ public class MainUI extends Application {
             currentAuth.completeAuthentication(totpCode);
             
             // Get encryption keys and engine
+            if (keyPair != null) {
+                finishAuthentication(email, keyPair);
+                return;
+            }
+
+            // Local key vault first: a stored key only needs the TOTP check, not an extraction
             Logger.info("Demande de clé privée au serveur d'autorité...");
-            userKeyPair = trustClient.requestPrivateKey(email, totpCode);
-            Logger.info("Clé privée obtenue pour " + email);
-            
-            ibeEngine = new IdentityBasedEncryption(trustClient.getParameters());
-            Logger.info("Moteur de chiffrement IBE initialisé");
-            
-            // Show main inbox screen
-            showReceptView();
+            trustClient.authenticateAndRequestPrivateKeyAsync(email, totpCode, sessionManager.getPasswordFor(email))
+                    .whenComplete((retrieved, error) -> Platform.runLater(() -> {
+                        if (error != null || retrieved == null) {
+                            Throwable cause = error instanceof CompletionException && error.getCause() != null
+                                    ? error.getCause() : error;
+                            String reason = cause != null ? cause.getMessage() : "Invalid TOTP code";
+                            Logger.error("Error completing authentication: " + reason);
+                            viewManager.showErrorAlert("Authentication Error",
+                                    "Failed to complete authentication: " + reason);
+                            return;
+                        }
+                        finishAuthentication(email, retrieved);
+                    }));
         } catch (Exception e) {
             Logger.error("Error completing authentication: " + e.getMessage());
             viewManager.showErrorAlert("Authentication Error", 
@@ -228,6 +353,20 @@ public class MainUI extends Application {
         }
     }
 
+    /**
+     * Installs the user's key and IBE engine, then opens the inbox
+     */
+    private void finishAuthentication(String email, KeyPair keyPair) {
+        userKeyPair = keyPair;
+        Logger.info("Clé privée obtenue pour " + email);
+        
+        ibeEngine = new IdentityBasedEncryption(trustClient.getParameters());
+        Logger.info("Moteur de chiffrement IBE initialisé");
+        
+        // Show main inbox screen
+        showReceptView();
+    }
+
     /**
      * Shows the inbox/reception screen
      */
@@ -239,7 +378,10 @@ public class MainUI extends Application {
         }
         
         ReceptController controller = viewManager.showView(ViewManager.VIEW_RECEPT);
-        controller.setup(this, viewManager, currentAuth.getEmail(), currentMailReceiver);
+        // The speculative inbox fetch is only used for the first display after login
+        CompletableFuture<Message[]> prefetched = inboxPrefetch;
+        inboxPrefetch = null;
+        controller.setup(this, viewManager, currentAuth.getEmail(), currentMailReceiver, prefetched);
     }
 
     /**
@@ -291,6 +433,7 @@ public class MainUI extends Application {
         }
         
         // Reset state
+        inboxPrefetch = null;
         userKeyPair = null;
         ibeEngine = null;
         currentMessage = null;
@@ -2,6 +2,7 @@ package fr.insa.crypto.encryption;
 
 import fr.insa.crypto.trustAuthority.SettingParameters;
 import it.unisa.dia.gas.jpbc.Element;
+import it.unisa.dia.gas.jpbc.PairingPreProcessing;
 
 import javax.crypto.BadPaddingException;
 import javax.crypto.IllegalBlockSizeException;
@@ -20,24 +21,21 @@ public class IdentityBasedEncryption {
 
     public IBEcipher IBEencryption(byte[] message, String pk) throws NoSuchAlgorithmException, NoSuchPaddingException, InvalidKeyException, IllegalBlockSizeException, BadPaddingException, UnsupportedEncodingException, NoSuchPaddingException, IllegalBlockSizeException, UnsupportedEncodingException, BadPaddingException, InvalidKeyException {
         // methode de chiffrement BasicID
+        return IBEencryption(message, identityPairing(pk));
+    }
 
+    /**
+     * Chiffrement BasicID pour un destinataire dont e(H_1(id), P_pub) est déjà calculé
+     * (destinataire fixe, comme le serveur de l'autorité): aucun appariement n'est alors nécessaire
+     */
+    public IBEcipher IBEencryption(byte[] message, Element identityPairing) throws NoSuchAlgorithmException, NoSuchPaddingException, InvalidKeyException, IllegalBlockSizeException, BadPaddingException, UnsupportedEncodingException {
         Element aeskey = this.parameters.getPairing().getGT().newRandomElement(); //choix de la clef symmetrique AES
 
-        byte[] bytes = pk.getBytes(); // transformation de la clef publique (id) au format binaire
-
         Element r = this.parameters.getPairing().getZr().newRandomElement(); // nombre aléatoire choisi dans Z_r
 
-        Element U = this.parameters.getGenerator().duplicate().mulZn(r); // rP (dans le slide du cours)
-
-        Element Q_id = this.parameters.getPairing().getG1().newElementFromHash(bytes, 0, bytes.length); // H_1(id) (dans le slide du cours)
-
-        Element pairingresult = this.parameters.getPairing().pairing(Q_id, this.parameters.getPublicKey()); //e(Q_id,P_pub) dans le slide du cours
+        Element U = this.parameters.getGeneratorPowTable().powZn(r); // rP (dans le slide du cours), via la table de puissances de P
 
-        System.out.println("before pairing result:" + pairingresult);
-
-        pairingresult.powZn(r);
-
-        System.out.println("after pairing result:" + pairingresult);
+        Element pairingresult = identityPairing.duplicate().powZn(r); // e(Q_id,P_pub)^r
 
         byte[] V = EncryptionUtils.xor(aeskey.toBytes(), pairingresult.toBytes()); //K xor e(Q_id,P_pub)^r
 
@@ -46,6 +44,18 @@ public class IdentityBasedEncryption {
         return new IBEcipher(U, V, Aescipher); //instaciation d'un objet representant un ciphertext hybride combinant (BasicID et AES)
     }
 
+    /**
+     * @param id Identité du destinataire
+     * @return e(H_1(id), P_pub), indépendant du message: réutilisable pour tous les chiffrements vers cette identité
+     */
+    public Element identityPairing(String id) {
+        byte[] bytes = id.getBytes(); // transformation de la clef publique (id) au format binaire
+
+        Element Q_id = this.parameters.getPairing().getG1().newElementFromHash(bytes, 0, bytes.length); // H_1(id) (dans le slide du cours)
+
+        return this.parameters.getPairing().pairing(Q_id, this.parameters.getPublicKey()); //e(Q_id,P_pub) dans le slide du cours
+    }
+
 
     public byte[] IBEdecryption(Element sk, IBEcipher C) throws NoSuchAlgorithmException, NoSuchPaddingException, InvalidKeyException, IllegalBlockSizeException, BadPaddingException, UnsupportedEncodingException {
         //Déchiffrement IBE
@@ -57,6 +67,31 @@ public class IdentityBasedEncryption {
         return AESCrypto.decrypt(C.getAescipher(), resultingAeskey); // déchiffrement AES
     }
 
+    /**
+     * Déchiffrement IBE avec une clé privée dont l'appariement a été prétraité
+     * (pour une clé utilisée de nombreuses fois, comme celle du serveur)
+     */
+    public byte[] IBEdecryption(PairingPreProcessing preprocessedSk, IBEcipher C) throws NoSuchAlgorithmException, NoSuchPaddingException, InvalidKeyException, IllegalBlockSizeException, BadPaddingException, UnsupportedEncodingException {
+        Element pairingresult = preprocessedSk.pairing(C.getU()); //e(d_id,U) avec les tables de d_id précalculées
+
+        byte[] resultingAeskey = EncryptionUtils.xor(C.getV(), pairingresult.toBytes());
+
+        return AESCrypto.decrypt(C.getAescipher(), resultingAeskey);
+    }
+
+    /**
+     * Vérifie qu'une donnée a été liée par l'autorité avec sa clé maître: e(sig, P) = e(H1(data), P_pub)
+     * @param data Donnée liée (déjà préfixée par son domaine)
+     * @param binding Liaison sH1(data) fournie par l'autorité
+     * @return true si la liaison est valide
+     */
+    public boolean verifyAuthorityBinding(byte[] data, Element binding) {
+        Element h = this.parameters.getPairing().getG1().newElementFromHash(data, 0, data.length);
+        Element left = this.parameters.getPairing().pairing(binding, this.parameters.getGenerator());
+        Element right = this.parameters.getPairing().pairing(h, this.parameters.getPublicKey());
+        return left.isEqual(right);
+    }
+
     public SettingParameters getParameters() {
         return parameters;
     }
@@ -31,6 +31,18 @@ public class Authentication {
      * @throws Exception En cas d'erreur d'authentification
      */
     public Authentication(String email, String password) throws Exception {
+        this(email, password, null);
+    }
+
+    /**
+     * Constructeur qui réutilise un client de l'autorité déjà connecté (paramètres chargés, canal établi
+     * ou en cours d'établissement), sans nouveau téléchargement des paramètres publics
+     * @param email L'adresse email de l'utilisateur
+     * @param password Le mot de passe ou clé d'application
+     * @param trustClient Client de l'autorité partagé, ou null pour en créer un
+     * @throws Exception En cas d'erreur d'authentification
+     */
+    public Authentication(String email, String password, TrustAuthorityClient trustClient) throws Exception {
         this.email = email;
         this.password = password;
         
@@ -43,8 +55,13 @@ public class Authentication {
         authenticateEmail();
         
         // 2. Se connecter à l'autorité de confiance
+        if (trustClient != null) {
+            this.trustClient = trustClient;
+            Logger.info("Client de l'autorité de confiance partagé, en attente d'authentification 2FA");
+            return;
+        }
         try {
-            trustClient = new TrustAuthorityClient(Config.TRUST_AUTHORITY_URL);
+            this.trustClient = new TrustAuthorityClient(Config.TRUST_AUTHORITY_URL);
             
             // Note: La récupération des clés est reportée jusqu'à ce que l'authentification 2FA soit terminée
             // userKeyPair et ibeEngine seront initialisés après la validation 2FA
@@ -2,6 +2,7 @@ package fr.insa.crypto.mail;
 
 import java.util.Properties;
 
+import javax.mail.FetchProfile;
 import javax.mail.Folder;
 import javax.mail.Message;
 import javax.mail.MessagingException;
@@ -75,6 +76,22 @@ public class MailReceiver {
         return emailFolder.getMessages();
     }
     
+    /**
+     * Ouvre la boîte de réception en lecture seule et charge en une passe les en-têtes et indicateurs
+     * de tous ses messages: leur affichage ne demande ensuite plus d'échange avec le serveur
+     * @return Tableau des messages, en-têtes chargés
+     * @throws MessagingException En cas d'erreur
+     */
+    public Message[] fetchInbox() throws MessagingException {
+        openFolder("INBOX", true);
+        Message[] messages = getMessages();
+        FetchProfile profile = new FetchProfile();
+        profile.add(FetchProfile.Item.ENVELOPE);
+        profile.add(FetchProfile.Item.FLAGS);
+        emailFolder.fetch(messages, profile);
+        return messages;
+    }
+    
     /**
      * Ferme les connexions
      * @throws MessagingException En cas d'erreur
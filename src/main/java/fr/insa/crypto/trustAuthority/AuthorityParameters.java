@@ -0,0 +1,161 @@
+package fr.insa.crypto.trustAuthority;
+
+import fr.insa.crypto.encryption.IdentityBasedEncryption;
+import fr.insa.crypto.trustAuthority.protocol.Message;
+import fr.insa.crypto.utils.SecureChannelManager;
+import it.unisa.dia.gas.jpbc.Element;
+import it.unisa.dia.gas.jpbc.ElementPowPreProcessing;
+import it.unisa.dia.gas.jpbc.Pairing;
+import it.unisa.dia.gas.plaf.jpbc.pairing.PairingFactory;
+
+/**
+ * Paramètres publics d'une autorité vus par le client, avec leurs précalculs:
+ * table de puissances du générateur, vérification de la liaison de la clé X25519 du serveur
+ * et appariement e(H1(serveur), P_pub) pour l'échange IBE.
+ *
+ * Les précalculs sont faits à la première utilisation puis conservés dans la copie locale
+ * (PublicParametersCache): au démarrage suivant, le client les recharge sans aucun appariement.
+ * Une instance n'est jamais modifiée dans ses paramètres: si l'autorité en change, elle est remplacée.
+ */
+final class AuthorityParameters {
+    private final Message capabilities;
+    private final String etag;
+    private final String version;
+    private final SettingParameters parameters;
+    private final IdentityBasedEncryption ibeEngine;
+
+    // Précalculs (null tant que non calculés)
+    private volatile Boolean channelKeyVerified;
+    private volatile Element serverIdentityPairing;
+
+    private AuthorityParameters(Message capabilities, String etag, SettingParameters parameters,
+                                Boolean channelKeyVerified, Element serverIdentityPairing) {
+        this.capabilities = capabilities;
+        this.etag = etag;
+        this.parameters = parameters;
+        this.ibeEngine = new IdentityBasedEncryption(parameters);
+        this.version = capabilities.has("parametersVersion") ? capabilities.getString("parametersVersion")
+                : PublicParametersResponse.parametersVersion(capabilities.getBytes("publicKey"),
+                        capabilities.getBytes("generator"), capabilities.getString("pairingParams"));
+        this.channelKeyVerified = channelKeyVerified;
+        this.serverIdentityPairing = serverIdentityPairing;
+    }
+
+    /**
+     * Paramètres tout juste reçus de l'autorité: les précalculs seront faits à la demande
+     *
+     * @param etag ETag de la réponse, ou null pour un serveur qui n'en envoie pas
+     */
+    static AuthorityParameters fromServer(Message capabilities, String etag) {
+        return new AuthorityParameters(capabilities, etag, clientParameters(capabilities, null), null, null);
+    }
+
+    /**
+     * Paramètres rechargés depuis la copie locale, précalculs compris
+     */
+    static AuthorityParameters fromCache(PublicParametersCache.Entry entry) {
+        SettingParameters parameters = clientParameters(entry.parameters, entry.generatorPowTable);
+        Element serverIdentityPairing = entry.serverIdentityPairing == null ? null
+                : parameters.getPairing().getGT().newElementFromBytes(entry.serverIdentityPairing).getImmutable();
+        return new AuthorityParameters(entry.parameters, entry.etag, parameters, entry.channelKeyVerified,
+                serverIdentityPairing);
+    }
+
+    /**
+     * Nouvelle réponse de l'autorité: si ses paramètres IBE n'ont pas changé (seules les capacités,
+     * par exemple la clé du canal après un redémarrage), les précalculs qui n'en dépendent pas sont conservés
+     */
+    AuthorityParameters update(Message capabilities, String etag) {
+        AuthorityParameters updated = fromServer(capabilities, etag);
+        if (!updated.version.equals(version)) {
+            return updated;
+        }
+        return new AuthorityParameters(capabilities, etag, parameters, null, serverIdentityPairing);
+    }
+
+    /**
+     * Construit les paramètres côté client (sans clé maître), avec la table de puissances si elle est connue
+     */
+    private static SettingParameters clientParameters(Message capabilities, byte[] generatorPowTable) {
+        Pairing pairing = PairingFactory.getPairing(capabilities.getString("pairingParams"));
+        Element generator = pairing.getG1().newElementFromBytes(capabilities.getBytes("generator")).getImmutable();
+        Element publicKey = pairing.getG1().newElementFromBytes(capabilities.getBytes("publicKey")).getImmutable();
+        ElementPowPreProcessing powTable = generatorPowTable == null ? null
+                : pairing.getG1().getElementPowPreProcessingFromBytes(generatorPowTable);
+        return new SettingParameters(pairing, generator, publicKey, null, powTable) {
+            @Override
+            public Element getMasterKey() {
+                throw new UnsupportedOperationException("La clé maître n'est pas disponible côté client");
+            }
+        };
+    }
+
+    Message getCapabilities() {
+        return capabilities;
+    }
+
+    String getEtag() {
+        return etag;
+    }
+
+    String getVersion() {
+        return version;
+    }
+
+    SettingParameters getParameters() {
+        return parameters;
+    }
+
+    IdentityBasedEncryption getIbeEngine() {
+        return ibeEngine;
+    }
+
+    /**
+     * @return true si la clé X25519 annoncée est liée à l'autorité par sa clé maître (deux appariements, une seule fois)
+     */
+    boolean isChannelKeyVerified() {
+        Boolean verified = channelKeyVerified;
+        if (verified == null) {
+            verified = false;
+            if (capabilities.has("channelPublicKey") && capabilities.has("channelKeyBinding")) {
+                byte[] channelKey = capabilities.getBytes("channelPublicKey");
+                Element binding = parameters.getPairing().getG1().newElementFromBytes(capabilities.getBytes("channelKeyBinding"));
+                verified = ibeEngine.verifyAuthorityBinding(SecureChannelManager.channelKeyBindingInput(channelKey), binding);
+            }
+            channelKeyVerified = verified;
+        }
+        return verified;
+    }
+
+    /**
+     * @return e(H1(serveur), P_pub), pour chiffrer la clé de session IBE sans appariement
+     */
+    Element getServerIdentityPairing(String serverIdentity) {
+        Element pairing = serverIdentityPairing;
+        if (pairing == null) {
+            pairing = ibeEngine.identityPairing(serverIdentity).getImmutable();
+            serverIdentityPairing = pairing;
+        }
+        return pairing;
+    }
+
+    /**
+     * Calcule tous les précalculs (avant l'écriture de la copie locale)
+     */
+    void precompute(String serverIdentity) {
+        parameters.getGeneratorPowTable();
+        isChannelKeyVerified();
+        getServerIdentityPairing(serverIdentity);
+    }
+
+    /**
+     * @return L'état des précalculs pour la copie locale (à appeler après precompute)
+     */
+    Boolean getChannelKeyVerified() {
+        return channelKeyVerified;
+    }
+
+    Element getServerIdentityPairing() {
+        return serverIdentityPairing;
+    }
+}
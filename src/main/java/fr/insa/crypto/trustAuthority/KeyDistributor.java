@@ -1,13 +1,54 @@
 package fr.insa.crypto.trustAuthority;
 
+import fr.insa.crypto.utils.Config;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.LongAdder;
+
 /**
- * Distributeur de clés privées aux utilisateurs
+ * Distributeur de clés privées aux utilisateurs.
+ * Les appels concurrents pour une même identité partagent une seule extraction (single-flight),
+ * et les clés extraites sont conservées dans un cache de courte durée.
  */
 public class KeyDistributor {
+    // Domaine des identités propres à l'autorité (dont SERVER_IDENTITY): leurs clés ne sont jamais distribuées
+    private static final String RESERVED_DOMAIN =
+            TrustAuthority.SERVER_IDENTITY.substring(TrustAuthority.SERVER_IDENTITY.indexOf('@')).toLowerCase(Locale.ROOT);
+
     private final TrustAuthority trustAuthority;
 
+    // Extractions en cours, partagées par les appelants concurrents d'une même identité
+    private final Map<String, CompletableFuture<KeyPair>> inFlight = new ConcurrentHashMap<>();
+
+    // Cache des clés extraites et ordre d'insertion (identique à l'ordre d'expiration, la durée de vie étant fixe)
+    private final Map<String, CachedKey> cache = new ConcurrentHashMap<>();
+    private final Queue<CachedKey> evictionQueue = new ConcurrentLinkedQueue<>();
+    private final long cacheTtlMillis;
+    private final int cacheMaxSize;
+
+    // Métriques
+    private final LongAdder extractions = new LongAdder();
+    private final LongAdder coalescedCalls = new LongAdder();
+    private final LongAdder cacheHits = new LongAdder();
+
     public KeyDistributor(TrustAuthority trustAuthority) {
+        this(trustAuthority, Config.TA_KEY_CACHE_TTL_MS, Config.TA_KEY_CACHE_MAX_SIZE);
+    }
+
+    /**
+     * @param cacheTtlMillis Durée de vie d'une clé en cache (0 pour désactiver le cache)
+     * @param cacheMaxSize   Nombre maximal de clés en cache
+     */
+    public KeyDistributor(TrustAuthority trustAuthority, long cacheTtlMillis, int cacheMaxSize) {
         this.trustAuthority = trustAuthority;
+        this.cacheTtlMillis = cacheTtlMillis;
+        this.cacheMaxSize = cacheMaxSize;
     }
 
     /**
@@ -22,8 +63,115 @@ public class KeyDistributor {
             throw new IllegalArgumentException("Format d'adresse email invalide");
         }
 
+        // Clé encore valide dans le cache
+        CachedKey cached = cache.get(email);
+        if (cached != null && cached.expiresAt > System.currentTimeMillis()) {
+            cacheHits.increment();
+            return cached.keyPair;
+        }
+
+        // Rejoindre une extraction déjà en cours pour cette identité
+        CompletableFuture<KeyPair> ownFlight = new CompletableFuture<>();
+        CompletableFuture<KeyPair> existingFlight = inFlight.putIfAbsent(email, ownFlight);
+        if (existingFlight != null) {
+            coalescedCalls.increment();
+            return awaitFlight(existingFlight);
+        }
+
         // Génération de la clé privée
-        return trustAuthority.generatePrivateKey(email);
+        try {
+            KeyPair generated = trustAuthority.generatePrivateKey(email);
+            // Élément immuable: la même clé est partagée entre plusieurs appelants
+            KeyPair keyPair = new KeyPair(generated.getPk(), generated.getSk().getImmutable());
+            extractions.increment();
+            cachePut(email, keyPair);
+            ownFlight.complete(keyPair);
+            return keyPair;
+        } catch (RuntimeException e) {
+            ownFlight.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(email, ownFlight);
+        }
+    }
+
+    /**
+     * Attend le résultat d'une extraction lancée par un autre appelant
+     */
+    private KeyPair awaitFlight(CompletableFuture<KeyPair> flight) {
+        try {
+            return flight.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Ajoute une clé au cache en évinçant les entrées expirées puis les plus anciennes
+     */
+    private void cachePut(String email, KeyPair keyPair) {
+        if (cacheTtlMillis <= 0 || cacheMaxSize <= 0) {
+            return;
+        }
+
+        long now = System.currentTimeMillis();
+        CachedKey entry = new CachedKey(email, keyPair, now + cacheTtlMillis);
+        cache.put(email, entry);
+        evictionQueue.add(entry);
+
+        CachedKey oldest;
+        while ((oldest = evictionQueue.peek()) != null
+                && (oldest.expiresAt <= now || cache.size() > cacheMaxSize)) {
+            if (evictionQueue.remove(oldest)) {
+                cache.remove(oldest.email, oldest);
+            }
+        }
+    }
+
+    /**
+     * Vide le cache des clés extraites (par exemple après un changement de clé maître)
+     */
+    public void clearCache() {
+        cache.clear();
+        evictionQueue.clear();
+    }
+
+    /**
+     * @return Nombre d'extractions effectivement calculées
+     */
+    public long getExtractionCount() {
+        return extractions.sum();
+    }
+
+    /**
+     * @return Nombre d'appels ayant rejoint une extraction déjà en cours
+     */
+    public long getCoalescedCallCount() {
+        return coalescedCalls.sum();
+    }
+
+    /**
+     * @return Nombre d'appels servis par le cache
+     */
+    public long getCacheHitCount() {
+        return cacheHits.sum();
+    }
+
+    /**
+     * @return Nombre de clés actuellement en cache
+     */
+    public int getCacheSize() {
+        return cache.size();
+    }
+
+    /**
+     * @return true si l'identité appartient au domaine de l'autorité (casse et espaces ignorés)
+     */
+    public static boolean isReservedIdentity(String identity) {
+        return identity != null && identity.trim().toLowerCase(Locale.ROOT).endsWith(RESERVED_DOMAIN);
     }
 
     /**
@@ -33,4 +181,28 @@ public class KeyDistributor {
         // Vérification basique du format email
         return email != null && email.matches("^[A-Za-z0-9+_.-]+@[A-Za-z0-9.-]+$");
     }
+
+    /**
+     * Entrée du cache des clés extraites
+     */
+    private static final class CachedKey {
+        private final String email;
+        private final KeyPair keyPair;
+        private final long expiresAt;
+
+        private CachedKey(String email, KeyPair keyPair, long expiresAt) {
+            this.email = email;
+            this.keyPair = keyPair;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    /**
+     * Demande de clé privée pour une identité réservée à l'autorité
+     */
+    public static final class ReservedIdentityException extends SecurityException {
+        ReservedIdentityException(String identity) {
+            super("Identité réservée à l'autorité: " + identity);
+        }
+    }
 }
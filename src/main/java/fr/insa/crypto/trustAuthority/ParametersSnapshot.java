@@ -0,0 +1,287 @@
+package fr.insa.crypto.trustAuthority;
+
+import fr.insa.crypto.utils.Logger;
+import it.unisa.dia.gas.jpbc.Element;
+import it.unisa.dia.gas.jpbc.ElementPowPreProcessing;
+import it.unisa.dia.gas.jpbc.Pairing;
+import it.unisa.dia.gas.jpbc.PairingPreProcessing;
+import it.unisa.dia.gas.plaf.jpbc.pairing.PairingFactory;
+import it.unisa.dia.gas.plaf.jpbc.pairing.parameters.PropertiesParameters;
+
+import javax.crypto.AEADBadTagException;
+import javax.crypto.Cipher;
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.PBEKeySpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Arrays;
+
+/**
+ * Instantané persistant des paramètres de l'autorité: courbe, générateur, clé publique, table des
+ * puissances du générateur, et secrets scellés ensemble (AES-GCM sous une clé dérivée par PBKDF2 d'une
+ * phrase secrète): clé maître, clé privée du serveur et son prétraitement d'appariement.
+ *
+ * Au démarrage, le fichier est projeté en mémoire et les tables sont rechargées telles quelles:
+ * les mêmes paramètres survivent au redémarrage et l'autorité est à pleine vitesse dès la première requête.
+ *
+ * Format: [MAGIC][version] puis des champs préfixés par leur longueur, et un SHA-256 final sur l'ensemble
+ * (détection d'un fichier abîmé). La courbe, le générateur, la clé publique et l'empreinte de la table des
+ * puissances sont authentifiés comme données associées du scellement: sans la phrase secrète, le fichier
+ * ne livre aucun secret et ne peut pas être modifié sans être refusé.
+ */
+final class ParametersSnapshot {
+    private static final int MAGIC = 0x54415053; // "TAPS"
+    private static final int FORMAT_VERSION = 1;
+    private static final int PBKDF2_ITERATIONS = 310_000;
+    private static final int SALT_LENGTH = 16;
+    private static final int IV_LENGTH = 12;
+    private static final int GCM_TAG_BITS = 128;
+    private static final int DIGEST_LENGTH = 32;
+
+    private final SettingParameters parameters;
+    private final ServerDecryptionContext serverContext;
+
+    private ParametersSnapshot(SettingParameters parameters, ServerDecryptionContext serverContext) {
+        this.parameters = parameters;
+        this.serverContext = serverContext;
+    }
+
+    SettingParameters getParameters() {
+        return parameters;
+    }
+
+    ServerDecryptionContext getServerContext() {
+        return serverContext;
+    }
+
+    /**
+     * Charge un instantané existant
+     *
+     * @throws GeneralSecurityException si la phrase secrète est incorrecte ou le fichier altéré
+     */
+    static ParametersSnapshot load(Path path, char[] passphrase) throws IOException, GeneralSecurityException {
+        long start = System.nanoTime();
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            int bodyLength = buffer.limit() - DIGEST_LENGTH;
+            if (bodyLength < 8) {
+                throw new IOException("Instantané des paramètres tronqué: " + path);
+            }
+
+            // Détection d'un fichier abîmé (l'authenticité est assurée par le scellement)
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(buffer.slice(0, bodyLength));
+            byte[] expected = new byte[DIGEST_LENGTH];
+            buffer.get(bodyLength, expected);
+            if (!MessageDigest.isEqual(digest.digest(), expected)) {
+                throw new IOException("Instantané des paramètres corrompu: " + path);
+            }
+
+            if (buffer.getInt() != MAGIC) {
+                throw new IOException("Fichier d'instantané des paramètres invalide: " + path);
+            }
+            int version = buffer.getInt();
+            if (version != FORMAT_VERSION) {
+                throw new IOException("Version d'instantané des paramètres non supportée: " + version);
+            }
+
+            byte[] curve = readField(buffer);
+            byte[] generatorBytes = readField(buffer);
+            byte[] publicKeyBytes = readField(buffer);
+            byte[] salt = readField(buffer);
+            // Nombre d'itérations non authentifié: tout autre que le nôtre est refusé avant la dérivation
+            int iterations = buffer.getInt();
+            if (iterations != PBKDF2_ITERATIONS) {
+                throw new IOException("Nombre d'itérations inattendu dans l'instantané des paramètres: " + iterations);
+            }
+            byte[] iv = readField(buffer);
+            byte[] sealed = readField(buffer);
+            byte[] generatorPowTable = readField(buffer);
+
+            Pairing pairing = PairingFactory.getPairing(new PropertiesParameters().load(new ByteArrayInputStream(curve)));
+            Element generator = pairing.getG1().newElementFromBytes(generatorBytes).getImmutable();
+            Element publicKey = pairing.getG1().newElementFromBytes(publicKeyBytes).getImmutable();
+
+            long unsealStart = System.nanoTime();
+            byte[] secrets = unseal(passphrase, salt, iterations, iv, sealed,
+                    associatedData(curve, generatorBytes, publicKeyBytes, generatorPowTable));
+            long unsealMs = (System.nanoTime() - unsealStart) / 1_000_000;
+            Element masterKey;
+            byte[] serverKeyBytes;
+            byte[] serverKeyPreprocessing;
+            try {
+                ByteBuffer plaintext = ByteBuffer.wrap(secrets);
+                byte[] masterKeyBytes = readField(plaintext);
+                masterKey = pairing.getZr().newElementFromBytes(masterKeyBytes).getImmutable();
+                Arrays.fill(masterKeyBytes, (byte) 0);
+                serverKeyBytes = readField(plaintext);
+                serverKeyPreprocessing = readField(plaintext);
+            } finally {
+                Arrays.fill(secrets, (byte) 0);
+            }
+
+            // P_pub = sP: protège contre un instantané assemblé à partir de fichiers différents
+            if (!generator.duplicate().mulZn(masterKey).isEqual(publicKey)) {
+                throw new GeneralSecurityException("La clé maître ne correspond pas à la clé publique de l'instantané");
+            }
+
+            ElementPowPreProcessing powTable = pairing.getG1().getElementPowPreProcessingFromBytes(generatorPowTable);
+            SettingParameters parameters = new SettingParameters(pairing, generator, publicKey, masterKey, powTable);
+
+            // d_serveur = sH1(serveur): la clé du serveur est bien celle de cette clé maître
+            byte[] identity = TrustAuthority.SERVER_IDENTITY.getBytes();
+            Element serverKey = pairing.getG1().newElementFromBytes(serverKeyBytes).getImmutable();
+            if (!pairing.getG1().newElementFromHash(identity, 0, identity.length).mulZn(masterKey).isEqual(serverKey)) {
+                throw new GeneralSecurityException("La clé du serveur ne correspond pas à la clé maître de l'instantané");
+            }
+            PairingPreProcessing preprocessedKey = pairing.getPairingPreProcessingFromBytes(serverKeyPreprocessing);
+            ServerDecryptionContext serverContext = new ServerDecryptionContext(parameters,
+                    new KeyPair(TrustAuthority.SERVER_IDENTITY, serverKey), preprocessedKey);
+
+            Logger.info("Paramètres de l'autorité restaurés depuis " + path + " en "
+                    + (System.nanoTime() - start) / 1_000_000 + " ms (dont " + unsealMs + " ms de dérivation de la phrase secrète)");
+            return new ParametersSnapshot(parameters, serverContext);
+        }
+    }
+
+    /**
+     * Écrit l'instantané de façon atomique (fichier temporaire puis renommage), lisible par le seul propriétaire
+     */
+    static void save(Path path, char[] passphrase, SettingParameters parameters, ServerDecryptionContext serverContext)
+            throws IOException, GeneralSecurityException {
+        long start = System.nanoTime();
+        byte[] curve = Files.readAllBytes(Paths.get(SettingParameters.CURVE_PARAMETERS_PATH));
+        byte[] generatorBytes = parameters.getGenerator().toBytes();
+        byte[] publicKeyBytes = parameters.getPublicKey().toBytes();
+
+        SecureRandom random = new SecureRandom();
+        byte[] salt = new byte[SALT_LENGTH];
+        byte[] iv = new byte[IV_LENGTH];
+        random.nextBytes(salt);
+        random.nextBytes(iv);
+        byte[] generatorPowTable = parameters.getGeneratorPowTable().toBytes();
+
+        // Secrets scellés ensemble: clé maître, clé privée du serveur et son prétraitement
+        ByteArrayOutputStream secretBytes = new ByteArrayOutputStream();
+        DataOutputStream secretOut = new DataOutputStream(secretBytes);
+        byte[] masterKeyBytes = parameters.getMasterKey().toBytes();
+        writeField(secretOut, masterKeyBytes);
+        writeField(secretOut, serverContext.getPrivateKey().toBytes());
+        writeField(secretOut, serverContext.getPreprocessedKey().toBytes());
+        byte[] secrets = secretBytes.toByteArray();
+        byte[] sealed = seal(passphrase, salt, PBKDF2_ITERATIONS, iv, secrets,
+                associatedData(curve, generatorBytes, publicKeyBytes, generatorPowTable));
+        Arrays.fill(masterKeyBytes, (byte) 0);
+        Arrays.fill(secrets, (byte) 0);
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(MAGIC);
+        out.writeInt(FORMAT_VERSION);
+        writeField(out, curve);
+        writeField(out, generatorBytes);
+        writeField(out, publicKeyBytes);
+        writeField(out, salt);
+        out.writeInt(PBKDF2_ITERATIONS);
+        writeField(out, iv);
+        writeField(out, sealed);
+        writeField(out, generatorPowTable);
+        out.write(MessageDigest.getInstance("SHA-256").digest(bytes.toByteArray()));
+
+        Path parent = path.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer buffer = ByteBuffer.wrap(bytes.toByteArray());
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(true);
+        }
+        try {
+            Files.setPosixFilePermissions(tmp, PosixFilePermissions.fromString("rw-------"));
+        } catch (UnsupportedOperationException e) {
+            // Système de fichiers non POSIX
+        }
+        Files.move(tmp, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        Logger.info("Instantané des paramètres de l'autorité écrit dans " + path + " (" + bytes.size() + " octets, "
+                + (System.nanoTime() - start) / 1_000_000 + " ms)");
+    }
+
+    private static byte[] seal(char[] passphrase, byte[] salt, int iterations, byte[] iv, byte[] plaintext, byte[] aad)
+            throws GeneralSecurityException {
+        Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
+        cipher.init(Cipher.ENCRYPT_MODE, deriveKey(passphrase, salt, iterations), new GCMParameterSpec(GCM_TAG_BITS, iv));
+        cipher.updateAAD(aad);
+        return cipher.doFinal(plaintext);
+    }
+
+    private static byte[] unseal(char[] passphrase, byte[] salt, int iterations, byte[] iv, byte[] sealed, byte[] aad)
+            throws GeneralSecurityException {
+        Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
+        cipher.init(Cipher.DECRYPT_MODE, deriveKey(passphrase, salt, iterations), new GCMParameterSpec(GCM_TAG_BITS, iv));
+        cipher.updateAAD(aad);
+        try {
+            return cipher.doFinal(sealed);
+        } catch (AEADBadTagException e) {
+            throw new GeneralSecurityException("Phrase secrète incorrecte ou instantané altéré", e);
+        }
+    }
+
+    private static SecretKeySpec deriveKey(char[] passphrase, byte[] salt, int iterations) throws GeneralSecurityException {
+        PBEKeySpec spec = new PBEKeySpec(passphrase, salt, iterations, 256);
+        try {
+            byte[] key = SecretKeyFactory.getInstance("PBKDF2WithHmacSHA256").generateSecret(spec).getEncoded();
+            return new SecretKeySpec(key, "AES");
+        } finally {
+            spec.clearPassword();
+        }
+    }
+
+    /**
+     * Données associées du scellement: courbe, générateur, clé publique et empreinte de la table des puissances
+     */
+    private static byte[] associatedData(byte[] curve, byte[] generatorBytes, byte[] publicKeyBytes,
+                                         byte[] generatorPowTable) throws GeneralSecurityException {
+        MessageDigest digest = MessageDigest.getInstance("SHA-256");
+        for (byte[] field : new byte[][]{curve, generatorBytes, publicKeyBytes, generatorPowTable}) {
+            digest.update(ByteBuffer.allocate(4).putInt(field.length).array());
+            digest.update(field);
+        }
+        return digest.digest();
+    }
+
+    private static void writeField(DataOutputStream out, byte[] value) throws IOException {
+        out.writeInt(value.length);
+        out.write(value);
+    }
+
+    private static byte[] readField(ByteBuffer buffer) throws IOException {
+        int length = buffer.getInt();
+        if (length < 0 || length > buffer.remaining()) {
+            throw new IOException("Champ d'instantané des paramètres invalide");
+        }
+        byte[] value = new byte[length];
+        buffer.get(value);
+        return value;
+    }
+}
@@ -0,0 +1,215 @@
+package fr.insa.crypto.trustAuthority;
+
+import fr.insa.crypto.utils.Logger;
+import it.unisa.dia.gas.jpbc.Pairing;
+
+import javax.crypto.AEADBadTagException;
+import javax.crypto.Cipher;
+import javax.crypto.SecretKey;
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.PBEKeySpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.HexFormat;
+
+/**
+ * Coffre local des clés privées des utilisateurs déjà connectés sur ce poste: la clé d'une identité ne change
+ * pas tant que l'autorité garde ses paramètres, une connexion suivante n'a donc besoin que d'une vérification
+ * TOTP, sans extraction par l'autorité.
+ *
+ * Chaque clé est scellée (AES-GCM) sous une clé dérivée par PBKDF2 du mot de passe de l'utilisateur, avec une
+ * date d'expiration et la version des paramètres de l'autorité qui l'a produite. En-tête (identité, version,
+ * expiration) authentifié comme données associées: une entrée expirée, d'autres paramètres, ou qui ne
+ * s'ouvre pas avec le mot de passe fourni est ignorée, et la clé est redemandée à l'autorité.
+ *
+ * Un fichier par couple (autorité, identité). L'identité est prise telle quelle, sans normalisation: la clé
+ * extraite par l'autorité est celle des octets exacts de l'identité. Format: [MAGIC][version][sel][itérations]
+ * [IV][expiration][version des paramètres][clé scellée].
+ */
+final class PrivateKeyVault {
+    private static final int MAGIC = 0x54414b56; // "TAKV"
+    private static final int FORMAT_VERSION = 1;
+    private static final int PBKDF2_ITERATIONS = 310_000;
+    private static final int SALT_LENGTH = 16;
+    private static final int IV_LENGTH = 12;
+    private static final int GCM_TAG_BITS = 128;
+
+    private final Path directory;
+    private final String serverUrl;
+    private final long ttlMillis;
+    private final SecureRandom random = new SecureRandom();
+
+    /**
+     * @param directory Répertoire du coffre
+     * @param serverUrl URL de l'autorité (les clés de deux autorités ne se mélangent pas)
+     * @param ttlMillis Durée de validité d'une clé conservée
+     */
+    PrivateKeyVault(Path directory, String serverUrl, long ttlMillis) {
+        this.directory = directory;
+        this.serverUrl = serverUrl;
+        this.ttlMillis = ttlMillis;
+    }
+
+    /**
+     * Ouvre la clé conservée pour cette identité
+     *
+     * @param parametersVersion Version des paramètres actuels de l'autorité
+     * @return La paire de clés, ou null si aucune clé valide n'est conservée (absente, expirée, autres
+     *         paramètres, mot de passe différent)
+     */
+    KeyPair open(String identity, String password, String parametersVersion, Pairing pairing) {
+        Path path = pathFor(identity);
+        byte[] bytes;
+        try {
+            bytes = Files.readAllBytes(path);
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (IOException e) {
+            Logger.warning("Coffre de clés illisible pour " + identity + ": " + e.getMessage());
+            return null;
+        }
+
+        try {
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes));
+            if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION) {
+                forget(identity);
+                return null;
+            }
+            byte[] salt = in.readNBytes(SALT_LENGTH);
+            // Nombre d'itérations non authentifié: tout autre que le nôtre est refusé avant la dérivation
+            if (in.readInt() != PBKDF2_ITERATIONS) {
+                Logger.warning("Coffre de clés de " + identity + " avec un nombre d'itérations inattendu, ignoré");
+                forget(identity);
+                return null;
+            }
+            byte[] iv = in.readNBytes(IV_LENGTH);
+            long expiresAt = in.readLong();
+            String sealedVersion = in.readUTF();
+            byte[] sealedKey = in.readAllBytes();
+
+            if (System.currentTimeMillis() > expiresAt) {
+                Logger.info("Clé conservée pour " + identity + " expirée, nouvelle demande à l'autorité");
+                forget(identity);
+                return null;
+            }
+            if (!sealedVersion.equals(parametersVersion)) {
+                Logger.info("Clé conservée pour " + identity + " obtenue avec d'autres paramètres de l'autorité, ignorée");
+                forget(identity);
+                return null;
+            }
+
+            Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
+            cipher.init(Cipher.DECRYPT_MODE, deriveKey(password, salt, PBKDF2_ITERATIONS), new GCMParameterSpec(GCM_TAG_BITS, iv));
+            cipher.updateAAD(associatedData(identity, sealedVersion, expiresAt));
+            byte[] privateKeyBytes = cipher.doFinal(sealedKey);
+            KeyPair keyPair = new KeyPair(identity, pairing.getG1().newElementFromBytes(privateKeyBytes).getImmutable());
+            Arrays.fill(privateKeyBytes, (byte) 0);
+            return keyPair;
+        } catch (AEADBadTagException e) {
+            // Mot de passe changé ou fichier altéré: l'entrée sera remplacée après l'extraction
+            Logger.info("Clé conservée pour " + identity + " illisible avec ce mot de passe, ignorée");
+            return null;
+        } catch (IOException | GeneralSecurityException | RuntimeException e) {
+            Logger.warning("Coffre de clés inutilisable pour " + identity + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Scelle et conserve la clé obtenue de l'autorité (fichier temporaire puis renommage, lisible par le seul
+     * propriétaire). Un échec est sans conséquence: la clé sera redemandée à la prochaine connexion.
+     */
+    void store(KeyPair keyPair, String password, String parametersVersion) {
+        String identity = keyPair.getPk();
+        byte[] privateKeyBytes = keyPair.getSk().toBytes();
+        try {
+            byte[] salt = new byte[SALT_LENGTH];
+            byte[] iv = new byte[IV_LENGTH];
+            random.nextBytes(salt);
+            random.nextBytes(iv);
+            long expiresAt = System.currentTimeMillis() + ttlMillis;
+
+            Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
+            cipher.init(Cipher.ENCRYPT_MODE, deriveKey(password, salt, PBKDF2_ITERATIONS), new GCMParameterSpec(GCM_TAG_BITS, iv));
+            cipher.updateAAD(associatedData(identity, parametersVersion, expiresAt));
+            byte[] sealedKey = cipher.doFinal(privateKeyBytes);
+
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT_VERSION);
+            out.write(salt);
+            out.writeInt(PBKDF2_ITERATIONS);
+            out.write(iv);
+            out.writeLong(expiresAt);
+            out.writeUTF(parametersVersion);
+            out.write(sealedKey);
+
+            Files.createDirectories(directory);
+            Path path = pathFor(identity);
+            Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+            Files.write(tmp, bytes.toByteArray());
+            try {
+                Files.setPosixFilePermissions(tmp, PosixFilePermissions.fromString("rw-------"));
+            } catch (UnsupportedOperationException e) {
+                // Système de fichiers non POSIX
+            }
+            Files.move(tmp, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            Logger.info("Clé privée de " + identity + " conservée dans le coffre local");
+        } catch (IOException | GeneralSecurityException e) {
+            Logger.warning("Impossible de conserver la clé privée de " + identity + ": " + e.getMessage());
+        } finally {
+            Arrays.fill(privateKeyBytes, (byte) 0);
+        }
+    }
+
+    /**
+     * Supprime la clé conservée pour cette identité
+     */
+    void forget(String identity) {
+        try {
+            Files.deleteIfExists(pathFor(identity));
+        } catch (IOException e) {
+            Logger.warning("Impossible de supprimer la clé conservée de " + identity + ": " + e.getMessage());
+        }
+    }
+
+    private static SecretKey deriveKey(String password, byte[] salt, int iterations) throws GeneralSecurityException {
+        PBEKeySpec spec = new PBEKeySpec(password.toCharArray(), salt, iterations, 256);
+        try {
+            byte[] key = SecretKeyFactory.getInstance("PBKDF2WithHmacSHA256").generateSecret(spec).getEncoded();
+            return new SecretKeySpec(key, "AES");
+        } finally {
+            spec.clearPassword();
+        }
+    }
+
+    private static byte[] associatedData(String identity, String parametersVersion, long expiresAt) {
+        return (identity + "\n" + parametersVersion + "\n" + expiresAt).getBytes(StandardCharsets.UTF_8);
+    }
+
+    private Path pathFor(String identity) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256")
+                    .digest((serverUrl + "\n" + identity).getBytes(StandardCharsets.UTF_8));
+            return directory.resolve(HexFormat.of().formatHex(digest, 0, 16) + ".key");
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("SHA-256 indisponible", e);
+        }
+    }
+}
@@ -0,0 +1,159 @@
+package fr.insa.crypto.trustAuthority;
+
+import fr.insa.crypto.trustAuthority.protocol.Message;
+import fr.insa.crypto.trustAuthority.protocol.MessageType;
+import fr.insa.crypto.trustAuthority.protocol.WireCodec;
+import fr.insa.crypto.utils.Logger;
+import it.unisa.dia.gas.jpbc.Element;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.HexFormat;
+
+/**
+ * Copie locale des paramètres publics d'une autorité, conservée avec son ETag et les précalculs du client
+ * (table de puissances du générateur, vérification de la clé du canal, appariement de l'identité du serveur).
+ * Au démarrage suivant, le client repart de cette copie sans attendre le réseau ni calculer d'appariement,
+ * puis la revalide en arrière-plan par un GET conditionnel.
+ *
+ * Un fichier par URL d'autorité. Format: [MAGIC][version][ETag][réponse (binaire)][table de puissances]
+ * [liaison vérifiée][appariement du serveur] puis un SHA-256 final: les tables ne sont authentifiées par
+ * rien d'autre, une copie altérée est ignorée (téléchargement complet).
+ */
+final class PublicParametersCache {
+    private static final int MAGIC = 0x54415043; // "TAPC"
+    private static final int FORMAT_VERSION = 2;
+    private static final int DIGEST_LENGTH = 32;
+
+    // Liaison de la clé du canal: non vérifiée, invalide, valide
+    private static final byte BINDING_UNKNOWN = 0;
+    private static final byte BINDING_INVALID = 1;
+    private static final byte BINDING_VALID = 2;
+
+    private final Path path;
+
+    /**
+     * Contenu de la copie locale
+     */
+    static final class Entry {
+        final String etag;
+        final Message parameters;
+        final byte[] generatorPowTable;
+        final Boolean channelKeyVerified;
+        final byte[] serverIdentityPairing;
+
+        Entry(String etag, Message parameters, byte[] generatorPowTable, Boolean channelKeyVerified,
+              byte[] serverIdentityPairing) {
+            this.etag = etag;
+            this.parameters = parameters;
+            this.generatorPowTable = generatorPowTable;
+            this.channelKeyVerified = channelKeyVerified;
+            this.serverIdentityPairing = serverIdentityPairing;
+        }
+    }
+
+    PublicParametersCache(Path directory, String serverUrl) {
+        this.path = directory.resolve(fileName(serverUrl) + ".params");
+    }
+
+    /**
+     * @return La copie locale, ou null si elle est absente, d'un format antérieur ou altérée
+     */
+    Entry load() {
+        try {
+            byte[] bytes = Files.readAllBytes(path);
+            int bodyLength = bytes.length - DIGEST_LENGTH;
+            if (bodyLength < 8 || !MessageDigest.isEqual(sha256().digest(Arrays.copyOf(bytes, bodyLength)),
+                    Arrays.copyOfRange(bytes, bodyLength, bytes.length))) {
+                Logger.warning("Copie locale des paramètres publics altérée, ignorée: " + path);
+                return null;
+            }
+
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes, 0, bodyLength));
+            if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION) {
+                return null;
+            }
+            String etag = in.readUTF();
+            Message parameters = WireCodec.BINARY.decode(MessageType.PUBLIC_PARAMETERS, readField(in));
+            byte[] generatorPowTable = readField(in);
+            byte binding = in.readByte();
+            byte[] serverIdentityPairing = readField(in);
+            return new Entry(etag, parameters, generatorPowTable.length > 0 ? generatorPowTable : null,
+                    binding == BINDING_UNKNOWN ? null : binding == BINDING_VALID,
+                    serverIdentityPairing.length > 0 ? serverIdentityPairing : null);
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (IOException | IllegalArgumentException e) {
+            Logger.warning("Copie locale des paramètres publics illisible, ignorée: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Remplace la copie locale de façon atomique (fichier temporaire puis renommage), avec les précalculs
+     * déjà faits. Un échec n'empêche pas le client de fonctionner: il retéléchargera les paramètres au prochain démarrage.
+     */
+    void store(AuthorityParameters authority) {
+        if (authority.getEtag() == null) {
+            return;
+        }
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT_VERSION);
+            out.writeUTF(authority.getEtag());
+            writeField(out, WireCodec.BINARY.encode(authority.getCapabilities()));
+            writeField(out, authority.getParameters().getGeneratorPowTable().toBytes());
+            Boolean verified = authority.getChannelKeyVerified();
+            out.writeByte(verified == null ? BINDING_UNKNOWN : verified ? BINDING_VALID : BINDING_INVALID);
+            Element serverIdentityPairing = authority.getServerIdentityPairing();
+            writeField(out, serverIdentityPairing != null ? serverIdentityPairing.toBytes() : new byte[0]);
+            out.write(sha256().digest(bytes.toByteArray()));
+
+            Files.createDirectories(path.toAbsolutePath().getParent());
+            Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+            Files.write(tmp, bytes.toByteArray());
+            Files.move(tmp, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            Logger.debug("Copie locale des paramètres publics enregistrée (version " + authority.getVersion() + ")");
+        } catch (IOException e) {
+            Logger.warning("Impossible d'enregistrer la copie locale des paramètres publics: " + e.getMessage());
+        }
+    }
+
+    private static void writeField(DataOutputStream out, byte[] value) throws IOException {
+        out.writeInt(value.length);
+        out.write(value);
+    }
+
+    private static byte[] readField(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0 || length > in.available()) {
+            throw new IOException("Champ tronqué");
+        }
+        return in.readNBytes(length);
+    }
+
+    private static String fileName(String serverUrl) {
+        return HexFormat.of().formatHex(sha256().digest(serverUrl.getBytes(StandardCharsets.UTF_8)), 0, 16);
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("SHA-256 indisponible", e);
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package fr.insa.crypto.trustAuthority;
+
+import fr.insa.crypto.trustAuthority.protocol.Message;
+import fr.insa.crypto.trustAuthority.protocol.WireCodec;
+
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.util.HexFormat;
+
+/**
+ * Réponse de /public-parameters précalculée au démarrage: les paramètres ne changent pas pendant la vie
+ * de l'autorité, ils sont donc encodés une seule fois par format, avec un ETag fort par représentation.
+ *
+ * Le champ "parametersVersion" identifie les paramètres IBE eux-mêmes (clé publique, générateur, courbe):
+ * il ne change qu'avec eux, et permet au client de rattacher ses données locales (clés, précalculs)
+ * aux paramètres qui les ont produites.
+ */
+final class PublicParametersResponse {
+    // Les paramètres changent au redémarrage s'ils ne sont pas persistés: le client garde sa copie mais revalide
+    static final String CACHE_CONTROL = "no-cache";
+
+    private static final int VERSION_BYTES = 16;
+
+    private final String parametersVersion;
+    private final byte[] jsonBody;
+    private final byte[] binaryBody;
+    private final String jsonEtag;
+    private final String binaryEtag;
+
+    /**
+     * @param publicParams Message PUBLIC_PARAMETERS complet, sans "parametersVersion"
+     */
+    PublicParametersResponse(Message publicParams) {
+        this.parametersVersion = parametersVersion(publicParams.getBytes("publicKey"),
+                publicParams.getBytes("generator"), publicParams.getString("pairingParams"));
+        publicParams.put("parametersVersion", parametersVersion);
+        this.jsonBody = WireCodec.JSON.encode(publicParams);
+        this.binaryBody = WireCodec.BINARY.encode(publicParams);
+        this.jsonEtag = etag(jsonBody);
+        this.binaryEtag = etag(binaryBody);
+    }
+
+    String getParametersVersion() {
+        return parametersVersion;
+    }
+
+    byte[] body(WireCodec codec) {
+        return codec == WireCodec.BINARY ? binaryBody : jsonBody;
+    }
+
+    String etag(WireCodec codec) {
+        return codec == WireCodec.BINARY ? binaryEtag : jsonEtag;
+    }
+
+    /**
+     * Comparaison faible de If-None-Match (RFC 9110): liste d'ETags, éventuellement préfixés par W/, ou "*"
+     *
+     * @return true si la copie du client est à jour (réponse 304)
+     */
+    boolean isNotModified(String ifNoneMatch, WireCodec codec) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        String current = etag(codec);
+        for (String candidate : ifNoneMatch.split(",")) {
+            String tag = candidate.trim();
+            if (tag.startsWith("W/")) {
+                tag = tag.substring(2);
+            }
+            if (tag.equals("*") || tag.equals(current)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Version des paramètres IBE: SHA-256 tronqué de la clé publique, du générateur et de la courbe
+     */
+    static String parametersVersion(byte[] publicKey, byte[] generator, String pairingParams) {
+        MessageDigest digest = sha256();
+        digest.update(publicKey);
+        digest.update(generator);
+        digest.update(pairingParams.getBytes(StandardCharsets.UTF_8));
+        return HexFormat.of().formatHex(digest.digest(), 0, VERSION_BYTES);
+    }
+
+    private static String etag(byte[] body) {
+        return "\"" + HexFormat.of().formatHex(sha256().digest(body), 0, VERSION_BYTES) + "\"";
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("SHA-256 indisponible", e);
+        }
+    }
+}
@@ -0,0 +1,434 @@
+package fr.insa.crypto.trustAuthority;
+
+import fr.insa.crypto.trustAuthority.metrics.LatencyHistogram;
+import fr.insa.crypto.utils.Logger;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Pool de canaux sécurisés d'un client partagé entre threads (passerelle de messagerie): N canaux établis
+ * chacun par son propre échange de clé, avec des identifiants de session indépendants. Chaque requête
+ * emprunte un canal libre le temps de son aller-retour; si tous sont occupés, elle attend le premier
+ * rendu (sans bloquer de thread), dans la limite d'un délai au-delà duquel elle échoue.
+ *
+ * Un canal est rétabli en arrière-plan avant d'atteindre sa durée de vie ou son nombre maximal de messages
+ * (clé AES-GCM à IV aléatoires): la nouvelle session remplace l'ancienne d'un bloc, la requête déjà partie
+ * sur l'ancienne se termine normalement, puis l'ancienne session est fermée auprès du serveur. Les échéances
+ * sont étalées entre la moitié et les trois quarts de la durée de vie pour que les canaux ne soient pas tous
+ * rétablis en même temps. En cas d'échec, l'ancienne session reste en service et le rétablissement est
+ * retenté au passage suivant. Une session retirée par le serveur (inactivité, redémarrage) est remplacée
+ * par la requête qui le constate (replace).
+ *
+ * Les attentes d'un canal libre sont mesurées (getWaitTimes) pour dimensionner le pool.
+ */
+public final class SecureChannelPool implements AutoCloseable {
+    // Période maximale de vérification des échéances
+    private static final long MAX_RENEWAL_CHECK_MS = 60_000;
+
+    private final Supplier<CompletableFuture<TrustAuthorityClient.SecureSession>> establish;
+    private final Consumer<TrustAuthorityClient.SecureSession> closeSession;
+    private final Slot[] slots;
+    private final long lifetimeMillis;
+    private final long maxMessages;
+    private final long leaseTimeoutMillis;
+
+    // Canaux libres (le dernier rendu est prêté en premier) et requêtes en attente d'un canal, sous le verrou du pool
+    private final ArrayDeque<Slot> idle = new ArrayDeque<>();
+    private final ArrayDeque<Waiter> waiters = new ArrayDeque<>();
+    private volatile boolean closed;
+
+    private final ScheduledExecutorService renewer;
+
+    // Statistiques
+    private final LatencyHistogram waitTimes = new LatencyHistogram();
+    private final AtomicLong leases = new AtomicLong();
+    private final AtomicLong contendedLeases = new AtomicLong();
+    private final AtomicLong leaseTimeouts = new AtomicLong();
+    private final AtomicLong renewals = new AtomicLong();
+    private final AtomicLong renewalFailures = new AtomicLong();
+
+    /**
+     * Canal du pool: la session courante est remplacée à chaque rétablissement
+     */
+    static final class Slot {
+        private final int index;
+        private volatile TrustAuthorityClient.SecureSession session;
+        private volatile long renewAt;
+        private final AtomicLong messages = new AtomicLong();
+        private final AtomicBoolean renewing = new AtomicBoolean();
+        // Canal emprunté, et session remplacée pendant l'emprunt (fermée quand il est rendu), sous le verrou du canal
+        private boolean leased;
+        private TrustAuthorityClient.SecureSession superseded;
+
+        private Slot(int index) {
+            this.index = index;
+        }
+
+        TrustAuthorityClient.SecureSession session() {
+            return session;
+        }
+    }
+
+    /**
+     * Requête en attente d'un canal libre
+     */
+    private static final class Waiter {
+        private final CompletableFuture<Slot> future = new CompletableFuture<>();
+        private final long startNanos;
+
+        private Waiter(long startNanos) {
+            this.startNanos = startNanos;
+        }
+    }
+
+    /**
+     * @param establish          Établit une nouvelle session avec l'autorité
+     * @param closeSession       Ferme une session remplacée auprès de l'autorité (sans attendre la réponse)
+     * @param size               Nombre de canaux
+     * @param lifetimeMillis     Durée de vie d'un canal
+     * @param maxMessages        Nombre maximal de requêtes sur une même clé de session
+     * @param leaseTimeoutMillis Attente maximale d'un canal libre
+     */
+    SecureChannelPool(Supplier<CompletableFuture<TrustAuthorityClient.SecureSession>> establish,
+                      Consumer<TrustAuthorityClient.SecureSession> closeSession, int size,
+                      long lifetimeMillis, long maxMessages, long leaseTimeoutMillis) {
+        if (size < 1) {
+            throw new IllegalArgumentException("Taille du pool de canaux invalide: " + size);
+        }
+        this.establish = establish;
+        this.closeSession = closeSession;
+        this.slots = new Slot[size];
+        this.lifetimeMillis = lifetimeMillis;
+        this.maxMessages = maxMessages;
+        this.leaseTimeoutMillis = leaseTimeoutMillis;
+        this.renewer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "ta-channel-pool");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Établit tous les canaux en parallèle puis lance la surveillance des échéances
+     *
+     * @return Futur terminé quand le pool est utilisable; échoue si un canal n'a pas pu être établi, après
+     *         avoir fermé le pool et les sessions des autres canaux
+     */
+    CompletableFuture<Void> start() {
+        CompletableFuture<?>[] established = new CompletableFuture<?>[slots.length];
+        for (int i = 0; i < slots.length; i++) {
+            Slot slot = new Slot(i);
+            slots[i] = slot;
+            established[i] = establish.get().thenAccept(session -> install(slot, session));
+        }
+        // allOf attend tous les établissements: en cas d'échec, chaque session déjà installée est fermée
+        return CompletableFuture.allOf(established).whenComplete((ignored, error) -> {
+            if (error != null) {
+                close();
+            }
+        }).thenRun(() -> {
+            synchronized (this) {
+                for (Slot slot : slots) {
+                    idle.addLast(slot);
+                }
+            }
+            long period = Math.max(1_000, Math.min(MAX_RENEWAL_CHECK_MS, lifetimeMillis / 10));
+            renewer.scheduleWithFixedDelay(this::renewDue, period, period, TimeUnit.MILLISECONDS);
+            Logger.info("Pool de " + slots.length + " canaux sécurisés établi avec l'autorité");
+        });
+    }
+
+    /**
+     * Emprunte un canal libre, ou attend qu'un canal soit rendu
+     *
+     * @return Le canal emprunté, à rendre par release; échoue avec une IOException si aucun ne se libère à temps
+     */
+    CompletableFuture<Slot> acquire() {
+        long startNanos = System.nanoTime();
+        Waiter waiter;
+        synchronized (this) {
+            if (closed) {
+                return CompletableFuture.failedFuture(new IOException("Pool de canaux sécurisés fermé"));
+            }
+            Slot slot = idle.pollLast();
+            if (slot != null) {
+                leased(slot, startNanos);
+                return CompletableFuture.completedFuture(slot);
+            }
+            waiter = new Waiter(startNanos);
+            waiters.addLast(waiter);
+        }
+        contendedLeases.incrementAndGet();
+
+        // Délai dépassé: le futur est terminé sans canal, release passe alors à l'attente suivante
+        waiter.future.completeOnTimeout(null, leaseTimeoutMillis, TimeUnit.MILLISECONDS);
+        return waiter.future.thenApply(slot -> {
+            if (slot == null) {
+                leaseTimeouts.incrementAndGet();
+                waitTimes.recordNanos(System.nanoTime() - startNanos);
+                throw new CompletionException(new IOException("Aucun canal sécurisé libre après "
+                        + leaseTimeoutMillis + " ms (pool de " + slots.length + " canaux)"));
+            }
+            return slot;
+        });
+    }
+
+    /**
+     * Rend un canal emprunté: il est confié à la plus ancienne requête en attente, ou remis parmi les canaux libres
+     */
+    void release(Slot slot) {
+        endLease(slot);
+        if (slot.messages.get() >= maxMessages * 3 / 4) {
+            renew(slot);
+        }
+        while (true) {
+            Waiter waiter;
+            synchronized (this) {
+                waiter = waiters.pollFirst();
+                if (waiter == null) {
+                    if (!closed) {
+                        idle.addLast(slot);
+                        return;
+                    }
+                    break;
+                }
+            }
+            // Emprunté avant d'être confié: la requête lit la session dès complete
+            synchronized (slot) {
+                slot.leased = true;
+            }
+            // Une attente expirée entre-temps refuse le canal
+            if (waiter.future.complete(slot)) {
+                leased(slot, waiter.startNanos);
+                return;
+            }
+            endLease(slot);
+        }
+        // Pool fermé: la session est fermée après sa dernière requête
+        closeSession.accept(slot.session);
+    }
+
+    private void leased(Slot slot, long startNanos) {
+        synchronized (slot) {
+            slot.leased = true;
+        }
+        waitTimes.recordNanos(System.nanoTime() - startNanos);
+        leases.incrementAndGet();
+        slot.messages.incrementAndGet();
+    }
+
+    /**
+     * Fin d'un emprunt: la session remplacée pendant l'emprunt n'a plus de requête en cours
+     */
+    private void endLease(Slot slot) {
+        TrustAuthorityClient.SecureSession previous;
+        synchronized (slot) {
+            slot.leased = false;
+            previous = slot.superseded;
+            slot.superseded = null;
+        }
+        if (previous != null) {
+            closeSession.accept(previous);
+        }
+    }
+
+    /**
+     * Rétablit tous les canaux au plus tôt (paramètres de l'autorité remplacés)
+     */
+    void invalidate() {
+        for (Slot slot : slots) {
+            if (slot != null) {
+                slot.renewAt = 0;
+            }
+        }
+        try {
+            renewer.execute(this::renewDue);
+        } catch (RuntimeException e) {
+            // Pool fermé
+        }
+    }
+
+    /**
+     * Rétablit les canaux arrivés à échéance (durée de vie ou nombre de messages)
+     */
+    private void renewDue() {
+        long now = System.currentTimeMillis();
+        for (Slot slot : slots) {
+            if (slot != null && (now >= slot.renewAt || slot.messages.get() >= maxMessages * 3 / 4)) {
+                renew(slot);
+            }
+        }
+    }
+
+    private void renew(Slot slot) {
+        if (closed || !slot.renewing.compareAndSet(false, true)) {
+            return;
+        }
+        establish.get().whenComplete((session, error) -> {
+            if (error != null) {
+                renewalFailures.incrementAndGet();
+                Logger.warning("Rétablissement du canal sécurisé " + slot.index + " impossible, ancienne session conservée: "
+                        + (error.getCause() != null ? error.getCause().getMessage() : error.getMessage()));
+            } else if (closed) {
+                closeSession.accept(session);
+            } else {
+                TrustAuthorityClient.SecureSession previous = slot.session;
+                install(slot, session);
+                retire(slot, previous);
+                renewals.incrementAndGet();
+                Logger.debug("Canal sécurisé " + slot.index + " rétabli (Session-ID " + session.sessionId + ")");
+            }
+            slot.renewing.set(false);
+        });
+    }
+
+    /**
+     * Ferme la session remplacée, ou à la fin de l'emprunt en cours si une requête peut encore l'utiliser
+     */
+    private void retire(Slot slot, TrustAuthorityClient.SecureSession previous) {
+        synchronized (slot) {
+            if (slot.leased && slot.superseded == null) {
+                slot.superseded = previous;
+                return;
+            }
+        }
+        // Session remplacée deux fois pendant le même emprunt: la requête en cours utilise la plus ancienne
+        closeSession.accept(previous);
+    }
+
+    /**
+     * Remplace la session d'un canal emprunté que le serveur a retirée (inactivité, fin de vie, redémarrage)
+     *
+     * @param expired Session refusée par le serveur
+     * @return La session sur laquelle renvoyer la requête
+     */
+    CompletableFuture<TrustAuthorityClient.SecureSession> replace(Slot slot, TrustAuthorityClient.SecureSession expired) {
+        TrustAuthorityClient.SecureSession current = slot.session;
+        if (current != expired) {
+            // Déjà rétablie entre-temps
+            return CompletableFuture.completedFuture(current);
+        }
+        return establish.get().thenApply(session -> {
+            install(slot, session);
+            Logger.info("Canal sécurisé " + slot.index + " expiré côté serveur, rétabli (Session-ID " + session.sessionId + ")");
+            return session;
+        });
+    }
+
+    private void install(Slot slot, TrustAuthorityClient.SecureSession session) {
+        long renewalWindow = lifetimeMillis / 4;
+        slot.session = session;
+        slot.messages.set(0);
+        slot.renewAt = System.currentTimeMillis() + lifetimeMillis / 2
+                + (renewalWindow > 0 ? ThreadLocalRandom.current().nextLong(renewalWindow) : 0);
+    }
+
+    /**
+     * Ferme le pool: les requêtes en attente échouent, celles en cours se terminent normalement.
+     * Les sessions sont fermées auprès de l'autorité, celles des canaux empruntés quand ils sont rendus.
+     */
+    @Override
+    public void close() {
+        ArrayDeque<Waiter> pending;
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            idle.clear();
+            pending = new ArrayDeque<>(waiters);
+            waiters.clear();
+        }
+        renewer.shutdownNow();
+        for (Waiter waiter : pending) {
+            waiter.future.completeExceptionally(new IOException("Pool de canaux sécurisés fermé"));
+        }
+        for (Slot slot : slots) {
+            if (slot == null) {
+                continue;
+            }
+            TrustAuthorityClient.SecureSession session;
+            synchronized (slot) {
+                session = slot.leased ? null : slot.session;
+            }
+            if (session != null) {
+                closeSession.accept(session);
+            }
+        }
+    }
+
+    /**
+     * @return Nombre de canaux du pool
+     */
+    public int size() {
+        return slots.length;
+    }
+
+    /**
+     * @return Nombre de canaux libres à cet instant
+     */
+    public synchronized int getAvailableChannels() {
+        return idle.size();
+    }
+
+    /**
+     * @return Nombre de requêtes en attente d'un canal à cet instant
+     */
+    public synchronized int getWaitingRequests() {
+        return waiters.size();
+    }
+
+    /**
+     * @return Attentes d'un canal libre (durée nulle ou presque pour un canal disponible immédiatement),
+     *         exportables par MetricsRegistry.summary
+     */
+    public LatencyHistogram getWaitTimes() {
+        return waitTimes;
+    }
+
+    /**
+     * @return Nombre total d'emprunts
+     */
+    public long getLeaseCount() {
+        return leases.get();
+    }
+
+    /**
+     * @return Nombre de requêtes qui ont dû attendre un canal (pool saturé)
+     */
+    public long getContendedLeaseCount() {
+        return contendedLeases.get();
+    }
+
+    /**
+     * @return Nombre de requêtes ayant échoué faute de canal libre dans le délai
+     */
+    public long getLeaseTimeoutCount() {
+        return leaseTimeouts.get();
+    }
+
+    /**
+     * @return Nombre de canaux rétablis avant échéance
+     */
+    public long getRenewalCount() {
+        return renewals.get();
+    }
+
+    /**
+     * @return Nombre de rétablissements ayant échoué
+     */
+    public long getRenewalFailureCount() {
+        return renewalFailures.get();
+    }
+}
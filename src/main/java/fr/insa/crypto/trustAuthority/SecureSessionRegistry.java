@@ -0,0 +1,170 @@
+package fr.insa.crypto.trustAuthority;
+
+import fr.insa.crypto.utils.Logger;
+import fr.insa.crypto.utils.SecureChannelManager;
+
+import java.io.Closeable;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Sessions sécurisées établies avec l'autorité, par identifiant de session.
+ *
+ * Une session est retirée quand elle n'a servi à aucune requête depuis le délai d'inactivité, au plus tard
+ * à la fin de sa durée de vie, ou dès que son client la ferme (canal d'un pool remplacé par un nouveau).
+ * Une requête sur une session retirée est refusée (410) et le client établit un nouveau canal; les connexions
+ * déjà ouvertes sur le canal multiplexé gardent leur session jusqu'à leur fermeture.
+ */
+final class SecureSessionRegistry implements Closeable {
+    private static final long MAX_EVICTION_INTERVAL_MS = 30_000;
+    private static final long MIN_EVICTION_INTERVAL_MS = 100;
+    // Préfixe de la preuve de fermeture: une preuve de rattachement au canal multiplexé ne peut pas servir à fermer
+    private static final byte[] CLOSE_PROOF_DOMAIN = "ta-session-close\0".getBytes(StandardCharsets.UTF_8);
+
+    private final ConcurrentHashMap<String, Entry> sessions = new ConcurrentHashMap<>();
+    private final long idleTimeoutMillis;
+    private final long maxLifetimeMillis;
+    private final ScheduledExecutorService evictor;
+
+    // Statistiques
+    private final LongAdder evicted = new LongAdder();
+    private final LongAdder closed = new LongAdder();
+
+    private static final class Entry {
+        private final SecureChannelManager channel;
+        private final long establishedAt;
+        private volatile long lastUsedAt;
+
+        private Entry(SecureChannelManager channel, long now) {
+            this.channel = channel;
+            this.establishedAt = now;
+            this.lastUsedAt = now;
+        }
+    }
+
+    /**
+     * @param idleTimeoutMillis Délai sans requête au-delà duquel une session est retirée
+     * @param maxLifetimeMillis Durée de vie maximale d'une session, même active (supérieure à celle des canaux
+     *                          des pools clients, rétablis avant leur échéance)
+     */
+    SecureSessionRegistry(long idleTimeoutMillis, long maxLifetimeMillis) {
+        if (idleTimeoutMillis <= 0 || maxLifetimeMillis <= 0) {
+            throw new IllegalArgumentException("Délais d'expiration des sessions invalides: "
+                    + idleTimeoutMillis + " ms, " + maxLifetimeMillis + " ms");
+        }
+        this.idleTimeoutMillis = idleTimeoutMillis;
+        this.maxLifetimeMillis = maxLifetimeMillis;
+
+        this.evictor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "secure-session-eviction");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long period = Math.max(MIN_EVICTION_INTERVAL_MS,
+                Math.min(MAX_EVICTION_INTERVAL_MS, Math.min(idleTimeoutMillis, maxLifetimeMillis) / 4));
+        evictor.scheduleWithFixedDelay(this::evictExpired, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Enregistre une session qui vient d'être établie
+     */
+    void put(String sessionId, SecureChannelManager channel) {
+        sessions.put(sessionId, new Entry(channel, System.currentTimeMillis()));
+    }
+
+    /**
+     * Retourne le canal d'une session et la marque comme utilisée
+     *
+     * @return Le canal, ou null si la session est inconnue ou expirée
+     */
+    SecureChannelManager get(String sessionId) {
+        Entry entry = sessions.get(sessionId);
+        if (entry == null) {
+            return null;
+        }
+        long now = System.currentTimeMillis();
+        if (isExpired(entry, now)) {
+            if (sessions.remove(sessionId, entry)) {
+                evicted.increment();
+            }
+            return null;
+        }
+        entry.lastUsedAt = now;
+        return entry.channel;
+    }
+
+    /**
+     * Ferme une session à la demande de son client
+     *
+     * @param channel Canal dont le client a prouvé la possession de la clé
+     * @return true si la session était encore enregistrée pour ce canal
+     */
+    boolean remove(String sessionId, SecureChannelManager channel) {
+        Entry entry = sessions.get(sessionId);
+        if (entry == null || entry.channel != channel || !sessions.remove(sessionId, entry)) {
+            return false;
+        }
+        closed.increment();
+        return true;
+    }
+
+    /**
+     * @return Le contenu de la preuve de fermeture d'une session, à chiffrer avec sa clé
+     */
+    static byte[] closeProofInput(String sessionId) {
+        byte[] id = sessionId.getBytes(StandardCharsets.UTF_8);
+        byte[] input = new byte[CLOSE_PROOF_DOMAIN.length + id.length];
+        System.arraycopy(CLOSE_PROOF_DOMAIN, 0, input, 0, CLOSE_PROOF_DOMAIN.length);
+        System.arraycopy(id, 0, input, CLOSE_PROOF_DOMAIN.length, id.length);
+        return input;
+    }
+
+    private boolean isExpired(Entry entry, long now) {
+        return now - entry.lastUsedAt >= idleTimeoutMillis || now - entry.establishedAt >= maxLifetimeMillis;
+    }
+
+    private void evictExpired() {
+        long now = System.currentTimeMillis();
+        int count = 0;
+        for (Map.Entry<String, Entry> session : sessions.entrySet()) {
+            if (isExpired(session.getValue(), now) && sessions.remove(session.getKey(), session.getValue())) {
+                count++;
+            }
+        }
+        if (count > 0) {
+            evicted.add(count);
+            Logger.debug("Sessions sécurisées expirées retirées: " + count);
+        }
+    }
+
+    /**
+     * @return Nombre de sessions enregistrées
+     */
+    int size() {
+        return sessions.size();
+    }
+
+    /**
+     * @return Nombre de sessions retirées pour inactivité ou fin de vie
+     */
+    long getEvictedCount() {
+        return evicted.sum();
+    }
+
+    /**
+     * @return Nombre de sessions fermées par leur client
+     */
+    long getClosedCount() {
+        return closed.sum();
+    }
+
+    @Override
+    public void close() {
+        evictor.shutdownNow();
+    }
+}
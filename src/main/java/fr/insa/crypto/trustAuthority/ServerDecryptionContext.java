@@ -0,0 +1,52 @@
+package fr.insa.crypto.trustAuthority;
+
+import fr.insa.crypto.encryption.IdentityBasedEncryption;
+import it.unisa.dia.gas.jpbc.Element;
+import it.unisa.dia.gas.jpbc.PairingPreProcessing;
+
+/**
+ * Contexte de déchiffrement de l'autorité pour sa propre identité.
+ * Dérivé une seule fois (hachage sur G1, multiplication scalaire, prétraitement de l'appariement)
+ * puis réutilisé à chaque établissement de canal.
+ */
+public class ServerDecryptionContext {
+    private final String identity;
+    private final Element privateKey;
+    private final PairingPreProcessing preprocessedKey;
+    private final IdentityBasedEncryption ibeEngine;
+
+    /**
+     * @param parameters Paramètres du système (avec la clé maître)
+     * @param keyPair    Clé privée extraite pour l'identité du serveur
+     */
+    ServerDecryptionContext(SettingParameters parameters, KeyPair keyPair) {
+        // e(d_id, U): la clé privée est toujours le premier argument de l'appariement
+        this(parameters, keyPair, parameters.getPairing().getPairingPreProcessingFromElement(keyPair.getSk().getImmutable()));
+    }
+
+    /**
+     * @param preprocessedKey Prétraitement de l'appariement déjà calculé (restauré depuis l'instantané des paramètres)
+     */
+    ServerDecryptionContext(SettingParameters parameters, KeyPair keyPair, PairingPreProcessing preprocessedKey) {
+        this.identity = keyPair.getPk();
+        this.privateKey = keyPair.getSk().getImmutable();
+        this.preprocessedKey = preprocessedKey;
+        this.ibeEngine = new IdentityBasedEncryption(parameters);
+    }
+
+    public String getIdentity() {
+        return identity;
+    }
+
+    public Element getPrivateKey() {
+        return privateKey;
+    }
+
+    public PairingPreProcessing getPreprocessedKey() {
+        return preprocessedKey;
+    }
+
+    public IdentityBasedEncryption getIbeEngine() {
+        return ibeEngine;
+    }
+}
@@ -0,0 +1,128 @@
+package fr.insa.crypto.trustAuthority;
+
+import fr.insa.crypto.utils.Logger;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Phase de préchauffage de l'autorité avant qu'elle ne se déclare prête.
+ * Exécute des cycles synthétiques (handshakes, déchiffrements, extractions de clés) par séries,
+ * jusqu'à ce que la latence médiane de chaque cycle se stabilise (code d'appariement compilé par le JIT,
+ * classes chargées, tables en cache) ou que la durée maximale soit atteinte.
+ */
+class ServerWarmup {
+
+    /**
+     * Un cycle synthétique représentatif d'une requête
+     */
+    interface Cycle {
+        void run() throws Exception;
+    }
+
+    private final Map<String, Cycle> cycles = new LinkedHashMap<>();
+    private final long maxDurationMs;
+    private final int roundSize;
+    private final double tolerance;
+
+    /**
+     * @param maxDurationMs Durée maximale du préchauffage
+     * @param roundSize     Nombre d'itérations par série
+     * @param tolerance     Écart relatif maximal entre deux médianes successives pour considérer un cycle stable
+     */
+    ServerWarmup(long maxDurationMs, int roundSize, double tolerance) {
+        this.maxDurationMs = maxDurationMs;
+        this.roundSize = Math.max(1, roundSize);
+        this.tolerance = tolerance;
+    }
+
+    ServerWarmup add(String name, Cycle cycle) {
+        cycles.put(name, cycle);
+        return this;
+    }
+
+    /**
+     * Exécute le préchauffage; un cycle en échec est abandonné sans bloquer la mise en service
+     */
+    void run() {
+        long start = System.nanoTime();
+        long deadline = start + maxDurationMs * 1_000_000L;
+        Map<String, CycleState> states = new LinkedHashMap<>();
+
+        for (Map.Entry<String, Cycle> entry : cycles.entrySet()) {
+            CycleState state = new CycleState(entry.getKey(), entry.getValue());
+            try {
+                // Première exécution à froid: la latence vue par les premières requêtes sans préchauffage
+                long t0 = System.nanoTime();
+                state.cycle.run();
+                state.coldNanos = System.nanoTime() - t0;
+                states.put(entry.getKey(), state);
+            } catch (Exception e) {
+                Logger.warning("Cycle de préchauffage '" + entry.getKey() + "' ignoré: " + e.getMessage());
+            }
+        }
+
+        boolean allStable = false;
+        while (!allStable && System.nanoTime() < deadline) {
+            allStable = true;
+            for (CycleState state : states.values()) {
+                if (state.stable || state.failed) {
+                    continue;
+                }
+                try {
+                    state.runRound(roundSize);
+                } catch (Exception e) {
+                    state.failed = true;
+                    Logger.warning("Cycle de préchauffage '" + state.name + "' interrompu: " + e.getMessage());
+                    continue;
+                }
+                allStable &= state.stable;
+                if (System.nanoTime() >= deadline) {
+                    break;
+                }
+            }
+        }
+
+        for (CycleState state : states.values()) {
+            Logger.info(String.format("Préchauffage '%s': %.2f ms à froid -> %.2f ms (médiane), %d itérations%s",
+                    state.name, state.coldNanos / 1e6, state.lastMedianNanos / 1e6, state.iterations,
+                    state.stable ? "" : " (non stabilisé)"));
+        }
+        Logger.info("Préchauffage terminé en " + (System.nanoTime() - start) / 1_000_000 + " ms"
+                + (allStable ? "" : " (durée maximale atteinte)"));
+    }
+
+    private class CycleState {
+        final String name;
+        final Cycle cycle;
+        long coldNanos;
+        long lastMedianNanos;
+        long iterations;
+        boolean stable;
+        boolean failed;
+
+        CycleState(String name, Cycle cycle) {
+            this.name = name;
+            this.cycle = cycle;
+        }
+
+        void runRound(int size) throws Exception {
+            long[] samples = new long[size];
+            for (int i = 0; i < size; i++) {
+                long t0 = System.nanoTime();
+                cycle.run();
+                samples[i] = System.nanoTime() - t0;
+            }
+            iterations += size;
+            Arrays.sort(samples);
+            long median = samples[size / 2];
+
+            // Stable lorsque la médiane ne s'améliore plus au-delà de la tolérance
+            if (lastMedianNanos > 0 && median >= lastMedianNanos * (1 - tolerance)) {
+                stable = true;
+            }
+            lastMedianNanos = median;
+        }
+    }
+}
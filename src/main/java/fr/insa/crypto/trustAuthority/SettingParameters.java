@@ -6,6 +6,7 @@
 package fr.insa.crypto.trustAuthority;
 
 import it.unisa.dia.gas.jpbc.Element;
+import it.unisa.dia.gas.jpbc.ElementPowPreProcessing;
 import it.unisa.dia.gas.jpbc.Pairing;
 import it.unisa.dia.gas.plaf.jpbc.pairing.PairingFactory;
 
@@ -14,16 +15,22 @@ import it.unisa.dia.gas.plaf.jpbc.pairing.PairingFactory;
  */
 public class SettingParameters {
 
+    // Paramètres de la courbe (type A) utilisés par l'autorité
+    static final String CURVE_PARAMETERS_PATH = "params/curves/a.properties";
+
     private final Pairing pairing;
     private final Element generator; //generateur
     private final Element publicKey; // clef publique du système
     private final Element masterKey; // clef du maitre
 
+    // Table de puissances du générateur (rP lors du chiffrement), calculée à la première utilisation
+    private volatile ElementPowPreProcessing generatorPowTable;
+
     /**
      * Constructeur par défaut qui initialise tous les paramètres
      */
     public SettingParameters() {
-        this.pairing = PairingFactory.getPairing("params/curves/a.properties");
+        this.pairing = PairingFactory.getPairing(CURVE_PARAMETERS_PATH);
         this.generator = pairing.getG1().newRandomElement(); // choix d'un générateur
         this.masterKey = pairing.getZr().newRandomElement(); //choix de la clef du maitre
         this.publicKey = generator.duplicate().mulZn(masterKey); // calcule de la clef publique du système
@@ -36,7 +43,7 @@ public class SettingParameters {
      */
     protected SettingParameters(boolean initialize) {
         if (initialize) {
-            this.pairing = PairingFactory.getPairing("params/curves/a.properties");
+            this.pairing = PairingFactory.getPairing(CURVE_PARAMETERS_PATH);
             this.generator = pairing.getG1().newRandomElement();
             this.masterKey = pairing.getZr().newRandomElement();
             this.publicKey = generator.duplicate().mulZn(masterKey);
@@ -48,6 +55,18 @@ public class SettingParameters {
         }
     }
 
+    /**
+     * Restaure des paramètres persistés, avec leur table de puissances déjà calculée
+     */
+    SettingParameters(Pairing pairing, Element generator, Element publicKey, Element masterKey,
+                      ElementPowPreProcessing generatorPowTable) {
+        this.pairing = pairing;
+        this.generator = generator;
+        this.publicKey = publicKey;
+        this.masterKey = masterKey;
+        this.generatorPowTable = generatorPowTable;
+    }
+
     public Pairing getPairing() {
         return pairing;
     }
@@ -64,5 +83,22 @@ public class SettingParameters {
         return masterKey;
     }
 
+    /**
+     * @return Table de puissances du générateur, pour calculer rP sans multiplication scalaire générique
+     */
+    public ElementPowPreProcessing getGeneratorPowTable() {
+        ElementPowPreProcessing table = generatorPowTable;
+        if (table == null) {
+            synchronized (this) {
+                table = generatorPowTable;
+                if (table == null) {
+                    table = getGenerator().getElementPowPreProcessing();
+                    generatorPowTable = table;
+                }
+            }
+        }
+        return table;
+    }
+
 
 }
@@ -1,22 +1,88 @@
 package fr.insa.crypto.trustAuthority;
 
+import fr.insa.crypto.utils.Config;
+import fr.insa.crypto.utils.Logger;
+import fr.insa.crypto.utils.SecureChannelManager;
 import it.unisa.dia.gas.jpbc.Element;
 
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
 /**
  * Autorité de confiance pour le système de chiffrement basé sur l'identité
  * Adaptée pour utiliser l'approche du code fonctionnel
  */
 public class TrustAuthority {
+    // Identité de l'autorité pour l'établissement des canaux sécurisés
+    public static final String SERVER_IDENTITY = "server@trust.authority";
+
     private final SettingParameters parameters;
     private final KeyDistributor keyDistributor;
 
+    // Contexte de déchiffrement de l'autorité, dérivé (ou restauré) une seule fois: la clé maître ne change pas
+    private final ServerDecryptionContext serverContext;
+
 
     public TrustAuthority() {
-        // Initialisation du système
-        this.parameters = new SettingParameters();
+        this(Paths.get(Config.TA_PARAMS_SNAPSHOT_PATH), Config.TA_MASTER_KEY_PASSPHRASE);
+    }
+
+    /**
+     * Restaure les paramètres depuis l'instantané s'il existe, sinon les génère et les persiste.
+     * Sans phrase secrète, les paramètres sont éphémères (régénérés à chaque démarrage).
+     *
+     * @param snapshotPath Fichier d'instantané des paramètres
+     * @param passphrase   Phrase secrète scellant la clé maître, ou null
+     */
+    public TrustAuthority(Path snapshotPath, String passphrase) {
+        ParametersSnapshot snapshot = loadSnapshot(snapshotPath, passphrase);
+        if (snapshot != null) {
+            this.parameters = snapshot.getParameters();
+            this.serverContext = snapshot.getServerContext();
+        } else {
+            // Initialisation du système
+            this.parameters = new SettingParameters();
+            this.serverContext = deriveServerContext();
+            saveSnapshot(snapshotPath, passphrase);
+        }
         this.keyDistributor = new KeyDistributor(this);
     }
 
+    /**
+     * @return L'instantané restauré, ou null s'il faut générer de nouveaux paramètres
+     * @throws IllegalStateException si un instantané existe mais ne peut pas être ouvert: générer une nouvelle
+     *                               clé maître invaliderait silencieusement toutes les clés distribuées
+     */
+    private static ParametersSnapshot loadSnapshot(Path snapshotPath, String passphrase) {
+        if (passphrase == null) {
+            Logger.warning("TA_MASTER_KEY_PASSPHRASE non définie: paramètres éphémères, les clés distribuées seront invalides après un redémarrage");
+            return null;
+        }
+        if (!Files.exists(snapshotPath)) {
+            Logger.info("Aucun instantané des paramètres dans " + snapshotPath + ", génération de nouveaux paramètres");
+            return null;
+        }
+        try {
+            return ParametersSnapshot.load(snapshotPath, passphrase.toCharArray());
+        } catch (Exception e) {
+            throw new IllegalStateException("Impossible de restaurer les paramètres de l'autorité depuis "
+                    + snapshotPath + ": " + e.getMessage(), e);
+        }
+    }
+
+    private void saveSnapshot(Path snapshotPath, String passphrase) {
+        if (passphrase == null) {
+            return;
+        }
+        try {
+            ParametersSnapshot.save(snapshotPath, passphrase.toCharArray(), parameters, serverContext);
+        } catch (Exception e) {
+            Logger.error("Échec de l'écriture de l'instantané des paramètres: " + e.getMessage()
+                    + ". Les paramètres actuels seront perdus au redémarrage.");
+        }
+    }
+
     /**
      * Génère la clé privée pour une identité donnée
      * suivant le schéma BasicIdent: dID = sQID
@@ -30,6 +96,27 @@ public class TrustAuthority {
         return new KeyPair(id, sk);
     }
 
+    /**
+     * Lie une clé publique X25519 du serveur à l'autorité: sig = sH1(domaine || clé).
+     * Vérifiable par tout client avec les seuls paramètres publics: e(sig, P) = e(H1(...), P_pub)
+     */
+    public Element bindChannelKey(byte[] encodedKey) {
+        byte[] bytes = SecureChannelManager.channelKeyBindingInput(encodedKey);
+        Element h = this.parameters.getPairing().getG1().newElementFromHash(bytes, 0, bytes.length);
+        return h.mulZn(this.parameters.getMasterKey());
+    }
+
+    /**
+     * Retourne le contexte de déchiffrement pour l'identité du serveur
+     */
+    public ServerDecryptionContext getServerDecryptionContext() {
+        return serverContext;
+    }
+
+    private ServerDecryptionContext deriveServerContext() {
+        return new ServerDecryptionContext(parameters, generatePrivateKey(SERVER_IDENTITY));
+    }
+
     public SettingParameters getParameters() {
         return parameters;
     }
@@ -1,73 +1,291 @@
 package fr.insa.crypto.trustAuthority;
 
-import fr.insa.crypto.encryption.IdentityBasedEncryption;
+import fr.insa.crypto.encryption.IBEcipher;
+import fr.insa.crypto.trustAuthority.auth.TOTPManager;
+import fr.insa.crypto.trustAuthority.channel.MultiplexedChannelClient;
+import fr.insa.crypto.trustAuthority.protocol.Message;
+import fr.insa.crypto.trustAuthority.protocol.MessageType;
+import fr.insa.crypto.trustAuthority.protocol.WireCodec;
+import fr.insa.crypto.utils.Config;
 import fr.insa.crypto.utils.Logger;
 import fr.insa.crypto.utils.SecureChannelManager;
 import it.unisa.dia.gas.jpbc.Element;
-import it.unisa.dia.gas.jpbc.Pairing;
-import it.unisa.dia.gas.plaf.jpbc.pairing.PairingFactory;
+import org.json.JSONArray;
 import org.json.JSONObject;
 
-import java.io.BufferedReader;
 import java.io.IOException;
-import java.io.InputStreamReader;
-import java.io.OutputStream;
-import java.net.HttpURLConnection;
-import java.net.URL;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.PublicKey;
+import java.time.Duration;
 import java.util.Base64;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BiConsumer;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 /**
  * Client pour interagir avec le serveur de l'autorité de confiance
+ *
+ * Les échanges passent par un HttpClient partagé (connexions persistantes, HTTP/2 en HTTPS) et chaque
+ * opération existe en version asynchrone, qui ne bloque pas le thread appelant (interface JavaFX).
+ * Une instance peut être partagée entre threads: le canal sécurisé (identifiant et clé de session) est
+ * publié d'un bloc après son établissement, et un seul établissement a lieu à la fois. Les services très
+ * sollicités (passerelle) peuvent ouvrir un pool de canaux (openChannelPool): chaque requête emprunte
+ * alors l'un de N canaux aux sessions indépendantes.
  */
 public class TrustAuthorityClient {
     private final String serverUrl;
-    private final SettingParameters parameters;
-    private String totpSecret;
-    private String currentEmail;
-    private final SecureChannelManager secureChannel;
-    private final IdentityBasedEncryption ibeEngine;
-    private boolean secureChannelEstablished = false;
-    
+    private volatile String totpSecret;
+    private volatile String currentEmail;
+
     // Constante pour l'identité du serveur - mise à jour pour utiliser un format d'email valide
     private static final String SERVER_IDENTITY = "server@trust.authority";
-    
+
     // Header pour l'ID de session
     private static final String SESSION_ID_HEADER = "X-Session-ID";
-    
-    // ID de session pour le canal sécurisé
-    private String sessionId;
+
+    // Session inconnue du serveur (expirée, fermée ou serveur redémarré): la requête n'a pas été exécutée
+    private static final int SESSION_GONE = 410;
+
+    private static final Duration REQUEST_TIMEOUT = Duration.ofSeconds(30);
+
+    // Threads des continuations asynchrones (déchiffrement, décodage, calculs IBE, coffre de clés)
+    private static final AtomicInteger THREAD_INDEX = new AtomicInteger();
+    private static final ExecutorService EXECUTOR = Executors.newCachedThreadPool(r -> {
+        // Threads démons: une requête en cours n'empêche pas l'application de se fermer
+        Thread thread = new Thread(r, "ta-client-" + THREAD_INDEX.getAndIncrement());
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // Client HTTP commun à toutes les instances: les connexions vers l'autorité sont réutilisées d'une requête à l'autre
+    private static final HttpClient HTTP = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_2)
+            .connectTimeout(REQUEST_TIMEOUT)
+            .executor(EXECUTOR)
+            .build();
+
+    // Version HTTP des requêtes: HTTP/2 négocié par ALPN en HTTPS; en clair, HTTP/1.1 persistant
+    // (le serveur ne propose pas la mise à niveau h2c, qui coûterait des en-têtes à chaque connexion)
+    private final HttpClient.Version httpVersion;
+
+    // Canal sécurisé établi (null tant qu'il ne l'est pas, ou après un changement de paramètres)
+    private volatile SecureSession session;
+
+    // Établissement en cours, attendu par les requêtes concurrentes au lieu d'en lancer un second
+    private final AtomicReference<CompletableFuture<SecureSession>> pendingHandshake = new AtomicReference<>();
+
+    // Attente maximale de la revalidation des paramètres avant un établissement de canal
+    private static final long REVALIDATION_WAIT_SECONDS = 10;
+
+    // Copie locale des paramètres publics et de leurs précalculs, revalidée en arrière-plan
+    private final PublicParametersCache parametersCache;
+
+    // Paramètres publics, capacités et précalculs de l'autorité (remplacés d'un bloc si l'autorité en change)
+    private volatile AuthorityParameters authority;
+    private final CompletableFuture<Void> parametersRevalidation;
+
+    // Format des échanges retenu (binaire si le serveur l'annonce et que la configuration le permet)
+    private volatile WireCodec codec;
+
+    // Coffre local des clés privées (null si désactivé)
+    private final PrivateKeyVault keyVault;
+
+    // Canal TCP multiplexé (optionnel): une fois ouvert, les requêtes sécurisées l'empruntent au lieu de HTTP
+    private volatile MultiplexedChannelClient multiplexedChannel;
+
+    // Pool de canaux sécurisés (optionnel): une fois ouvert, les requêtes sécurisées y empruntent un canal
+    private volatile SecureChannelPool channelPool;
 
     /**
-     * Constructeur qui récupère les paramètres publics du serveur
+     * Constructeur qui récupère les paramètres publics du serveur.
+     * Si une copie locale existe, le client démarre immédiatement à partir d'elle (précalculs compris)
+     * et la revalide en arrière-plan; sinon les paramètres sont téléchargés avant de rendre la main.
      *
      * @param serverUrl L'URL du serveur de l'autorité de confiance
      */
     public TrustAuthorityClient(String serverUrl) throws IOException {
+        this(serverUrl, Paths.get(Config.CLIENT_CACHE_DIR));
+    }
+
+    /**
+     * @param serverUrl      L'URL du serveur de l'autorité de confiance
+     * @param cacheDirectory Répertoire de la copie locale des paramètres, ou null pour toujours les télécharger
+     *                       (tests de charge: chaque client simulé interroge le serveur)
+     */
+    public TrustAuthorityClient(String serverUrl, Path cacheDirectory) throws IOException {
         this.serverUrl = serverUrl;
-        this.parameters = fetchParameters();
-        this.secureChannel = new SecureChannelManager();
-        this.ibeEngine = new IdentityBasedEncryption(parameters);
+        this.httpVersion = serverUrl.startsWith("https:") ? HttpClient.Version.HTTP_2 : HttpClient.Version.HTTP_1_1;
+        this.parametersCache = cacheDirectory != null ? new PublicParametersCache(cacheDirectory, serverUrl) : null;
+        this.keyVault = Config.CLIENT_KEY_VAULT_TTL_HOURS > 0
+                ? new PrivateKeyVault(Paths.get(Config.CLIENT_KEY_VAULT_DIR), serverUrl,
+                        TimeUnit.HOURS.toMillis(Config.CLIENT_KEY_VAULT_TTL_HOURS))
+                : null;
+
+        PublicParametersCache.Entry cached = parametersCache != null ? parametersCache.load() : null;
+        if (cached != null) {
+            this.authority = AuthorityParameters.fromCache(cached);
+            this.codec = negotiateWireFormat(authority.getCapabilities());
+            Logger.info("Paramètres publics repris de la copie locale (version " + authority.getVersion() + ")");
+            this.parametersRevalidation = runInBackground("ta-parameters-revalidation", this::revalidateParameters);
+        } else {
+            this.authority = fetchParameters(null);
+            this.codec = negotiateWireFormat(authority.getCapabilities());
+            this.parametersRevalidation = CompletableFuture.completedFuture(null);
+            // Précalculs et copie locale pour le prochain démarrage, sans retarder celui-ci
+            if (parametersCache != null) {
+                AuthorityParameters fetched = authority;
+                runInBackground("ta-parameters-precompute", () -> {
+                    fetched.precompute(SERVER_IDENTITY);
+                    parametersCache.store(fetched);
+                });
+            }
+        }
+    }
+
+    private static CompletableFuture<Void> runInBackground(String name, Runnable task) {
+        CompletableFuture<Void> future = new CompletableFuture<>();
+        Thread thread = new Thread(() -> {
+            try {
+                task.run();
+                future.complete(null);
+            } catch (Throwable t) {
+                future.completeExceptionally(t);
+            }
+        }, name);
+        thread.setDaemon(true);
+        thread.start();
+        return future;
+    }
+
+    /**
+     * Revalide la copie locale auprès de l'autorité (GET conditionnel). Si l'autorité a changé de réponse,
+     * les nouveaux paramètres remplacent les anciens et le canal sécurisé sera rétabli à la prochaine requête;
+     * si elle est injoignable, la copie locale reste en service.
+     */
+    private void revalidateParameters() {
+        AuthorityParameters current = authority;
+        AuthorityParameters fetched;
+        try {
+            fetched = fetchParameters(current);
+        } catch (IOException e) {
+            Logger.warning("Revalidation des paramètres publics impossible, copie locale conservée: " + e.getMessage());
+            return;
+        }
+        if (fetched == current) {
+            Logger.debug("Paramètres publics inchangés, copie locale à jour");
+            return;
+        }
+
+        if (!fetched.getVersion().equals(current.getVersion())) {
+            Logger.warning("L'autorité a changé de paramètres (version " + current.getVersion() + " -> "
+                    + fetched.getVersion() + "), copie locale remplacée");
+        }
+        // Sans verrou: un établissement de canal en cours attend cette revalidation
+        authority = fetched;
+        codec = negotiateWireFormat(fetched.getCapabilities());
+        session = null;
+        MultiplexedChannelClient channel = multiplexedChannel;
+        multiplexedChannel = null;
+        if (channel != null) {
+            channel.close();
+        }
+        SecureChannelPool pool = channelPool;
+        if (pool != null) {
+            pool.invalidate();
+        }
+        fetched.precompute(SERVER_IDENTITY);
+        parametersCache.store(fetched);
+    }
+
+    /**
+     * Fin de la revalidation des paramètres (attente bornée): un canal ne doit pas être établi avec
+     * des paramètres que l'autorité a remplacés. En cas d'échec, la copie locale est utilisée telle quelle.
+     */
+    private CompletableFuture<Void> parametersRevalidated() {
+        return parametersRevalidation.handle((ignored, error) -> {
+            if (error != null) {
+                Logger.debug("Revalidation des paramètres publics non terminée: " + error.getMessage());
+            }
+            return (Void) null;
+        }).completeOnTimeout(null, REVALIDATION_WAIT_SECONDS, TimeUnit.SECONDS);
     }
 
     /**
      * Récupère les paramètres publics depuis le serveur de manière sécurisée
      * Note: Cette méthode est spéciale car elle est appelée avant que le canal sécurisé ne soit initialisé
+     * Si une copie locale est fournie, elle est revalidée par son ETag: le serveur répond 304 sans corps si elle est à jour.
+     *
+     * @param current Paramètres actuels, ou null
+     * @return Les paramètres publics et les capacités du serveur (current lui-même s'ils sont inchangés)
      */
-    private SettingParameters fetchParameters() throws IOException {
-        URL url = new URL(serverUrl + "/public-parameters");
-        HttpURLConnection connection = (HttpURLConnection) url.openConnection();
-        connection.setRequestMethod("GET");
+    private AuthorityParameters fetchParameters(AuthorityParameters current) throws IOException {
+        HttpRequest.Builder request = request("/public-parameters").timeout(REQUEST_TIMEOUT).GET();
+        if (WireCodec.forName(Config.TA_WIRE_FORMAT) == WireCodec.BINARY) {
+            request.header("Accept", WireCodec.BINARY_MEDIA_TYPE + ", " + WireCodec.JSON_MEDIA_TYPE);
+        }
+        if (current != null && current.getEtag() != null) {
+            request.header("If-None-Match", current.getEtag());
+        }
+
+        HttpResponse<byte[]> response;
+        try {
+            response = HTTP.send(request.build(), HttpResponse.BodyHandlers.ofByteArray());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while fetching parameters");
+        }
 
-        int responseCode = connection.getResponseCode();
+        int responseCode = response.statusCode();
+        if (responseCode == 304 && current != null) {
+            return current;
+        }
         if (responseCode != 200) {
             throw new IOException("Failed to fetch parameters: HTTP error code " + responseCode);
         }
 
-        String response = readResponse(connection);
-        connection.disconnect();
+        try {
+            // Le serveur répond au format de son choix: décoder selon le Content-Type
+            Message capabilities = WireCodec.forContentType(response.headers().firstValue("Content-Type").orElse(null))
+                    .decode(MessageType.PUBLIC_PARAMETERS, response.body());
+
+            // Serveurs antérieurs: pas d'ETag, la copie locale ne sera pas enregistrée
+            String etag = response.headers().firstValue("ETag").orElse(null);
+            return current != null ? current.update(capabilities, etag) : AuthorityParameters.fromServer(capabilities, etag);
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Invalid public parameters: " + e.getMessage());
+        }
+    }
 
-        return new SettingParametersClient(response);
+    /**
+     * Retient le format binaire si la configuration le demande et que le serveur l'annonce,
+     * JSON sinon (serveurs antérieurs au format binaire)
+     */
+    private static WireCodec negotiateWireFormat(Message capabilities) {
+        WireCodec preferred = WireCodec.forName(Config.TA_WIRE_FORMAT);
+        boolean offered = capabilities.has("wireFormats")
+                && capabilities.getStrings("wireFormats").contains(preferred.getName());
+        WireCodec selected = offered ? preferred : WireCodec.JSON;
+        Logger.info("Format des échanges avec l'autorité: " + selected.getName());
+        return selected;
     }
 
     /**
@@ -77,27 +295,22 @@ public class TrustAuthorityClient {
      * @return Un objet contenant les informations sur l'existence et la vérification du compte
      */
     public AccountStatus checkAccountStatus(String email) throws IOException {
-        try {
-            // Établir un canal sécurisé si nécessaire
-            ensureSecureChannel();
-            
-            // Création des données JSON pour la requête
-            JSONObject jsonInput = new JSONObject();
-            jsonInput.put("email", email);
-            
-            // Envoyer la requête sécurisée
-            String response = sendSecureRequest("/auth/check-account", "POST", jsonInput.toString());
-            
-            // Analyse de la réponse JSON
-            JSONObject jsonResponse = new JSONObject(response);
-            boolean exists = jsonResponse.getBoolean("exists");
-            boolean verified = jsonResponse.getBoolean("verified");
-            
-            return new AccountStatus(exists, verified);
-        } catch (Exception e) {
-            Logger.error("Erreur lors de la vérification du compte: " + e.getMessage());
-            throw new IOException("Failed to check account status: " + e.getMessage());
-        }
+        return await(checkAccountStatusAsync(email));
+    }
+
+    /**
+     * Version asynchrone de checkAccountStatus
+     *
+     * @return Le statut du compte; échoue avec une IOException
+     */
+    public CompletableFuture<AccountStatus> checkAccountStatusAsync(String email) {
+        // Création de la requête
+        Message request = Message.of(MessageType.EMAIL_REQUEST).put("email", email);
+
+        // Envoyer la requête sécurisée (jointe à l'établissement du canal si nécessaire)
+        return failWith(sendSecureRequestWithHandshake("/auth/check-account", request, MessageType.ACCOUNT_STATUS)
+                        .thenApply(response -> new AccountStatus(response.getBoolean("exists"), response.getBoolean("verified"))),
+                "Erreur lors de la vérification du compte", "Failed to check account status");
     }
 
     /**
@@ -107,58 +320,88 @@ public class TrustAuthorityClient {
      * @return true si l'OTP a été envoyé avec succès
      */
     public boolean requestRegistration(String email) throws IOException {
-        try {
-            // Établir un canal sécurisé si nécessaire
-            ensureSecureChannel();
-            
-            // Création des données JSON pour la requête
-            JSONObject jsonInput = new JSONObject();
-            jsonInput.put("email", email);
-            
-            // Envoyer la requête sécurisée
-            String response = sendSecureRequest("/auth/register", "POST", jsonInput.toString());
-            
-            // Vérifier la réponse
-            return response.contains("OTP sent successfully");
-        } catch (Exception e) {
-            Logger.error("Erreur lors de la demande d'enregistrement: " + e.getMessage());
-            return false;
-        }
+        return await(requestRegistrationAsync(email));
+    }
+
+    /**
+     * Version asynchrone de requestRegistration
+     */
+    public CompletableFuture<Boolean> requestRegistrationAsync(String email) {
+        Message request = Message.of(MessageType.EMAIL_REQUEST).put("email", email);
+
+        return orElse(sendSecureRequest("/auth/register", request, MessageType.TEXT)
+                        .thenApply(response -> response.optString("message", "").contains("OTP sent successfully")),
+                false, "Erreur lors de la demande d'enregistrement");
     }
 
     /**
      * Vérifie l'OTP et configure le TOTP (Google Authenticator)
+     * Le QR code est dessiné localement à partir de l'URI otpauth renvoyée par le serveur: à appeler
+     * hors du thread de l'interface.
      *
      * @param email Adresse email de l'utilisateur
      * @param otp   Code OTP reçu par email
      * @return Le QR code à scanner avec Google Authenticator, ou null en cas d'échec
      */
     public String verifyOtpAndSetupTOTP(String email, String otp) throws IOException {
-        try {
-            // Établir un canal sécurisé si nécessaire
-            ensureSecureChannel();
-            
-            // Préparer les données JSON
-            JSONObject jsonInput = new JSONObject();
-            jsonInput.put("email", email);
-            jsonInput.put("otp", otp);
-            
-            // Envoyer la requête sécurisée
-            String response = sendSecureRequest("/auth/verify-otp", "POST", jsonInput.toString());
-            
-            // Analyse de la réponse JSON
-            JSONObject jsonResponse = new JSONObject(response);
-            if ("success".equals(jsonResponse.getString("status"))) {
-                this.totpSecret = jsonResponse.getString("totpSecret");
-                this.currentEmail = email;
-                return jsonResponse.getString("qrCodeUri");
-            } else {
+        return await(verifyOtpAndSetupTOTPAsync(email, otp));
+    }
+
+    /**
+     * Version asynchrone de verifyOtpAndSetupTOTP: le QR code est dessiné sur un thread du client
+     */
+    public CompletableFuture<String> verifyOtpAndSetupTOTPAsync(String email, String otp) {
+        // Secret transmis par le futur: le champ totpSecret peut être remplacé par une autre vérification entre-temps
+        return requestTotpSetup(email, otp).thenApplyAsync(setup -> {
+            if (setup == null) {
                 return null;
             }
-        } catch (Exception e) {
-            Logger.error("Erreur lors de la vérification OTP: " + e.getMessage());
-            return null;
-        }
+            try {
+                return TOTPManager.generateQrCodeUri(email, setup.secret);
+            } catch (Exception e) {
+                Logger.error("Erreur lors de la génération du QR code: " + e.getMessage());
+                return null;
+            }
+        }, EXECUTOR);
+    }
+
+    /**
+     * Vérifie l'OTP et récupère la configuration TOTP, sans image: le serveur ne renvoie que le secret
+     * et l'URI otpauth, que l'appelant dessine s'il en a besoin
+     *
+     * @param email Adresse email de l'utilisateur
+     * @param otp   Code OTP reçu par email
+     * @return L'URI otpauth://totp/... du compte, ou null en cas d'échec
+     */
+    public String setupTOTP(String email, String otp) throws IOException {
+        return await(setupTOTPAsync(email, otp));
+    }
+
+    /**
+     * Version asynchrone de setupTOTP
+     */
+    public CompletableFuture<String> setupTOTPAsync(String email, String otp) {
+        return requestTotpSetup(email, otp).thenApply(setup -> setup != null ? setup.otpauthUri : null);
+    }
+
+    /**
+     * Vérifie l'OTP et renvoie la configuration TOTP reçue, ou null en cas d'échec
+     */
+    private CompletableFuture<TotpSetup> requestTotpSetup(String email, String otp) {
+        Message request = Message.of(MessageType.OTP_REQUEST).put("email", email).put("otp", otp)
+                .put("qrImage", false);
+
+        return orElse(sendSecureRequest("/auth/verify-otp", request, MessageType.TOTP_SETUP).thenApply(response -> {
+            if (!"success".equals(response.optString("status", null))) {
+                return null;
+            }
+            String secret = response.getString("totpSecret");
+            this.totpSecret = secret;
+            this.currentEmail = email;
+            // Serveur antérieur à otpauthUri: l'URI est reconstruite à partir du secret
+            String otpauthUri = response.optString("otpauthUri", null);
+            return new TotpSetup(secret, otpauthUri != null ? otpauthUri : TOTPManager.otpauthUri(email, secret));
+        }), null, "Erreur lors de la vérification OTP");
     }
 
     /**
@@ -169,75 +412,159 @@ public class TrustAuthorityClient {
      * @return true si le code est valide
      */
     public boolean verifyTOTP(String email, String totpCode) throws IOException {
-        try {
-            // Établir un canal sécurisé si nécessaire
-            ensureSecureChannel();
-            
-            // Préparer les données JSON
-            JSONObject jsonInput = new JSONObject();
-            jsonInput.put("email", email);
-            jsonInput.put("totp", totpCode);
-            
-            // Envoyer la requête sécurisée
-            String response = sendSecureRequest("/auth/verify-totp", "POST", jsonInput.toString());
-            
-            // Analyse de la réponse JSON
-            JSONObject jsonResponse = new JSONObject(response);
-            return jsonResponse.getBoolean("authenticated");
-        } catch (Exception e) {
-            Logger.error("Erreur lors de la vérification TOTP: " + e.getMessage());
-            return false;
-        }
+        return await(verifyTOTPAsync(email, totpCode));
+    }
+
+    /**
+     * Version asynchrone de verifyTOTP
+     */
+    public CompletableFuture<Boolean> verifyTOTPAsync(String email, String totpCode) {
+        Message request = Message.of(MessageType.TOTP_REQUEST).put("email", email).put("totp", totpCode);
+
+        // Envoyer la requête sécurisée (jointe à l'établissement du canal si nécessaire)
+        return orElse(sendSecureRequestWithHandshake("/auth/verify-totp", request, MessageType.AUTHENTICATION)
+                .thenApply(response -> response.getBoolean("authenticated")), false, "Erreur lors de la vérification TOTP");
+    }
+
+    /**
+     * Confirme la configuration de Google Authenticator avec un premier code: le code n'est pas consommé,
+     * la connexion qui suit peut utiliser le même
+     *
+     * @param email    Adresse email de l'utilisateur
+     * @param totpCode Code TOTP affiché par l'application
+     * @return true si le code est valide
+     */
+    public boolean confirmTOTPSetup(String email, String totpCode) throws IOException {
+        return await(confirmTOTPSetupAsync(email, totpCode));
+    }
+
+    /**
+     * Version asynchrone de confirmTOTPSetup
+     */
+    public CompletableFuture<Boolean> confirmTOTPSetupAsync(String email, String totpCode) {
+        Message request = Message.of(MessageType.TOTP_REQUEST).put("email", email).put("totp", totpCode)
+                .put("setup", true);
+
+        return orElse(sendSecureRequestWithHandshake("/auth/verify-totp", request, MessageType.AUTHENTICATION)
+                .thenApply(response -> response.getBoolean("authenticated")), false, "Erreur lors de la confirmation TOTP");
     }
 
     /**
      * Demande une clé privée au serveur pour l'identité spécifiée (avec authentification TOTP)
      */
     public KeyPair requestPrivateKey(String identity, String totpCode) throws IOException {
+        return await(requestPrivateKeyAsync(identity, totpCode));
+    }
+
+    /**
+     * Version asynchrone de requestPrivateKey(identity, totpCode)
+     */
+    public CompletableFuture<KeyPair> requestPrivateKeyAsync(String identity, String totpCode) {
         Logger.debug("requestPrivateKey appelé pour " + identity);
-        
-        try {
-            // Établir un canal sécurisé si nécessaire
-            if (!secureChannelEstablished) {
-                establishSecureChannel();
+        Message request = Message.of(MessageType.TOTP_REQUEST).put("email", identity).put("totpCode", totpCode);
+
+        // Envoyer la requête sécurisée (jointe à l'établissement du canal si nécessaire)
+        return failWith(sendSecureRequestWithHandshake("/get-private-key", request, MessageType.PRIVATE_KEY)
+                        .thenApply(response -> {
+                            Logger.debug("Réponse reçue du serveur: " + response);
+                            return unchecked(() -> parsePrivateKeyResponse(response));
+                        }),
+                "Erreur lors de la demande de clé privée", "Failed to request private key");
+    }
+
+    /**
+     * Vérifie le code TOTP et obtient la clé privée en une seule requête ; si le canal n'est pas
+     * encore établi, la requête est jointe au handshake et la connexion ne coûte qu'un aller-retour
+     *
+     * @param identity Adresse email de l'utilisateur
+     * @param totpCode Code TOTP généré par Google Authenticator
+     * @return La paire de clés de l'utilisateur, ou null si le code TOTP est invalide
+     */
+    public KeyPair authenticateAndRequestPrivateKey(String identity, String totpCode) throws IOException {
+        return await(authenticateAndRequestPrivateKeyAsync(identity, totpCode));
+    }
+
+    /**
+     * Version asynchrone de authenticateAndRequestPrivateKey(identity, totpCode)
+     */
+    public CompletableFuture<KeyPair> authenticateAndRequestPrivateKeyAsync(String identity, String totpCode) {
+        Message request = Message.of(MessageType.TOTP_REQUEST).put("email", identity).put("totpCode", totpCode);
+
+        return failWith(sendSecureRequestWithHandshake("/auth/verify-totp-and-get-key", request, MessageType.PRIVATE_KEY)
+                        .thenApply(response -> response.optBoolean("authenticated", false)
+                                ? unchecked(() -> parsePrivateKeyResponse(response)) : null),
+                "Erreur lors de l'authentification TOTP avec demande de clé",
+                "Failed to authenticate and request private key");
+    }
+
+    /**
+     * Comme authenticateAndRequestPrivateKey, en passant par le coffre local des clés: si une clé valide y est
+     * conservée pour cette identité (non expirée, mêmes paramètres de l'autorité, scellée sous ce mot de passe),
+     * seul le code TOTP est vérifié par l'autorité, sans extraction. Sinon la clé est demandée avec la vérification
+     * puis scellée dans le coffre pour les connexions suivantes.
+     *
+     * @param identity Adresse email de l'utilisateur
+     * @param totpCode Code TOTP généré par Google Authenticator
+     * @param password Mot de passe de l'utilisateur (clé du coffre), ou null pour ne pas utiliser le coffre
+     * @return La paire de clés de l'utilisateur, ou null si le code TOTP est invalide
+     */
+    public KeyPair authenticateAndRequestPrivateKey(String identity, String totpCode, String password) throws IOException {
+        return await(authenticateAndRequestPrivateKeyAsync(identity, totpCode, password));
+    }
+
+    /**
+     * Version asynchrone de authenticateAndRequestPrivateKey(identity, totpCode, password): l'ouverture du
+     * coffre (PBKDF2) se fait sur un thread du client
+     */
+    public CompletableFuture<KeyPair> authenticateAndRequestPrivateKeyAsync(String identity, String totpCode, String password) {
+        if (keyVault == null || password == null) {
+            return authenticateAndRequestPrivateKeyAsync(identity, totpCode);
+        }
+
+        // La version des paramètres doit être à jour avant d'accepter une clé conservée
+        return parametersRevalidated().thenComposeAsync(ignored -> {
+            AuthorityParameters current = authority;
+            KeyPair vaulted = keyVault.open(identity, password, current.getVersion(), current.getParameters().getPairing());
+            if (vaulted != null) {
+                // Le code est consommé par cette vérification: la clé conservée ne doit plus pouvoir être refusée ensuite
+                Logger.info("Clé privée de " + identity + " reprise du coffre local, vérification TOTP seule");
+                return verifyTOTPAsync(identity, totpCode).thenApply(valid -> valid ? vaulted : null);
             }
-            
-            // Préparer les données JSON
-            JSONObject jsonInput = new JSONObject();
-            jsonInput.put("email", identity);
-            jsonInput.put("totpCode", totpCode);
-            String jsonInputString = jsonInput.toString();
-            
-            // Envoyer la requête sécurisée
-            String response = sendSecureRequest("/get-private-key", "POST", jsonInputString);
-            Logger.debug("Réponse JSON reçue du serveur (longueur: " + response.length() + ")");
-            
-            try {
-                // Analyse de la réponse JSON
-                JSONObject jsonResponse = new JSONObject(response);
-                
-                // Vérifier que la réponse contient les champs attendus
-                if (!jsonResponse.has("identity") || !jsonResponse.has("privateKey")) {
-                    throw new IOException("Invalid server response, missing required fields");
+
+            return authenticateAndRequestPrivateKeyAsync(identity, totpCode).thenApply(keyPair -> {
+                if (keyPair != null) {
+                    // Version des paramètres revalidés avant l'extraction: si l'autorité les a remplacés entre-temps,
+                    // la clé est conservée sous l'ancienne version et sera ignorée à la prochaine ouverture
+                    // Dérivation PBKDF2 hors du chemin de la connexion
+                    String version = current.getVersion();
+                    runInBackground("ta-key-vault", () -> keyVault.store(keyPair, password, version));
                 }
-                
-                // Récupération de l'identité et de la clé privée
-                String identityFromServer = jsonResponse.getString("identity");
-                String privateKeyBase64 = jsonResponse.getString("privateKey");
-                
-                byte[] privateKeyBytes = Base64.getDecoder().decode(privateKeyBase64);
-                
-                // Recréer l'élément JPBC pour la clé privée
-                Element privateKey = parameters.getPairing().getG1().newElementFromBytes(privateKeyBytes);
-                
-                return new KeyPair(identityFromServer, privateKey);
-            } catch (Exception e) {
-                Logger.error("Exception lors du traitement de la réponse JSON: " + e.getMessage());
-                throw new IOException("Failed to parse server response: " + e.getMessage());
+                return keyPair;
+            });
+        }, EXECUTOR);
+    }
+
+    /**
+     * Reconstruit la paire de clés à partir de la réponse du serveur
+     */
+    private KeyPair parsePrivateKeyResponse(Message response) throws IOException {
+        try {
+            // Vérifier que la réponse contient les champs attendus
+            if (response.getType() != MessageType.PRIVATE_KEY || !response.has("identity") || !response.has("privateKey")) {
+                throw new IOException("Invalid server response, missing required fields");
             }
+
+            // Récupération de l'identité et de la clé privée
+            String identityFromServer = response.getString("identity");
+            byte[] privateKeyBytes = response.getBytes("privateKey");
+
+            // Recréer l'élément JPBC pour la clé privée
+            Element privateKey = authority.getParameters().getPairing().getG1().newElementFromBytes(privateKeyBytes);
+
+            return new KeyPair(identityFromServer, privateKey);
         } catch (Exception e) {
-            Logger.error("Erreur lors de la demande de clé privée: " + e.getMessage());
-            throw new IOException("Failed to request private key: " + e.getMessage());
+            Logger.error("Exception lors du traitement de la réponse: " + e.getMessage());
+            throw new IOException("Failed to parse server response: " + e.getMessage());
         }
     }
 
@@ -245,6 +572,13 @@ public class TrustAuthorityClient {
      * Demande une clé privée au serveur (méthode originale, conservée pour compatibilité)
      */
     public KeyPair requestPrivateKey(String identity) throws IOException {
+        return await(requestPrivateKeyAsync(identity));
+    }
+
+    /**
+     * Version asynchrone de la méthode originale requestPrivateKey(identity)
+     */
+    public CompletableFuture<KeyPair> requestPrivateKeyAsync(String identity) {
         // Cette méthode est gardée pour la compatibilité, mais ne devrait plus être utilisée
         // car elle ne passe pas par le mécanisme d'authentification 2FA
         Logger.warning("ATTENTION: Méthode legacy requestPrivateKey appelée sans code TOTP pour " + identity);
@@ -252,259 +586,824 @@ public class TrustAuthorityClient {
 
         // Vérifier si nous avons un code TOTP pour cet utilisateur
         if (identity.equals(currentEmail) && totpSecret != null) {
-            throw new IOException("Cette méthode est obsolète, utilisez requestPrivateKey(identity, totpCode) pour les comptes protégés par 2FA");
+            return CompletableFuture.failedFuture(new IOException("Cette méthode est obsolète, utilisez requestPrivateKey(identity, totpCode) pour les comptes protégés par 2FA"));
         }
 
-        URL url = new URL(serverUrl + "/get-private-key");
-        HttpURLConnection connection = (HttpURLConnection) url.openConnection();
-        connection.setRequestMethod("POST");
-        connection.setDoOutput(true);
-
         // Envoi de l'identité au serveur
-        try (OutputStream os = connection.getOutputStream()) {
-            byte[] input = identity.getBytes(StandardCharsets.UTF_8);
-            os.write(input, 0, input.length);
-        }
+        HttpRequest request = request("/get-private-key").timeout(REQUEST_TIMEOUT)
+                .POST(HttpRequest.BodyPublishers.ofString(identity, StandardCharsets.UTF_8))
+                .build();
 
-        int responseCode = connection.getResponseCode();
-        if (responseCode == 401) {
-            throw new IOException("L'authentification 2FA est requise pour cet utilisateur. Utilisez la méthode requestPrivateKey(identity, totpCode)");
-        } else if (responseCode != 200) {
-            String errorMessage = readResponse(connection);
-            throw new IOException("Failed to get private key: HTTP error code " + responseCode + " - " + errorMessage);
-        }
+        return failWith(HTTP.sendAsync(request, HttpResponse.BodyHandlers.ofString(StandardCharsets.UTF_8))
+                .thenApply(response -> unchecked(() -> {
+                    int responseCode = response.statusCode();
+                    if (responseCode == 401) {
+                        throw new IOException("L'authentification 2FA est requise pour cet utilisateur. Utilisez la méthode requestPrivateKey(identity, totpCode)");
+                    } else if (responseCode != 200) {
+                        throw new IOException("Failed to get private key: HTTP error code " + responseCode + " - " + response.body());
+                    }
+
+                    // Analyse de la réponse JSON
+                    JSONObject jsonResponse = new JSONObject(response.body());
+                    byte[] privateKeyBytes = Base64.getDecoder().decode(jsonResponse.getString("privateKey"));
+
+                    // Reconstruction de la clé privée
+                    Element privateKey = authority.getParameters().getPairing().getG1().newElementFromBytes(privateKeyBytes);
+
+                    return new KeyPair(identity, privateKey);
+                })), "Erreur lors de la demande de clé privée", "Failed to request private key");
+    }
+
+    /**
+     * Reçoit les résultats d'une requête par lots au fil de leur arrivée
+     *
+     * @param <T> Type du résultat pour une identité
+     */
+    public interface BatchListener<T> {
+        void onResult(String identity, T result);
 
-        String response = readResponse(connection);
-        connection.disconnect();
+        void onError(String identity, String error);
+    }
 
-        // Analyse de la réponse JSON
-        JSONObject jsonResponse = new JSONObject(response);
-        String privateKeyB64 = jsonResponse.getString("privateKey");
-        byte[] privateKeyBytes = Base64.getDecoder().decode(privateKeyB64);
+    /**
+     * Extrait les clés privées d'un lot d'identités (réservé aux services disposant d'un jeton)
+     *
+     * @param identities   Identités à traiter
+     * @param serviceToken Jeton de service de l'autorité
+     * @param listener     Reçoit chaque clé dès qu'elle est extraite
+     * @return Le nombre d'identités traitées avec succès
+     */
+    public int requestPrivateKeysBatch(List<String> identities, String serviceToken,
+                                       BatchListener<KeyPair> listener) throws IOException {
+        return await(requestPrivateKeysBatchAsync(identities, serviceToken, listener));
+    }
 
-        // Reconstruction de la clé privée
-        Element privateKey = parameters.getPairing().getG1().newElementFromBytes(privateKeyBytes);
+    /**
+     * Version asynchrone de requestPrivateKeysBatch: le listener est appelé sur un thread du client
+     */
+    public CompletableFuture<Integer> requestPrivateKeysBatchAsync(List<String> identities, String serviceToken,
+                                                                   BatchListener<KeyPair> listener) {
+        return streamBatch("/batch/get-private-keys", identities, serviceToken, (identity, result) -> {
+            byte[] privateKeyBytes = Base64.getDecoder().decode(result.getString("privateKey"));
+            Element privateKey = authority.getParameters().getPairing().getG1().newElementFromBytes(privateKeyBytes);
+            listener.onResult(identity, new KeyPair(identity, privateKey));
+        }, listener);
+    }
 
-        return new KeyPair(identity, privateKey);
+    /**
+     * Vérifie le statut des comptes d'un lot d'identités (réservé aux services disposant d'un jeton)
+     *
+     * @return Le nombre d'identités traitées avec succès
+     */
+    public int checkAccountsBatch(List<String> identities, String serviceToken,
+                                  BatchListener<AccountStatus> listener) throws IOException {
+        return await(checkAccountsBatchAsync(identities, serviceToken, listener));
+    }
+
+    /**
+     * Version asynchrone de checkAccountsBatch: le listener est appelé sur un thread du client
+     */
+    public CompletableFuture<Integer> checkAccountsBatchAsync(List<String> identities, String serviceToken,
+                                                              BatchListener<AccountStatus> listener) {
+        return streamBatch("/batch/check-accounts", identities, serviceToken, (identity, result) ->
+                listener.onResult(identity, new AccountStatus(result.getBoolean("exists"), result.getBoolean("verified"))), listener);
+    }
+
+    /**
+     * Envoie une requête par lots sur le canal sécurisé et traite les résultats ligne par ligne, au fil de leur arrivée
+     */
+    private CompletableFuture<Integer> streamBatch(String endpoint, List<String> identities, String serviceToken,
+                                                   BiConsumer<String, JSONObject> onSuccess, BatchListener<?> listener) {
+        JSONObject jsonInput = new JSONObject();
+        jsonInput.put("identities", new JSONArray(identities));
+
+        // Session retirée par le serveur: aucun résultat n'a été lu, le lot est renvoyé sur un nouveau canal
+        return ioFuture(secureSession().thenCompose(current -> retryIfSessionExpired(
+                streamBatch(current, endpoint, jsonInput, serviceToken, onSuccess, listener), () -> {
+                    forgetSession(current);
+                    return secureSession().thenCompose(fresh ->
+                            streamBatch(fresh, endpoint, jsonInput, serviceToken, onSuccess, listener));
+                })));
+    }
+
+    private CompletableFuture<Integer> streamBatch(SecureSession current, String endpoint, JSONObject jsonInput,
+                                                   String serviceToken, BiConsumer<String, JSONObject> onSuccess,
+                                                   BatchListener<?> listener) {
+        // Pas de délai global: la réponse arrive au rythme des extractions
+        HttpRequest request = request(endpoint)
+                .header("Content-Type", "application/json")
+                .header(SESSION_ID_HEADER, current.sessionId)
+                .header("X-Service-Token", serviceToken)
+                .POST(HttpRequest.BodyPublishers.ofString(
+                        unchecked(() -> current.channel.prepareSecureMessage(jsonInput.toString())), StandardCharsets.UTF_8))
+                .build();
+        return HTTP.sendAsync(request, HttpResponse.BodyHandlers.ofLines())
+                .thenApplyAsync(response -> unchecked(() -> readBatch(response, current, endpoint, onSuccess, listener)), EXECUTOR);
+    }
+
+    private static int readBatch(HttpResponse<Stream<String>> response, SecureSession current, String endpoint,
+                                 BiConsumer<String, JSONObject> onSuccess, BatchListener<?> listener) throws IOException {
+        try (Stream<String> lines = response.body()) {
+            if (response.statusCode() == SESSION_GONE) {
+                throw new SessionExpiredException(current.sessionId);
+            }
+            if (response.statusCode() >= 400) {
+                throw new IOException("HTTP error " + response.statusCode() + ": " + lines.collect(Collectors.joining("\n")));
+            }
+
+            int succeeded = 0;
+            boolean complete = false;
+            Iterator<String> it = lines.iterator();
+            while (it.hasNext()) {
+                String line = it.next();
+                if (line.isEmpty()) {
+                    continue;
+                }
+                JSONObject result = new JSONObject(current.channel.processSecureResponse(line));
+                if (result.optBoolean("done", false)) {
+                    complete = true;
+                    break;
+                }
+
+                String identity = result.getString("identity");
+                if ("ok".equals(result.getString("status"))) {
+                    onSuccess.accept(identity, result);
+                    succeeded++;
+                } else {
+                    listener.onError(identity, result.optString("error"));
+                }
+            }
+
+            if (!complete) {
+                throw new IOException("Batch response truncated after " + succeeded + " results");
+            }
+            return succeeded;
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        } catch (IOException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IOException("Failed to process batch " + endpoint + ": " + e.getMessage());
+        }
     }
 
     /**
      * Établit un canal sécurisé avec le serveur
      */
     public boolean establishSecureChannel() throws IOException {
-        if (secureChannelEstablished) {
+        return await(establishSecureChannelAsync());
+    }
+
+    /**
+     * Version asynchrone de establishSecureChannel
+     *
+     * @return true si le canal est établi, false en cas d'échec
+     */
+    public CompletableFuture<Boolean> establishSecureChannelAsync() {
+        return orElse(secureSession().thenApply(established -> true), false,
+                "Erreur lors de l'établissement du canal sécurisé");
+    }
+
+    /**
+     * Ouvre le canal TCP persistant et multiplexé annoncé par le serveur, pour les clients qui interrogent
+     * l'autorité en continu (passerelle de messagerie): les requêtes suivantes, y compris concurrentes,
+     * partagent une seule connexion sans attendre les réponses précédentes.
+     * Nécessite le format binaire; établit le canal sécurisé si besoin.
+     *
+     * @return true si le canal est ouvert, false si le serveur ne le propose pas (HTTP reste utilisé)
+     */
+    public synchronized boolean openMultiplexedChannel() throws IOException {
+        if (multiplexedChannel != null && multiplexedChannel.isOpen()) {
             return true;
         }
-        
+        Message capabilities = authority.getCapabilities();
+        if (codec != WireCodec.BINARY || !capabilities.has("channelPort")) {
+            Logger.info("Canal multiplexé non proposé par le serveur, utilisation de HTTP");
+            return false;
+        }
+
+        SecureSession current = await(ioFuture(secureSession()));
+        String host = URI.create(serverUrl).getHost();
+        multiplexedChannel = new MultiplexedChannelClient(host, capabilities.getInt("channelPort"), current.sessionId, current.channel);
+        Logger.info("Canal multiplexé ouvert vers l'autorité");
+        return true;
+    }
+
+    /**
+     * Ferme le canal multiplexé; les requêtes suivantes repassent par HTTP
+     */
+    public synchronized void closeMultiplexedChannel() {
+        if (multiplexedChannel != null) {
+            multiplexedChannel.close();
+            multiplexedChannel = null;
+        }
+    }
+
+    /**
+     * Ouvre un pool de Config.CLIENT_CHANNEL_POOL_SIZE canaux sécurisés
+     *
+     * @see #openChannelPool(int)
+     */
+    public SecureChannelPool openChannelPool() throws IOException {
+        return openChannelPool(Config.CLIENT_CHANNEL_POOL_SIZE);
+    }
+
+    /**
+     * Ouvre un pool de canaux sécurisés, pour un client partagé par de nombreux threads: les requêtes
+     * sécurisées suivantes empruntent chacune un canal du pool au lieu du canal unique du client,
+     * et attendent qu'un canal se libère si tous sont occupés. Les canaux sont rétablis en arrière-plan
+     * avant leur échéance (Config.CLIENT_CHANNEL_LIFETIME_MS, Config.CLIENT_CHANNEL_MAX_MESSAGES).
+     * Le canal multiplexé, s'il est ouvert, reste prioritaire.
+     *
+     * @param size Nombre de canaux établis
+     * @return Le pool, pour ses statistiques (temps d'attente d'un canal)
+     */
+    public SecureChannelPool openChannelPool(int size) throws IOException {
+        return openChannelPool(size, Config.CLIENT_CHANNEL_LIFETIME_MS, Config.CLIENT_CHANNEL_MAX_MESSAGES);
+    }
+
+    /**
+     * Ouvre un pool de canaux sécurisés avec des échéances de rétablissement explicites
+     *
+     * @param size           Nombre de canaux établis
+     * @param lifetimeMillis Durée de vie d'un canal
+     * @param maxMessages    Nombre maximal de requêtes sur une même clé de session
+     * @see #openChannelPool(int)
+     */
+    public synchronized SecureChannelPool openChannelPool(int size, long lifetimeMillis, long maxMessages) throws IOException {
+        if (channelPool != null) {
+            return channelPool;
+        }
+        SecureChannelPool pool = new SecureChannelPool(this::newSecureSession, this::closeSecureSession, size,
+                lifetimeMillis, maxMessages, Config.CLIENT_CHANNEL_LEASE_TIMEOUT_MS);
+        try {
+            await(pool.start());
+        } catch (IOException e) {
+            pool.close();
+            throw new IOException("Échec de l'ouverture du pool de canaux sécurisés: " + e.getMessage(), e);
+        }
+        channelPool = pool;
+        return pool;
+    }
+
+    /**
+     * Ferme le pool de canaux; les requêtes suivantes repassent par le canal unique du client
+     */
+    public synchronized void closeChannelPool() {
+        if (channelPool != null) {
+            channelPool.close();
+            channelPool = null;
+        }
+    }
+
+    /**
+     * @return Le pool de canaux ouvert, ou null
+     */
+    public SecureChannelPool getChannelPool() {
+        return channelPool;
+    }
+
+    /**
+     * Canal sécurisé établi: identifiant et clé de session, jamais modifiés une fois publiés
+     */
+    static final class SecureSession {
+        final String sessionId;
+        final SecureChannelManager channel;
+
+        SecureSession(String sessionId, SecureChannelManager channel) {
+            this.sessionId = sessionId;
+            this.channel = channel;
+        }
+    }
+
+    /**
+     * Issue d'un établissement de canal, avec la réponse à la requête anticipée si le serveur l'a traitée
+     */
+    private static final class Handshake {
+        private final SecureSession session;
+        private final Message earlyResponse;
+        private final int earlyStatus;
+
+        private Handshake(SecureSession session, Message earlyResponse, int earlyStatus) {
+            this.session = session;
+            this.earlyResponse = earlyResponse;
+            this.earlyStatus = earlyStatus;
+        }
+    }
+
+    /**
+     * @return Le canal sécurisé courant, établi au besoin
+     */
+    private CompletableFuture<SecureSession> secureSession() {
+        SecureSession current = session;
+        if (current != null) {
+            return CompletableFuture.completedFuture(current);
+        }
+        return performHandshake(null, null, null).thenApply(handshake -> handshake.session);
+    }
+
+    /**
+     * Effectue l'établissement du canal, en y joignant éventuellement la première requête applicative
+     * chiffrée avec la nouvelle clé de session: le serveur répond aux deux dans la même réponse.
+     * Un seul établissement a lieu à la fois: les appels concurrents attendent celui en cours
+     * (leur requête anticipée est alors envoyée séparément).
+     *
+     * @param earlyEndpoint     Endpoint de la requête anticipée, ou null
+     * @param earlyRequest      Requête anticipée, ou null
+     * @param earlyResponseType Type de la réponse attendue à la requête anticipée
+     */
+    private CompletableFuture<Handshake> performHandshake(String earlyEndpoint, Message earlyRequest,
+                                                          MessageType earlyResponseType) {
+        CompletableFuture<SecureSession> pending = new CompletableFuture<>();
+        CompletableFuture<SecureSession> inFlight = pendingHandshake.compareAndExchange(null, pending);
+        if (inFlight != null) {
+            return inFlight.thenApply(established -> new Handshake(established, null, 0));
+        }
+
+        // Établi entre la lecture de la session et la prise de l'établissement
+        SecureSession current = session;
+        if (current != null) {
+            pendingHandshake.set(null);
+            pending.complete(current);
+            return CompletableFuture.completedFuture(new Handshake(current, null, 0));
+        }
+
+        return parametersRevalidated()
+                .thenComposeAsync(ignored -> exchangeSessionKey(earlyEndpoint, earlyRequest, earlyResponseType), EXECUTOR)
+                .whenComplete((handshake, error) -> {
+                    if (error == null) {
+                        session = handshake.session;
+                    }
+                    pendingHandshake.set(null);
+                    if (error != null) {
+                        pending.completeExceptionally(error);
+                    } else {
+                        pending.complete(handshake.session);
+                    }
+                });
+    }
+
+    /**
+     * Établit une session supplémentaire, sans remplacer le canal du client (pool de canaux)
+     */
+    private CompletableFuture<SecureSession> newSecureSession() {
+        return parametersRevalidated()
+                .thenComposeAsync(ignored -> exchangeSessionKey(null, null, null), EXECUTOR)
+                .thenApply(handshake -> handshake.session);
+    }
+
+    /**
+     * Ferme une session auprès du serveur (canal d'un pool remplacé ou pool fermé), sans attendre la réponse:
+     * à défaut, le serveur la retire après son délai d'inactivité
+     */
+    private void closeSecureSession(SecureSession closing) {
+        WireCodec format = codec;
+        byte[] body;
         try {
-            // Générer une clé de session et la chiffrer pour le serveur
-            JSONObject keyExchange = secureChannel.encryptSessionKeyForServer(SERVER_IDENTITY, ibeEngine);
-            
-            // Envoyer la clé au serveur
-            URL url = new URL(serverUrl + "/establish-secure-channel");
-            HttpURLConnection connection = (HttpURLConnection) url.openConnection();
-            connection.setRequestMethod("POST");
-            connection.setDoOutput(true);
-            connection.setRequestProperty("Content-Type", "application/json");
-            
-            try (OutputStream os = connection.getOutputStream()) {
-                byte[] input = keyExchange.toString().getBytes(StandardCharsets.UTF_8);
-                os.write(input, 0, input.length);
-                os.flush();
+            body = format.encode(Message.of(MessageType.SESSION_CLOSE)
+                    .put("proof", closing.channel.encrypt(SecureSessionRegistry.closeProofInput(closing.sessionId))));
+        } catch (Exception e) {
+            Logger.warning("Fermeture de la session " + closing.sessionId + " impossible: " + e.getMessage());
+            return;
+        }
+        post("/close-secure-channel", format, body, closing.sessionId).whenComplete((result, error) -> {
+            if (error != null) {
+                Logger.debug("Fermeture de la session " + closing.sessionId + " impossible: " + ioException(error).getMessage());
+            } else if (result.statusCode != 200 && result.statusCode != SESSION_GONE) {
+                Logger.debug("Fermeture de la session " + closing.sessionId + " refusée (HTTP " + result.statusCode + ")");
             }
-            
-            int responseCode = connection.getResponseCode();
-            String response = readResponse(connection);
-            
+        });
+    }
+
+    /**
+     * Génère une clé de session selon la méthode négociée et l'envoie au serveur
+     */
+    private CompletableFuture<Handshake> exchangeSessionKey(String earlyEndpoint, Message earlyRequest,
+                                                            MessageType earlyResponseType) {
+        AuthorityParameters current = authority;
+        WireCodec format = codec;
+        SecureChannelManager channel = new SecureChannelManager();
+
+        byte[] body;
+        try {
+            // Générer une clé de session selon la méthode négociée avec le serveur
+            Message keyExchange = Message.of(MessageType.KEY_EXCHANGE);
+            PublicKey serverChannelKey = negotiateServerChannelKey(current);
+            if (serverChannelKey != null) {
+                keyExchange.put("method", SecureChannelManager.HANDSHAKE_X25519)
+                        .put("ephemeralPublicKey", channel.createX25519EphemeralKey(serverChannelKey));
+            } else {
+                IBEcipher encryptedSessionKey = channel.encryptSessionKey(
+                        current.getServerIdentityPairing(SERVER_IDENTITY), current.getIbeEngine());
+                keyExchange.put("encryptedKey", encryptedSessionKey.getAescipher())
+                        .put("u", encryptedSessionKey.getU().toBytes())
+                        .put("v", encryptedSessionKey.getV());
+            }
+
+            // Joindre la requête applicative, déjà chiffrée avec la clé de session
+            if (earlyEndpoint != null) {
+                keyExchange.put("earlyRequest", Message.of(MessageType.EARLY_REQUEST)
+                        .put("endpoint", earlyEndpoint)
+                        .put("encryptedContent", channel.encrypt(format.encode(earlyRequest))));
+            }
+            body = format.encode(keyExchange);
+        } catch (Exception e) {
+            return CompletableFuture.failedFuture(e);
+        }
+
+        // Envoyer la clé au serveur
+        return post("/establish-secure-channel", format, body, null).thenApply(result -> unchecked(() -> {
             // Récupérer le Session-ID depuis les headers
-            sessionId = connection.getHeaderField(SESSION_ID_HEADER);
-            if (sessionId != null) {
-                Logger.info("Session-ID reçu: " + sessionId);
+            if (result.sessionId != null) {
+                Logger.info("Session-ID reçu: " + result.sessionId);
             } else {
                 Logger.warning("Aucun Session-ID reçu dans la réponse");
             }
-            
-            connection.disconnect();
-            
-            if (responseCode == 200 && response.equals("secure-channel-established")) {
-                secureChannelEstablished = true;
+            SecureSession established = new SecureSession(result.sessionId, channel);
+
+            Message response = decode(result.codec, result.body, MessageType.HANDSHAKE_RESPONSE, null);
+            if (result.statusCode == 200 && response.getType() == MessageType.TEXT
+                    && "secure-channel-established".equals(response.getString("message"))) {
                 Logger.info("Canal sécurisé établi avec le serveur d'autorité");
-                return true;
-            } else {
-                Logger.error("Échec de l'établissement du canal sécurisé: " + response);
-                return false;
+
+                // Serveur ne prenant pas en charge la requête anticipée: elle sera envoyée séparément
+                return new Handshake(established, null, 0);
             }
-            
-        } catch (Exception e) {
-            Logger.error("Erreur lors de l'établissement du canal sécurisé: " + e.getMessage());
-            return false;
-        }
+
+            if (result.statusCode != 200 || earlyEndpoint == null || response.getType() != MessageType.HANDSHAKE_RESPONSE
+                    || !"secure-channel-established".equals(response.optString("status", null))) {
+                throw new IOException("Échec de l'établissement du canal sécurisé: " + response);
+            }
+            Logger.info("Canal sécurisé établi avec le serveur d'autorité (requête anticipée " + earlyEndpoint + ")");
+
+            Message earlyResponse = response.getMessage("earlyResponse");
+            Message earlyBody = decode(result.codec, earlyResponse.getBytes("body"), earlyResponseType, channel);
+            return new Handshake(established, earlyBody, earlyResponse.getInt("statusCode"));
+        }));
     }
 
     /**
-     * Méthode utilitaire pour envoyer une requête HTTP sécurisée
+     * Envoie une requête sécurisée ; si le canal n'est pas encore établi, la requête est jointe
+     * au message d'établissement pour n'effectuer qu'un seul aller-retour
      */
-    private String sendSecureRequest(String endpoint, String method, String data) throws IOException {
-        URL url = new URL(serverUrl + endpoint);
-        HttpURLConnection connection = (HttpURLConnection) url.openConnection();
-        connection.setRequestMethod(method);
-        connection.setConnectTimeout(30000);
-        connection.setReadTimeout(30000);
-        
-        // Ajouter le Session-ID dans les headers si disponible
-        if (sessionId != null) {
-            connection.setRequestProperty(SESSION_ID_HEADER, sessionId);
+    private CompletableFuture<Message> sendSecureRequestWithHandshake(String endpoint, Message request, MessageType responseType) {
+        SecureChannelPool pool = channelPool;
+        if (pool != null) {
+            return sendPooledRequest(pool, endpoint, request, responseType);
         }
-        
-        if (data != null) {
-            connection.setDoOutput(true);
-            connection.setRequestProperty("Content-Type", "application/json");
-            
-            try {
-                // Tenter de sécuriser la communication si possible
-                String securedData = data;
-                if (secureChannelEstablished) {
-                    securedData = secureChannel.prepareSecureMessage(data);
-                }
-                
-                try (OutputStream os = connection.getOutputStream()) {
-                    byte[] input = securedData.getBytes(StandardCharsets.UTF_8);
-                    os.write(input, 0, input.length);
-                    os.flush();
-                }
-            } catch (Exception e) {
-                Logger.error("Erreur lors de la préparation de la requête sécurisée: " + e.getMessage());
-                // En cas d'erreur, envoyer la requête non sécurisée
-                try (OutputStream os = connection.getOutputStream()) {
-                    byte[] input = data.getBytes(StandardCharsets.UTF_8);
-                    os.write(input, 0, input.length);
-                    os.flush();
-                }
-            }
+        SecureSession current = session;
+        if (current != null) {
+            return sendOnSession(current, endpoint, request, responseType);
         }
-        
-        int responseCode = connection.getResponseCode();
-        if (responseCode >= 400) {
-            String errorResponse = readResponse(connection);
-            connection.disconnect();
-            throw new IOException("HTTP error " + responseCode + ": " + errorResponse);
-        }
-        
-        // Vérifier si nous avons reçu un nouveau Session-ID
-        String newSessionId = connection.getHeaderField(SESSION_ID_HEADER);
-        if (newSessionId != null && !newSessionId.equals(sessionId)) {
-            Logger.info("Mise à jour du Session-ID: " + newSessionId);
-            sessionId = newSessionId;
-        }
-        
-        String response = readResponse(connection);
-        connection.disconnect();
-        
-        // Tenter de déchiffrer la réponse si le canal est sécurisé
-        if (secureChannelEstablished) {
-            try {
-                return secureChannel.processSecureResponse(response);
-            } catch (Exception e) {
-                Logger.error("Erreur lors du déchiffrement de la réponse: " + e.getMessage());
-                // En cas d'erreur, retourner la réponse non déchiffrée
+        return performHandshake(endpoint, request, responseType).thenCompose(handshake -> {
+            if (handshake.earlyResponse == null) {
+                return sendSecureRequest(handshake.session, endpoint, request, responseType);
+            }
+            if (handshake.earlyStatus >= 400) {
+                return CompletableFuture.failedFuture(new IOException("HTTP error " + handshake.earlyStatus + ": " + handshake.earlyResponse));
             }
+            return CompletableFuture.completedFuture(handshake.earlyResponse);
+        });
+    }
+
+    /**
+     * Envoie une requête sécurisée, après avoir établi le canal si nécessaire
+     */
+    private CompletableFuture<Message> sendSecureRequest(String endpoint, Message request, MessageType responseType) {
+        SecureChannelPool pool = channelPool;
+        if (pool != null) {
+            return sendPooledRequest(pool, endpoint, request, responseType);
         }
-        
-        return response;
+        return secureSession().thenCompose(current -> sendOnSession(current, endpoint, request, responseType));
+    }
+
+    /**
+     * Envoie une requête sur le canal courant; si le serveur a retiré la session, la requête (non exécutée)
+     * est renvoyée une fois sur un nouveau canal
+     */
+    private CompletableFuture<Message> sendOnSession(SecureSession current, String endpoint, Message request,
+                                                     MessageType responseType) {
+        return retryIfSessionExpired(sendSecureRequest(current, endpoint, request, responseType), () -> {
+            forgetSession(current);
+            return secureSession().thenCompose(fresh -> sendSecureRequest(fresh, endpoint, request, responseType));
+        });
     }
 
     /**
-     * S'assure qu'un canal sécurisé est établi, en créant un nouveau si nécessaire
+     * Relance l'opération une fois si elle a échoué sur une session retirée par le serveur
      */
-    private void ensureSecureChannel() throws IOException {
-        if (!secureChannelEstablished) {
-            boolean success = establishSecureChannel();
-            if (!success) {
-                throw new IOException("Failed to establish secure channel with trust authority");
+    private static <T> CompletableFuture<T> retryIfSessionExpired(CompletableFuture<T> attempt,
+                                                                  Supplier<CompletableFuture<T>> retry) {
+        return attempt.exceptionallyCompose(error -> {
+            IOException cause = ioException(error);
+            if (!(cause instanceof SessionExpiredException)) {
+                return CompletableFuture.failedFuture(error);
             }
+            Logger.info(cause.getMessage() + ", nouveau canal sécurisé");
+            return retry.get();
+        });
+    }
+
+    /**
+     * Oublie le canal courant s'il s'agit encore de la session retirée par le serveur
+     */
+    private void forgetSession(SecureSession expired) {
+        if (session == expired) {
+            session = null;
         }
     }
 
     /**
-     * Lit la réponse HTTP
+     * Envoie une requête sécurisée sur un canal emprunté au pool, rendu dès la réponse reçue
      */
-    private String readResponse(HttpURLConnection connection) throws IOException {
-        try (BufferedReader br = new BufferedReader(
-                new InputStreamReader(
-                        connection.getResponseCode() < 400 ? connection.getInputStream() : connection.getErrorStream(),
-                        StandardCharsets.UTF_8))) {
-            StringBuilder response = new StringBuilder();
-            String responseLine;
-            while ((responseLine = br.readLine()) != null) {
-                response.append(responseLine.trim());
-            }
-            return response.toString();
+    private CompletableFuture<Message> sendPooledRequest(SecureChannelPool pool, String endpoint, Message request,
+                                                         MessageType responseType) {
+        MultiplexedChannelClient channel = multiplexedChannel;
+        if (channel != null && channel.isOpen()) {
+            return sendMultiplexedRequest(channel, endpoint, request, responseType);
         }
+        return pool.acquire().thenCompose(slot -> {
+            SecureSession current = slot.session();
+            return retryIfSessionExpired(sendSecureRequest(current, endpoint, request, responseType),
+                    () -> pool.replace(slot, current).thenCompose(fresh -> sendSecureRequest(fresh, endpoint, request, responseType)))
+                    .whenComplete((response, error) -> pool.release(slot));
+        });
     }
 
     /**
-     * Renvoie les paramètres récupérés
+     * Choisit la méthode d'établissement du canal parmi celles annoncées par le serveur.
+     * X25519 n'est retenu que si la clé statique du serveur est liée à l'autorité par sa clé maître ;
+     * la vérification (deux appariements) n'est faite qu'une fois par clé, puis conservée dans la copie locale.
+     *
+     * @return La clé X25519 du serveur si cette méthode est retenue, null pour l'échange IBE
      */
-    public SettingParameters getParameters() {
-        return parameters;
+    static PublicKey negotiateServerChannelKey(AuthorityParameters current) {
+        PublicKey serverChannelKey = null;
+
+        Message capabilities = current.getCapabilities();
+        boolean x25519Offered = capabilities.has("handshakeMethods")
+                && capabilities.getStrings("handshakeMethods").contains(SecureChannelManager.HANDSHAKE_X25519);
+
+        if (x25519Offered && capabilities.has("channelPublicKey") && capabilities.has("channelKeyBinding")) {
+            try {
+                // Vérification reprise de la copie locale si la clé n'a pas changé
+                if (current.isChannelKeyVerified()) {
+                    serverChannelKey = SecureChannelManager.decodeX25519PublicKey(capabilities.getBytes("channelPublicKey"));
+                } else {
+                    Logger.warning("Liaison de la clé X25519 du serveur invalide, repli sur l'échange IBE");
+                }
+            } catch (Exception e) {
+                Logger.warning("Clé X25519 du serveur inutilisable, repli sur l'échange IBE: " + e.getMessage());
+            }
+        }
+
+        Logger.debug("Méthode d'établissement du canal négociée: "
+                + (serverChannelKey != null ? SecureChannelManager.HANDSHAKE_X25519 : SecureChannelManager.HANDSHAKE_IBE));
+        return serverChannelKey;
     }
 
     /**
-     * Retourne le secret TOTP stocké en mémoire
+     * Méthode utilitaire pour envoyer une requête sécurisée au format négocié
      *
-     * @return Le secret TOTP ou null s'il n'est pas disponible
+     * @param responseType Type de la réponse attendue en cas de succès
      */
-    public String getTotpSecret() {
-        return totpSecret;
+    private CompletableFuture<Message> sendSecureRequest(SecureSession current, String endpoint, Message request,
+                                                         MessageType responseType) {
+        MultiplexedChannelClient channel = multiplexedChannel;
+        if (channel != null && channel.isOpen()) {
+            return sendMultiplexedRequest(channel, endpoint, request, responseType);
+        }
+
+        WireCodec format = codec;
+        byte[] body;
+        try {
+            body = format.wrapSecure(current.channel.encrypt(format.encode(request)));
+        } catch (Exception e) {
+            return CompletableFuture.failedFuture(e);
+        }
+
+        return post(endpoint, format, body, current.sessionId).thenApply(result -> unchecked(() -> {
+            if (result.statusCode == SESSION_GONE) {
+                throw new SessionExpiredException(current.sessionId);
+            }
+            if (result.statusCode >= 400) {
+                String errorResponse;
+                try {
+                    errorResponse = decode(result.codec, result.body, responseType, current.channel).toString();
+                } catch (Exception e) {
+                    errorResponse = new String(result.body, StandardCharsets.UTF_8);
+                }
+                throw new IOException("HTTP error " + result.statusCode + ": " + errorResponse);
+            }
+
+            // Vérifier si nous avons reçu un nouveau Session-ID
+            if (result.sessionId != null && !result.sessionId.equals(current.sessionId) && session == current) {
+                Logger.info("Mise à jour du Session-ID: " + result.sessionId);
+                session = new SecureSession(result.sessionId, current.channel);
+            }
+
+            return decode(result.codec, result.body, responseType, current.channel);
+        }));
     }
 
     /**
-     * Classe interne pour encapsuler les paramètres publics du client
+     * Envoie une requête sur le canal multiplexé (déjà chiffré par la clé de session)
      */
-    private static class SettingParametersClient extends SettingParameters {
-        private final Pairing pairing;
-        private final Element generator;
-        private final Element publicKey;
+    private static CompletableFuture<Message> sendMultiplexedRequest(MultiplexedChannelClient channel, String endpoint,
+                                                                     Message request, MessageType responseType) {
+        return channel.send(endpoint, WireCodec.BINARY.encode(request))
+                .orTimeout(REQUEST_TIMEOUT.toSeconds(), TimeUnit.SECONDS)
+                .thenApply(response -> unchecked(() -> {
+                    int statusCode = response.getInt("statusCode");
+                    Message body = WireCodec.BINARY.decode(responseType, response.getBytes("body"));
+                    if (statusCode >= 400) {
+                        throw new IOException("HTTP error " + statusCode + ": " + body);
+                    }
+                    return body;
+                }));
+    }
 
-        public SettingParametersClient(String jsonString) {
-            // Ne pas appeler super() car nous allons redéfinir tous les paramètres
-            super(false); // Ajout d'un constructeur spécial pour éviter l'initialisation par défaut
+    /**
+     * Session retirée par le serveur: la requête n'a pas été exécutée et peut être renvoyée sur un nouveau canal
+     */
+    private static final class SessionExpiredException extends IOException {
+        private SessionExpiredException(String sessionId) {
+            super("Session " + sessionId + " expirée côté serveur");
+        }
+    }
 
-            JSONObject jsonParams = new JSONObject(jsonString);
+    /**
+     * Configuration TOTP renvoyée par le serveur après vérification de l'OTP
+     */
+    private static final class TotpSetup {
+        private final String secret;
+        private final String otpauthUri;
 
-            // Récupérer le chemin des paramètres de pairing
-            String pairingParamsPath = jsonParams.getString("pairingParams");
+        private TotpSetup(String secret, String otpauthUri) {
+            this.secret = secret;
+            this.otpauthUri = otpauthUri;
+        }
+    }
 
-            // Initialiser le pairing avec les mêmes paramètres que le serveur
-            this.pairing = PairingFactory.getPairing(pairingParamsPath);
+    /**
+     * Réponse HTTP brute, avec le format indiqué par son Content-Type
+     */
+    private static final class HttpResult {
+        private final int statusCode;
+        private final WireCodec codec;
+        private final byte[] body;
+        private final String sessionId;
+
+        private HttpResult(int statusCode, WireCodec codec, byte[] body, String sessionId) {
+            this.statusCode = statusCode;
+            this.codec = codec;
+            this.body = body;
+            this.sessionId = sessionId;
+        }
+    }
 
-            // Reconstruire le générateur à partir des bytes
-            byte[] generatorBytes = Base64.getDecoder().decode(jsonParams.getString("generator"));
-            this.generator = pairing.getG1().newElementFromBytes(generatorBytes);
+    private HttpRequest.Builder request(String endpoint) {
+        return HttpRequest.newBuilder(URI.create(serverUrl + endpoint)).version(httpVersion);
+    }
 
-            // Reconstruire la clé publique à partir des bytes
-            byte[] publicKeyBytes = Base64.getDecoder().decode(jsonParams.getString("publicKey"));
-            this.publicKey = pairing.getG1().newElementFromBytes(publicKeyBytes);
+    /**
+     * Envoie un corps déjà encodé et lit la réponse complète (octets bruts, sans interprétation)
+     *
+     * @param sessionId Identifiant de session à joindre, ou null
+     */
+    private CompletableFuture<HttpResult> post(String endpoint, WireCodec format, byte[] body, String sessionId) {
+        HttpRequest.Builder request = request(endpoint)
+                .timeout(REQUEST_TIMEOUT)
+                .header("Content-Type", format.getContentType())
+                .POST(HttpRequest.BodyPublishers.ofByteArray(body));
+        if (sessionId != null) {
+            request.header(SESSION_ID_HEADER, sessionId);
         }
 
-        @Override
-        public Pairing getPairing() {
-            return pairing;
+        return HTTP.sendAsync(request.build(), HttpResponse.BodyHandlers.ofByteArray()).thenApply(response ->
+                new HttpResult(response.statusCode(),
+                        WireCodec.forContentType(response.headers().firstValue("Content-Type").orElse(null)),
+                        response.body(), response.headers().firstValue(SESSION_ID_HEADER).orElse(null)));
+    }
+
+    /**
+     * Déchiffre (si le corps est une enveloppe sécurisée) puis décode une réponse
+     *
+     * @param channel Clé de session du canal, ou null pour une réponse en clair
+     */
+    private static Message decode(WireCodec responseCodec, byte[] body, MessageType expectedType,
+                                  SecureChannelManager channel) throws Exception {
+        if (channel != null) {
+            byte[] ciphertext = responseCodec.unwrapSecure(body);
+            if (ciphertext != null) {
+                body = channel.decrypt(ciphertext);
+            }
         }
+        return responseCodec.decode(expectedType, body);
+    }
 
-        @Override
-        public Element getGenerator() {
-            return generator;
+    @FunctionalInterface
+    private interface Step<T> {
+        T run() throws Exception;
+    }
+
+    /**
+     * Exécute une étape d'une continuation asynchrone, en propageant ses exceptions vérifiées
+     */
+    private static <T> T unchecked(Step<T> step) {
+        try {
+            return step.run();
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new CompletionException(e);
         }
+    }
 
-        @Override
-        public Element getPublicKey() {
-            return publicKey;
+    /**
+     * @return L'exception d'origine d'un échec asynchrone, sous forme d'IOException
+     */
+    private static IOException ioException(Throwable error) {
+        Throwable cause = error;
+        while ((cause instanceof CompletionException || cause instanceof ExecutionException) && cause.getCause() != null) {
+            cause = cause.getCause();
+        }
+        if (cause instanceof IOException && cause.getMessage() != null) {
+            return (IOException) cause;
         }
+        // Échecs de connexion du client HTTP: sans message, le type de l'exception est le plus parlant
+        return new IOException(cause.getMessage() != null ? cause.getMessage() : cause.toString(), cause);
+    }
 
-        @Override
-        public Element getMasterKey() {
-            throw new UnsupportedOperationException("La clé maître n'est pas disponible côté client");
+    /**
+     * Futur qui échoue avec l'IOException d'origine plutôt qu'une CompletionException
+     */
+    private static <T> CompletableFuture<T> ioFuture(CompletableFuture<T> future) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        future.whenComplete((value, error) -> {
+            if (error != null) {
+                result.completeExceptionally(ioException(error));
+            } else {
+                result.complete(value);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Journalise un échec et le remplace par une IOException préfixée
+     */
+    private static <T> CompletableFuture<T> failWith(CompletableFuture<T> future, String logMessage, String errorMessage) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        future.whenComplete((value, error) -> {
+            if (error != null) {
+                IOException cause = ioException(error);
+                Logger.error(logMessage + ": " + cause.getMessage());
+                result.completeExceptionally(new IOException(errorMessage + ": " + cause.getMessage(), cause));
+            } else {
+                result.complete(value);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Journalise un échec et le remplace par une valeur par défaut
+     */
+    private static <T> CompletableFuture<T> orElse(CompletableFuture<T> future, T fallback, String logMessage) {
+        return future.exceptionally(error -> {
+            Logger.error(logMessage + ": " + ioException(error).getMessage());
+            return fallback;
+        });
+    }
+
+    /**
+     * Attend le résultat d'une opération asynchrone (versions bloquantes de l'API)
+     */
+    private static <T> T await(CompletableFuture<T> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for the trust authority");
+        } catch (ExecutionException e) {
+            throw ioException(e);
         }
     }
+
+    /**
+     * Renvoie les paramètres récupérés
+     */
+    public SettingParameters getParameters() {
+        return authority.getParameters();
+    }
+
+    /**
+     * Retourne le secret TOTP stocké en mémoire
+     *
+     * @return Le secret TOTP ou null s'il n'est pas disponible
+     */
+    public String getTotpSecret() {
+        return totpSecret;
+    }
 }
@@ -1,37 +1,61 @@
 package fr.insa.crypto.trustAuthority;
 
+import com.sun.net.httpserver.HttpContext;
 import com.sun.net.httpserver.HttpExchange;
 import com.sun.net.httpserver.HttpHandler;
 import com.sun.net.httpserver.HttpServer;
-import dev.samstevens.totp.exceptions.QrGenerationException;
+import dev.samstevens.totp.time.TimeProvider;
 import fr.insa.crypto.trustAuthority.auth.OTPManager;
+import fr.insa.crypto.trustAuthority.auth.OtpMailDispatcher;
+import fr.insa.crypto.trustAuthority.auth.QrCodeRenderer;
 import fr.insa.crypto.trustAuthority.auth.TOTPManager;
+import fr.insa.crypto.trustAuthority.channel.MultiplexedChannelServer;
+import fr.insa.crypto.trustAuthority.metrics.MetricsFilter;
+import fr.insa.crypto.trustAuthority.metrics.MetricsRegistry;
+import fr.insa.crypto.trustAuthority.nio.NioHttpServer;
+import fr.insa.crypto.trustAuthority.protocol.Message;
+import fr.insa.crypto.trustAuthority.protocol.MessageType;
+import fr.insa.crypto.trustAuthority.protocol.WireCodec;
+import fr.insa.crypto.trustAuthority.ratelimit.RateLimitFilter;
+import fr.insa.crypto.trustAuthority.ratelimit.RateLimiter;
 import fr.insa.crypto.trustAuthority.user.UserAccount;
 import fr.insa.crypto.trustAuthority.user.UserManager;
 import fr.insa.crypto.utils.Config;
 import fr.insa.crypto.utils.Logger;
 import it.unisa.dia.gas.jpbc.Element;
+import org.json.JSONArray;
 import org.json.JSONObject;
 
-import javax.mail.Message;
 import javax.mail.PasswordAuthentication;
 import javax.mail.Session;
-import javax.mail.Transport;
-import javax.mail.internet.InternetAddress;
-import javax.mail.internet.MimeMessage;
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStreamReader;
 import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetAddress;
 import java.net.InetSocketAddress;
+import java.net.URL;
 import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.ArrayList;
 import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Properties;
+import java.util.Set;
 import java.util.UUID;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
-import fr.insa.crypto.encryption.IdentityBasedEncryption;
 import fr.insa.crypto.utils.SecureChannelManager;
 
 /**
@@ -45,87 +69,356 @@ public class TrustAuthorityServer {
     // Gestionnaires pour l'authentification 2FA
     private final UserManager userManager = new UserManager();
     private final OTPManager otpManager = new OTPManager();
-    private final TOTPManager totpManager = new TOTPManager();
+    private final TOTPManager totpManager;
+    private final QrCodeRenderer qrCodeRenderer = new QrCodeRenderer(
+            Config.TA_QR_THREADS, Config.TA_QR_QUEUE_CAPACITY, Config.TA_QR_RENDER_TIMEOUT_MS);
 
-    // Session email pour l'envoi des OTP
-    private Session emailSession;
-    private String senderEmail;
+    // File d'envoi asynchrone des OTP (null si l'envoi d'email n'est pas configuré)
+    private final OtpMailDispatcher otpDispatcher;
 
-    // Identité du serveur pour le chiffrement IBE - mise à jour pour utiliser un format d'email valide
-    private static final String SERVER_IDENTITY = "server@trust.authority";
-    
-    // Gestionnaire des canaux sécurisés (par identifiant de session)
-    private final ConcurrentHashMap<String, SecureChannelManager> secureChannels = new ConcurrentHashMap<>();
+    // Gestionnaire des canaux sécurisés (par identifiant de session), retirés après inactivité ou fin de vie
+    private final SecureSessionRegistry secureChannels;
     
     // Constante pour le header d'identification de session
     private static final String SESSION_ID_HEADER = "X-Session-ID";
 
+    // Session inconnue (expirée, fermée ou serveur redémarré): la requête n'est pas exécutée, le client rétablit le canal
+    private static final int SESSION_GONE = 410;
+
+    // Header portant le jeton des services autorisés aux requêtes par lots
+    private static final String SERVICE_TOKEN_HEADER = "X-Service-Token";
+
+    // Pool pour le travail cryptographique (extraction de clés des lots) et exécuteur des requêtes HTTP
+    private final ThreadPoolExecutor cryptoExecutor = (ThreadPoolExecutor) Executors.newFixedThreadPool(Config.TA_CRYPTO_THREADS);
+    private final ThreadPoolExecutor requestExecutor = (ThreadPoolExecutor) Executors.newFixedThreadPool(Config.TA_HTTP_THREADS);
+
+    // Métriques exposées sur /metrics (latences par endpoint, files, caches, sessions)
+    private final MetricsRegistry metrics = new MetricsRegistry();
+    private final MetricsFilter metricsFilter = new MetricsFilter(metrics);
+
+    // Limites de débit par adresse IP (filtre HTTP) et par identité (avant chaque opération)
+    private final RateLimiter rateLimiter;
+
+    // Clé statique X25519 du serveur pour l'établissement rapide du canal, liée à l'autorité par la clé maître
+    private java.security.KeyPair channelKeyPair;
+    private Element channelKeyBinding;
+
+    // Frontal HTTP: serveur du JDK ou frontal NIO à boucles d'événements (mêmes handlers et filtres)
+    private final String httpFrontend;
+
+    // Canal TCP multiplexé (port 0 = désactivé), ouvert au démarrage à côté du serveur HTTP
+    private final int channelPort;
+    private MultiplexedChannelServer channelServer;
+
+    // Réponse de /public-parameters, précalculée au démarrage
+    private PublicParametersResponse publicParameters;
+
+    // Prêt à recevoir du trafic (après le préchauffage), exposé par /ready pour l'équilibreur de charge
+    private volatile boolean ready;
+
+    // Opérations applicatives par endpoint, partagées entre les handlers HTTP et la requête anticipée du handshake
+    private final Map<String, Operation> operations = new LinkedHashMap<>();
+
+    // Opérations autorisées dans le message d'établissement du canal. Ce message peut être rejoué: aucune de ces
+    // opérations ne modifie un compte ni n'envoie de message, et la réponse est chiffrée sous une clé que l'attaquant
+    // n'a pas. Seul effet d'un rejeu: une vérification TOTP consomme la période du code (anti-rejeu); un code
+    // rejoué n'est jamais accepté deux fois, mais un rejeu arrivé avant l'original oblige l'utilisateur à attendre
+    // le code suivant.
+    private static final Set<String> EARLY_REQUEST_ENDPOINTS = Set.of(
+            "/auth/check-account", "/auth/verify-totp", "/get-private-key", "/auth/verify-totp-and-get-key");
+
+    /**
+     * Serveur configuré par les variables d'environnement (Config)
+     */
     public TrustAuthorityServer(TrustAuthority trustAuthority, int port) {
-        this.trustAuthority = trustAuthority;
-        this.port = port;
+        this(new Builder(trustAuthority, port));
+    }
+
+    private TrustAuthorityServer(Builder builder) {
+        this.trustAuthority = builder.trustAuthority;
+        this.port = builder.port;
+        this.otpDispatcher = builder.otpDispatcher.get();
+        this.httpFrontend = builder.httpFrontend;
+        this.channelPort = builder.channelPort;
+        this.rateLimiter = RateLimiter.fromSpec(builder.rateLimits);
+        this.secureChannels = new SecureSessionRegistry(builder.sessionIdleTimeoutMillis, builder.sessionMaxLifetimeMillis);
+        this.totpManager = builder.totpTimeProvider != null ? new TOTPManager(builder.totpTimeProvider) : new TOTPManager();
 
-        // Initialiser la session email pour l'envoi d'OTP sans utiliser la classe Authentication
+        registerOperations();
+        registerMetrics();
+
+        // Générer la clé statique X25519 et sa liaison (calculée une seule fois pour toute la durée de vie du serveur)
+        try {
+            channelKeyPair = SecureChannelManager.generateX25519KeyPair();
+            channelKeyBinding = trustAuthority.bindChannelKey(channelKeyPair.getPublic().getEncoded());
+            Logger.info("Clé statique X25519 du canal sécurisé générée");
+        } catch (Exception e) {
+            Logger.warning("X25519 indisponible, seul l'échange IBE sera proposé: " + e.getMessage());
+            channelKeyPair = null;
+            channelKeyBinding = null;
+        }
+    }
+
+    /**
+     * Crée la file d'envoi des OTP à partir des variables d'environnement, sans utiliser la classe Authentication
+     *
+     * @return La file d'envoi, ou null si les identifiants email ne sont pas définis
+     */
+    private static OtpMailDispatcher createOtpDispatcher() {
         try {
             // Récupérer les identifiants email depuis les variables d'environnement
-            senderEmail = System.getenv("EMAIL_USERNAME");
+            String senderEmail = System.getenv("EMAIL_USERNAME");
             String password = System.getenv("EMAIL_PASSWORD");
 
             if (senderEmail == null || password == null) {
                 Logger.warning("Variables d'environnement EMAIL_USERNAME ou EMAIL_PASSWORD non définies. L'envoi d'OTP sera désactivé.");
-            } else {
-                // Créer une session email directe pour l'envoi des OTP
-                Properties props = new Properties();
-                props.put("mail.smtp.auth", "true");
-                props.put("mail.smtp.starttls.enable", "true");
-                props.put("mail.smtp.host", System.getenv("SMTP_HOST") != null ? System.getenv("SMTP_HOST") : "smtp.gmail.com");
-                props.put("mail.smtp.port", System.getenv("SMTP_PORT") != null ? System.getenv("SMTP_PORT") : "587");
-                props.put("mail.smtp.ssl.trust", "*");
-                props.put("mail.smtp.ssl.protocols", "TLSv1.2");
-                props.put("mail.smtp.connectiontimeout", "30000");
-                props.put("mail.smtp.timeout", "30000");
-                props.put("mail.smtp.writetimeout", "30000");
-
-                final String finalPassword = password;
-
-                emailSession = Session.getInstance(props, new javax.mail.Authenticator() {
-                    protected PasswordAuthentication getPasswordAuthentication() {
-                        return new PasswordAuthentication(senderEmail, finalPassword);
-                    }
-                });
-
-                Logger.info("Session email initialisée pour l'envoi d'OTP avec " + senderEmail);
+                return null;
             }
+
+            // Créer une session email directe pour l'envoi des OTP
+            Properties props = new Properties();
+            props.put("mail.smtp.auth", "true");
+            props.put("mail.smtp.starttls.enable", "true");
+            props.put("mail.smtp.host", System.getenv("SMTP_HOST") != null ? System.getenv("SMTP_HOST") : "smtp.gmail.com");
+            props.put("mail.smtp.port", System.getenv("SMTP_PORT") != null ? System.getenv("SMTP_PORT") : "587");
+            props.put("mail.smtp.ssl.trust", "*");
+            props.put("mail.smtp.ssl.protocols", "TLSv1.2");
+            props.put("mail.smtp.connectiontimeout", "30000");
+            props.put("mail.smtp.timeout", "30000");
+            props.put("mail.smtp.writetimeout", "30000");
+
+            Session emailSession = Session.getInstance(props, new javax.mail.Authenticator() {
+                protected PasswordAuthentication getPasswordAuthentication() {
+                    return new PasswordAuthentication(senderEmail, password);
+                }
+            });
+
+            Logger.info("Session email initialisée pour l'envoi d'OTP avec " + senderEmail);
+            return new OtpMailDispatcher(emailSession, senderEmail, Config.TA_SMTP_POOL_SIZE,
+                    Config.TA_OTP_QUEUE_CAPACITY, Config.TA_OTP_BATCH_SIZE, Config.TA_OTP_MAX_ATTEMPTS);
         } catch (Exception e) {
             Logger.error("Erreur lors de l'initialisation de la session email: " + e.getMessage());
+            return null;
         }
-
-        // Initialiser le moteur IBE pour le serveur
-        IdentityBasedEncryption ibeEngine = new IdentityBasedEncryption(trustAuthority.getParameters());
     }
 
     /**
      * Démarrage du serveur HTTP
      */
     public void start() throws IOException {
-        server = HttpServer.create(new InetSocketAddress(port), 0);
+        if ("nio".equals(httpFrontend)) {
+            NioHttpServer nioServer = NioHttpServer.create(new InetSocketAddress(port), 0, Config.TA_NIO_EVENT_LOOPS,
+                    Config.TA_NIO_KEEPALIVE_MS, Config.TA_NIO_KEEPALIVE_MAX_REQUESTS, Config.TA_NIO_MAX_REQUEST_BYTES);
+            metrics.gauge("http_connections_open", "Connexions HTTP ouvertes (frontal NIO)", nioServer::getOpenConnections);
+            metrics.gauge("http_pending_write_bytes", "Octets de réponse en attente d'écriture (frontal NIO)", nioServer::getPendingWriteBytes);
+            server = nioServer;
+        } else {
+            server = HttpServer.create(new InetSocketAddress(port), 0);
+        }
 
         // Endpoints existants
-        server.createContext("/get-private-key", new SecurePrivateKeyHandler());
-        server.createContext("/public-parameters", new PublicParametersHandler());
+        createContext("/public-parameters", new PublicParametersHandler());
+        createContext("/ready", new ReadinessHandler());
+        createContext("/metrics", new MetricsHandler());
 
-        // Nouveaux endpoints pour l'authentification 2FA
-        server.createContext("/auth/register", new RegistrationRequestHandler());
-        server.createContext("/auth/verify-otp", new VerifyOtpHandler());
-        server.createContext("/auth/verify-totp", new VerifyTotpHandler());
-        server.createContext("/auth/check-account", new CheckAccountHandler());
+        // Endpoints applicatifs (distribution des clés et authentification 2FA)
+        for (Map.Entry<String, Operation> entry : operations.entrySet()) {
+            createContext(entry.getKey(), new SecureOperationHandler(entry.getKey(), entry.getValue()));
+        }
 
         // Nouvel endpoint pour établir un canal sécurisé
-        server.createContext("/establish-secure-channel", new EstablishSecureChannelHandler());
+        createContext("/establish-secure-channel", new EstablishSecureChannelHandler());
+        createContext("/close-secure-channel", new CloseSecureChannelHandler());
+
+        // Endpoints par lots pour les services (un jeton de service par lot)
+        createContext("/batch/get-private-keys", new BatchHandler(this::batchPrivateKey, true));
+        createContext("/batch/check-accounts", new BatchHandler(this::batchAccountStatus, false));
+
+        // Les requêtes du canal multiplexé partagent l'exécuteur et les opérations des endpoints HTTP
+        if (channelPort > 0) {
+            channelServer = new MultiplexedChannelServer(channelPort, secureChannels::get, this::dispatchChannelRequest,
+                    operations.keySet(), requestExecutor, Config.TA_CHANNEL_MAX_STREAMS, Config.TA_CHANNEL_MAX_CONNECTIONS,
+                    Config.TA_CHANNEL_MAX_PENDING_HELLOS, metrics);
+            metrics.gauge("channel_connections", "Connexions ouvertes sur le canal multiplexé", channelServer::getConnectionCount);
+            metrics.gauge("channel_streams_in_flight", "Requêtes en cours sur le canal multiplexé", channelServer::getStreamsInFlight);
+            metrics.counter("channel_requests_total", "Requêtes traitées sur le canal multiplexé", channelServer::getRequestCount);
+            metrics.counter("channel_connections_rejected_total", "Connexions au canal multiplexé refusées (limites de connexions)",
+                    channelServer::getRejectedConnectionCount);
+        }
 
-        server.setExecutor(null); // Utilise l'exécuteur par défaut
+        // Paramètres publics encodés une fois pour toutes, port du canal multiplexé compris
+        publicParameters = new PublicParametersResponse(buildPublicParameters());
+        Logger.info("Paramètres publics précalculés (version " + publicParameters.getParametersVersion() + ")");
+
+        // Un lot diffusé en flux occupe son thread: ne pas bloquer les autres requêtes
+        server.setExecutor(requestExecutor);
         server.start();
 
-        Logger.info("Trust Authority Server started on port " + port);
+        Logger.info("Trust Authority Server started on port " + port + " (" + httpFrontend + " HTTP front end)");
+    }
+
+    /**
+     * Configuration d'un serveur: chaque valeur non précisée est celle des variables d'environnement (Config)
+     */
+    public static final class Builder {
+        private final TrustAuthority trustAuthority;
+        private final int port;
+        private Supplier<OtpMailDispatcher> otpDispatcher = TrustAuthorityServer::createOtpDispatcher;
+        private String httpFrontend = Config.TA_HTTP_FRONTEND;
+        private String rateLimits = Config.TA_RATE_LIMITS;
+        private long sessionIdleTimeoutMillis = Config.TA_SESSION_IDLE_TIMEOUT_MS;
+        private long sessionMaxLifetimeMillis = Config.TA_SESSION_MAX_LIFETIME_MS;
+        private TimeProvider totpTimeProvider;
+        private int channelPort = Config.TA_CHANNEL_PORT;
+
+        public Builder(TrustAuthority trustAuthority, int port) {
+            this.trustAuthority = trustAuthority;
+            this.port = port;
+        }
+
+        /**
+         * @param otpDispatcher File d'envoi des OTP (serveur SMTP local), ou null pour désactiver l'envoi
+         */
+        public Builder otpDispatcher(OtpMailDispatcher otpDispatcher) {
+            this.otpDispatcher = () -> otpDispatcher;
+            return this;
+        }
+
+        /**
+         * @param httpFrontend Frontal HTTP, "jdk" ou "nio" (TA_HTTP_FRONTEND)
+         */
+        public Builder httpFrontend(String httpFrontend) {
+            this.httpFrontend = httpFrontend;
+            return this;
+        }
+
+        /**
+         * @param spec Limites de débit au format de RateLimiter, vide pour les désactiver (TA_RATE_LIMITS)
+         */
+        public Builder rateLimits(String spec) {
+            this.rateLimits = spec;
+            return this;
+        }
+
+        /**
+         * @param idleTimeoutMillis Inactivité au-delà de laquelle une session sécurisée est retirée (TA_SESSION_IDLE_TIMEOUT_MS)
+         * @param maxLifetimeMillis Durée de vie maximale d'une session sécurisée (TA_SESSION_MAX_LIFETIME_MS)
+         */
+        public Builder sessionTimeouts(long idleTimeoutMillis, long maxLifetimeMillis) {
+            this.sessionIdleTimeoutMillis = idleTimeoutMillis;
+            this.sessionMaxLifetimeMillis = maxLifetimeMillis;
+            return this;
+        }
+
+        /**
+         * @param timeProvider Horloge des codes TOTP (horloge système par défaut)
+         */
+        public Builder totpTimeProvider(TimeProvider timeProvider) {
+            this.totpTimeProvider = timeProvider;
+            return this;
+        }
+
+        /**
+         * @param port Port du canal multiplexé, 0 pour le désactiver (TA_CHANNEL_PORT)
+         */
+        public Builder multiplexedChannel(int port) {
+            this.channelPort = port;
+            return this;
+        }
+
+        public TrustAuthorityServer build() {
+            return new TrustAuthorityServer(this);
+        }
+    }
+
+    /**
+     * Exécute une requête reçue sur le canal multiplexé (déjà déchiffrée, au format binaire)
+     */
+    private Message dispatchChannelRequest(InetAddress remoteAddress, String endpoint, byte[] requestBody) {
+        ApiResponse response;
+        Operation operation = operations.get(endpoint);
+        if (operation == null) {
+            response = new ApiResponse(404, "Unknown endpoint: " + endpoint);
+        } else if ((response = checkAddressLimit(endpoint, remoteAddress)) == null) {
+            try {
+                response = operation.execute(requestBody, WireCodec.BINARY);
+            } catch (Exception e) {
+                Logger.error("Erreur lors du traitement de " + endpoint + " (canal multiplexé): " + e.getMessage());
+                response = new ApiResponse(500, "Internal Server Error: " + e.getMessage());
+            }
+        }
+        return Message.of(MessageType.CHANNEL_RESPONSE)
+                .put("statusCode", response.statusCode)
+                .put("body", WireCodec.BINARY.encode(response.body));
+    }
+
+    /**
+     * Limite par adresse IP d'une requête qui ne passe pas par le contexte HTTP de son endpoint (canal
+     * multiplexé, requête anticipée): même limiteur et mêmes seaux que RateLimitFilter
+     *
+     * @return La réponse 429, ou null si la requête est acceptée
+     */
+    private ApiResponse checkAddressLimit(String endpoint, InetAddress remoteAddress) {
+        long waitNanos = rateLimiter.check(endpoint, RateLimiter.Scope.IP, remoteAddress.getHostAddress());
+        if (waitNanos > 0) {
+            return new ApiResponse(429, "Too many requests from this address, retry in "
+                    + RateLimiter.retryAfterSeconds(waitNanos) + " s");
+        }
+        return null;
+    }
+
+    /**
+     * Crée un contexte HTTP mesuré par le filtre de métriques et limité par adresse IP si configuré
+     */
+    private HttpContext createContext(String path, HttpHandler handler) {
+        HttpContext context = server.createContext(path, handler);
+        context.getFilters().add(metricsFilter);
+        // Après le filtre de métriques: les refus (429) sont mesurés
+        if (rateLimiter.hasLimit(path, RateLimiter.Scope.IP)) {
+            context.getFilters().add(new RateLimitFilter(rateLimiter, path));
+        }
+        return context;
+    }
+
+    /**
+     * Déclare les métriques lues à la demande auprès des autres composants
+     */
+    private void registerMetrics() {
+        KeyDistributor keyDistributor = trustAuthority.getKeyDistributor();
+        metrics.counter("key_extractions_total", "Extractions de clés privées effectuées", keyDistributor::getExtractionCount);
+        metrics.counter("key_extractions_coalesced_total", "Demandes de clé rattachées à une extraction en cours", keyDistributor::getCoalescedCallCount);
+        metrics.counter("key_cache_hits_total", "Clés privées servies depuis le cache", keyDistributor::getCacheHitCount);
+        metrics.gauge("key_cache_size", "Clés privées en cache", keyDistributor::getCacheSize);
+
+        metrics.gauge("secure_sessions_active", "Canaux sécurisés établis", () -> secureChannels.size());
+        metrics.counter("secure_sessions_evicted_total", "Sessions sécurisées retirées pour inactivité ou fin de vie", () -> secureChannels.getEvictedCount());
+        metrics.counter("secure_sessions_closed_total", "Sessions sécurisées fermées par leur client", () -> secureChannels.getClosedCount());
+        metrics.counter("rate_limited_ip_total", "Requêtes refusées par la limite par adresse IP", () -> rateLimiter.getRejectedCount(RateLimiter.Scope.IP));
+        metrics.counter("rate_limited_identity_total", "Requêtes refusées par la limite par identité", () -> rateLimiter.getRejectedCount(RateLimiter.Scope.IDENTITY));
+        metrics.gauge("rate_limit_buckets", "Seaux de limitation actifs", () -> rateLimiter.getBucketCount());
+        metrics.gauge("users_registered", "Comptes utilisateurs enregistrés", userManager::getUserCount);
+        metrics.gauge("totp_cached_users", "Utilisateurs dont la clé TOTP et la dernière période acceptée sont en mémoire",
+                () -> totpManager.getCachedUserCount());
+        metrics.gauge("qr_render_queue_depth", "QR codes en attente de rendu", qrCodeRenderer::getQueueDepth);
+        metrics.counter("qr_rendered_total", "QR codes rendus pour les anciens clients", qrCodeRenderer::getRenderedCount);
+        metrics.counter("qr_render_failures_total", "Réponses envoyées sans QR code (file pleine, délai, erreur)", qrCodeRenderer::getFailedCount);
+        metrics.gauge("ready", "1 une fois le préchauffage terminé", () -> ready ? 1 : 0);
+
+        metrics.gauge("http_executor_queue_depth", "Requêtes HTTP en attente d'un thread", () -> requestExecutor.getQueue().size());
+        metrics.gauge("http_executor_active_threads", "Threads HTTP occupés", requestExecutor::getActiveCount);
+        metrics.gauge("crypto_executor_queue_depth", "Extractions par lots en attente d'un thread", () -> cryptoExecutor.getQueue().size());
+        metrics.gauge("crypto_executor_active_threads", "Threads cryptographiques occupés", cryptoExecutor::getActiveCount);
+
+        if (otpDispatcher != null) {
+            metrics.gauge("otp_queue_depth", "OTP en attente d'envoi", otpDispatcher::getQueueDepth);
+            metrics.gauge("otp_pending_retries", "OTP en attente d'un nouvel essai", otpDispatcher::getPendingRetries);
+            metrics.counter("otp_delivered_total", "OTP envoyés", otpDispatcher::getDeliveredCount);
+            metrics.counter("otp_failed_total", "OTP abandonnés après échecs", otpDispatcher::getFailedCount);
+            metrics.counter("otp_rejected_total", "OTP refusés (file pleine)", otpDispatcher::getRejectedCount);
+            metrics.counter("otp_retries_total", "Nouvelles tentatives d'envoi d'OTP", otpDispatcher::getRetryCount);
+            metrics.counter("smtp_connections_total", "Connexions SMTP ouvertes", otpDispatcher::getConnectionCount);
+            metrics.summary("otp_delivery_seconds", "Délai entre le dépôt d'un OTP et son envoi", otpDispatcher.getDeliveryLatency());
+        }
     }
 
     /**
@@ -134,10 +427,98 @@ public class TrustAuthorityServer {
     public void stop() {
         if (server != null) {
             server.stop(0);
+            if (channelServer != null) {
+                try {
+                    channelServer.close();
+                } catch (IOException e) {
+                    Logger.warning("Erreur lors de la fermeture du canal multiplexé: " + e.getMessage());
+                }
+            }
+            requestExecutor.shutdown();
+            cryptoExecutor.shutdown();
+            if (otpDispatcher != null) {
+                otpDispatcher.shutdown(5000);
+            }
+            userManager.close();
+            rateLimiter.close();
+            totpManager.close();
+            secureChannels.close();
+            qrCodeRenderer.shutdown();
             Logger.info("Trust Authority Server stopped");
         }
     }
 
+    /**
+     * Préchauffe les chemins critiques (handshakes, déchiffrement, extraction de clés, sérialisation JSON)
+     * puis déclare le serveur prêt. Le port est déjà ouvert mais /ready répond 503 jusque-là.
+     */
+    public void warmUp() {
+        if (Config.TA_WARMUP_MAX_MS <= 0) {
+            ready = true;
+            return;
+        }
+
+        Logger.info("Préchauffage du serveur (au plus " + Config.TA_WARMUP_MAX_MS + " ms)...");
+        ServerDecryptionContext serverContext = trustAuthority.getServerDecryptionContext();
+        AtomicLong identityCounter = new AtomicLong();
+        ServerWarmup warmup = new ServerWarmup(Config.TA_WARMUP_MAX_MS, Config.TA_WARMUP_ROUND_SIZE, Config.TA_WARMUP_TOLERANCE);
+
+        // Handshake IBE complet (côté client et côté serveur) suivi d'un aller-retour chiffré
+        warmup.add("handshake-ibe", () -> {
+            SecureChannelManager client = new SecureChannelManager();
+            JSONObject keyExchange = client.encryptSessionKeyForServer(serverContext.getIdentity(), serverContext.getIbeEngine());
+            SecureChannelManager channel = new SecureChannelManager();
+            channel.decryptSessionKey(keyExchange, serverContext.getPreprocessedKey(), serverContext.getIbeEngine());
+            channel.decryptWithSessionKey(client.encryptWithSessionKey("{\"email\":\"warmup@warmup.invalid\"}"));
+        });
+
+        if (channelKeyPair != null) {
+            warmup.add("handshake-x25519", () -> {
+                SecureChannelManager client = new SecureChannelManager();
+                JSONObject keyExchange = client.createX25519KeyExchange(channelKeyPair.getPublic());
+                SecureChannelManager channel = new SecureChannelManager();
+                channel.deriveX25519SessionKey(keyExchange, channelKeyPair);
+                client.decryptWithSessionKey(channel.encryptWithSessionKey("{\"status\":\"ok\"}"));
+            });
+        }
+
+        // Identités distinctes à chaque itération: mesurer l'extraction et non le cache
+        warmup.add("key-extraction", () -> {
+            Message privateKey = privateKeyMessage("warmup-" + identityCounter.incrementAndGet() + "@warmup.invalid");
+            WireCodec.BINARY.decode(MessageType.PRIVATE_KEY, WireCodec.BINARY.encode(privateKey));
+            WireCodec.JSON.decode(MessageType.PRIVATE_KEY, WireCodec.JSON.encode(privateKey));
+        });
+
+        // Requête HTTP réelle en boucle locale: pile HTTP, handler et sérialisation des paramètres
+        warmup.add("public-parameters", () -> {
+            HttpURLConnection connection = (HttpURLConnection) new URL("http://127.0.0.1:" + port + "/public-parameters").openConnection();
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(connection.getInputStream(), StandardCharsets.UTF_8))) {
+                new JSONObject(reader.lines().collect(Collectors.joining()));
+            } finally {
+                connection.disconnect();
+            }
+        });
+
+        warmup.run();
+        trustAuthority.getKeyDistributor().clearCache();
+        ready = true;
+        Logger.info("Serveur prêt à recevoir du trafic");
+    }
+
+    /**
+     * @return true une fois le préchauffage terminé
+     */
+    public boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * @return Nombre de sessions sécurisées encore enregistrées (ni expirées ni fermées)
+     */
+    public int getSecureSessionCount() {
+        return secureChannels.size();
+    }
+
     /**
      * Vérifie si un utilisateur est authentifié avant de distribuer une clé privée
      *
@@ -155,53 +536,17 @@ public class TrustAuthorityServer {
             return false;
         }
 
-        return totpManager.verifyCode(totpCode, account.getTotpSecret());
+        return verifyTotpCode(account, totpCode);
     }
 
     /**
-     * Envoie un email contenant un code OTP
-     *
-     * @param email Adresse email destinataire
-     * @param otp   Code OTP
-     * @return true si l'envoi a réussi
+     * Vérifie un code TOTP en consommant sa période dans le compte, persisté et répliqué: le code est refusé
+     * ensuite sur tous les nœuds. La première vérification réussie confirme la configuration TOTP.
      */
-    private boolean sendOtpEmail(String email, String otp) {
-        try {
-            if (emailSession != null && senderEmail != null) {
-                // Créer le message directement sans utiliser MailSender
-                Message message = new MimeMessage(emailSession);
-                message.setFrom(new InternetAddress(senderEmail));
-                message.setRecipients(Message.RecipientType.TO, InternetAddress.parse(email));
-                message.setSubject("Votre code de vérification Messenger Secure");
-
-                // Corps du message
-                String body =
-                        "<html><body style='font-family: Arial, sans-serif;'>" +
-                                "<div style='max-width: 600px; margin: 0 auto; padding: 20px; border: 1px solid #e0e0e0;'>" +
-                                "<h2 style='color: #4285f4;'>Messenger Secure</h2>" +
-                                "<p>Voici votre code de vérification pour créer votre compte Messenger Secure :</p>" +
-                                "<div style='background-color: #f5f5f5; padding: 15px; text-align: center; margin: 20px 0;'>" +
-                                "<h1 style='color: #4285f4; letter-spacing: 5px;'>" + otp + "</h1>" +
-                                "</div>" +
-                                "<p>Ce code est valable pendant 5 minutes.</p>" +
-                                "<p>Si vous n'avez pas demandé ce code, veuillez ignorer cet email.</p>" +
-                                "<p>Cordialement,<br>L'équipe Messenger Secure</p>" +
-                                "</div></body></html>";
-
-                message.setContent(body, "text/html; charset=utf-8");
-
-                // Envoyer le message
-                Transport.send(message);
-                Logger.info("Email OTP envoyé avec succès à " + email);
-                return true;
-            } else {
-                Logger.error("Impossible d'envoyer l'email OTP: session email non initialisée");
-                return false;
-            }
-        } catch (Exception e) {
-            Logger.error("Erreur lors de l'envoi de l'email OTP à " + email + ": " + e.getMessage());
-            return false;
-        }
+    private boolean verifyTotpCode(UserAccount account, String totpCode) {
+        String email = account.getEmail();
+        return totpManager.verifyCode(email, totpCode, account.getTotpSecret(),
+                step -> userManager.consumeTotpStep(email, step));
     }
 
     /**
@@ -224,404 +569,540 @@ public class TrustAuthorityServer {
     }
 
     /**
-     * Handler sécurisé pour la distribution des clés privées (avec authentification 2FA)
+     * Réponse d'une opération applicative, indépendante du transport HTTP et du format
+     */
+    private static final class ApiResponse {
+        private final int statusCode;
+        private final Message body;
+
+        private ApiResponse(int statusCode, Message body) {
+            this.statusCode = statusCode;
+            this.body = body;
+        }
+
+        private ApiResponse(int statusCode, String text) {
+            this(statusCode, Message.text(text));
+        }
+    }
+
+    /**
+     * Opération applicative exécutée sur une requête (déjà déchiffrée et décodée)
+     */
+    @FunctionalInterface
+    private interface ApiOperation {
+        ApiResponse execute(Message request) throws Exception;
+    }
+
+    /**
+     * Opération enregistrée avec le type de message attendu en requête (nécessaire au décodage)
      */
-    private class SecurePrivateKeyHandler implements HttpHandler {
+    private static final class Operation {
+        private final MessageType requestType;
+        private final ApiOperation handler;
+
+        private Operation(MessageType requestType, ApiOperation handler) {
+            this.requestType = requestType;
+            this.handler = handler;
+        }
+
+        private ApiResponse execute(byte[] requestBody, WireCodec codec) throws Exception {
+            return handler.execute(codec.decode(requestType, requestBody));
+        }
+    }
+
+    /**
+     * Enregistre les opérations applicatives exposées sur le canal sécurisé
+     */
+    private void registerOperations() {
+        registerOperation("/get-private-key", MessageType.TOTP_REQUEST, this::privateKeyOperation);
+        registerOperation("/auth/register", MessageType.EMAIL_REQUEST, this::registrationOperation);
+        registerOperation("/auth/verify-otp", MessageType.OTP_REQUEST, this::verifyOtpOperation);
+        registerOperation("/auth/verify-totp", MessageType.TOTP_REQUEST, this::verifyTotpOperation);
+        registerOperation("/auth/check-account", MessageType.EMAIL_REQUEST, this::checkAccountOperation);
+        registerOperation("/auth/verify-totp-and-get-key", MessageType.TOTP_REQUEST, this::verifyTotpAndGetKeyOperation);
+    }
+
+    /**
+     * Enregistre une opération précédée de la limite par identité de son endpoint: elle s'applique
+     * quel que soit le transport (HTTP, requête anticipée du handshake ou canal multiplexé)
+     */
+    private void registerOperation(String endpoint, MessageType requestType, ApiOperation handler) {
+        operations.put(endpoint, new Operation(requestType, request -> {
+            long waitNanos = rateLimiter.check(endpoint, RateLimiter.Scope.IDENTITY, request.optString("email", null));
+            if (waitNanos > 0) {
+                return new ApiResponse(429, "Too many requests for this identity, retry in "
+                        + RateLimiter.retryAfterSeconds(waitNanos) + " s");
+            }
+            return handler.execute(request);
+        }));
+    }
+
+    /**
+     * Handler générique: décode la requête au format indiqué par son Content-Type (JSON ou binaire),
+     * la déchiffre si un canal sécurisé existe, exécute l'opération et renvoie la réponse
+     * dans le même format, de préférence chiffrée
+     */
+    private class SecureOperationHandler implements HttpHandler {
+        private final String endpoint;
+        private final Operation operation;
+
+        SecureOperationHandler(String endpoint, Operation operation) {
+            this.endpoint = endpoint;
+            this.operation = operation;
+        }
+
         @Override
         public void handle(HttpExchange exchange) throws IOException {
             if (!"POST".equals(exchange.getRequestMethod())) {
                 sendResponse(exchange, 405, "Method Not Allowed");
                 return;
             }
-            
+
             // Récupérer l'identifiant de session
             String sessionId = getSessionId(exchange, false);
             SecureChannelManager secureChannel = sessionId != null ? secureChannels.get(sessionId) : null;
+            if (sessionId != null && secureChannel == null) {
+                sendResponse(exchange, SESSION_GONE, "Secure session expired or unknown");
+                return;
+            }
+            WireCodec codec = WireCodec.forContentType(exchange.getRequestHeaders().getFirst("Content-Type"));
 
             try {
                 // Lire les données de la requête
-                String requestBody = new BufferedReader(
-                        new InputStreamReader(exchange.getRequestBody(), StandardCharsets.UTF_8))
-                        .lines().collect(Collectors.joining("\n"));
-                
+                byte[] requestBody = exchange.getRequestBody().readAllBytes();
+
                 // Si le canal est sécurisé, déchiffrer la requête
                 if (secureChannel != null) {
                     try {
-                        requestBody = secureChannel.processSecureResponse(requestBody);
+                        byte[] ciphertext = codec.unwrapSecure(requestBody);
+                        if (ciphertext != null) {
+                            requestBody = secureChannel.decrypt(ciphertext);
+                        }
                     } catch (Exception e) {
                         Logger.error("Erreur lors du déchiffrement de la requête: " + e.getMessage());
                         // Continuer avec la requête non déchiffrée
                     }
                 }
 
-                // Traitement normal de la requête JSON
-                JSONObject jsonRequest = new JSONObject(requestBody);
-                String email = jsonRequest.getString("email");
-                String totpCode = jsonRequest.getString("totpCode");
-                
-                // Vérifier l'authentification
-                if (!isUserAuthenticated(email, totpCode)) {
-                    sendResponse(exchange, 401, "Unauthorized: Invalid authentication");
-                    return;
-                }
-
-                // Distribution de la clé privée
-                KeyPair privateKey = trustAuthority.getKeyDistributor().distributePrivateKey(email);
-
-                // Sérialisation de la clé privée pour la transmission
-                String response = String.format("{\"identity\":\"%s\",\"privateKey\":\"%s\"}",
-                        privateKey.getPk(),
-                        Base64.getEncoder().encodeToString(privateKey.getSk().toBytes())
-                );
+                ApiResponse response = operation.execute(requestBody, codec);
 
                 // Envoyer la réponse, de préférence chiffrée
-                if (secureChannel != null && sessionId != null) {
-                    sendSecureResponseWithSessionId(exchange, 200, response, sessionId, secureChannel);
-                } else {
-                    sendResponse(exchange, 200, response);
-                }
-
+                sendMessage(exchange, response.statusCode, codec, response.body, sessionId, secureChannel);
             } catch (Exception e) {
-                Logger.error("Erreur lors de la distribution de clé privée: " + e.getMessage());
+                Logger.error("Erreur lors du traitement de " + endpoint + ": " + e.getMessage());
                 sendResponse(exchange, 500, "Internal Server Error: " + e.getMessage());
             }
         }
     }
 
     /**
-     * Handler pour l'enregistrement d'un compte (demande initiale)
+     * Distribution des clés privées (avec authentification 2FA)
      */
-    private class RegistrationRequestHandler implements HttpHandler {
-        @Override
-        public void handle(HttpExchange exchange) throws IOException {
-            if (!"POST".equals(exchange.getRequestMethod())) {
-                sendResponse(exchange, 405, "Method Not Allowed");
-                return;
-            }
-            
-            // Récupérer l'identifiant de session
-            String sessionId = getSessionId(exchange, false);
-            SecureChannelManager secureChannel = sessionId != null ? secureChannels.get(sessionId) : null;
+    private ApiResponse privateKeyOperation(Message request) {
+        String email = request.getString("email");
+        String totpCode = request.getString("totpCode");
 
-            try {
-                // Lire les données de la requête
-                String requestBody = new BufferedReader(
-                        new InputStreamReader(exchange.getRequestBody(), StandardCharsets.UTF_8))
-                        .lines().collect(Collectors.joining("\n"));
-                
-                // Si le canal est sécurisé, déchiffrer la requête
-                if (secureChannel != null) {
-                    try {
-                        requestBody = secureChannel.processSecureResponse(requestBody);
-                    } catch (Exception e) {
-                        Logger.error("Erreur lors du déchiffrement de la requête: " + e.getMessage());
-                        // Continuer avec la requête non déchiffrée
-                    }
-                }
-                
-                // Traiter la requête JSON
-                JSONObject jsonRequest = new JSONObject(requestBody);
-                String email = jsonRequest.getString("email");
-
-                // Vérifier le format de l'email
-                if (!Config.isValidEmail(email)) {
-                    String responseMsg = "Invalid email format";
-                    if (secureChannel != null && sessionId != null) {
-                        sendSecureResponseWithSessionId(exchange, 400, responseMsg, sessionId, secureChannel);
-                    } else {
-                        sendResponse(exchange, 400, responseMsg);
-                    }
-                    return;
-                }
+        // Vérifier l'authentification
+        if (!isUserAuthenticated(email, totpCode)) {
+            return new ApiResponse(401, "Unauthorized: Invalid authentication");
+        }
 
-                // Vérifier si l'utilisateur existe déjà et est vérifié
-                if (userManager.isUserVerified(email)) {
-                    String responseMsg = "User already registered and verified";
-                    if (secureChannel != null && sessionId != null) {
-                        sendSecureResponseWithSessionId(exchange, 400, responseMsg, sessionId, secureChannel);
-                    } else {
-                        sendResponse(exchange, 400, responseMsg);
-                    }
-                    return;
-                }
+        return new ApiResponse(200, privateKeyMessage(email));
+    }
+
+    /**
+     * Prépare la clé privée d'une identité pour la transmission
+     */
+    private Message privateKeyMessage(String email) {
+        KeyPair privateKey = trustAuthority.getKeyDistributor().distributePrivateKey(email);
+
+        return Message.of(MessageType.PRIVATE_KEY)
+                .put("identity", privateKey.getPk())
+                .put("privateKey", privateKey.getSk().toBytes());
+    }
 
-                // Créer ou récupérer le compte utilisateur
-                UserAccount account = userManager.createOrGetUser(email);
+    /**
+     * Enregistrement d'un compte (demande initiale)
+     */
+    private ApiResponse registrationOperation(Message request) {
+        String email = request.getString("email");
 
-                // Générer un OTP
-                String otp = otpManager.generateOtp();
-                account.storePendingOtp(otp, otpManager.getDefaultExpirationSeconds());
+        // Vérifier le format de l'email
+        if (!Config.isValidEmail(email)) {
+            return new ApiResponse(400, "Invalid email format");
+        }
 
-                // Envoyer l'OTP par email
-                boolean emailSent = sendOtpEmail(email, otp);
+        // Vérifier si l'utilisateur existe déjà et est vérifié
+        if (userManager.isUserVerified(email)) {
+            return new ApiResponse(400, "User already registered and verified");
+        }
 
-                if (emailSent) {
-                    String responseMsg = "OTP sent successfully";
-                    if (secureChannel != null && sessionId != null) {
-                        sendSecureResponseWithSessionId(exchange, 200, responseMsg, sessionId, secureChannel);
-                    } else {
-                        sendResponse(exchange, 200, responseMsg);
-                    }
-                } else {
-                    String responseMsg = "Failed to send OTP email";
-                    if (secureChannel != null && sessionId != null) {
-                        sendSecureResponseWithSessionId(exchange, 500, responseMsg, sessionId, secureChannel);
-                    } else {
-                        sendResponse(exchange, 500, responseMsg);
-                    }
-                }
-            } catch (Exception e) {
-                Logger.error("Erreur lors de la demande d'enregistrement: " + e.getMessage());
-                sendResponse(exchange, 500, "Internal Server Error: " + e.getMessage());
-            }
+        // Créer ou récupérer le compte utilisateur
+        UserAccount account = userManager.createOrGetUser(email);
+
+        // Générer un OTP
+        String otp = otpManager.generateOtp();
+        userManager.storePendingOtp(account, otp, otpManager.getDefaultExpirationSeconds());
+
+        // Déposer l'OTP dans la file d'envoi: la connexion SMTP ne bloque pas la requête
+        if (otpDispatcher == null) {
+            Logger.error("Impossible d'envoyer l'email OTP: session email non initialisée");
+        } else if (otpDispatcher.enqueue(email, otp)) {
+            return new ApiResponse(200, "OTP sent successfully");
         }
+        return new ApiResponse(500, "Failed to send OTP email");
     }
 
     /**
-     * Handler pour vérifier l'existence d'un compte
+     * Vérification de l'existence d'un compte
      */
-    private class CheckAccountHandler implements HttpHandler {
-        @Override
-        public void handle(HttpExchange exchange) throws IOException {
-            if (!"POST".equals(exchange.getRequestMethod())) {
-                sendResponse(exchange, 405, "Method Not Allowed");
-                return;
-            }
+    private ApiResponse checkAccountOperation(Message request) {
+        String email = request.getString("email");
 
-            // Récupérer l'identifiant de session
-            String sessionId = getSessionId(exchange, false);
-            SecureChannelManager secureChannel = sessionId != null ? secureChannels.get(sessionId) : null;
+        // Préparer la réponse
+        Message response = Message.of(MessageType.ACCOUNT_STATUS)
+                .put("exists", userManager.isUserRegistered(email))
+                .put("verified", userManager.isUserVerified(email));
 
-            try {
-                // Lire les données de la requête
-                String requestBody = new BufferedReader(
-                        new InputStreamReader(exchange.getRequestBody(), StandardCharsets.UTF_8))
-                        .lines().collect(Collectors.joining("\n"));
-                
-                // Si le canal est sécurisé, déchiffrer la requête
-                if (secureChannel != null) {
-                    try {
-                        requestBody = secureChannel.processSecureResponse(requestBody);
-                    } catch (Exception e) {
-                        Logger.error("Erreur lors du déchiffrement de la requête: " + e.getMessage());
-                    }
-                }
-                
-                // Traiter la requête JSON
-                JSONObject jsonRequest = new JSONObject(requestBody);
-                String email = jsonRequest.getString("email");
+        return new ApiResponse(200, response);
+    }
 
-                // Vérifier si l'utilisateur existe et est vérifié
-                boolean exists = userManager.isUserRegistered(email);
-                boolean verified = userManager.isUserVerified(email);
+    /**
+     * Vérification de l'OTP et configuration du TOTP
+     */
+    private ApiResponse verifyOtpOperation(Message request) {
+        String email = request.getString("email");
+        String otp = request.getString("otp");
 
-                // Préparer la réponse JSON
-                JSONObject jsonResponse = new JSONObject();
-                jsonResponse.put("exists", exists);
-                jsonResponse.put("verified", verified);
+        // Récupérer le compte utilisateur
+        UserAccount account = userManager.getUser(email);
+        if (account == null) {
+            return new ApiResponse(404, "User not found");
+        }
 
-                // Envoyer la réponse, de préférence chiffrée
-                if (secureChannel != null && sessionId != null) {
-                    sendSecureResponseWithSessionId(exchange, 200, jsonResponse.toString(), sessionId, secureChannel);
-                } else {
-                    sendResponse(exchange, 200, jsonResponse.toString());
-                }
-            } catch (Exception e) {
-                Logger.error("Erreur lors de la vérification du compte: " + e.getMessage());
-                sendResponse(exchange, 500, "Internal Server Error: " + e.getMessage());
+        // Générer un secret TOTP pour Google Authenticator
+        String totpSecret = totpManager.generateSecret();
+
+        // Consommer l'OTP, vérifier le compte et enregistrer le secret en une seule transition atomique
+        if (!userManager.verifyOtpAndSetTotpSecret(email, otp, totpSecret)) {
+            return new ApiResponse(401, "Invalid or expired OTP");
+        }
+
+        // Préparer la réponse: l'URI otpauth suffit au client pour dessiner le QR code lui-même
+        Message response = Message.of(MessageType.TOTP_SETUP)
+                .put("status", "success")
+                .put("message", "OTP verified successfully")
+                .put("totpSecret", totpSecret)
+                .put("otpauthUri", TOTPManager.otpauthUri(email, totpSecret));
+
+        // Anciens clients: image rendue hors du chemin de la requête, omise si le rendu n'aboutit pas à temps
+        // (le secret reste transmis et peut être saisi à la main)
+        if (request.optBoolean("qrImage", true)) {
+            String qrCodeUri = qrCodeRenderer.render(email, totpSecret);
+            if (qrCodeUri != null) {
+                response.put("qrCodeUri", qrCodeUri);
             }
         }
+
+        return new ApiResponse(200, response);
     }
 
     /**
-     * Handler pour la vérification de l'OTP et la configuration du TOTP
+     * Vérification du code TOTP
      */
-    private class VerifyOtpHandler implements HttpHandler {
-        @Override
-        public void handle(HttpExchange exchange) throws IOException {
-            if (!"POST".equals(exchange.getRequestMethod())) {
-                sendResponse(exchange, 405, "Method Not Allowed");
-                return;
-            }
-            
-            // Récupérer l'identifiant de session
-            String sessionId = getSessionId(exchange, false);
-            SecureChannelManager secureChannel = sessionId != null ? secureChannels.get(sessionId) : null;
+    private ApiResponse verifyTotpOperation(Message request) {
+        Logger.debug("Requête TOTP reçue: " + request.optString("email", null));
 
-            try {
-                // Lire les données de la requête
-                String requestBody = new BufferedReader(
-                        new InputStreamReader(exchange.getRequestBody(), StandardCharsets.UTF_8))
-                        .lines().collect(Collectors.joining("\n"));
-                
-                // Si le canal est sécurisé, déchiffrer la requête
-                if (secureChannel != null) {
-                    try {
-                        requestBody = secureChannel.processSecureResponse(requestBody);
-                    } catch (Exception e) {
-                        Logger.error("Erreur lors du déchiffrement de la requête: " + e.getMessage());
-                    }
-                }
+        ApiResponse invalid = validateTotpRequest(request);
+        if (invalid != null) {
+            return invalid;
+        }
 
-                // Analyser les données JSON
-                JSONObject jsonRequest = new JSONObject(requestBody);
-                String email = jsonRequest.getString("email");
-                String otp = jsonRequest.getString("otp");
-
-                // Récupérer le compte utilisateur
-                UserAccount account = userManager.getUser(email);
-                if (account == null) {
-                    String responseMsg = "User not found";
-                    if (secureChannel != null && sessionId != null) {
-                        sendSecureResponseWithSessionId(exchange, 404, responseMsg, sessionId, secureChannel);
-                    } else {
-                        sendResponse(exchange, 404, responseMsg);
-                    }
-                    return;
-                }
+        UserAccount account = userManager.getUser(request.getString("email"));
+        if (!request.optBoolean("setup", false)) {
+            return new ApiResponse(200, authenticationMessage(verifyTotpCode(account, getTotpCode(request)), null));
+        }
 
-                // Vérifier l'OTP
-                if (!account.validateOtp(otp)) {
-                    String responseMsg = "Invalid or expired OTP";
-                    if (secureChannel != null && sessionId != null) {
-                        sendSecureResponseWithSessionId(exchange, 401, responseMsg, sessionId, secureChannel);
-                    } else {
-                        sendResponse(exchange, 401, responseMsg);
-                    }
-                    return;
-                }
+        // Confirmation de la configuration: le code reste utilisable pour la première connexion, ce qui
+        // n'est admis que tant qu'aucun code n'a été consommé depuis l'activation du compte
+        if (!account.isTotpSetupPending()) {
+            return new ApiResponse(403, authenticationMessage(false, "TOTP setup already confirmed"));
+        }
+        boolean isValid = totpManager.confirmSetup(account.getEmail(), getTotpCode(request), account.getTotpSecret());
 
-                // Générer un secret TOTP pour Google Authenticator
-                String totpSecret = totpManager.generateSecret();
+        return new ApiResponse(200, authenticationMessage(isValid, null));
+    }
 
-                // Générer un QR code pour configurer Google Authenticator
-                String qrCodeUri = totpManager.generateQrCodeUri(email, totpSecret);
+    /**
+     * Vérification du code TOTP et distribution de la clé privée en une seule opération,
+     * pour que la connexion ne coûte qu'un aller-retour
+     */
+    private ApiResponse verifyTotpAndGetKeyOperation(Message request) {
+        ApiResponse invalid = validateTotpRequest(request);
+        if (invalid != null) {
+            return invalid;
+        }
 
-                // Enregistrer le secret TOTP dans le compte utilisateur
-                userManager.verifyUserAndSetTotpSecret(email, totpSecret);
+        String email = request.getString("email");
+        UserAccount account = userManager.getUser(email);
+        if (!verifyTotpCode(account, getTotpCode(request))) {
+            return new ApiResponse(200, Message.of(MessageType.PRIVATE_KEY).put("authenticated", false));
+        }
 
-                // Préparer la réponse JSON
-                JSONObject jsonResponse = new JSONObject();
-                jsonResponse.put("status", "success");
-                jsonResponse.put("message", "OTP verified successfully");
-                jsonResponse.put("totpSecret", totpSecret);
-                jsonResponse.put("qrCodeUri", qrCodeUri);
+        return new ApiResponse(200, privateKeyMessage(email).put("authenticated", true));
+    }
 
-                // Envoyer la réponse, de préférence chiffrée
-                if (secureChannel != null && sessionId != null) {
-                    sendSecureResponseWithSessionId(exchange, 200, jsonResponse.toString(), sessionId, secureChannel);
-                } else {
-                    sendResponse(exchange, 200, jsonResponse.toString());
-                }
-            } catch (QrGenerationException e) {
-                Logger.error("Erreur lors de la génération du QR code: " + e.getMessage());
-                sendResponse(exchange, 500, "Failed to generate QR code");
-            } catch (Exception e) {
-                Logger.error("Erreur lors de la vérification OTP: " + e.getMessage());
-                sendResponse(exchange, 500, "Internal Server Error: " + e.getMessage());
-            }
+    /**
+     * Vérifie qu'une requête TOTP contient l'email, le code et vise un compte vérifié
+     *
+     * @return La réponse d'erreur à renvoyer, ou null si la requête est valide
+     */
+    private ApiResponse validateTotpRequest(Message request) {
+        // Vérifier que les champs requis existent
+        if (!request.has("email")) {
+            return new ApiResponse(400, authenticationMessage(false, "Missing email parameter"));
         }
+        if (getTotpCode(request) == null) {
+            return new ApiResponse(400, authenticationMessage(false, "Missing TOTP code"));
+        }
+
+        // Récupérer le compte utilisateur
+        UserAccount account = userManager.getUser(request.getString("email"));
+        if (account == null || !account.isVerified()) {
+            return new ApiResponse(401, authenticationMessage(false, "Invalid account"));
+        }
+        return null;
+    }
+
+    private static Message authenticationMessage(boolean authenticated, String error) {
+        return Message.of(MessageType.AUTHENTICATION).put("authenticated", authenticated).put("error", error);
+    }
+
+    /**
+     * Accepte à la fois "totp" et "totpCode" pour plus de flexibilité
+     */
+    private static String getTotpCode(Message request) {
+        return request.optString("totp", request.optString("totpCode", null));
+    }
+
+    /**
+     * Traitement d'une identité dans une requête par lots
+     */
+    @FunctionalInterface
+    private interface BatchItemOperation {
+        JSONObject process(String identity) throws Exception;
     }
 
     /**
-     * Handler pour la vérification du code TOTP
+     * Handler pour les requêtes par lots des services (passerelles, provisionnement).
+     * L'autorisation repose sur un unique jeton de service par lot ; les identités sont traitées
+     * en parallèle sur le pool cryptographique et chaque résultat est renvoyé dès qu'il est prêt
+     * (une ligne JSON par identité, chiffrée si un canal sécurisé existe), de statut "ok", "forbidden"
+     * (identité réservée à l'autorité) ou "error".
      */
-    private class VerifyTotpHandler implements HttpHandler {
+    private class BatchHandler implements HttpHandler {
+        private final BatchItemOperation itemOperation;
+        private final boolean requiresSecureChannel;
+
+        BatchHandler(BatchItemOperation itemOperation, boolean requiresSecureChannel) {
+            this.itemOperation = itemOperation;
+            this.requiresSecureChannel = requiresSecureChannel;
+        }
+
         @Override
         public void handle(HttpExchange exchange) throws IOException {
             if (!"POST".equals(exchange.getRequestMethod())) {
                 sendResponse(exchange, 405, "Method Not Allowed");
                 return;
             }
-            
-            // Récupérer l'identifiant de session
+
+            // Une seule vérification du jeton de service pour tout le lot
+            if (Config.TA_SERVICE_TOKEN == null) {
+                sendResponse(exchange, 403, "Batch endpoints disabled");
+                return;
+            }
+            if (!isServiceTokenValid(exchange.getRequestHeaders().getFirst(SERVICE_TOKEN_HEADER))) {
+                sendResponse(exchange, 401, "Unauthorized: Invalid service token");
+                return;
+            }
+
             String sessionId = getSessionId(exchange, false);
             SecureChannelManager secureChannel = sessionId != null ? secureChannels.get(sessionId) : null;
+            if (sessionId != null && secureChannel == null) {
+                sendResponse(exchange, SESSION_GONE, "Secure session expired or unknown");
+                return;
+            }
+            if (requiresSecureChannel && secureChannel == null) {
+                sendResponse(exchange, 403, "Secure channel required");
+                return;
+            }
 
+            List<String> identities = new ArrayList<>();
             try {
-                // Lire les données de la requête
                 String requestBody = new BufferedReader(
                         new InputStreamReader(exchange.getRequestBody(), StandardCharsets.UTF_8))
                         .lines().collect(Collectors.joining("\n"));
-                    
-                Logger.debug("Corps de la requête TOTP reçu: " + requestBody);
-                
-                // Si le canal est sécurisé, déchiffrer la requête
                 if (secureChannel != null) {
-                    try {
-                        requestBody = secureChannel.processSecureResponse(requestBody);
-                        Logger.debug("Requête TOTP déchiffrée: " + requestBody);
-                    } catch (Exception e) {
-                        Logger.error("Erreur lors du déchiffrement de la requête TOTP: " + e.getMessage());
-                    }
+                    requestBody = secureChannel.processSecureResponse(requestBody);
                 }
 
-                // Analyser les données JSON
-                JSONObject jsonRequest = new JSONObject(requestBody);
-                
-                // Vérifier que les clés requises existent
-                if (!jsonRequest.has("email")) {
-                    String responseMsg = "{\"authenticated\":false, \"error\":\"Missing email parameter\"}";
-                    if (secureChannel != null && sessionId != null) {
-                        sendSecureResponseWithSessionId(exchange, 400, responseMsg, sessionId, secureChannel);
-                    } else {
-                        sendResponse(exchange, 400, responseMsg);
-                    }
-                    return;
-                }
-                
-                // Obtenir les paramètres avec des valeurs par défaut pour éviter les exceptions
-                String email = jsonRequest.getString("email");
-                // Accepter à la fois "totp" et "totpCode" pour plus de flexibilité
-                String totpCode;
-                if (jsonRequest.has("totp")) {
-                    totpCode = jsonRequest.getString("totp");
-                } else if (jsonRequest.has("totpCode")) {
-                    totpCode = jsonRequest.getString("totpCode");
-                } else {
-                    String responseMsg = "{\"authenticated\":false, \"error\":\"Missing TOTP code\"}";
-                    if (secureChannel != null && sessionId != null) {
-                        sendSecureResponseWithSessionId(exchange, 400, responseMsg, sessionId, secureChannel);
-                    } else {
-                        sendResponse(exchange, 400, responseMsg);
-                    }
-                    return;
+                JSONArray jsonIdentities = new JSONObject(requestBody).getJSONArray("identities");
+                for (int i = 0; i < jsonIdentities.length(); i++) {
+                    identities.add(jsonIdentities.getString(i));
                 }
+            } catch (Exception e) {
+                sendResponse(exchange, 400, "Invalid batch request: " + e.getMessage());
+                return;
+            }
+
+            if (identities.size() > Config.TA_BATCH_MAX_IDENTITIES) {
+                sendResponse(exchange, 413, "Too many identities (max " + Config.TA_BATCH_MAX_IDENTITIES + ")");
+                return;
+            }
+
+            // Soumettre toutes les identités au pool cryptographique
+            CompletionService<JSONObject> completionService = new ExecutorCompletionService<>(cryptoExecutor);
+            List<Future<JSONObject>> futures = new ArrayList<>(identities.size());
+            for (String identity : identities) {
+                futures.add(completionService.submit(() -> processBatchItem(identity)));
+            }
+
+            exchange.getResponseHeaders().set("Content-Type", "application/x-ndjson; charset=UTF-8");
+            if (sessionId != null) {
+                exchange.getResponseHeaders().set(SESSION_ID_HEADER, sessionId);
+            }
+            exchange.sendResponseHeaders(200, 0); // Réponse en flux (chunked)
 
-                // Récupérer le compte utilisateur
-                UserAccount account = userManager.getUser(email);
-                if (account == null || !account.isVerified()) {
-                    String responseMsg = "{\"authenticated\":false, \"error\":\"Invalid account\"}";
-                    if (secureChannel != null && sessionId != null) {
-                        sendSecureResponseWithSessionId(exchange, 401, responseMsg, sessionId, secureChannel);
-                    } else {
-                        sendResponse(exchange, 401, responseMsg);
+            int errors = 0;
+            try (OutputStream os = exchange.getResponseBody()) {
+                // Écrire chaque résultat dès qu'il est disponible, dans l'ordre d'achèvement
+                for (int i = 0; i < identities.size(); i++) {
+                    JSONObject result = completionService.take().get();
+                    if (!"ok".equals(result.getString("status"))) {
+                        errors++;
                     }
-                    return;
+                    writeBatchLine(os, result, secureChannel);
                 }
 
-                // Vérifier le code TOTP
-                boolean isValid = totpManager.verifyCode(totpCode, account.getTotpSecret());
+                JSONObject summary = new JSONObject();
+                summary.put("done", true);
+                summary.put("count", identities.size());
+                summary.put("errors", errors);
+                writeBatchLine(os, summary, secureChannel);
 
-                // Préparer la réponse JSON
-                JSONObject jsonResponse = new JSONObject();
-                jsonResponse.put("authenticated", isValid);
-                
-                // Envoyer la réponse, de préférence chiffrée
-                if (secureChannel != null && sessionId != null) {
-                    sendSecureResponseWithSessionId(exchange, 200, jsonResponse.toString(), sessionId, secureChannel);
-                } else {
-                    sendResponse(exchange, 200, jsonResponse.toString());
-                }
+                Logger.info("Lot traité: " + identities.size() + " identités, " + errors + " erreurs");
             } catch (Exception e) {
-                Logger.error("Erreur lors de la vérification TOTP: " + e.getMessage());
-                sendResponse(exchange, 500, "{\"authenticated\":false, \"error\":\"" + e.getMessage() + "\"}");
+                // Client déconnecté ou interruption: abandonner le reste du lot
+                Logger.error("Lot interrompu: " + e.getMessage());
+                futures.forEach(future -> future.cancel(true));
+            }
+        }
+
+        /**
+         * Traite une identité et produit son résultat, y compris en cas d'erreur
+         */
+        private JSONObject processBatchItem(String identity) {
+            try {
+                JSONObject result = itemOperation.process(identity);
+                result.put("identity", identity);
+                result.put("status", "ok");
+                return result;
+            } catch (KeyDistributor.ReservedIdentityException e) {
+                JSONObject result = new JSONObject();
+                result.put("identity", identity);
+                result.put("status", "forbidden");
+                result.put("error", e.getMessage());
+                return result;
+            } catch (Exception e) {
+                JSONObject result = new JSONObject();
+                result.put("identity", identity);
+                result.put("status", "error");
+                result.put("error", String.valueOf(e.getMessage()));
+                return result;
+            }
+        }
+    }
+
+    /**
+     * Écrit une ligne de résultat d'un lot et la pousse immédiatement vers le client
+     */
+    private void writeBatchLine(OutputStream os, JSONObject line, SecureChannelManager secureChannel) throws Exception {
+        String content = secureChannel != null ? secureChannel.prepareSecureMessage(line.toString()) : line.toString();
+        os.write((content + "\n").getBytes(StandardCharsets.UTF_8));
+        os.flush();
+    }
+
+    /**
+     * Compare le jeton de service en temps constant
+     */
+    private boolean isServiceTokenValid(String token) {
+        if (token == null) {
+            return false;
+        }
+        return MessageDigest.isEqual(
+                token.getBytes(StandardCharsets.UTF_8),
+                Config.TA_SERVICE_TOKEN.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Extraction de clé pour une identité d'un lot
+     */
+    private JSONObject batchPrivateKey(String identity) {
+        // La clé de l'autorité déchiffrerait les établissements de canal de tous les clients
+        if (KeyDistributor.isReservedIdentity(identity)) {
+            throw new KeyDistributor.ReservedIdentityException(identity);
+        }
+        KeyPair privateKey = trustAuthority.getKeyDistributor().distributePrivateKey(identity);
+        JSONObject result = new JSONObject();
+        result.put("privateKey", Base64.getEncoder().encodeToString(privateKey.getSk().toBytes()));
+        return result;
+    }
+
+    /**
+     * Statut du compte pour une identité d'un lot
+     */
+    private JSONObject batchAccountStatus(String identity) {
+        JSONObject result = new JSONObject();
+        result.put("exists", userManager.isUserRegistered(identity));
+        result.put("verified", userManager.isUserVerified(identity));
+        return result;
+    }
+
+    /**
+     * Handler d'exposition des métriques au format texte Prometheus
+     */
+    private class MetricsHandler implements HttpHandler {
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            if (!"GET".equals(exchange.getRequestMethod())) {
+                sendResponse(exchange, 405, "Method Not Allowed");
+                return;
+            }
+            byte[] body = metrics.renderPrometheus().getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4; charset=utf-8");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream os = exchange.getResponseBody()) {
+                os.write(body);
+            }
+        }
+    }
+
+    /**
+     * Handler de disponibilité: 503 pendant le préchauffage, 200 ensuite
+     */
+    private class ReadinessHandler implements HttpHandler {
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            if (ready) {
+                sendResponse(exchange, 200, "{\"status\":\"ready\"}");
+            } else {
+                sendResponse(exchange, 503, "{\"status\":\"warming-up\"}");
             }
         }
     }
 
     /**
-     * Handler pour l'obtention des paramètres publics (inchangé)
+     * Handler pour l'obtention des paramètres publics: réponse précalculée, 304 si la copie du client est à jour
      */
     private class PublicParametersHandler implements HttpHandler {
         @Override
@@ -631,22 +1112,52 @@ public class TrustAuthorityServer {
                 return;
             }
 
-            try {
-                // Sérialisation complète des paramètres publics en JSON
-                String publicParams = String.format(
-                        "{\"publicKey\":\"%s\",\"generator\":\"%s\",\"pairingParams\":\"params/curves/a.properties\"}",
-                        Base64.getEncoder().encodeToString(trustAuthority.getParameters().getPublicKey().toBytes()),
-                        Base64.getEncoder().encodeToString(trustAuthority.getParameters().getGenerator().toBytes())
-                );
-                sendResponse(exchange, 200, publicParams);
+            // Format demandé par le header Accept
+            WireCodec codec = WireCodec.forAccept(exchange.getRequestHeaders().getFirst("Accept"));
+            exchange.getResponseHeaders().set("ETag", publicParameters.etag(codec));
+            exchange.getResponseHeaders().set("Cache-Control", PublicParametersResponse.CACHE_CONTROL);
+            exchange.getResponseHeaders().set("Vary", "Accept");
 
-            } catch (Exception e) {
-                Logger.error("Erreur lors de la récupération des paramètres publics: " + e.getMessage());
-                sendResponse(exchange, 500, "Internal Server Error: " + e.getMessage());
+            if (publicParameters.isNotModified(exchange.getRequestHeaders().getFirst("If-None-Match"), codec)) {
+                exchange.sendResponseHeaders(304, -1);
+                exchange.close();
+                return;
+            }
+
+            byte[] body = publicParameters.body(codec);
+            exchange.getResponseHeaders().set("Content-Type", codec.getContentType());
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream os = exchange.getResponseBody()) {
+                os.write(body);
             }
         }
     }
 
+    /**
+     * Sérialisation complète des paramètres publics et des capacités du serveur
+     */
+    private Message buildPublicParameters() {
+        Message publicParams = Message.of(MessageType.PUBLIC_PARAMETERS)
+                .put("publicKey", trustAuthority.getParameters().getPublicKey().toBytes())
+                .put("generator", trustAuthority.getParameters().getGenerator().toBytes())
+                .put("pairingParams", "params/curves/a.properties");
+
+        // Capacités d'établissement du canal sécurisé, par ordre de préférence
+        List<String> handshakeMethods = new ArrayList<>();
+        if (channelKeyPair != null) {
+            handshakeMethods.add(SecureChannelManager.HANDSHAKE_X25519);
+            publicParams.put("channelPublicKey", channelKeyPair.getPublic().getEncoded());
+            publicParams.put("channelKeyBinding", channelKeyBinding.toBytes());
+        }
+        handshakeMethods.add(SecureChannelManager.HANDSHAKE_IBE);
+        publicParams.put("handshakeMethods", handshakeMethods);
+        publicParams.put("wireFormats", List.of(WireCodec.BINARY.getName(), WireCodec.JSON.getName()));
+        if (channelServer != null) {
+            publicParams.put("channelPort", channelServer.getPort());
+        }
+        return publicParams;
+    }
+
     /**
      * Handler pour l'établissement d'un canal sécurisé
      */
@@ -662,32 +1173,47 @@ public class TrustAuthorityServer {
                 // Générer un nouvel identifiant de session
                 String sessionId = getSessionId(exchange, true);
                 
-                // Lire les données de la requête
-                String requestBody = new BufferedReader(
-                        new InputStreamReader(exchange.getRequestBody(), StandardCharsets.UTF_8))
-                        .lines().collect(Collectors.joining("\n"));
-                
-                // Créer un objet JSON à partir des données
-                JSONObject keyExchangeData = new JSONObject(requestBody);
+                // Lire et décoder le message d'échange de clé (JSON ou binaire selon le Content-Type)
+                WireCodec codec = WireCodec.forContentType(exchange.getRequestHeaders().getFirst("Content-Type"));
+                Message keyExchange = codec.decode(MessageType.KEY_EXCHANGE, exchange.getRequestBody().readAllBytes());
                 
                 // Créer un gestionnaire de canal sécurisé
                 SecureChannelManager secureChannel = new SecureChannelManager();
                 
-                // Obtenir la clé privée du serveur
-                Element serverPrivateKey = trustAuthority.getKeyDistributor()
-                        .distributePrivateKey(SERVER_IDENTITY).getSk();
-                
-                // Déchiffrer la clé de session avec la clé privée du serveur
-                IdentityBasedEncryption ibeEngine = new IdentityBasedEncryption(trustAuthority.getParameters());
-                secureChannel.decryptSessionKey(keyExchangeData, serverPrivateKey, ibeEngine);
+                // Méthode négociée par le client (IBE par défaut pour les anciens clients)
+                String method = keyExchange.optString("method", SecureChannelManager.HANDSHAKE_IBE);
+                if (SecureChannelManager.HANDSHAKE_X25519.equals(method)) {
+                    if (channelKeyPair == null) {
+                        sendResponse(exchange, 400, "Failed to establish secure channel: x25519 not supported");
+                        return;
+                    }
+                    secureChannel.deriveX25519SessionKey(keyExchange.getBytes("ephemeralPublicKey"), channelKeyPair);
+                } else {
+                    // Déchiffrer la clé de session avec le contexte du serveur dérivé au démarrage
+                    ServerDecryptionContext serverContext = trustAuthority.getServerDecryptionContext();
+                    secureChannel.decryptSessionKey(keyExchange.getBytes("u"), keyExchange.getBytes("v"),
+                            keyExchange.getBytes("encryptedKey"), serverContext.getPreprocessedKey(),
+                            serverContext.getIbeEngine());
+                }
                 
                 // Stocker le canal sécurisé avec l'identifiant de session
                 secureChannels.put(sessionId, secureChannel);
                 
-                Logger.info("Canal sécurisé établi avec Session-ID: " + sessionId);
+                Logger.info("Canal sécurisé établi (" + method + ", " + codec.getName() + ") avec Session-ID: " + sessionId);
+                
+                // Requête applicative transmise avec le handshake: y répondre dans la même réponse
+                Message earlyRequest = keyExchange.optMessage("earlyRequest");
+                if (earlyRequest != null) {
+                    Message combinedResponse = Message.of(MessageType.HANDSHAKE_RESPONSE)
+                            .put("status", "secure-channel-established")
+                            .put("earlyResponse", executeEarlyRequest(earlyRequest, secureChannel, codec,
+                                    exchange.getRemoteAddress().getAddress()));
+                    sendMessage(exchange, 200, codec, combinedResponse, sessionId, null);
+                    return;
+                }
                 
                 // Envoyer une réponse de confirmation avec le Session-ID
-                sendResponseWithSessionId(exchange, 200, "secure-channel-established", sessionId);
+                sendMessage(exchange, 200, codec, Message.text("secure-channel-established"), sessionId, null);
                 
             } catch (Exception e) {
                 Logger.error("Erreur lors de l'établissement du canal sécurisé: " + e.getMessage());
@@ -697,25 +1223,80 @@ public class TrustAuthorityServer {
     }
 
     /**
-     * Envoie une réponse au client
+     * Handler de fermeture d'un canal sécurisé par son client (canal d'un pool remplacé par un nouveau),
+     * sur preuve de possession de la clé de session
      */
-    private void sendResponse(HttpExchange exchange, int statusCode, String response) throws IOException {
-        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=UTF-8");
-        byte[] responseBytes = response.getBytes(StandardCharsets.UTF_8);
-        exchange.sendResponseHeaders(statusCode, responseBytes.length);
+    private class CloseSecureChannelHandler implements HttpHandler {
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            if (!"POST".equals(exchange.getRequestMethod())) {
+                sendResponse(exchange, 405, "Method Not Allowed");
+                return;
+            }
 
-        try (OutputStream os = exchange.getResponseBody()) {
-            os.write(responseBytes);
+            String sessionId = getSessionId(exchange, false);
+            SecureChannelManager secureChannel = sessionId != null ? secureChannels.get(sessionId) : null;
+            if (secureChannel == null) {
+                sendResponse(exchange, SESSION_GONE, "Secure session expired or unknown");
+                return;
+            }
+
+            WireCodec codec = WireCodec.forContentType(exchange.getRequestHeaders().getFirst("Content-Type"));
+            try {
+                Message request = codec.decode(MessageType.SESSION_CLOSE, exchange.getRequestBody().readAllBytes());
+                byte[] proof = secureChannel.decrypt(request.getBytes("proof"));
+                if (!MessageDigest.isEqual(proof, SecureSessionRegistry.closeProofInput(sessionId))) {
+                    throw new IOException("preuve invalide");
+                }
+            } catch (Exception e) {
+                Logger.warning("Fermeture du canal sécurisé refusée (Session-ID " + sessionId + "): " + e.getMessage());
+                sendResponse(exchange, 403, "Invalid session proof");
+                return;
+            }
+
+            secureChannels.remove(sessionId, secureChannel);
+            Logger.debug("Canal sécurisé fermé par le client (Session-ID " + sessionId + ")");
+            sendMessage(exchange, 200, codec, Message.text("secure-channel-closed"), null, null);
+        }
+    }
+
+    /**
+     * Exécute la requête applicative transmise avec le message d'établissement du canal
+     *
+     * @param earlyRequest  Endpoint visé et contenu chiffré avec la nouvelle clé de session
+     * @param secureChannel Canal qui vient d'être établi
+     * @param codec         Format du message d'établissement, utilisé aussi pour la requête anticipée
+     * @param remoteAddress Adresse du client (limite par adresse IP de l'endpoint visé)
+     * @return Le code de statut et la réponse chiffrée de l'opération
+     */
+    private Message executeEarlyRequest(Message earlyRequest, SecureChannelManager secureChannel, WireCodec codec,
+                                        InetAddress remoteAddress) throws Exception {
+        String endpoint = earlyRequest.getString("endpoint");
+        Operation operation = EARLY_REQUEST_ENDPOINTS.contains(endpoint) ? operations.get(endpoint) : null;
+
+        ApiResponse response;
+        if (operation == null) {
+            response = new ApiResponse(400, "Endpoint not allowed in early request: " + endpoint);
+        } else if ((response = checkAddressLimit(endpoint, remoteAddress)) == null) {
+            try {
+                byte[] requestBody = secureChannel.decrypt(earlyRequest.getBytes("encryptedContent"));
+                response = operation.execute(requestBody, codec);
+            } catch (Exception e) {
+                Logger.error("Erreur lors du traitement de la requête anticipée " + endpoint + ": " + e.getMessage());
+                response = new ApiResponse(500, "Internal Server Error: " + e.getMessage());
+            }
         }
+
+        return Message.of(MessageType.EARLY_RESPONSE)
+                .put("statusCode", response.statusCode)
+                .put("body", codec.wrapSecure(secureChannel.encrypt(codec.encode(response.body))));
     }
 
     /**
-     * Envoie une réponse au client avec un header Session-ID
+     * Envoie une réponse au client
      */
-    private void sendResponseWithSessionId(HttpExchange exchange, int statusCode, String response, String sessionId) throws IOException {
+    private void sendResponse(HttpExchange exchange, int statusCode, String response) throws IOException {
         exchange.getResponseHeaders().set("Content-Type", "application/json; charset=UTF-8");
-        exchange.getResponseHeaders().set(SESSION_ID_HEADER, sessionId);
-        
         byte[] responseBytes = response.getBytes(StandardCharsets.UTF_8);
         exchange.sendResponseHeaders(statusCode, responseBytes.length);
 
@@ -725,30 +1306,31 @@ public class TrustAuthorityServer {
     }
 
     /**
-     * Version améliorée de la méthode sendResponse pour prendre en charge le chiffrement avec Session-ID
+     * Envoie un message dans le format de la requête, chiffré si un canal sécurisé est fourni
+     *
+     * @param sessionId     Identifiant de session à renvoyer dans les headers, ou null
+     * @param secureChannel Canal de la session, ou null pour une réponse en clair
      */
-    private void sendSecureResponseWithSessionId(HttpExchange exchange, int statusCode, String response, 
-                                              String sessionId, SecureChannelManager secureChannel) throws IOException {
-        try {
-            // Chiffrer la réponse
-            JSONObject secureResponse = new JSONObject();
-            secureResponse.put("secured", true);
-            secureResponse.put("encryptedContent", secureChannel.encryptWithSessionKey(response));
-            
-            // Envoyer la réponse chiffrée avec le Session-ID
-            exchange.getResponseHeaders().set("Content-Type", "application/json");
-            exchange.getResponseHeaders().set(SESSION_ID_HEADER, sessionId);
-            
-            byte[] responseBytes = secureResponse.toString().getBytes(StandardCharsets.UTF_8);
-            exchange.sendResponseHeaders(statusCode, responseBytes.length);
-            
-            try (OutputStream os = exchange.getResponseBody()) {
-                os.write(responseBytes);
+    private void sendMessage(HttpExchange exchange, int statusCode, WireCodec codec, Message message,
+                             String sessionId, SecureChannelManager secureChannel) throws IOException {
+        byte[] responseBytes = codec.encode(message);
+        if (secureChannel != null) {
+            try {
+                responseBytes = codec.wrapSecure(secureChannel.encrypt(responseBytes));
+            } catch (Exception e) {
+                Logger.error("Erreur lors du chiffrement de la réponse: " + e.getMessage());
+                // En cas d'erreur, envoyer une réponse non chiffrée
             }
-        } catch (Exception e) {
-            Logger.error("Erreur lors du chiffrement de la réponse: " + e.getMessage());
-            // En cas d'erreur, envoyer une réponse non chiffrée
-            sendResponseWithSessionId(exchange, statusCode, response, sessionId);
+        }
+
+        exchange.getResponseHeaders().set("Content-Type", codec.getContentType());
+        if (sessionId != null) {
+            exchange.getResponseHeaders().set(SESSION_ID_HEADER, sessionId);
+        }
+        exchange.sendResponseHeaders(statusCode, responseBytes.length);
+
+        try (OutputStream os = exchange.getResponseBody()) {
+            os.write(responseBytes);
         }
     }
 
@@ -797,6 +1379,7 @@ public class TrustAuthorityServer {
             TrustAuthority trustAuthority = new TrustAuthority();
             TrustAuthorityServer server = new TrustAuthorityServer(trustAuthority, port);
             server.start();
+            server.warmUp();
 
             // En mode conteneurisé, nous voulons que le serveur continue à s'exécuter
             Logger.info("Serveur démarré avec succès. Appuyez sur Ctrl+C pour arrêter.");
@@ -0,0 +1,318 @@
+package fr.insa.crypto.trustAuthority.auth;
+
+import fr.insa.crypto.trustAuthority.metrics.LatencyHistogram;
+import fr.insa.crypto.utils.Logger;
+
+import javax.mail.Message;
+import javax.mail.MessagingException;
+import javax.mail.Session;
+import javax.mail.Transport;
+import javax.mail.internet.InternetAddress;
+import javax.mail.internet.MimeMessage;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * File d'envoi asynchrone des emails OTP.
+ * Les requêtes HTTP se contentent de déposer l'OTP dans la file; un petit nombre de workers,
+ * chacun propriétaire d'une connexion SMTP ouverte durablement, vident la file par lots
+ * et réessayent les envois en échec avec un délai exponentiel.
+ */
+public class OtpMailDispatcher {
+    private static final String SUBJECT = "Votre code de vérification Messenger Secure";
+    private static final long INITIAL_RETRY_DELAY_MS = 500;
+    private static final long MAX_RETRY_DELAY_MS = 30000;
+
+    private final Session session;
+    private final String senderEmail;
+    private final BlockingQueue<OtpMail> queue;
+    private final int batchSize;
+    private final int maxAttempts;
+    private final Thread[] workers;
+    private final ScheduledExecutorService retryScheduler;
+    private volatile boolean running = true;
+
+    // Métriques
+    private final LongAdder enqueuedCount = new LongAdder();
+    private final LongAdder deliveredCount = new LongAdder();
+    private final LongAdder failedCount = new LongAdder();
+    private final LongAdder retryCount = new LongAdder();
+    private final LongAdder rejectedCount = new LongAdder();
+    private final LongAdder connectionCount = new LongAdder();
+    private final LatencyHistogram deliveryLatency = new LatencyHistogram();
+    private final AtomicLong pendingRetries = new AtomicLong();
+
+    /**
+     * Un OTP en attente d'envoi
+     */
+    private static class OtpMail {
+        final String email;
+        final String otp;
+        final long enqueuedAt;
+        int attempts;
+
+        OtpMail(String email, String otp) {
+            this.email = email;
+            this.otp = otp;
+            this.enqueuedAt = System.nanoTime();
+        }
+    }
+
+    /**
+     * @param session       Session email configurée (hôte, port, authentification)
+     * @param senderEmail   Adresse de l'expéditeur
+     * @param poolSize      Nombre de connexions SMTP (une par worker)
+     * @param queueCapacity Nombre maximal d'OTP en attente
+     * @param batchSize     Nombre maximal d'OTP envoyés sur une connexion avant de revenir à la file
+     * @param maxAttempts   Nombre maximal de tentatives par OTP
+     */
+    public OtpMailDispatcher(Session session, String senderEmail, int poolSize, int queueCapacity,
+                             int batchSize, int maxAttempts) {
+        this.session = session;
+        this.senderEmail = senderEmail;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.batchSize = Math.max(1, batchSize);
+        this.maxAttempts = Math.max(1, maxAttempts);
+        this.retryScheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "otp-mail-retry");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        this.workers = new Thread[Math.max(1, poolSize)];
+        for (int i = 0; i < workers.length; i++) {
+            workers[i] = new Thread(this::runWorker, "otp-mail-" + i);
+            workers[i].setDaemon(true);
+            workers[i].start();
+        }
+        Logger.info("File d'envoi des OTP démarrée (" + workers.length + " connexion(s) SMTP, lots de " + this.batchSize + ")");
+    }
+
+    /**
+     * Dépose un OTP dans la file d'envoi sans attendre la connexion SMTP
+     *
+     * @return false si la file est pleine ou arrêtée
+     */
+    public boolean enqueue(String email, String otp) {
+        if (!running || !queue.offer(new OtpMail(email, otp))) {
+            rejectedCount.increment();
+            Logger.error("File d'envoi des OTP pleine ou arrêtée, OTP non envoyé à " + email);
+            return false;
+        }
+        enqueuedCount.increment();
+        return true;
+    }
+
+    /**
+     * Boucle d'un worker: une connexion SMTP réutilisée pour tous ses lots
+     */
+    private void runWorker() {
+        Transport transport = null;
+        List<OtpMail> batch = new ArrayList<>(batchSize);
+
+        while (running || !queue.isEmpty()) {
+            try {
+                OtpMail first = queue.poll(1, TimeUnit.SECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, batchSize - 1);
+                transport = sendBatch(transport, batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } finally {
+                batch.clear();
+            }
+        }
+        closeQuietly(transport);
+    }
+
+    /**
+     * Envoie un lot sur la connexion du worker
+     *
+     * @return La connexion à réutiliser pour le lot suivant (null si elle a été perdue)
+     */
+    private Transport sendBatch(Transport transport, List<OtpMail> batch) {
+        boolean checked = false;
+        for (int i = 0; i < batch.size(); i++) {
+            OtpMail mail = batch.get(i);
+            try {
+                if (transport == null || !checked) {
+                    transport = ensureConnected(transport);
+                    checked = true;
+                }
+            } catch (MessagingException e) {
+                // Serveur SMTP injoignable: tout le reste du lot repasse par les réessais
+                Logger.error("Connexion SMTP impossible: " + e.getMessage());
+                for (int j = i; j < batch.size(); j++) {
+                    scheduleRetry(batch.get(j), e);
+                }
+                return null;
+            }
+
+            try {
+                MimeMessage message = buildMessage(mail);
+                transport.sendMessage(message, message.getAllRecipients());
+                recordDelivery(mail);
+            } catch (MessagingException e) {
+                // La connexion est peut-être perdue: la rouvrir pour la suite du lot
+                scheduleRetry(mail, e);
+                closeQuietly(transport);
+                transport = null;
+            }
+        }
+        return transport;
+    }
+
+    /**
+     * Retourne une connexion SMTP ouverte, en la (re)créant si nécessaire.
+     * isConnected() vérifie la connexion auprès du serveur (NOOP), une fois par lot.
+     */
+    private Transport ensureConnected(Transport transport) throws MessagingException {
+        if (transport != null && transport.isConnected()) {
+            return transport;
+        }
+        closeQuietly(transport);
+        Transport fresh = session.getTransport("smtp");
+        fresh.connect();
+        connectionCount.increment();
+        Logger.debug("Nouvelle connexion SMTP ouverte par " + Thread.currentThread().getName());
+        return fresh;
+    }
+
+    private MimeMessage buildMessage(OtpMail mail) throws MessagingException {
+        MimeMessage message = new MimeMessage(session);
+        message.setFrom(new InternetAddress(senderEmail));
+        message.setRecipients(Message.RecipientType.TO, InternetAddress.parse(mail.email));
+        message.setSubject(SUBJECT);
+
+        // Corps du message
+        String body =
+                "<html><body style='font-family: Arial, sans-serif;'>" +
+                        "<div style='max-width: 600px; margin: 0 auto; padding: 20px; border: 1px solid #e0e0e0;'>" +
+                        "<h2 style='color: #4285f4;'>Messenger Secure</h2>" +
+                        "<p>Voici votre code de vérification pour créer votre compte Messenger Secure :</p>" +
+                        "<div style='background-color: #f5f5f5; padding: 15px; text-align: center; margin: 20px 0;'>" +
+                        "<h1 style='color: #4285f4; letter-spacing: 5px;'>" + mail.otp + "</h1>" +
+                        "</div>" +
+                        "<p>Ce code est valable pendant 5 minutes.</p>" +
+                        "<p>Si vous n'avez pas demandé ce code, veuillez ignorer cet email.</p>" +
+                        "<p>Cordialement,<br>L'équipe Messenger Secure</p>" +
+                        "</div></body></html>";
+
+        message.setContent(body, "text/html; charset=utf-8");
+        return message;
+    }
+
+    private void recordDelivery(OtpMail mail) {
+        long latency = System.nanoTime() - mail.enqueuedAt;
+        deliveredCount.increment();
+        deliveryLatency.recordNanos(latency);
+        Logger.debug("Email OTP envoyé à " + mail.email + " en " + (latency / 1_000_000) + " ms");
+    }
+
+    /**
+     * Réessaie un envoi avec un délai exponentiel, ou abandonne après maxAttempts tentatives
+     */
+    private void scheduleRetry(OtpMail mail, Exception cause) {
+        mail.attempts++;
+        if (mail.attempts >= maxAttempts || !running) {
+            failedCount.increment();
+            Logger.error("Abandon de l'envoi de l'OTP à " + mail.email + " après " + mail.attempts
+                    + " tentative(s): " + cause.getMessage());
+            return;
+        }
+
+        long delay = Math.min(MAX_RETRY_DELAY_MS, INITIAL_RETRY_DELAY_MS << (mail.attempts - 1));
+        retryCount.increment();
+        pendingRetries.incrementAndGet();
+        Logger.warning("Échec de l'envoi de l'OTP à " + mail.email + ", nouvel essai dans " + delay + " ms: " + cause.getMessage());
+        retryScheduler.schedule(() -> {
+            pendingRetries.decrementAndGet();
+            if (!queue.offer(mail)) {
+                failedCount.increment();
+                Logger.error("File d'envoi des OTP pleine, abandon de l'OTP à " + mail.email);
+            }
+        }, delay, TimeUnit.MILLISECONDS);
+    }
+
+    private static void closeQuietly(Transport transport) {
+        if (transport == null) {
+            return;
+        }
+        try {
+            transport.close();
+        } catch (MessagingException e) {
+            // Connexion déjà perdue
+        }
+    }
+
+    /**
+     * Arrête les workers après avoir vidé la file (dans la limite du délai donné)
+     */
+    public void shutdown(long timeoutMs) {
+        running = false;
+        retryScheduler.shutdownNow();
+        long deadline = System.currentTimeMillis() + timeoutMs;
+        for (Thread worker : workers) {
+            try {
+                worker.join(Math.max(1, deadline - System.currentTimeMillis()));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+        Logger.info("File d'envoi des OTP arrêtée (" + queue.size() + " OTP non envoyé(s))");
+    }
+
+    /**
+     * @return Nombre d'OTP en attente dans la file (hors réessais programmés)
+     */
+    public int getQueueDepth() {
+        return queue.size();
+    }
+
+    public long getPendingRetries() {
+        return pendingRetries.get();
+    }
+
+    public long getEnqueuedCount() {
+        return enqueuedCount.sum();
+    }
+
+    public long getDeliveredCount() {
+        return deliveredCount.sum();
+    }
+
+    public long getFailedCount() {
+        return failedCount.sum();
+    }
+
+    public long getRetryCount() {
+        return retryCount.sum();
+    }
+
+    public long getRejectedCount() {
+        return rejectedCount.sum();
+    }
+
+    public long getConnectionCount() {
+        return connectionCount.sum();
+    }
+
+    /**
+     * @return Latences entre le dépôt dans la file et l'envoi
+     */
+    public LatencyHistogram getDeliveryLatency() {
+        return deliveryLatency;
+    }
+}
@@ -0,0 +1,91 @@
+package fr.insa.crypto.trustAuthority.auth;
+
+import fr.insa.crypto.utils.Logger;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Rendu des QR codes PNG de configuration TOTP, pour les clients qui ne les dessinent pas eux-mêmes
+ * à partir de l'URI otpauth:// (clients antérieurs).
+ *
+ * Le rendu (ZXing, encodage PNG) est coûteux en CPU et en allocations: il tourne sur un petit pool
+ * de threads de basse priorité avec une file bornée, pour ne pas concurrencer les requêtes de l'autorité.
+ * L'attente est bornée; en cas de file pleine ou de délai dépassé, la réponse part sans image.
+ */
+public class QrCodeRenderer {
+    private final ThreadPoolExecutor executor;
+    private final long timeoutMs;
+
+    private final LongAdder renderedCount = new LongAdder();
+    private final LongAdder failedCount = new LongAdder();
+
+    /**
+     * @param threads       Nombre de threads de rendu
+     * @param queueCapacity Nombre maximal de rendus en attente
+     * @param timeoutMs     Attente maximale d'un rendu par la requête
+     */
+    public QrCodeRenderer(int threads, int queueCapacity, long timeoutMs) {
+        this.timeoutMs = timeoutMs;
+        AtomicInteger index = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), r -> {
+                    Thread thread = new Thread(r, "qr-render-" + index.getAndIncrement());
+                    thread.setDaemon(true);
+                    thread.setPriority(Thread.MIN_PRIORITY);
+                    return thread;
+                });
+    }
+
+    /**
+     * @return L'URI de données du QR code (data:image/png;base64,...), ou null s'il n'a pas pu être rendu à temps
+     */
+    public String render(String email, String secret) {
+        Future<String> rendering;
+        try {
+            rendering = executor.submit(() -> TOTPManager.generateQrCodeUri(email, secret));
+        } catch (RejectedExecutionException e) {
+            failedCount.increment();
+            Logger.warning("File de rendu des QR codes pleine, réponse sans image pour " + email);
+            return null;
+        }
+
+        try {
+            String dataUri = rendering.get(timeoutMs, TimeUnit.MILLISECONDS);
+            renderedCount.increment();
+            return dataUri;
+        } catch (TimeoutException e) {
+            rendering.cancel(false);
+            Logger.warning("Rendu du QR code trop long, réponse sans image pour " + email);
+        } catch (ExecutionException e) {
+            Logger.error("Erreur lors de la génération du QR code: " + e.getCause().getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        failedCount.increment();
+        return null;
+    }
+
+    public int getQueueDepth() {
+        return executor.getQueue().size();
+    }
+
+    public long getRenderedCount() {
+        return renderedCount.sum();
+    }
+
+    public long getFailedCount() {
+        return failedCount.sum();
+    }
+
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
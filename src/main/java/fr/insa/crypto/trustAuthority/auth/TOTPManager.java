@@ -1,6 +1,6 @@
 package fr.insa.crypto.trustAuthority.auth;
 
-import dev.samstevens.totp.code.*;
+import dev.samstevens.totp.code.HashingAlgorithm;
 import dev.samstevens.totp.secret.DefaultSecretGenerator;
 import dev.samstevens.totp.secret.SecretGenerator;
 import dev.samstevens.totp.time.SystemTimeProvider;
@@ -9,22 +9,98 @@ import dev.samstevens.totp.qr.QrData;
 import dev.samstevens.totp.qr.QrGenerator;
 import dev.samstevens.totp.qr.ZxingPngQrGenerator;
 import dev.samstevens.totp.exceptions.QrGenerationException;
+import fr.insa.crypto.utils.Logger;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.Closeable;
+import java.security.GeneralSecurityException;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongPredicate;
 
 import static dev.samstevens.totp.util.Utils.getDataUriForImage;
 
 /**
  * Gestionnaire de l'authentification TOTP (Time-based One-Time Password)
  * Compatible avec Google Authenticator
+ *
+ * La vérification (RFC 6238, HMAC-SHA1, 6 chiffres, périodes de 30 s) est faite ici plutôt que par
+ * le vérificateur de la bibliothèque, pour le chemin chaud des connexions:
+ * - la clé décodée du secret Base32 est gardée par utilisateur tant qu'il se connecte;
+ * - chaque thread réutilise son instance de Mac;
+ * - chaque période de la fenêtre est calculée au plus une fois, la période courante d'abord;
+ * - la dernière période acceptée pour chaque utilisateur est retenue: un code déjà utilisé (ou antérieur
+ *   à un code utilisé) est refusé, même s'il est encore dans sa fenêtre de validité.
+ * La confirmation de la configuration (confirmSetup) vérifie le code sans le consommer: la première
+ * connexion qui suit peut utiliser le même code.
+ *
+ * La période retenue en mémoire ne vaut que pour ce nœud. Derrière plusieurs nœuds, l'appelant fournit
+ * la consommation faisant foi (UserManager.consumeTotpStep: compare-and-set sur le compte persisté et
+ * répliqué); l'état en mémoire ne sert alors que de cache, pour refuser un rejeu sans toucher au stockage.
  */
-public class TOTPManager {
+public class TOTPManager implements Closeable {
     private static final int SECRET_LENGTH = 32;
     private static final String ISSUER = "MessengerSecure";
-    
+    private static final int PERIOD_SECONDS = 30;
+    private static final int DIGITS = 6;
+    private static final int DIGITS_MODULUS = 1_000_000;
+    // Périodes acceptées de part et d'autre de la période courante (dérive d'horloge du téléphone)
+    private static final int ALLOWED_DISCREPANCY = 1;
+    private static final String HMAC_ALGORITHM = "HmacSHA1";
+    private static final String BASE32_ALPHABET = "ABCDEFGHIJKLMNOPQRSTUVWXYZ234567";
+    // État retiré par le nettoyage: un vérificateur concurrent doit en recréer un
+    private static final long RETIRED = Long.MAX_VALUE;
+
+    private static final ThreadLocal<Mac> MACS = ThreadLocal.withInitial(() -> {
+        try {
+            return Mac.getInstance(HMAC_ALGORITHM);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("HMAC-SHA1 indisponible", e);
+        }
+    });
+
     private final SecretGenerator secretGenerator = new DefaultSecretGenerator(SECRET_LENGTH);
-    private final TimeProvider timeProvider = new SystemTimeProvider();
-    private final CodeGenerator codeGenerator = new DefaultCodeGenerator();
-    private final CodeVerifier codeVerifier = new DefaultCodeVerifier(codeGenerator, timeProvider);
-    
+    private final TimeProvider timeProvider;
+
+    // État TOTP par utilisateur (email en minuscules): clé décodée et dernière période acceptée
+    private final ConcurrentHashMap<String, TotpState> states = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService evictor;
+
+    private static final class TotpState {
+        final String secret;
+        final SecretKeySpec key;
+        final AtomicLong lastUsedStep = new AtomicLong(Long.MIN_VALUE);
+
+        TotpState(String secret) {
+            this.secret = secret;
+            this.key = new SecretKeySpec(decodeBase32(secret), HMAC_ALGORITHM);
+        }
+    }
+
+    public TOTPManager() {
+        this(new SystemTimeProvider());
+    }
+
+    /**
+     * @param timeProvider Horloge des codes (horloge contrôlée par les tests de charge, horloge système sinon)
+     */
+    public TOTPManager(TimeProvider timeProvider) {
+        this.timeProvider = timeProvider;
+        evictor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "totp-state-eviction");
+            thread.setDaemon(true);
+            return thread;
+        });
+        evictor.scheduleWithFixedDelay(this::evictStale, PERIOD_SECONDS, PERIOD_SECONDS, TimeUnit.SECONDS);
+    }
+
     /**
      * Génère un nouveau secret pour Google Authenticator
      * @return Le secret généré
@@ -32,20 +108,222 @@ public class TOTPManager {
     public String generateSecret() {
         return secretGenerator.generate();
     }
-    
+
+    /**
+     * Vérifie le code TOTP d'un utilisateur et le consomme: un code accepté ne l'est qu'une fois
+     * @param email Adresse email de l'utilisateur (clé de l'état anti-rejeu)
+     * @param code Code TOTP à vérifier
+     * @param secret Secret utilisé pour générer le code
+     * @return true si le code est valide et n'a pas déjà été utilisé
+     */
+    public boolean verifyCode(String email, String code, String secret) {
+        return verify(email, code, secret, true, null);
+    }
+
     /**
-     * Vérifie si le code TOTP fourni est valide pour le secret donné
+     * Vérifie le code TOTP d'un utilisateur et le consomme auprès du stockage des comptes: un code accepté
+     * ne l'est qu'une fois, quel que soit le nœud qui le reçoit
+     * @param email Adresse email de l'utilisateur
      * @param code Code TOTP à vérifier
      * @param secret Secret utilisé pour générer le code
-     * @return true si le code est valide
+     * @param consumeStep Consomme la période du code reconnu; false si elle l'a déjà été (ou une postérieure)
+     * @return true si le code est valide et sa période vient d'être consommée
      */
-    public boolean verifyCode(String code, String secret) {
-        if (code == null || secret == null) {
+    public boolean verifyCode(String email, String code, String secret, LongPredicate consumeStep) {
+        return verify(email, code, secret, true, consumeStep);
+    }
+
+    /**
+     * Vérifie le code saisi pour confirmer la configuration de l'application d'authentification, sans le
+     * consommer: la connexion qui suit, souvent dans la même période, peut utiliser le même code.
+     * Un code déjà utilisé pour une connexion (ou antérieur) reste refusé.
+     * @param email Adresse email de l'utilisateur
+     * @param code Code TOTP à vérifier
+     * @param secret Secret qui vient d'être configuré
+     * @return true si le code est valide et n'a pas déjà été utilisé
+     */
+    public boolean confirmSetup(String email, String code, String secret) {
+        return verify(email, code, secret, false, null);
+    }
+
+    private boolean verify(String email, String code, String secret, boolean consume, LongPredicate consumeStep) {
+        if (email == null || code == null || secret == null) {
+            return false;
+        }
+        int expected = parseCode(code);
+        if (expected < 0) {
+            return false;
+        }
+
+        long currentStep = timeProvider.getTime() / PERIOD_SECONDS;
+        String key = email.toLowerCase(Locale.ROOT);
+        TotpState state = stateFor(key, secret);
+
+        Mac mac = MACS.get();
+        try {
+            mac.init(state.key);
+        } catch (GeneralSecurityException e) {
+            return false;
+        }
+        long matchedStep = Long.MIN_VALUE;
+        for (int offset = 0; offset <= 2 * ALLOWED_DISCREPANCY; offset++) {
+            // Ordre: période courante, puis précédente, puis suivante (0, -1, +1, ...)
+            long step = currentStep + ((offset & 1) == 1 ? -(offset + 1) / 2 : offset / 2);
+            if (generate(mac, step) == expected) {
+                matchedStep = step;
+                break;
+            }
+        }
+        if (matchedStep == Long.MIN_VALUE) {
             return false;
         }
-        return codeVerifier.isValidCode(secret, code);
+
+        // Anti-rejeu: n'accepter que des périodes strictement postérieures à la dernière acceptée
+        while (true) {
+            long last = state.lastUsedStep.get();
+            if (last == RETIRED) {
+                states.remove(key, state);
+                state = stateFor(key, secret);
+                continue;
+            }
+            if (matchedStep <= last) {
+                return false;
+            }
+            if (consume && consumeStep != null) {
+                // Le stockage fait foi; accepté ou non, la période y est désormais consommée: la retenir ici aussi
+                boolean consumed = consumeStep.test(matchedStep);
+                state.lastUsedStep.accumulateAndGet(matchedStep, Math::max);
+                return consumed;
+            }
+            if (!consume || state.lastUsedStep.compareAndSet(last, matchedStep)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Retourne l'état de l'utilisateur, recréé si son secret a changé (nouvelle inscription)
+     */
+    private TotpState stateFor(String key, String secret) {
+        TotpState state = states.get(key);
+        if (state != null && state.secret.equals(secret)) {
+            return state;
+        }
+        return states.compute(key, (k, existing) ->
+                existing != null && existing.secret.equals(secret) ? existing : new TotpState(secret));
+    }
+
+    /**
+     * Appelé une fois par période par le thread de nettoyage: oublie les utilisateurs sans code accepté dans
+     * la fenêtre. Leurs anciens codes sont de toute façon hors fenêtre, et leur clé sera redécodée à leur
+     * prochaine connexion.
+     */
+    void evictStale() {
+        long oldestUseful = timeProvider.getTime() / PERIOD_SECONDS - ALLOWED_DISCREPANCY;
+        int evicted = 0;
+        for (Map.Entry<String, TotpState> entry : states.entrySet()) {
+            TotpState state = entry.getValue();
+            long lastUsed = state.lastUsedStep.get();
+            // Retirer par CAS: un code accepté au même instant ne peut pas l'être dans un état orphelin
+            if (lastUsed < oldestUseful && state.lastUsedStep.compareAndSet(lastUsed, RETIRED)) {
+                states.remove(entry.getKey(), state);
+                evicted++;
+            }
+        }
+        if (evicted > 0) {
+            Logger.debug("États TOTP inactifs retirés: " + evicted);
+        }
     }
-    
+
+    /**
+     * HOTP (RFC 4226) du compteur avec le Mac déjà initialisé sur la clé de l'utilisateur
+     */
+    private static int generate(Mac mac, long counter) {
+        byte[] message = new byte[8];
+        for (int i = 7; i >= 0; i--) {
+            message[i] = (byte) counter;
+            counter >>>= 8;
+        }
+        byte[] hash = mac.doFinal(message);
+        int offset = hash[hash.length - 1] & 0xf;
+        int binary = ((hash[offset] & 0x7f) << 24)
+                | ((hash[offset + 1] & 0xff) << 16)
+                | ((hash[offset + 2] & 0xff) << 8)
+                | (hash[offset + 3] & 0xff);
+        return binary % DIGITS_MODULUS;
+    }
+
+    /**
+     * @return Le code sous forme d'entier, ou -1 s'il ne fait pas exactement 6 chiffres
+     */
+    private static int parseCode(String code) {
+        if (code.length() != DIGITS) {
+            return -1;
+        }
+        int value = 0;
+        for (int i = 0; i < DIGITS; i++) {
+            char c = code.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            value = value * 10 + (c - '0');
+        }
+        return value;
+    }
+
+    /**
+     * Décode un secret Base32 (RFC 4648), insensible à la casse, bourrage et espaces ignorés
+     */
+    static byte[] decodeBase32(String secret) {
+        byte[] output = new byte[secret.length() * 5 / 8];
+        int buffer = 0;
+        int bits = 0;
+        int length = 0;
+        for (int i = 0; i < secret.length(); i++) {
+            char c = Character.toUpperCase(secret.charAt(i));
+            if (c == '=' || c == ' ' || c == '-') {
+                continue;
+            }
+            int value = BASE32_ALPHABET.indexOf(c);
+            if (value < 0) {
+                throw new IllegalArgumentException("Caractère Base32 invalide dans le secret TOTP");
+            }
+            buffer = (buffer << 5) | value;
+            bits += 5;
+            if (bits >= 8) {
+                output[length++] = (byte) (buffer >> (bits - 8));
+                bits -= 8;
+            }
+        }
+        return length == output.length ? output : Arrays.copyOf(output, length);
+    }
+
+    /**
+     * @return Nombre d'utilisateurs dont l'état TOTP est en mémoire
+     */
+    public int getCachedUserCount() {
+        return states.size();
+    }
+
+    /**
+     * Arrête le thread de nettoyage
+     */
+    @Override
+    public void close() {
+        evictor.shutdownNow();
+    }
+
+    /**
+     * Construit l'URI otpauth:// du compte, que l'application d'authentification (ou le client, qui en
+     * dessine le QR code) sait interpréter
+     * @param email Adresse email de l'utilisateur (label)
+     * @param secret Secret TOTP
+     * @return L'URI otpauth://totp/...
+     */
+    public static String otpauthUri(String email, String secret) {
+        return qrData(email, secret).getUri();
+    }
+
     /**
      * Génère un URI de données contenant un QR code pour Google Authenticator
      * @param email Adresse email de l'utilisateur (label)
@@ -53,19 +331,21 @@ public class TOTPManager {
      * @return URI de données du QR code (data:image/png;base64,...)
      * @throws QrGenerationException Si la génération du QR code échoue
      */
-    public String generateQrCodeUri(String email, String secret) throws QrGenerationException {
-        QrData qrData = new QrData.Builder()
+    public static String generateQrCodeUri(String email, String secret) throws QrGenerationException {
+        QrGenerator qrGenerator = new ZxingPngQrGenerator();
+        byte[] imageData = qrGenerator.generate(qrData(email, secret));
+
+        return getDataUriForImage(imageData, qrGenerator.getImageMimeType());
+    }
+
+    private static QrData qrData(String email, String secret) {
+        return new QrData.Builder()
                 .label(email)
                 .secret(secret)
                 .issuer(ISSUER)
                 .algorithm(HashingAlgorithm.SHA1)
-                .digits(6)
-                .period(30)
+                .digits(DIGITS)
+                .period(PERIOD_SECONDS)
                 .build();
-        
-        QrGenerator qrGenerator = new ZxingPngQrGenerator();
-        byte[] imageData = qrGenerator.generate(qrData);
-        
-        return getDataUriForImage(imageData, qrGenerator.getImageMimeType());
     }
 }
@@ -0,0 +1,69 @@
+package fr.insa.crypto.trustAuthority.channel;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+/**
+ * Format des trames du canal multiplexé: [longueur][identifiant de flux][type][charge utile].
+ * La longueur couvre l'identifiant, le type et la charge utile. Le flux 0 est réservé au contrôle
+ * de la connexion (HELLO, HELLO_OK, GOAWAY); chaque requête utilise un flux distinct et sa réponse
+ * revient sur le même flux, dans n'importe quel ordre.
+ */
+final class Frames {
+    static final int MAGIC = 0x54414D43; // "TAMC"
+
+    static final byte HELLO = 1;
+    static final byte HELLO_OK = 2;
+    static final byte REQUEST = 3;
+    static final byte RESPONSE = 4;
+    static final byte GOAWAY = 5;
+
+    static final int CONTROL_STREAM = 0;
+    static final int MAX_FRAME_BYTES = 1 << 20;
+
+    private static final int HEADER_BYTES = 5;
+
+    private Frames() {
+    }
+
+    /**
+     * Trame reçue
+     */
+    static final class Frame {
+        final int streamId;
+        final byte type;
+        final byte[] payload;
+
+        private Frame(int streamId, byte type, byte[] payload) {
+            this.streamId = streamId;
+            this.type = type;
+            this.payload = payload;
+        }
+    }
+
+    /**
+     * Écrit une trame sans vider le tampon: l'appelant détient le verrou d'écriture et décide du flush
+     */
+    static void write(DataOutputStream out, int streamId, byte type, byte[] payload) throws IOException {
+        if (payload.length > MAX_FRAME_BYTES - HEADER_BYTES) {
+            throw new IOException("Trame trop grande: " + payload.length + " octets");
+        }
+        out.writeInt(HEADER_BYTES + payload.length);
+        out.writeInt(streamId);
+        out.writeByte(type);
+        out.write(payload);
+    }
+
+    static Frame read(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < HEADER_BYTES || length > MAX_FRAME_BYTES) {
+            throw new IOException("Longueur de trame invalide: " + length);
+        }
+        int streamId = in.readInt();
+        byte type = in.readByte();
+        byte[] payload = new byte[length - HEADER_BYTES];
+        in.readFully(payload);
+        return new Frame(streamId, type, payload);
+    }
+}
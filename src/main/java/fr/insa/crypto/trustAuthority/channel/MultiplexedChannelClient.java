@@ -0,0 +1,206 @@
+package fr.insa.crypto.trustAuthority.channel;
+
+import fr.insa.crypto.trustAuthority.protocol.Message;
+import fr.insa.crypto.trustAuthority.protocol.MessageType;
+import fr.insa.crypto.trustAuthority.protocol.WireCodec;
+import fr.insa.crypto.utils.Logger;
+import fr.insa.crypto.utils.SecureChannelManager;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Côté client du canal multiplexé: une connexion TCP persistante, rattachée à une session
+ * sécurisée existante, sur laquelle plusieurs threads envoient leurs requêtes sans attendre
+ * les réponses précédentes (pipelining). Chaque requête reçoit un identifiant de flux et un
+ * futur, complété par le thread de lecture lorsque la réponse du même flux arrive.
+ */
+public class MultiplexedChannelClient implements Closeable {
+    private static final int CONNECT_TIMEOUT_MS = 10_000;
+
+    private final Socket socket;
+    private final DataOutputStream out;
+    private final SecureChannelManager secureChannel;
+    private final Map<Integer, CompletableFuture<Message>> pending = new ConcurrentHashMap<>();
+    private final AtomicInteger nextStreamId = new AtomicInteger();
+    // Requêtes en attente du verrou d'écriture: seule la dernière vide le tampon
+    private final AtomicInteger pendingWrites = new AtomicInteger();
+    private volatile boolean open = true;
+
+    /**
+     * Ouvre la connexion et se rattache à la session (bloquant jusqu'à l'acceptation du serveur)
+     *
+     * @param sessionId     Identifiant de la session établie par /establish-secure-channel
+     * @param secureChannel Canal de cette session (clé de session)
+     */
+    public MultiplexedChannelClient(String host, int port, String sessionId, SecureChannelManager secureChannel) throws IOException {
+        this.secureChannel = secureChannel;
+        this.socket = new Socket();
+        DataInputStream in;
+        try {
+            socket.connect(new InetSocketAddress(host, port), CONNECT_TIMEOUT_MS);
+            socket.setTcpNoDelay(true);
+            socket.setSoTimeout(CONNECT_TIMEOUT_MS);
+            in = new DataInputStream(new BufferedInputStream(socket.getInputStream(), 1 << 16));
+            out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream(), 1 << 16));
+
+            Message hello = Message.of(MessageType.CHANNEL_HELLO)
+                    .put("sessionId", sessionId)
+                    .put("proof", secureChannel.encrypt(sessionId.getBytes(StandardCharsets.UTF_8)));
+            out.writeInt(Frames.MAGIC);
+            Frames.write(out, Frames.CONTROL_STREAM, Frames.HELLO, WireCodec.BINARY.encode(hello));
+            out.flush();
+
+            Frames.Frame answer = Frames.read(in);
+            if (answer.type != Frames.HELLO_OK) {
+                throw new IOException("Rattachement refusé par l'autorité: " + new String(answer.payload, StandardCharsets.UTF_8));
+            }
+            socket.setSoTimeout(0);
+        } catch (IOException e) {
+            socket.close();
+            throw e;
+        } catch (Exception e) {
+            socket.close();
+            throw new IOException("Impossible de prouver la clé de session: " + e.getMessage(), e);
+        }
+
+        Thread reader = new Thread(() -> readLoop(in), "channel-reader");
+        reader.setDaemon(true);
+        reader.start();
+        Logger.debug("Canal multiplexé ouvert vers " + host + ":" + port);
+    }
+
+    /**
+     * Envoie une requête sans attendre la réponse
+     *
+     * @param endpoint    Endpoint applicatif (mêmes chemins que l'API HTTP)
+     * @param requestBody Requête encodée au format binaire
+     * @return Un futur complété par le message CHANNEL_RESPONSE (statusCode et body au format binaire),
+     * ou en erreur si la connexion est perdue
+     */
+    public CompletableFuture<Message> send(String endpoint, byte[] requestBody) {
+        CompletableFuture<Message> future = new CompletableFuture<>();
+        if (!open) {
+            future.completeExceptionally(new IOException("Canal multiplexé fermé"));
+            return future;
+        }
+
+        int streamId = nextStreamId.updateAndGet(id -> id == Integer.MAX_VALUE ? 1 : id + 1);
+        pending.put(streamId, future);
+        try {
+            Message request = Message.of(MessageType.CHANNEL_REQUEST)
+                    .put("streamId", streamId)
+                    .put("endpoint", endpoint)
+                    .put("body", requestBody);
+            byte[] payload = secureChannel.encrypt(WireCodec.BINARY.encode(request));
+
+            pendingWrites.incrementAndGet();
+            synchronized (out) {
+                try {
+                    Frames.write(out, streamId, Frames.REQUEST, payload);
+                } finally {
+                    if (pendingWrites.decrementAndGet() == 0) {
+                        out.flush();
+                    }
+                }
+            }
+        } catch (Exception e) {
+            pending.remove(streamId);
+            future.completeExceptionally(e);
+            if (e instanceof IOException) {
+                failAll((IOException) e);
+            }
+        }
+        return future;
+    }
+
+    private void readLoop(DataInputStream in) {
+        try {
+            while (open) {
+                Frames.Frame frame = Frames.read(in);
+                if (frame.type == Frames.GOAWAY) {
+                    throw new IOException("Connexion fermée par l'autorité");
+                }
+                if (frame.type != Frames.RESPONSE) {
+                    continue;
+                }
+                CompletableFuture<Message> future = pending.remove(frame.streamId);
+                if (future == null) {
+                    Logger.warning("Réponse reçue pour un flux inconnu: " + frame.streamId);
+                    continue;
+                }
+                try {
+                    Message response = WireCodec.BINARY.decode(MessageType.CHANNEL_RESPONSE, secureChannel.decrypt(frame.payload));
+                    if (response.getInt("streamId") != frame.streamId) {
+                        throw new IOException("Identifiant de flux incohérent");
+                    }
+                    future.complete(response);
+                } catch (Exception e) {
+                    future.completeExceptionally(e);
+                }
+            }
+        } catch (IOException e) {
+            failAll(e);
+        }
+    }
+
+    /**
+     * Ferme la connexion et fait échouer toutes les requêtes en cours
+     */
+    private void failAll(IOException cause) {
+        if (open) {
+            Logger.warning("Canal multiplexé perdu: " + cause.getMessage());
+        }
+        open = false;
+        try {
+            socket.close();
+        } catch (IOException e) {
+            // Déjà fermée
+        }
+        for (Integer streamId : pending.keySet()) {
+            CompletableFuture<Message> future = pending.remove(streamId);
+            if (future != null) {
+                future.completeExceptionally(cause);
+            }
+        }
+    }
+
+    public boolean isOpen() {
+        return open;
+    }
+
+    /**
+     * @return Le nombre de requêtes envoyées et encore sans réponse
+     */
+    public int getPendingCount() {
+        return pending.size();
+    }
+
+    @Override
+    public void close() {
+        if (!open) {
+            return;
+        }
+        open = false;
+        try {
+            synchronized (out) {
+                Frames.write(out, Frames.CONTROL_STREAM, Frames.GOAWAY, new byte[0]);
+                out.flush();
+            }
+        } catch (IOException e) {
+            // Connexion déjà perdue
+        }
+        failAll(new IOException("Canal multiplexé fermé"));
+    }
+}
@@ -0,0 +1,336 @@
+package fr.insa.crypto.trustAuthority.channel;
+
+import fr.insa.crypto.trustAuthority.metrics.EndpointMetrics;
+import fr.insa.crypto.trustAuthority.metrics.MetricsRegistry;
+import fr.insa.crypto.trustAuthority.protocol.Message;
+import fr.insa.crypto.trustAuthority.protocol.MessageType;
+import fr.insa.crypto.trustAuthority.protocol.WireCodec;
+import fr.insa.crypto.utils.Logger;
+import fr.insa.crypto.utils.SecureChannelManager;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * Canal TCP persistant et multiplexé vers l'autorité, en complément de HTTP.
+ *
+ * Le client se rattache à une session déjà établie par /establish-secure-channel (trame HELLO
+ * portant l'identifiant de session et ce même identifiant chiffré par la clé de session, qui prouve
+ * la détention de la clé). Chaque requête est ensuite une trame REQUEST chiffrée sur un flux distinct,
+ * exécutée sur l'exécuteur des requêtes; les réponses reviennent dès qu'elles sont prêtes, sans
+ * attendre les requêtes précédentes. Une connexion porte au plus maxStreams requêtes en cours:
+ * au-delà, la lecture est suspendue et TCP repousse le client.
+ *
+ * Chaque connexion occupe un thread dès son acceptation: le nombre total de connexions et celui des
+ * connexions encore en attente de leur HELLO sont bornés, une connexion au-delà est fermée aussitôt.
+ */
+public class MultiplexedChannelServer implements Closeable {
+
+    /**
+     * Exécution d'une requête reçue sur le canal
+     */
+    @FunctionalInterface
+    public interface RequestDispatcher {
+        /**
+         * @param remoteAddress Adresse du client de la connexion (limites par adresse IP)
+         * @param endpoint      Endpoint applicatif (mêmes chemins que l'API HTTP)
+         * @param requestBody   Requête encodée au format binaire
+         * @return Un message CHANNEL_RESPONSE portant statusCode et body (réponse encodée au format binaire)
+         */
+        Message dispatch(InetAddress remoteAddress, String endpoint, byte[] requestBody);
+    }
+
+    private static final int HELLO_TIMEOUT_MS = 10_000;
+    // Endpoint des mesures pour les requêtes vers un endpoint inconnu: le nom reçu n'est pas une étiquette
+    private static final String UNKNOWN_ENDPOINT = "tcp:unknown";
+
+    private final ServerSocket serverSocket;
+    private final Function<String, SecureChannelManager> sessions;
+    private final RequestDispatcher dispatcher;
+    private final Set<String> endpoints;
+    private final Executor executor;
+    private final int maxStreams;
+    private final MetricsRegistry metrics;
+    private final Semaphore connectionSlots;
+    private final Semaphore helloSlots;
+    private final Set<Connection> connections = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger streamsInFlight = new AtomicInteger();
+    private final LongAdder requestCount = new LongAdder();
+    private final LongAdder rejectedConnectionCount = new LongAdder();
+    private volatile boolean running = true;
+
+    /**
+     * @param sessions  Canaux sécurisés établis, par identifiant de session
+     * @param endpoints Endpoints servis par le dispatcher, seuls mesurés sous leur nom
+     * @param maxConnections   Connexions ouvertes au plus, rattachées ou non
+     * @param maxPendingHellos Connexions au plus en attente de leur HELLO
+     */
+    public MultiplexedChannelServer(int port, Function<String, SecureChannelManager> sessions, RequestDispatcher dispatcher,
+                                    Set<String> endpoints, Executor executor, int maxStreams, int maxConnections,
+                                    int maxPendingHellos, MetricsRegistry metrics) throws IOException {
+        this.sessions = sessions;
+        this.dispatcher = dispatcher;
+        this.endpoints = Set.copyOf(endpoints);
+        this.executor = executor;
+        this.maxStreams = maxStreams;
+        this.metrics = metrics;
+        this.connectionSlots = new Semaphore(maxConnections);
+        this.helloSlots = new Semaphore(maxPendingHellos);
+        this.serverSocket = new ServerSocket();
+        serverSocket.setReuseAddress(true);
+        serverSocket.bind(new InetSocketAddress(port));
+
+        Thread acceptor = new Thread(this::acceptLoop, "channel-accept");
+        acceptor.setDaemon(true);
+        acceptor.start();
+        Logger.info("Canal multiplexé de l'autorité ouvert sur le port " + getPort());
+    }
+
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    public int getConnectionCount() {
+        return connections.size();
+    }
+
+    public int getStreamsInFlight() {
+        return streamsInFlight.get();
+    }
+
+    public long getRequestCount() {
+        return requestCount.sum();
+    }
+
+    public long getRejectedConnectionCount() {
+        return rejectedConnectionCount.sum();
+    }
+
+    private void acceptLoop() {
+        while (running) {
+            try {
+                Socket socket = serverSocket.accept();
+                if (!connectionSlots.tryAcquire()) {
+                    reject(socket);
+                    continue;
+                }
+                if (!helloSlots.tryAcquire()) {
+                    connectionSlots.release();
+                    reject(socket);
+                    continue;
+                }
+                Thread thread = new Thread(() -> serve(socket), "channel-connection");
+                thread.setDaemon(true);
+                thread.start();
+            } catch (IOException e) {
+                if (running) {
+                    Logger.error("Erreur d'acceptation sur le canal multiplexé: " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    private void reject(Socket socket) {
+        rejectedConnectionCount.increment();
+        try {
+            socket.close();
+        } catch (IOException e) {
+            // Déjà fermée
+        }
+    }
+
+    /**
+     * Sert une connexion acceptée, qui détient une place de connexion et une place d'attente du HELLO
+     */
+    private void serve(Socket socket) {
+        Connection connection = null;
+        boolean awaitingHello = true;
+        try {
+            socket.setTcpNoDelay(true);
+            socket.setSoTimeout(HELLO_TIMEOUT_MS);
+            DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream(), 1 << 16));
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream(), 1 << 16));
+            if (in.readInt() != Frames.MAGIC) {
+                throw new IOException("Protocole de canal inconnu");
+            }
+
+            SecureChannelManager secureChannel = authenticate(Frames.read(in));
+            awaitingHello = false;
+            helloSlots.release();
+            if (secureChannel == null) {
+                Frames.write(out, Frames.CONTROL_STREAM, Frames.GOAWAY, "session-refused".getBytes(StandardCharsets.UTF_8));
+                out.flush();
+                return;
+            }
+            Frames.write(out, Frames.CONTROL_STREAM, Frames.HELLO_OK, new byte[0]);
+            out.flush();
+            socket.setSoTimeout(0);
+
+            connection = new Connection(socket, out, secureChannel);
+            connections.add(connection);
+            while (running) {
+                Frames.Frame frame = Frames.read(in);
+                if (frame.type == Frames.GOAWAY) {
+                    break;
+                }
+                if (frame.type != Frames.REQUEST || frame.streamId == Frames.CONTROL_STREAM) {
+                    throw new IOException("Trame inattendue de type " + frame.type + " sur le flux " + frame.streamId);
+                }
+                connection.streams.acquire();
+                streamsInFlight.incrementAndGet();
+                Connection current = connection;
+                try {
+                    executor.execute(() -> current.handle(frame));
+                } catch (RejectedExecutionException e) {
+                    current.release();
+                    throw new IOException("Exécuteur arrêté");
+                }
+            }
+        } catch (IOException e) {
+            if (running) {
+                Logger.debug("Connexion au canal multiplexé fermée: " + e.getMessage());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            if (awaitingHello) {
+                helloSlots.release();
+            }
+            if (connection != null) {
+                connections.remove(connection);
+            }
+            try {
+                socket.close();
+            } catch (IOException e) {
+                // Déjà fermée
+            }
+            connectionSlots.release();
+        }
+    }
+
+    /**
+     * @return Le canal de la session si la preuve est valide, null sinon
+     */
+    private SecureChannelManager authenticate(Frames.Frame frame) {
+        if (frame.type != Frames.HELLO) {
+            return null;
+        }
+        try {
+            Message hello = WireCodec.BINARY.decode(MessageType.CHANNEL_HELLO, frame.payload);
+            String sessionId = hello.getString("sessionId");
+            SecureChannelManager secureChannel = sessions.apply(sessionId);
+            if (secureChannel == null) {
+                return null;
+            }
+            byte[] proof = secureChannel.decrypt(hello.getBytes("proof"));
+            return Arrays.equals(proof, sessionId.getBytes(StandardCharsets.UTF_8)) ? secureChannel : null;
+        } catch (Exception e) {
+            Logger.warning("Rattachement au canal multiplexé refusé: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Connexion rattachée à une session: les réponses y sont écrites par les threads de l'exécuteur
+     */
+    private class Connection {
+        final Socket socket;
+        final DataOutputStream out;
+        final SecureChannelManager secureChannel;
+        final Semaphore streams = new Semaphore(maxStreams);
+        // Réponses en attente du verrou d'écriture: seule la dernière vide le tampon
+        final AtomicInteger pendingWrites = new AtomicInteger();
+
+        Connection(Socket socket, DataOutputStream out, SecureChannelManager secureChannel) {
+            this.socket = socket;
+            this.out = out;
+            this.secureChannel = secureChannel;
+        }
+
+        void handle(Frames.Frame frame) {
+            long start = System.nanoTime();
+            EndpointMetrics endpointMetrics = null;
+            int status = -1;
+            int responseBytes = 0;
+            try {
+                Message request = WireCodec.BINARY.decode(MessageType.CHANNEL_REQUEST, secureChannel.decrypt(frame.payload));
+                // Le flux est aussi chiffré dans la trame: une trame rejouée sur un autre flux est rejetée
+                if (request.getInt("streamId") != frame.streamId) {
+                    throw new IOException("Identifiant de flux incohérent");
+                }
+                String endpoint = request.getString("endpoint");
+                endpointMetrics = metrics.endpoint(endpoints.contains(endpoint) ? "tcp:" + endpoint : UNKNOWN_ENDPOINT);
+                endpointMetrics.requestStarted();
+
+                Message response = dispatcher.dispatch(socket.getInetAddress(), endpoint, request.getBytes("body"));
+                response.put("streamId", frame.streamId);
+                status = response.getInt("statusCode");
+                byte[] payload = secureChannel.encrypt(WireCodec.BINARY.encode(response));
+                responseBytes = payload.length;
+                write(frame.streamId, payload);
+                requestCount.increment();
+            } catch (Exception e) {
+                Logger.error("Erreur sur le flux " + frame.streamId + " du canal multiplexé: " + e.getMessage());
+                disconnect();
+            } finally {
+                if (endpointMetrics != null) {
+                    endpointMetrics.requestCompleted(System.nanoTime() - start, status, frame.payload.length, responseBytes);
+                }
+                release();
+            }
+        }
+
+        private void write(int streamId, byte[] payload) throws IOException {
+            pendingWrites.incrementAndGet();
+            synchronized (out) {
+                try {
+                    Frames.write(out, streamId, Frames.RESPONSE, payload);
+                } finally {
+                    if (pendingWrites.decrementAndGet() == 0) {
+                        out.flush();
+                    }
+                }
+            }
+        }
+
+        void release() {
+            streamsInFlight.decrementAndGet();
+            streams.release();
+        }
+
+        void disconnect() {
+            try {
+                socket.close();
+            } catch (IOException e) {
+                // Déjà fermée
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        running = false;
+        serverSocket.close();
+        for (Connection connection : connections) {
+            connection.disconnect();
+        }
+    }
+}
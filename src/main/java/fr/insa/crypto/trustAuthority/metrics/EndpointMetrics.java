@@ -0,0 +1,71 @@
+package fr.insa.crypto.trustAuthority.metrics;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Mesures d'un endpoint (HTTP ou canal multiplexé): latence, codes de statut, octets échangés et requêtes en cours
+ */
+public class EndpointMetrics {
+    private static final int MAX_STATUS = 600;
+
+    private final String endpoint;
+    private final LatencyHistogram latency = new LatencyHistogram();
+    private final AtomicLongArray statusCounts = new AtomicLongArray(MAX_STATUS);
+    private final LongAdder bytesIn = new LongAdder();
+    private final LongAdder bytesOut = new LongAdder();
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    EndpointMetrics(String endpoint) {
+        this.endpoint = endpoint;
+    }
+
+    public void requestStarted() {
+        inFlight.incrementAndGet();
+    }
+
+    public void requestCompleted(long durationNanos, int status, long requestBytes, long responseBytes) {
+        inFlight.decrementAndGet();
+        latency.recordNanos(durationNanos);
+        // Statut -1: aucune réponse envoyée (exception dans le handler)
+        statusCounts.incrementAndGet(status > 0 && status < MAX_STATUS ? status : 0);
+        bytesIn.add(requestBytes);
+        bytesOut.add(responseBytes);
+    }
+
+    public String getEndpoint() {
+        return endpoint;
+    }
+
+    public LatencyHistogram getLatency() {
+        return latency;
+    }
+
+    /**
+     * @param status Code HTTP (0 pour les requêtes terminées sans réponse)
+     */
+    public long getStatusCount(int status) {
+        return statusCounts.get(status);
+    }
+
+    long[] statusCountsSnapshot() {
+        long[] snapshot = new long[MAX_STATUS];
+        for (int i = 0; i < MAX_STATUS; i++) {
+            snapshot[i] = statusCounts.get(i);
+        }
+        return snapshot;
+    }
+
+    public long getBytesIn() {
+        return bytesIn.sum();
+    }
+
+    public long getBytesOut() {
+        return bytesOut.sum();
+    }
+
+    public int getInFlight() {
+        return inFlight.get();
+    }
+}
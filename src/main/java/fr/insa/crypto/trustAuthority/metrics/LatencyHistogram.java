@@ -0,0 +1,122 @@
+package fr.insa.crypto.trustAuthority.metrics;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Histogramme de latences log-linéaire (à la manière de HdrHistogram), sans verrou ni allocation à l'enregistrement.
+ * Les valeurs sont enregistrées en microsecondes: linéaires jusqu'à 64 µs, puis 32 sous-intervalles par puissance
+ * de deux (précision relative d'environ 3 %), jusqu'à environ 19 heures.
+ * Les percentiles sont calculés à la lecture, à partir d'une copie des compteurs.
+ */
+public class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 5;
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;      // 32 sous-intervalles par octave
+    private static final int LINEAR_LIMIT = SUB_BUCKET_COUNT << 1;         // valeurs < 64 µs: un intervalle par µs
+    private static final int FIRST_EXPONENT = SUB_BUCKET_BITS + 1;         // 2^6 = 64
+    private static final int MAX_EXPONENT = 36;                            // 2^36 µs ≈ 19 h
+    private static final int BUCKET_COUNT = LINEAR_LIMIT + (MAX_EXPONENT - FIRST_EXPONENT + 1) * SUB_BUCKET_COUNT;
+    private static final long MAX_VALUE = (1L << (MAX_EXPONENT + 1)) - 1;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sumMicros = new LongAdder();
+    private final AtomicLong maxMicros = new AtomicLong();
+
+    /**
+     * Enregistre une durée mesurée avec System.nanoTime()
+     */
+    public void recordNanos(long nanos) {
+        recordMicros(TimeUnit.NANOSECONDS.toMicros(nanos));
+    }
+
+    public void recordMicros(long micros) {
+        long value = Math.min(Math.max(micros, 0), MAX_VALUE);
+        counts.incrementAndGet(bucketIndex(value));
+        count.increment();
+        sumMicros.add(value);
+        long currentMax = maxMicros.get();
+        while (value > currentMax && !maxMicros.compareAndSet(currentMax, value)) {
+            currentMax = maxMicros.get();
+        }
+    }
+
+    static int bucketIndex(long value) {
+        if (value < LINEAR_LIMIT) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) - SUB_BUCKET_COUNT;
+        return LINEAR_LIMIT + (exponent - FIRST_EXPONENT) * SUB_BUCKET_COUNT + subBucket;
+    }
+
+    /**
+     * @return Valeur représentative (milieu) de l'intervalle, en microsecondes
+     */
+    static long bucketValue(int index) {
+        if (index < LINEAR_LIMIT) {
+            return index;
+        }
+        int exponent = FIRST_EXPONENT + (index - LINEAR_LIMIT) / SUB_BUCKET_COUNT;
+        int subBucket = (index - LINEAR_LIMIT) % SUB_BUCKET_COUNT;
+        int shift = exponent - SUB_BUCKET_BITS;
+        long lowerBound = (long) (SUB_BUCKET_COUNT + subBucket) << shift;
+        return lowerBound + (1L << shift) / 2;
+    }
+
+    public long getCount() {
+        return count.sum();
+    }
+
+    public long getSumMicros() {
+        return sumMicros.sum();
+    }
+
+    public long getMaxMicros() {
+        return maxMicros.get();
+    }
+
+    public double getMeanMicros() {
+        long n = count.sum();
+        return n == 0 ? 0 : (double) sumMicros.sum() / n;
+    }
+
+    /**
+     * Calcule plusieurs percentiles en un seul parcours d'une copie cohérente des compteurs
+     *
+     * @param quantiles Quantiles croissants entre 0 et 1
+     * @return Valeurs correspondantes en microsecondes
+     */
+    public long[] percentilesMicros(double... quantiles) {
+        long[] snapshot = new long[BUCKET_COUNT];
+        long total = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            snapshot[i] = counts.get(i);
+            total += snapshot[i];
+        }
+
+        long[] results = new long[quantiles.length];
+        if (total == 0) {
+            return results;
+        }
+        long max = maxMicros.get();
+        int q = 0;
+        long cumulative = 0;
+        for (int i = 0; i < BUCKET_COUNT && q < quantiles.length; i++) {
+            cumulative += snapshot[i];
+            while (q < quantiles.length && cumulative >= (long) Math.ceil(quantiles[q] * total)) {
+                results[q++] = Math.min(bucketValue(i), max);
+            }
+        }
+        while (q < quantiles.length) {
+            results[q++] = max;
+        }
+        return results;
+    }
+
+    public long percentileMicros(double quantile) {
+        return percentilesMicros(quantile)[0];
+    }
+}
@@ -0,0 +1,89 @@
+package fr.insa.crypto.trustAuthority.metrics;
+
+import com.sun.net.httpserver.Filter;
+import com.sun.net.httpserver.HttpExchange;
+
+import java.io.FilterInputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * Filtre HTTP mesurant chaque requête de son contexte: durée jusqu'à la fin du handler
+ * (réponse en flux comprise), code de statut et octets lus et écrits dans les corps.
+ */
+public class MetricsFilter extends Filter {
+    private final MetricsRegistry registry;
+
+    public MetricsFilter(MetricsRegistry registry) {
+        this.registry = registry;
+    }
+
+    @Override
+    public void doFilter(HttpExchange exchange, Chain chain) throws IOException {
+        EndpointMetrics metrics = registry.endpoint(exchange.getHttpContext().getPath());
+        CountingInputStream in = new CountingInputStream(exchange.getRequestBody());
+        CountingOutputStream out = new CountingOutputStream(exchange.getResponseBody());
+        exchange.setStreams(in, out);
+
+        long start = System.nanoTime();
+        metrics.requestStarted();
+        try {
+            chain.doFilter(exchange);
+        } finally {
+            metrics.requestCompleted(System.nanoTime() - start, exchange.getResponseCode(), in.count, out.count);
+        }
+    }
+
+    @Override
+    public String description() {
+        return "Mesure de latence, statut et volume des requêtes";
+    }
+
+    private static class CountingInputStream extends FilterInputStream {
+        long count;
+
+        CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) {
+                count++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = in.read(b, off, len);
+            if (n > 0) {
+                count += n;
+            }
+            return n;
+        }
+    }
+
+    private static class CountingOutputStream extends FilterOutputStream {
+        long count;
+
+        CountingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            count += len;
+        }
+    }
+}
@@ -0,0 +1,161 @@
+package fr.insa.crypto.trustAuthority.metrics;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.DoubleSupplier;
+
+/**
+ * Registre des métriques de l'autorité et rendu au format texte Prometheus.
+ * Les mesures par endpoint sont alimentées par MetricsFilter; les jauges et compteurs des autres
+ * composants (files, caches, sessions) sont lus à la demande au moment du rendu.
+ */
+public class MetricsRegistry {
+    private static final String PREFIX = "ta_";
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99, 0.999};
+
+    private final Map<String, EndpointMetrics> endpoints = new ConcurrentSkipListMap<>();
+    private final Map<String, Sampled> sampled = new ConcurrentSkipListMap<>();
+    private final Map<String, Summary> summaries = new ConcurrentSkipListMap<>();
+
+    private static class Sampled {
+        final String help;
+        final String type;
+        final DoubleSupplier value;
+
+        Sampled(String help, String type, DoubleSupplier value) {
+            this.help = help;
+            this.type = type;
+            this.value = value;
+        }
+    }
+
+    private static class Summary {
+        final String help;
+        final LatencyHistogram histogram;
+
+        Summary(String help, LatencyHistogram histogram) {
+            this.help = help;
+            this.histogram = histogram;
+        }
+    }
+
+    /**
+     * @return Les mesures de l'endpoint, créées au premier appel
+     */
+    public EndpointMetrics endpoint(String path) {
+        EndpointMetrics metrics = endpoints.get(path);
+        return metrics != null ? metrics : endpoints.computeIfAbsent(path, EndpointMetrics::new);
+    }
+
+    /**
+     * Déclare une valeur instantanée (profondeur de file, taille de cache...)
+     */
+    public void gauge(String name, String help, DoubleSupplier value) {
+        sampled.put(PREFIX + name, new Sampled(help, "gauge", value));
+    }
+
+    /**
+     * Déclare un compteur croissant tenu par un autre composant
+     */
+    public void counter(String name, String help, DoubleSupplier value) {
+        sampled.put(PREFIX + name, new Sampled(help, "counter", value));
+    }
+
+    /**
+     * Déclare un histogramme de latences exporté en percentiles (secondes)
+     */
+    public void summary(String name, String help, LatencyHistogram histogram) {
+        summaries.put(PREFIX + name, new Summary(help, histogram));
+    }
+
+    /**
+     * @return Toutes les métriques au format d'exposition texte Prometheus 0.0.4
+     */
+    public String renderPrometheus() {
+        StringBuilder out = new StringBuilder(4096);
+
+        header(out, PREFIX + "request_duration_seconds", "Latence des requêtes HTTP par endpoint", "summary");
+        for (EndpointMetrics metrics : endpoints.values()) {
+            writeSummary(out, PREFIX + "request_duration_seconds", "endpoint=\"" + escapeLabel(metrics.getEndpoint()) + "\",", metrics.getLatency());
+        }
+
+        header(out, PREFIX + "requests_total", "Requêtes HTTP terminées par endpoint et code de statut", "counter");
+        for (EndpointMetrics metrics : endpoints.values()) {
+            long[] statuses = metrics.statusCountsSnapshot();
+            for (int status = 0; status < statuses.length; status++) {
+                if (statuses[status] > 0) {
+                    out.append(PREFIX).append("requests_total{endpoint=\"").append(escapeLabel(metrics.getEndpoint()))
+                            .append("\",status=\"").append(status == 0 ? "none" : String.valueOf(status)).append("\"} ")
+                            .append(statuses[status]).append('\n');
+                }
+            }
+        }
+
+        header(out, PREFIX + "http_bytes_total", "Octets lus et écrits dans les corps HTTP par endpoint", "counter");
+        for (EndpointMetrics metrics : endpoints.values()) {
+            out.append(PREFIX).append("http_bytes_total{endpoint=\"").append(escapeLabel(metrics.getEndpoint()))
+                    .append("\",direction=\"in\"} ").append(metrics.getBytesIn()).append('\n');
+            out.append(PREFIX).append("http_bytes_total{endpoint=\"").append(escapeLabel(metrics.getEndpoint()))
+                    .append("\",direction=\"out\"} ").append(metrics.getBytesOut()).append('\n');
+        }
+
+        header(out, PREFIX + "requests_in_flight", "Requêtes HTTP en cours par endpoint", "gauge");
+        for (EndpointMetrics metrics : endpoints.values()) {
+            out.append(PREFIX).append("requests_in_flight{endpoint=\"").append(escapeLabel(metrics.getEndpoint()))
+                    .append("\"} ").append(metrics.getInFlight()).append('\n');
+        }
+
+        for (Map.Entry<String, Summary> entry : summaries.entrySet()) {
+            header(out, entry.getKey(), entry.getValue().help, "summary");
+            writeSummary(out, entry.getKey(), "", entry.getValue().histogram);
+        }
+
+        for (Map.Entry<String, Sampled> entry : sampled.entrySet()) {
+            Sampled metric = entry.getValue();
+            header(out, entry.getKey(), metric.help, metric.type);
+            out.append(entry.getKey()).append(' ').append(format(metric.value.getAsDouble())).append('\n');
+        }
+        return out.toString();
+    }
+
+    private static void header(StringBuilder out, String name, String help, String type) {
+        out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        out.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+    }
+
+    private static void writeSummary(StringBuilder out, String name, String labels, LatencyHistogram histogram) {
+        long[] values = histogram.percentilesMicros(QUANTILES);
+        for (int i = 0; i < QUANTILES.length; i++) {
+            out.append(name).append('{').append(labels).append("quantile=\"").append(QUANTILES[i]).append("\"} ")
+                    .append(format(values[i] / 1e6)).append('\n');
+        }
+        String labelSet = labels.isEmpty() ? "" : "{" + labels.substring(0, labels.length() - 1) + "}";
+        out.append(name).append("_sum").append(labelSet).append(' ').append(format(histogram.getSumMicros() / 1e6)).append('\n');
+        out.append(name).append("_count").append(labelSet).append(' ').append(histogram.getCount()).append('\n');
+    }
+
+    /**
+     * Échappe une valeur d'étiquette (barre oblique inverse, guillemet, retour à la ligne)
+     */
+    static String escapeLabel(String value) {
+        StringBuilder escaped = new StringBuilder(value.length());
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '\\': escaped.append("\\\\"); break;
+                case '"': escaped.append("\\\""); break;
+                case '\n': escaped.append("\\n"); break;
+                default: escaped.append(c);
+            }
+        }
+        return escaped.toString();
+    }
+
+    private static String format(double value) {
+        if (value == Math.rint(value) && Math.abs(value) < 1e15) {
+            return String.valueOf((long) value);
+        }
+        return String.format(Locale.ROOT, "%.6g", value);
+    }
+}
@@ -0,0 +1,176 @@
+package fr.insa.crypto.trustAuthority.nio;
+
+import fr.insa.crypto.utils.Logger;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Boucle d'événements: un sélecteur et un thread pour un sous-ensemble des connexions.
+ * Tout l'état des connexions est manipulé par ce thread; les autres threads (handlers)
+ * lui soumettent des tâches via execute().
+ */
+final class EventLoop implements Runnable {
+    private static final int READ_BUFFER_BYTES = 64 * 1024;
+    private static final long SELECT_TIMEOUT_MS = 1000;
+
+    private final NioHttpServer server;
+    private final Selector selector;
+    private final Thread thread;
+    // Tampon direct de lecture partagé par les connexions de la boucle: chaque lecture est traitée aussitôt
+    private final ByteBuffer readBuffer = ByteBuffer.allocateDirect(READ_BUFFER_BYTES);
+    private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+    private final Set<HttpConnection> connections = new HashSet<>();
+    private volatile boolean running = true;
+
+    EventLoop(NioHttpServer server, int index) throws IOException {
+        this.server = server;
+        this.selector = Selector.open();
+        this.thread = new Thread(this, "http-event-loop-" + index);
+        thread.setDaemon(true);
+    }
+
+    void start() {
+        thread.start();
+    }
+
+    void registerAcceptor(ServerSocketChannel serverChannel) throws IOException {
+        serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+    }
+
+    /**
+     * Rattache une connexion acceptée à cette boucle
+     */
+    void register(SocketChannel channel) {
+        execute(() -> {
+            try {
+                channel.configureBlocking(false);
+                channel.socket().setTcpNoDelay(true);
+                SelectionKey key = channel.register(selector, SelectionKey.OP_READ);
+                HttpConnection connection = new HttpConnection(server, this, channel, key);
+                key.attach(connection);
+                connections.add(connection);
+                server.openConnectionsCounter().incrementAndGet();
+            } catch (IOException e) {
+                Logger.debug("Connexion HTTP abandonnée à l'enregistrement: " + e.getMessage());
+                try {
+                    channel.close();
+                } catch (IOException ignored) {
+                    // Déjà fermée
+                }
+            }
+        });
+    }
+
+    /**
+     * Exécute une tâche sur le thread de la boucle
+     */
+    void execute(Runnable task) {
+        tasks.add(task);
+        if (Thread.currentThread() != thread) {
+            selector.wakeup();
+        }
+    }
+
+    boolean inLoop() {
+        return Thread.currentThread() == thread;
+    }
+
+    void connectionClosed(HttpConnection connection) {
+        if (connections.remove(connection)) {
+            server.openConnectionsCounter().decrementAndGet();
+        }
+    }
+
+    @Override
+    public void run() {
+        long lastSweep = System.currentTimeMillis();
+        while (running) {
+            try {
+                selector.select(SELECT_TIMEOUT_MS);
+                runTasks();
+
+                Iterator<SelectionKey> selected = selector.selectedKeys().iterator();
+                while (selected.hasNext()) {
+                    SelectionKey key = selected.next();
+                    selected.remove();
+                    if (!key.isValid()) {
+                        continue;
+                    }
+                    if (key.isAcceptable()) {
+                        server.acceptPending();
+                        continue;
+                    }
+                    HttpConnection connection = (HttpConnection) key.attachment();
+                    if (key.isWritable()) {
+                        connection.onWritable();
+                    }
+                    if (key.isValid() && key.isReadable()) {
+                        connection.onReadable(readBuffer);
+                    }
+                }
+                // Les réponses soumises pendant le traitement des clés partent sans attendre le prochain réveil
+                runTasks();
+
+                long now = System.currentTimeMillis();
+                if (now - lastSweep >= SELECT_TIMEOUT_MS) {
+                    closeIdleConnections(now);
+                    lastSweep = now;
+                }
+            } catch (ClosedSelectorException e) {
+                break;
+            } catch (Exception e) {
+                Logger.error("Erreur dans la boucle d'événements HTTP: " + e.getMessage());
+            }
+        }
+        closeAll();
+    }
+
+    private void runTasks() {
+        Runnable task;
+        while ((task = tasks.poll()) != null) {
+            task.run();
+        }
+    }
+
+    private void closeIdleConnections(long now) {
+        for (HttpConnection connection : new ArrayList<>(connections)) {
+            if (connection.isIdleSince(now - server.getKeepAliveMs())) {
+                connection.close();
+            }
+        }
+    }
+
+    private void closeAll() {
+        runTasks();
+        for (HttpConnection connection : new ArrayList<>(connections)) {
+            connection.close();
+        }
+        try {
+            selector.close();
+        } catch (IOException e) {
+            // Déjà fermé
+        }
+    }
+
+    void shutdown() {
+        running = false;
+        selector.wakeup();
+        try {
+            thread.join(2000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
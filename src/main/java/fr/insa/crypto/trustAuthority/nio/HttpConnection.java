@@ -0,0 +1,425 @@
+package fr.insa.crypto.trustAuthority.nio;
+
+import com.sun.net.httpserver.Headers;
+import fr.insa.crypto.utils.Logger;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+
+/**
+ * Une connexion HTTP/1.1 persistante: découpage des requêtes à partir des octets lus par la boucle,
+ * file des tampons de réponse écrits par écriture groupée, et cycle de vie keep-alive.
+ *
+ * Sauf mention contraire, les méthodes sont appelées par le thread de la boucle. send() et abort()
+ * sont appelées par le thread du handler et passent par la boucle.
+ */
+final class HttpConnection {
+    private static final byte[] EMPTY = new byte[0];
+    private static final int INITIAL_BUFFER_BYTES = 2048;
+    private static final int MAX_HEADER_BYTES = 16 * 1024;
+    private static final int MAX_GATHER = 16;
+    // Au-delà, un handler qui écrit en flux attend que la boucle ait transmis les données au client
+    private static final long MAX_PENDING_WRITE_BYTES = 256 * 1024;
+    private static final byte[] CONTINUE = "HTTP/1.1 100 Continue\r\n\r\n".getBytes(StandardCharsets.ISO_8859_1);
+
+    private final NioHttpServer server;
+    private final EventLoop loop;
+    private final SocketChannel channel;
+    private final SelectionKey key;
+    private final InetSocketAddress remoteAddress;
+    private final InetSocketAddress localAddress;
+
+    // Requête en cours de réception (alloué à la demande, libéré une fois la connexion au repos)
+    private byte[] input = EMPTY;
+    private int inputLength;
+
+    private final ArrayDeque<ByteBuffer> writeQueue = new ArrayDeque<>();
+    private final ByteBuffer[] gather = new ByteBuffer[MAX_GATHER];
+
+    // Une requête est confiée à un handler; la lecture est suspendue jusqu'à la fin de sa réponse
+    private boolean processing;
+    private boolean responseComplete;
+    private boolean closeAfterResponse;
+    private boolean continueSent;
+    private int requestCount;
+    private long lastActivity = System.currentTimeMillis();
+
+    // Partagé avec les threads des handlers
+    private final Object drainLock = new Object();
+    private long queuedBytes;
+    private volatile boolean closed;
+
+    HttpConnection(NioHttpServer server, EventLoop loop, SocketChannel channel, SelectionKey key) throws IOException {
+        this.server = server;
+        this.loop = loop;
+        this.channel = channel;
+        this.key = key;
+        this.remoteAddress = (InetSocketAddress) channel.getRemoteAddress();
+        this.localAddress = (InetSocketAddress) channel.getLocalAddress();
+    }
+
+    InetSocketAddress getRemoteAddress() {
+        return remoteAddress;
+    }
+
+    InetSocketAddress getLocalAddress() {
+        return localAddress;
+    }
+
+    /**
+     * @return true si la connexion sera fermée après la réponse en cours (lu par le handler après la remise de l'échange)
+     */
+    boolean isCloseAfterResponse() {
+        return closeAfterResponse;
+    }
+
+    void onReadable(ByteBuffer readBuffer) {
+        readBuffer.clear();
+        int n;
+        try {
+            n = channel.read(readBuffer);
+        } catch (IOException e) {
+            close();
+            return;
+        }
+        if (n < 0) {
+            close();
+            return;
+        }
+        if (n == 0) {
+            return;
+        }
+
+        lastActivity = System.currentTimeMillis();
+        readBuffer.flip();
+        ensureCapacity(inputLength + n);
+        readBuffer.get(input, inputLength, n);
+        inputLength += n;
+        if (!processing) {
+            parseRequest();
+        }
+    }
+
+    /**
+     * Découpe une requête complète si elle est entièrement reçue et la confie au serveur
+     */
+    private void parseRequest() {
+        int headerEnd = indexOfHeaderEnd();
+        if (headerEnd < 0) {
+            if (inputLength > MAX_HEADER_BYTES) {
+                reject(431, "Request Header Fields Too Large");
+            }
+            return;
+        }
+
+        String[] lines = new String(input, 0, headerEnd, StandardCharsets.ISO_8859_1).split("\r\n");
+        String[] requestLine = lines[0].split(" ");
+        if (requestLine.length != 3 || !requestLine[2].startsWith("HTTP/1.")) {
+            reject(400, "Bad Request");
+            return;
+        }
+
+        Headers headers = new Headers();
+        for (int i = 1; i < lines.length; i++) {
+            int colon = lines[i].indexOf(':');
+            if (colon <= 0) {
+                reject(400, "Bad Request");
+                return;
+            }
+            headers.add(lines[i].substring(0, colon).trim(), lines[i].substring(colon + 1).trim());
+        }
+        if (headers.containsKey("Transfer-Encoding")) {
+            reject(501, "Chunked requests not supported");
+            return;
+        }
+
+        long contentLength = 0;
+        String contentLengthHeader = headers.getFirst("Content-Length");
+        if (contentLengthHeader != null) {
+            try {
+                contentLength = Long.parseLong(contentLengthHeader);
+            } catch (NumberFormatException e) {
+                contentLength = -1;
+            }
+            if (contentLength < 0) {
+                reject(400, "Bad Request");
+                return;
+            }
+        }
+        int bodyStart = headerEnd + 4;
+        if (contentLength > server.getMaxRequestBytes() - bodyStart) {
+            reject(413, "Payload Too Large");
+            return;
+        }
+
+        int total = bodyStart + (int) contentLength;
+        if (inputLength < total) {
+            if (!continueSent && "100-continue".equalsIgnoreCase(headers.getFirst("Expect"))) {
+                continueSent = true;
+                writeQueue.add(ByteBuffer.wrap(CONTINUE));
+                flush();
+            }
+            ensureCapacity(total);
+            return;
+        }
+
+        URI uri;
+        try {
+            uri = new URI(requestLine[1]);
+        } catch (URISyntaxException e) {
+            reject(400, "Bad Request");
+            return;
+        }
+        byte[] body = Arrays.copyOfRange(input, bodyStart, total);
+        consume(total);
+
+        continueSent = false;
+        requestCount++;
+        boolean http10 = "HTTP/1.0".equals(requestLine[2]);
+        String connectionHeader = headers.getFirst("Connection");
+        boolean keepAlive = http10 ? "keep-alive".equalsIgnoreCase(connectionHeader) : !"close".equalsIgnoreCase(connectionHeader);
+        closeAfterResponse = !keepAlive || requestCount >= server.getMaxRequestsPerConnection();
+        processing = true;
+        key.interestOps(key.interestOps() & ~SelectionKey.OP_READ);
+
+        String path = uri.getPath() != null && !uri.getPath().isEmpty() ? uri.getPath() : "/";
+        NioHttpContext context = server.findContext(path);
+        if (context == null) {
+            respond(404, "No context found for request");
+            return;
+        }
+        server.dispatch(new NioHttpExchange(this, context, requestLine[0], uri, requestLine[2], headers, body));
+    }
+
+    private int indexOfHeaderEnd() {
+        for (int i = 3; i < inputLength; i++) {
+            if (input[i] == '\n' && input[i - 1] == '\r' && input[i - 2] == '\n' && input[i - 3] == '\r') {
+                return i - 3;
+            }
+        }
+        return -1;
+    }
+
+    private void ensureCapacity(int needed) {
+        if (input.length < needed) {
+            input = Arrays.copyOf(input, Math.max(needed, Math.max(INITIAL_BUFFER_BYTES, input.length * 2)));
+        }
+    }
+
+    /**
+     * Retire une requête traitée du tampon; un tampon vide est rendu pour que les connexions au repos ne coûtent rien
+     */
+    private void consume(int length) {
+        System.arraycopy(input, length, input, 0, inputLength - length);
+        inputLength -= length;
+        if (inputLength == 0) {
+            input = EMPTY;
+        }
+    }
+
+    /**
+     * Répond à une requête invalide puis ferme la connexion
+     */
+    void reject(int status, String message) {
+        closeAfterResponse = true;
+        processing = true;
+        key.interestOps(key.interestOps() & ~SelectionKey.OP_READ);
+        respond(status, message);
+    }
+
+    /**
+     * Réponse texte produite par la boucle elle-même, sans handler
+     */
+    private void respond(int status, String message) {
+        byte[] body = message.getBytes(StandardCharsets.UTF_8);
+        String head = "HTTP/1.1 " + status + " " + NioHttpExchange.reasonPhrase(status) + "\r\n"
+                + "Date: " + NioHttpExchange.httpDate() + "\r\n"
+                + "Content-Type: text/plain; charset=UTF-8\r\n"
+                + "Content-Length: " + body.length + "\r\n"
+                + (closeAfterResponse ? "Connection: close\r\n" : "")
+                + "\r\n";
+        writeQueue.add(ByteBuffer.wrap(head.getBytes(StandardCharsets.ISO_8859_1)));
+        writeQueue.add(ByteBuffer.wrap(body));
+        responseComplete = true;
+        flush();
+    }
+
+    /**
+     * Soumet des tampons de réponse à la boucle (thread du handler). Hors dernière partie, attend
+     * que les données en attente repassent sous la limite: un client lent freine le handler au lieu
+     * de faire grossir la mémoire.
+     *
+     * @param last       Dernière partie de la réponse
+     * @param forceClose Fermer la connexion après cette réponse
+     */
+    void send(ByteBuffer[] buffers, boolean last, boolean forceClose) throws IOException {
+        long size = 0;
+        for (ByteBuffer buffer : buffers) {
+            size += buffer.remaining();
+        }
+        synchronized (drainLock) {
+            if (closed) {
+                throw new IOException("Connexion fermée par le client");
+            }
+            queuedBytes += size;
+            server.pendingWriteBytesCounter().addAndGet(size);
+        }
+
+        loop.execute(() -> {
+            if (closed) {
+                return;
+            }
+            writeQueue.addAll(Arrays.asList(buffers));
+            if (forceClose) {
+                closeAfterResponse = true;
+            }
+            if (last) {
+                responseComplete = true;
+            }
+            flush();
+        });
+
+        if (!last) {
+            awaitDrain();
+        }
+    }
+
+    private void awaitDrain() throws IOException {
+        synchronized (drainLock) {
+            while (queuedBytes > MAX_PENDING_WRITE_BYTES && !closed) {
+                try {
+                    drainLock.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Écriture de la réponse interrompue");
+                }
+            }
+            if (closed) {
+                throw new IOException("Connexion fermée par le client");
+            }
+        }
+    }
+
+    /**
+     * Abandonne l'échange en cours sans réponse (thread du handler)
+     */
+    void abort() {
+        loop.execute(this::close);
+    }
+
+    void onWritable() {
+        flush();
+    }
+
+    /**
+     * Écrit la file de tampons par écritures groupées (en-têtes et corps dans le même appel système)
+     */
+    private void flush() {
+        while (!writeQueue.isEmpty()) {
+            int count = 0;
+            for (ByteBuffer buffer : writeQueue) {
+                gather[count++] = buffer;
+                if (count == MAX_GATHER) {
+                    break;
+                }
+            }
+
+            long written;
+            try {
+                written = channel.write(gather, 0, count);
+            } catch (IOException e) {
+                Logger.debug("Écriture HTTP interrompue: " + e.getMessage());
+                close();
+                return;
+            } finally {
+                Arrays.fill(gather, 0, count, null);
+            }
+
+            while (!writeQueue.isEmpty() && !writeQueue.peek().hasRemaining()) {
+                writeQueue.poll();
+            }
+            if (written > 0) {
+                released(written);
+            } else {
+                break;
+            }
+        }
+
+        if (!writeQueue.isEmpty()) {
+            // Tampon d'émission plein: reprendre quand le socket sera à nouveau inscriptible
+            key.interestOps(key.interestOps() | SelectionKey.OP_WRITE);
+            return;
+        }
+        key.interestOps(key.interestOps() & ~SelectionKey.OP_WRITE);
+        if (responseComplete) {
+            endExchange();
+        }
+    }
+
+    private void released(long bytes) {
+        synchronized (drainLock) {
+            // Les réponses produites par la boucle ne sont pas comptées: ne pas descendre sous zéro
+            long counted = Math.min(bytes, queuedBytes);
+            queuedBytes -= counted;
+            server.pendingWriteBytesCounter().addAndGet(-counted);
+            if (queuedBytes <= MAX_PENDING_WRITE_BYTES) {
+                drainLock.notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Fin de la réponse: fermer la connexion ou reprendre la lecture de la requête suivante
+     */
+    private void endExchange() {
+        responseComplete = false;
+        processing = false;
+        lastActivity = System.currentTimeMillis();
+        if (closeAfterResponse) {
+            close();
+            return;
+        }
+        key.interestOps(key.interestOps() | SelectionKey.OP_READ);
+        if (inputLength > 0) {
+            parseRequest();
+        }
+    }
+
+    /**
+     * @return true si la connexion n'attend qu'une requête (ou la fin d'une requête) depuis avant la date donnée
+     */
+    boolean isIdleSince(long threshold) {
+        return !processing && lastActivity < threshold;
+    }
+
+    void close() {
+        if (closed) {
+            return;
+        }
+        synchronized (drainLock) {
+            closed = true;
+            server.pendingWriteBytesCounter().addAndGet(-queuedBytes);
+            queuedBytes = 0;
+            drainLock.notifyAll();
+        }
+        key.cancel();
+        try {
+            channel.close();
+        } catch (IOException e) {
+            // Déjà fermée
+        }
+        writeQueue.clear();
+        input = EMPTY;
+        inputLength = 0;
+        loop.connectionClosed(this);
+    }
+}
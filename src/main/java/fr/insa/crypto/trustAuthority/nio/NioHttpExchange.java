@@ -0,0 +1,367 @@
+package fr.insa.crypto.trustAuthority.nio;
+
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpContext;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpPrincipal;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Échange HTTP du serveur NIO, manipulé par le thread du handler.
+ * Le corps de la requête est déjà entièrement reçu; la réponse est mise en tampon puis transmise
+ * à la boucle par parties (en-têtes joints à la première), en longueur fixe ou en chunked.
+ */
+final class NioHttpExchange extends HttpExchange {
+    private static final int RESPONSE_BUFFER_BYTES = 16 * 1024;
+    private static final byte[] CRLF = {'\r', '\n'};
+    private static final byte[] LAST_CHUNK = "0\r\n\r\n".getBytes(StandardCharsets.ISO_8859_1);
+    private static volatile String cachedDate = "";
+    private static volatile long cachedDateSecond;
+
+    private enum BodyMode {
+        NONE, FIXED, CHUNKED, UNTIL_CLOSE
+    }
+
+    private final HttpConnection connection;
+    private final NioHttpContext context;
+    private final String method;
+    private final URI uri;
+    private final String protocol;
+    private final Headers requestHeaders;
+    private final Headers responseHeaders = new Headers();
+    private final Map<String, Object> attributes = new ConcurrentHashMap<>();
+    private final ResponseStream rawResponse = new ResponseStream();
+
+    private InputStream requestBody;
+    private OutputStream responseBody = rawResponse;
+    private int responseCode = -1;
+
+    NioHttpExchange(HttpConnection connection, NioHttpContext context, String method, URI uri, String protocol,
+                    Headers requestHeaders, byte[] body) {
+        this.connection = connection;
+        this.context = context;
+        this.method = method;
+        this.uri = uri;
+        this.protocol = protocol;
+        this.requestHeaders = requestHeaders;
+        this.requestBody = new ByteArrayInputStream(body);
+    }
+
+    HttpConnection getConnection() {
+        return connection;
+    }
+
+    @Override
+    public Headers getRequestHeaders() {
+        return requestHeaders;
+    }
+
+    @Override
+    public Headers getResponseHeaders() {
+        return responseHeaders;
+    }
+
+    @Override
+    public URI getRequestURI() {
+        return uri;
+    }
+
+    @Override
+    public String getRequestMethod() {
+        return method;
+    }
+
+    @Override
+    public HttpContext getHttpContext() {
+        return context;
+    }
+
+    @Override
+    public InputStream getRequestBody() {
+        return requestBody;
+    }
+
+    @Override
+    public OutputStream getResponseBody() {
+        return responseBody;
+    }
+
+    /**
+     * Mêmes conventions que le serveur du JDK: longueur -1 pour une réponse sans corps,
+     * 0 pour une réponse en flux (chunked), sinon la longueur exacte du corps
+     */
+    @Override
+    public void sendResponseHeaders(int code, long length) throws IOException {
+        if (responseCode != -1) {
+            throw new IOException("En-têtes de réponse déjà envoyés");
+        }
+        responseCode = code;
+
+        BodyMode mode;
+        boolean noBodyAllowed = code < 200 || code == 204 || code == 304 || "HEAD".equals(method);
+        if (length == -1 || noBodyAllowed) {
+            mode = BodyMode.NONE;
+            if (!noBodyAllowed) {
+                responseHeaders.set("Content-Length", "0");
+            }
+        } else if (length == 0) {
+            // Un client HTTP/1.0 ne connaît pas le chunked: corps délimité par la fermeture
+            if ("HTTP/1.0".equals(protocol)) {
+                mode = BodyMode.UNTIL_CLOSE;
+            } else {
+                mode = BodyMode.CHUNKED;
+                responseHeaders.set("Transfer-Encoding", "chunked");
+            }
+        } else {
+            mode = BodyMode.FIXED;
+            responseHeaders.set("Content-Length", String.valueOf(length));
+        }
+
+        boolean close = connection.isCloseAfterResponse() || mode == BodyMode.UNTIL_CLOSE;
+        if (close) {
+            responseHeaders.set("Connection", "close");
+        } else if ("HTTP/1.0".equals(protocol)) {
+            responseHeaders.set("Connection", "keep-alive");
+        }
+
+        StringBuilder head = new StringBuilder(256)
+                .append("HTTP/1.1 ").append(code).append(' ').append(reasonPhrase(code)).append("\r\n")
+                .append("Date: ").append(httpDate()).append("\r\n");
+        for (Map.Entry<String, List<String>> header : responseHeaders.entrySet()) {
+            for (String value : header.getValue()) {
+                head.append(header.getKey()).append(": ").append(value).append("\r\n");
+            }
+        }
+        head.append("\r\n");
+        rawResponse.begin(ByteBuffer.wrap(head.toString().getBytes(StandardCharsets.ISO_8859_1)), mode, length);
+    }
+
+    @Override
+    public InetSocketAddress getRemoteAddress() {
+        return connection.getRemoteAddress();
+    }
+
+    @Override
+    public int getResponseCode() {
+        return responseCode;
+    }
+
+    @Override
+    public InetSocketAddress getLocalAddress() {
+        return connection.getLocalAddress();
+    }
+
+    @Override
+    public String getProtocol() {
+        return protocol;
+    }
+
+    @Override
+    public Object getAttribute(String name) {
+        return attributes.get(name);
+    }
+
+    @Override
+    public void setAttribute(String name, Object value) {
+        if (value == null) {
+            attributes.remove(name);
+        } else {
+            attributes.put(name, value);
+        }
+    }
+
+    @Override
+    public void setStreams(InputStream in, OutputStream out) {
+        if (in != null) {
+            requestBody = in;
+        }
+        if (out != null) {
+            responseBody = out;
+        }
+    }
+
+    @Override
+    public HttpPrincipal getPrincipal() {
+        return null;
+    }
+
+    @Override
+    public void close() {
+        try {
+            requestBody.close();
+            responseBody.close();
+        } catch (IOException e) {
+            // Connexion déjà fermée: rien de plus à envoyer
+        }
+    }
+
+    /**
+     * Termine l'échange après le handler: réponse 500 si aucune n'a été commencée, puis fermeture du flux
+     */
+    void finish() {
+        if (responseCode == -1) {
+            try {
+                sendResponseHeaders(500, -1);
+            } catch (IOException e) {
+                // Impossible: aucun en-tête envoyé
+            }
+        }
+        close();
+    }
+
+    static String reasonPhrase(int code) {
+        switch (code) {
+            case 100: return "Continue";
+            case 200: return "OK";
+            case 201: return "Created";
+            case 204: return "No Content";
+            case 304: return "Not Modified";
+            case 400: return "Bad Request";
+            case 401: return "Unauthorized";
+            case 403: return "Forbidden";
+            case 404: return "Not Found";
+            case 405: return "Method Not Allowed";
+            case 413: return "Payload Too Large";
+            case 429: return "Too Many Requests";
+            case 431: return "Request Header Fields Too Large";
+            case 500: return "Internal Server Error";
+            case 501: return "Not Implemented";
+            case 503: return "Service Unavailable";
+            default: return "Status";
+        }
+    }
+
+    /**
+     * Date HTTP courante, formatée au plus une fois par seconde
+     */
+    static String httpDate() {
+        long second = System.currentTimeMillis() / 1000;
+        if (second != cachedDateSecond) {
+            cachedDate = DateTimeFormatter.RFC_1123_DATE_TIME.format(ZonedDateTime.now(ZoneOffset.UTC));
+            cachedDateSecond = second;
+        }
+        return cachedDate;
+    }
+
+    /**
+     * Flux de réponse brut: tamponne le corps et le remet à la boucle par parties
+     */
+    private class ResponseStream extends OutputStream {
+        private ByteBuffer header;
+        private BodyMode mode;
+        private long fixedLength;
+        private long written;
+        private byte[] buffer;
+        private int count;
+        private boolean closed;
+
+        void begin(ByteBuffer header, BodyMode mode, long fixedLength) {
+            this.header = header;
+            this.mode = mode;
+            this.fixedLength = fixedLength;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            if (closed) {
+                throw new IOException("Flux de réponse fermé");
+            }
+            if (mode == null) {
+                throw new IOException("sendResponseHeaders() doit être appelé avant d'écrire le corps");
+            }
+            if (len == 0) {
+                return;
+            }
+            if (mode == BodyMode.NONE) {
+                throw new IOException("Réponse sans corps");
+            }
+            if (mode == BodyMode.FIXED && written + len > fixedLength) {
+                throw new IOException("Corps plus long que la longueur annoncée (" + fixedLength + " octets)");
+            }
+            written += len;
+            while (len > 0) {
+                if (buffer == null) {
+                    buffer = new byte[mode == BodyMode.FIXED ? (int) Math.min(fixedLength, RESPONSE_BUFFER_BYTES) : RESPONSE_BUFFER_BYTES];
+                }
+                int n = Math.min(len, buffer.length - count);
+                System.arraycopy(b, off, buffer, count, n);
+                count += n;
+                off += n;
+                len -= n;
+                if (count == buffer.length) {
+                    sendBuffered(false, false);
+                }
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            if (!closed && (count > 0 || header != null) && mode != null) {
+                sendBuffered(false, false);
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            if (mode == null) {
+                // Aucun en-tête envoyé: abandonner la connexion, comme le serveur du JDK
+                connection.abort();
+                return;
+            }
+            // Corps incomplet ou délimité par la fermeture: le client ne peut pas réutiliser la connexion
+            boolean incomplete = mode == BodyMode.FIXED && written < fixedLength;
+            sendBuffered(true, incomplete || mode == BodyMode.UNTIL_CLOSE);
+        }
+
+        private void sendBuffered(boolean last, boolean forceClose) throws IOException {
+            List<ByteBuffer> parts = new ArrayList<>(5);
+            if (header != null) {
+                parts.add(header);
+                header = null;
+            }
+            if (count > 0) {
+                // Le tampon est remis tel quel à la boucle; un nouveau sera alloué si le handler continue d'écrire
+                if (mode == BodyMode.CHUNKED) {
+                    parts.add(ByteBuffer.wrap((Integer.toHexString(count) + "\r\n").getBytes(StandardCharsets.ISO_8859_1)));
+                    parts.add(ByteBuffer.wrap(buffer, 0, count));
+                    parts.add(ByteBuffer.wrap(CRLF));
+                } else {
+                    parts.add(ByteBuffer.wrap(buffer, 0, count));
+                }
+                buffer = null;
+                count = 0;
+            }
+            if (last && mode == BodyMode.CHUNKED) {
+                parts.add(ByteBuffer.wrap(LAST_CHUNK));
+            }
+            if (parts.isEmpty() && !last) {
+                return;
+            }
+            connection.send(parts.toArray(new ByteBuffer[0]), last, forceClose);
+        }
+    }
+}
@@ -0,0 +1,274 @@
+package fr.insa.crypto.trustAuthority.nio;
+
+import com.sun.net.httpserver.Filter;
+import com.sun.net.httpserver.HttpContext;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import fr.insa.crypto.utils.Logger;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Frontal HTTP/1.1 à boucles d'événements (sélecteurs NIO), interchangeable avec le serveur du JDK:
+ * les contextes, handlers et filtres existants sont réutilisés tels quels.
+ *
+ * Quelques threads de boucle lisent les requêtes (tampon direct partagé par boucle), les découpent
+ * et écrivent les réponses (en-têtes et corps en une écriture groupée); ils n'exécutent jamais de
+ * handler, confié à l'exécuteur. Une connexion inactive ne coûte que sa clé de sélection: aucun
+ * thread ni tampon ne lui est réservé. Une requête à la fois par connexion (pas de pipelining HTTP),
+ * corps de requête de longueur connue uniquement (pas de requête chunked).
+ */
+public class NioHttpServer extends HttpServer {
+    private final int eventLoopCount;
+    private final long keepAliveMs;
+    private final int maxRequestsPerConnection;
+    private final int maxRequestBytes;
+
+    // Contextes triés par chemin décroissant: le premier préfixe trouvé est le plus long
+    private final Map<String, NioHttpContext> contexts = new ConcurrentSkipListMap<>((a, b) -> b.compareTo(a));
+    private final AtomicInteger openConnections = new AtomicInteger();
+    private final AtomicLong pendingWriteBytes = new AtomicLong();
+    private final AtomicInteger exchangesInFlight = new AtomicInteger();
+    private final AtomicInteger nextLoop = new AtomicInteger();
+
+    private ServerSocketChannel serverChannel;
+    private InetSocketAddress address;
+    private EventLoop[] loops;
+    private Executor executor;
+    private ExecutorService defaultExecutor;
+
+    /**
+     * @param eventLoopCount           Nombre de threads de boucle d'événements
+     * @param keepAliveMs              Durée d'inactivité avant fermeture d'une connexion persistante
+     * @param maxRequestsPerConnection Requêtes servies sur une connexion avant de la fermer
+     * @param maxRequestBytes          Taille maximale d'une requête (en-têtes et corps)
+     */
+    public NioHttpServer(int eventLoopCount, long keepAliveMs, int maxRequestsPerConnection, int maxRequestBytes) {
+        this.eventLoopCount = eventLoopCount;
+        this.keepAliveMs = keepAliveMs;
+        this.maxRequestsPerConnection = maxRequestsPerConnection;
+        this.maxRequestBytes = maxRequestBytes;
+    }
+
+    /**
+     * Crée un serveur lié à l'adresse, comme HttpServer.create
+     */
+    public static NioHttpServer create(InetSocketAddress address, int backlog, int eventLoopCount, long keepAliveMs,
+                                       int maxRequestsPerConnection, int maxRequestBytes) throws IOException {
+        NioHttpServer server = new NioHttpServer(eventLoopCount, keepAliveMs, maxRequestsPerConnection, maxRequestBytes);
+        server.bind(address, backlog);
+        return server;
+    }
+
+    @Override
+    public void bind(InetSocketAddress address, int backlog) throws IOException {
+        if (serverChannel != null) {
+            throw new IllegalStateException("Serveur déjà lié");
+        }
+        serverChannel = ServerSocketChannel.open();
+        serverChannel.setOption(java.net.StandardSocketOptions.SO_REUSEADDR, true);
+        serverChannel.bind(address, backlog);
+        serverChannel.configureBlocking(false);
+        this.address = (InetSocketAddress) serverChannel.getLocalAddress();
+    }
+
+    @Override
+    public void start() {
+        if (serverChannel == null || loops != null) {
+            throw new IllegalStateException("Serveur non lié ou déjà démarré");
+        }
+        if (executor == null) {
+            defaultExecutor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+            executor = defaultExecutor;
+        }
+
+        try {
+            loops = new EventLoop[eventLoopCount];
+            for (int i = 0; i < eventLoopCount; i++) {
+                loops[i] = new EventLoop(this, i);
+            }
+            // La première boucle accepte aussi les connexions et les répartit entre toutes les boucles
+            loops[0].registerAcceptor(serverChannel);
+            for (EventLoop loop : loops) {
+                loop.start();
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("Impossible de démarrer les boucles d'événements: " + e.getMessage(), e);
+        }
+        Logger.info("Frontal HTTP NIO démarré (" + eventLoopCount + " boucles d'événements, keep-alive "
+                + keepAliveMs + " ms / " + maxRequestsPerConnection + " requêtes)");
+    }
+
+    /**
+     * Accepte les connexions en attente (appelé par la boucle de l'accepteur)
+     */
+    void acceptPending() {
+        try {
+            SocketChannel channel;
+            while ((channel = serverChannel.accept()) != null) {
+                EventLoop loop = loops[Math.floorMod(nextLoop.getAndIncrement(), loops.length)];
+                loop.register(channel);
+            }
+        } catch (IOException e) {
+            Logger.error("Erreur d'acceptation HTTP: " + e.getMessage());
+        }
+    }
+
+    /**
+     * @return Le contexte dont le chemin est le plus long préfixe du chemin demandé, ou null
+     */
+    NioHttpContext findContext(String path) {
+        for (NioHttpContext context : contexts.values()) {
+            if (path.startsWith(context.getPath())) {
+                return context;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Confie une requête complète à l'exécuteur: filtres puis handler du contexte
+     */
+    void dispatch(NioHttpExchange exchange) {
+        exchangesInFlight.incrementAndGet();
+        try {
+            executor.execute(() -> handle(exchange));
+        } catch (RejectedExecutionException e) {
+            exchangesInFlight.decrementAndGet();
+            exchange.getConnection().reject(503, "Service Unavailable");
+        }
+    }
+
+    private void handle(NioHttpExchange exchange) {
+        try {
+            NioHttpContext context = (NioHttpContext) exchange.getHttpContext();
+            new Filter.Chain(context.getFilters(), context.getHandler()).doFilter(exchange);
+        } catch (Exception e) {
+            Logger.error("Erreur non traitée par le handler de " + exchange.getRequestURI().getPath() + ": " + e.getMessage());
+        } finally {
+            exchange.finish();
+            exchangesInFlight.decrementAndGet();
+        }
+    }
+
+    long getKeepAliveMs() {
+        return keepAliveMs;
+    }
+
+    int getMaxRequestsPerConnection() {
+        return maxRequestsPerConnection;
+    }
+
+    int getMaxRequestBytes() {
+        return maxRequestBytes;
+    }
+
+    AtomicInteger openConnectionsCounter() {
+        return openConnections;
+    }
+
+    AtomicLong pendingWriteBytesCounter() {
+        return pendingWriteBytes;
+    }
+
+    /**
+     * @return Le nombre de connexions ouvertes
+     */
+    public int getOpenConnections() {
+        return openConnections.get();
+    }
+
+    /**
+     * @return Les octets de réponse en attente d'écriture sur l'ensemble des connexions
+     */
+    public long getPendingWriteBytes() {
+        return pendingWriteBytes.get();
+    }
+
+    @Override
+    public void setExecutor(Executor executor) {
+        if (loops != null) {
+            throw new IllegalStateException("Serveur déjà démarré");
+        }
+        this.executor = executor;
+    }
+
+    @Override
+    public Executor getExecutor() {
+        return defaultExecutor != null ? null : executor;
+    }
+
+    @Override
+    public void stop(int delaySeconds) {
+        try {
+            serverChannel.close();
+        } catch (IOException e) {
+            // Déjà fermé
+        }
+
+        // Laisser les échanges en cours se terminer, au plus delaySeconds secondes
+        long deadline = System.currentTimeMillis() + delaySeconds * 1000L;
+        while (exchangesInFlight.get() > 0 && System.currentTimeMillis() < deadline) {
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+
+        if (loops != null) {
+            for (EventLoop loop : loops) {
+                loop.shutdown();
+            }
+        }
+        if (defaultExecutor != null) {
+            defaultExecutor.shutdown();
+        }
+    }
+
+    @Override
+    public HttpContext createContext(String path, HttpHandler handler) {
+        if (path == null || !path.startsWith("/")) {
+            throw new IllegalArgumentException("Chemin de contexte invalide: " + path);
+        }
+        NioHttpContext context = new NioHttpContext(this, path, handler);
+        if (contexts.putIfAbsent(path, context) != null) {
+            throw new IllegalArgumentException("Contexte déjà défini: " + path);
+        }
+        return context;
+    }
+
+    @Override
+    public HttpContext createContext(String path) {
+        return createContext(path, null);
+    }
+
+    @Override
+    public void removeContext(String path) {
+        if (contexts.remove(path) == null) {
+            throw new IllegalArgumentException("Contexte inconnu: " + path);
+        }
+    }
+
+    @Override
+    public void removeContext(HttpContext context) {
+        contexts.remove(context.getPath(), context);
+    }
+
+    @Override
+    public InetSocketAddress getAddress() {
+        return address;
+    }
+}
@@ -0,0 +1,263 @@
+package fr.insa.crypto.trustAuthority.protocol;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Encodage binaire compact: [type][bits de présence] puis les champs présents dans l'ordre du schéma.
+ * Les longueurs, compteurs et bits de présence sont des varints (LEB128), les entiers des varints zigzag;
+ * les octets (éléments JPBC, clés, contenus chiffrés) sont transmis bruts, sans Base64.
+ * L'enveloppe sécurisée est le contenu chiffré lui-même (IV || texte chiffré || tag).
+ */
+final class BinaryCodec implements WireCodec {
+
+    @Override
+    public String getName() {
+        return "binary";
+    }
+
+    @Override
+    public String getContentType() {
+        return BINARY_MEDIA_TYPE;
+    }
+
+    @Override
+    public byte[] encode(Message message) {
+        Buffer out = new Buffer(64);
+        write(out, message);
+        return out.toByteArray();
+    }
+
+    private static void write(Buffer out, Message message) {
+        MessageType type = message.getType();
+        long presence = 0;
+        for (int i = 0; i < type.getFieldCount(); i++) {
+            if (message.get(i) != null) {
+                presence |= 1L << i;
+            }
+        }
+        out.write(type.getId());
+        out.writeVarint(presence);
+
+        for (int i = 0; i < type.getFieldCount(); i++) {
+            Object value = message.get(i);
+            if (value == null) {
+                continue;
+            }
+            switch (type.getField(i).getKind()) {
+                case STRING:
+                    out.writeBytes(((String) value).getBytes(StandardCharsets.UTF_8));
+                    break;
+                case BYTES:
+                case PAYLOAD:
+                    out.writeBytes((byte[]) value);
+                    break;
+                case BOOLEAN:
+                    out.write((Boolean) value ? 1 : 0);
+                    break;
+                case INT:
+                    int intValue = (Integer) value;
+                    out.writeVarint(((intValue << 1) ^ (intValue >> 31)) & 0xFFFFFFFFL);
+                    break;
+                case STRING_LIST:
+                    List<?> list = (List<?>) value;
+                    out.writeVarint(list.size());
+                    for (Object item : list) {
+                        out.writeBytes(((String) item).getBytes(StandardCharsets.UTF_8));
+                    }
+                    break;
+                case MESSAGE:
+                    // Préfixé par sa longueur pour que le lecteur puisse en borner le décodage
+                    Buffer nested = new Buffer(64);
+                    write(nested, (Message) value);
+                    out.writeVarint(nested.size);
+                    out.write(nested.data, 0, nested.size);
+                    break;
+                default:
+                    throw new IllegalStateException("Type de champ non géré: " + type.getField(i).getKind());
+            }
+        }
+    }
+
+    @Override
+    public Message decode(MessageType expectedType, byte[] body) {
+        Reader in = new Reader(body, 0, body.length);
+        Message message = read(in, expectedType);
+        if (in.position != in.limit) {
+            throw new IllegalArgumentException("Message binaire invalide: " + (in.limit - in.position) + " octets en trop");
+        }
+        return message;
+    }
+
+    private static Message read(Reader in, MessageType expectedType) {
+        int id = in.readByte();
+        MessageType type = MessageType.fromId(id);
+        if (type == null || (type != expectedType && type != MessageType.TEXT)) {
+            throw new IllegalArgumentException("Message binaire invalide: type " + id + " au lieu de " + expectedType);
+        }
+        long presence = in.readVarint();
+        if (presence >>> type.getFieldCount() != 0) {
+            throw new IllegalArgumentException("Message binaire invalide: champ inconnu pour " + type);
+        }
+
+        Message message = Message.of(type);
+        for (int i = 0; i < type.getFieldCount(); i++) {
+            if ((presence & (1L << i)) == 0) {
+                continue;
+            }
+            MessageType.Field field = type.getField(i);
+            switch (field.getKind()) {
+                case STRING:
+                    message.set(i, in.readString());
+                    break;
+                case BYTES:
+                case PAYLOAD:
+                    message.set(i, in.readBytes());
+                    break;
+                case BOOLEAN:
+                    message.set(i, in.readByte() != 0);
+                    break;
+                case INT:
+                    long zigzag = in.readVarint();
+                    message.set(i, (int) (zigzag >>> 1) ^ -(int) (zigzag & 1));
+                    break;
+                case STRING_LIST:
+                    int count = in.readLength();
+                    List<String> list = new ArrayList<>(count);
+                    for (int j = 0; j < count; j++) {
+                        list.add(in.readString());
+                    }
+                    message.set(i, list);
+                    break;
+                case MESSAGE:
+                    int length = in.readLength();
+                    Reader nested = new Reader(in.data, in.position, in.position + length);
+                    Message nestedMessage = read(nested, field.getNestedType());
+                    if (nested.position != nested.limit) {
+                        throw new IllegalArgumentException("Message binaire invalide: champ " + field.getName() + " mal formé");
+                    }
+                    message.set(i, nestedMessage);
+                    in.position += length;
+                    break;
+                default:
+                    throw new IllegalStateException("Type de champ non géré: " + field.getKind());
+            }
+        }
+        return message;
+    }
+
+    @Override
+    public byte[] wrapSecure(byte[] ciphertext) {
+        return ciphertext;
+    }
+
+    @Override
+    public byte[] unwrapSecure(byte[] body) {
+        return body;
+    }
+
+    /**
+     * Tampon d'écriture extensible, sans synchronisation
+     */
+    private static final class Buffer {
+        byte[] data;
+        int size;
+
+        Buffer(int capacity) {
+            data = new byte[capacity];
+        }
+
+        void ensure(int additional) {
+            if (size + additional > data.length) {
+                data = Arrays.copyOf(data, Math.max(data.length * 2, size + additional));
+            }
+        }
+
+        void write(int b) {
+            ensure(1);
+            data[size++] = (byte) b;
+        }
+
+        void write(byte[] bytes, int offset, int length) {
+            ensure(length);
+            System.arraycopy(bytes, offset, data, size, length);
+            size += length;
+        }
+
+        void writeVarint(long value) {
+            ensure(10);
+            while ((value & ~0x7FL) != 0) {
+                data[size++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            data[size++] = (byte) value;
+        }
+
+        void writeBytes(byte[] bytes) {
+            writeVarint(bytes.length);
+            write(bytes, 0, bytes.length);
+        }
+
+        byte[] toByteArray() {
+            return Arrays.copyOf(data, size);
+        }
+    }
+
+    /**
+     * Lecture bornée d'un message (ou d'un message imbriqué) avec contrôle de chaque longueur
+     */
+    private static final class Reader {
+        final byte[] data;
+        int position;
+        final int limit;
+
+        Reader(byte[] data, int position, int limit) {
+            this.data = data;
+            this.position = position;
+            this.limit = limit;
+        }
+
+        int readByte() {
+            if (position >= limit) {
+                throw new IllegalArgumentException("Message binaire invalide: fin de message inattendue");
+            }
+            return data[position++] & 0xFF;
+        }
+
+        long readVarint() {
+            long value = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                int b = readByte();
+                value |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return value;
+                }
+            }
+            throw new IllegalArgumentException("Message binaire invalide: varint trop long");
+        }
+
+        int readLength() {
+            long length = readVarint();
+            if (length > limit - position) {
+                throw new IllegalArgumentException("Message binaire invalide: longueur " + length + " hors du message");
+            }
+            return (int) length;
+        }
+
+        byte[] readBytes() {
+            int length = readLength();
+            byte[] bytes = Arrays.copyOfRange(data, position, position + length);
+            position += length;
+            return bytes;
+        }
+
+        String readString() {
+            int length = readLength();
+            String value = new String(data, position, length, StandardCharsets.UTF_8);
+            position += length;
+            return value;
+        }
+    }
+}
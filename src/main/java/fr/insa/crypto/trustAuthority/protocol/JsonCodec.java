@@ -0,0 +1,139 @@
+package fr.insa.crypto.trustAuthority.protocol;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+
+/**
+ * Format JSON historique: un objet par message, octets en Base64, réponses textuelles en texte brut
+ * et enveloppe sécurisée {"secured":true,"encryptedContent":"..."}. Les champs inconnus sont ignorés.
+ */
+final class JsonCodec implements WireCodec {
+
+    @Override
+    public String getName() {
+        return "json";
+    }
+
+    @Override
+    public String getContentType() {
+        return JSON_MEDIA_TYPE + "; charset=UTF-8";
+    }
+
+    @Override
+    public byte[] encode(Message message) {
+        if (message.getType() == MessageType.TEXT) {
+            return message.optString("message", "").getBytes(StandardCharsets.UTF_8);
+        }
+        return toJson(message).toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static JSONObject toJson(Message message) {
+        MessageType type = message.getType();
+        JSONObject json = new JSONObject();
+        for (int i = 0; i < type.getFieldCount(); i++) {
+            Object value = message.get(i);
+            if (value == null) {
+                continue;
+            }
+            String name = type.getField(i).getName();
+            switch (type.getField(i).getKind()) {
+                case BYTES:
+                    json.put(name, Base64.getEncoder().encodeToString((byte[]) value));
+                    break;
+                case PAYLOAD:
+                    json.put(name, new String((byte[]) value, StandardCharsets.UTF_8));
+                    break;
+                case STRING_LIST:
+                    json.put(name, new JSONArray((List<?>) value));
+                    break;
+                case MESSAGE:
+                    json.put(name, toJson((Message) value));
+                    break;
+                default:
+                    json.put(name, value);
+            }
+        }
+        return json;
+    }
+
+    @Override
+    public Message decode(MessageType expectedType, byte[] body) {
+        String text = new String(body, StandardCharsets.UTF_8);
+        if (expectedType == MessageType.TEXT || !text.trim().startsWith("{")) {
+            return Message.text(text);
+        }
+        try {
+            return fromJson(new JSONObject(text), expectedType);
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("Message JSON invalide pour " + expectedType + ": " + e.getMessage(), e);
+        }
+    }
+
+    private static Message fromJson(JSONObject json, MessageType type) {
+        Message message = Message.of(type);
+        for (int i = 0; i < type.getFieldCount(); i++) {
+            MessageType.Field field = type.getField(i);
+            String name = field.getName();
+            if (!json.has(name) || json.isNull(name)) {
+                continue;
+            }
+            switch (field.getKind()) {
+                case STRING:
+                    message.set(i, json.getString(name));
+                    break;
+                case BYTES:
+                    message.set(i, Base64.getDecoder().decode(json.getString(name)));
+                    break;
+                case PAYLOAD:
+                    message.set(i, json.getString(name).getBytes(StandardCharsets.UTF_8));
+                    break;
+                case BOOLEAN:
+                    message.set(i, json.getBoolean(name));
+                    break;
+                case INT:
+                    message.set(i, json.getInt(name));
+                    break;
+                case STRING_LIST:
+                    JSONArray array = json.getJSONArray(name);
+                    List<String> list = new ArrayList<>(array.length());
+                    for (int j = 0; j < array.length(); j++) {
+                        list.add(array.getString(j));
+                    }
+                    message.set(i, list);
+                    break;
+                case MESSAGE:
+                    message.set(i, fromJson(json.getJSONObject(name), field.getNestedType()));
+                    break;
+                default:
+                    throw new IllegalStateException("Type de champ non géré: " + field.getKind());
+            }
+        }
+        return message;
+    }
+
+    @Override
+    public byte[] wrapSecure(byte[] ciphertext) {
+        JSONObject secureMessage = new JSONObject();
+        secureMessage.put("encryptedContent", Base64.getEncoder().encodeToString(ciphertext));
+        secureMessage.put("secured", true);
+        return secureMessage.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public byte[] unwrapSecure(byte[] body) {
+        try {
+            JSONObject json = new JSONObject(new String(body, StandardCharsets.UTF_8));
+            if (json.optBoolean("secured", false)) {
+                return Base64.getDecoder().decode(json.getString("encryptedContent"));
+            }
+        } catch (RuntimeException e) {
+            // Pas une enveloppe JSON: corps en clair
+        }
+        return null;
+    }
+}
@@ -0,0 +1,156 @@
+package fr.insa.crypto.trustAuthority.protocol;
+
+import java.util.List;
+
+/**
+ * Message applicatif indépendant du format de transport (JSON ou binaire).
+ * Les valeurs sont rangées à la position du champ dans le schéma du type; un champ absent vaut null.
+ */
+public final class Message {
+    private final MessageType type;
+    private final Object[] values;
+
+    private Message(MessageType type) {
+        this.type = type;
+        this.values = new Object[type.getFieldCount()];
+    }
+
+    public static Message of(MessageType type) {
+        return new Message(type);
+    }
+
+    /**
+     * @return Un message textuel (réponse simple ou erreur)
+     */
+    public static Message text(String message) {
+        return new Message(MessageType.TEXT).put("message", message);
+    }
+
+    public MessageType getType() {
+        return type;
+    }
+
+    /**
+     * Définit la valeur d'un champ (une valeur null retire le champ)
+     */
+    public Message put(String name, Object value) {
+        int index = indexOf(name);
+        if (value != null && !accepts(type.getField(index).getKind(), value)) {
+            throw new IllegalArgumentException("Valeur de type " + value.getClass().getSimpleName()
+                    + " invalide pour le champ " + type + "." + name);
+        }
+        values[index] = value;
+        return this;
+    }
+
+    private static boolean accepts(MessageType.Kind kind, Object value) {
+        switch (kind) {
+            case STRING:
+                return value instanceof String;
+            case BYTES:
+            case PAYLOAD:
+                return value instanceof byte[];
+            case BOOLEAN:
+                return value instanceof Boolean;
+            case INT:
+                return value instanceof Integer;
+            case STRING_LIST:
+                return value instanceof List;
+            case MESSAGE:
+                return value instanceof Message;
+            default:
+                return false;
+        }
+    }
+
+    public boolean has(String name) {
+        return values[indexOf(name)] != null;
+    }
+
+    public String getString(String name) {
+        return (String) require(name);
+    }
+
+    public String optString(String name, String defaultValue) {
+        Object value = values[indexOf(name)];
+        return value != null ? (String) value : defaultValue;
+    }
+
+    public byte[] getBytes(String name) {
+        return (byte[]) require(name);
+    }
+
+    public boolean getBoolean(String name) {
+        return (Boolean) require(name);
+    }
+
+    public boolean optBoolean(String name, boolean defaultValue) {
+        Object value = values[indexOf(name)];
+        return value != null ? (Boolean) value : defaultValue;
+    }
+
+    public int getInt(String name) {
+        return (Integer) require(name);
+    }
+
+    @SuppressWarnings("unchecked")
+    public List<String> getStrings(String name) {
+        return (List<String>) require(name);
+    }
+
+    /**
+     * @return Le message imbriqué, ou null s'il est absent
+     */
+    public Message optMessage(String name) {
+        return (Message) values[indexOf(name)];
+    }
+
+    public Message getMessage(String name) {
+        return (Message) require(name);
+    }
+
+    Object get(int index) {
+        return values[index];
+    }
+
+    void set(int index, Object value) {
+        values[index] = value;
+    }
+
+    private Object require(String name) {
+        Object value = values[indexOf(name)];
+        if (value == null) {
+            throw new IllegalArgumentException("Champ manquant: " + type + "." + name);
+        }
+        return value;
+    }
+
+    private int indexOf(String name) {
+        int index = type.indexOf(name);
+        if (index < 0) {
+            throw new IllegalArgumentException("Champ inconnu pour " + type + ": " + name);
+        }
+        return index;
+    }
+
+    /**
+     * Description lisible pour les journaux et les messages d'erreur (octets résumés par leur longueur)
+     */
+    @Override
+    public String toString() {
+        if (type == MessageType.TEXT && values[0] != null) {
+            return (String) values[0];
+        }
+        StringBuilder builder = new StringBuilder(type.name()).append('{');
+        String separator = "";
+        for (int i = 0; i < values.length; i++) {
+            if (values[i] == null) {
+                continue;
+            }
+            builder.append(separator).append(type.getField(i).getName()).append('=');
+            builder.append(values[i] instanceof byte[] ? ((byte[]) values[i]).length + " octets" : values[i]);
+            separator = ", ";
+        }
+        return builder.append('}').toString();
+    }
+}
@@ -0,0 +1,153 @@
+package fr.insa.crypto.trustAuthority.protocol;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Schémas des messages échangés avec l'autorité de confiance.
+ * L'ordre des champs fixe leur position dans l'encodage binaire et leur bit de présence:
+ * un champ ne peut être qu'ajouté en fin de liste, jamais déplacé ni supprimé.
+ * Les types imbriqués doivent être déclarés avant les types qui les contiennent.
+ */
+public enum MessageType {
+    // Réponse textuelle (corps brut en JSON, pour la compatibilité avec les anciens clients)
+    TEXT(1, field("message", Kind.STRING)),
+
+    EMAIL_REQUEST(2, field("email", Kind.STRING)),
+    // "qrImage" à false: le client dessine lui-même le QR code de l'URI otpauth (absent = image rendue par le serveur)
+    OTP_REQUEST(3, field("email", Kind.STRING), field("otp", Kind.STRING), field("qrImage", Kind.BOOLEAN)),
+    // "totp" et "totpCode" sont tous deux acceptés
+    // "setup" à true: confirmation de la configuration, le code n'est pas consommé
+    // (refusée une fois la configuration confirmée par une première connexion)
+    TOTP_REQUEST(4, field("email", Kind.STRING), field("totp", Kind.STRING), field("totpCode", Kind.STRING),
+            field("setup", Kind.BOOLEAN)),
+
+    ACCOUNT_STATUS(5, field("exists", Kind.BOOLEAN), field("verified", Kind.BOOLEAN)),
+    TOTP_SETUP(6, field("status", Kind.STRING), field("message", Kind.STRING),
+            field("totpSecret", Kind.STRING), field("qrCodeUri", Kind.STRING), field("otpauthUri", Kind.STRING)),
+    AUTHENTICATION(7, field("authenticated", Kind.BOOLEAN), field("error", Kind.STRING)),
+    PRIVATE_KEY(8, field("authenticated", Kind.BOOLEAN), field("identity", Kind.STRING),
+            field("privateKey", Kind.BYTES)),
+
+    PUBLIC_PARAMETERS(9, field("publicKey", Kind.BYTES), field("generator", Kind.BYTES),
+            field("pairingParams", Kind.STRING), field("channelPublicKey", Kind.BYTES),
+            field("channelKeyBinding", Kind.BYTES), field("handshakeMethods", Kind.STRING_LIST),
+            field("wireFormats", Kind.STRING_LIST), field("channelPort", Kind.INT),
+            field("parametersVersion", Kind.STRING)),
+
+    // Établissement du canal sécurisé, avec la requête applicative anticipée éventuelle
+    EARLY_REQUEST(10, field("endpoint", Kind.STRING), field("encryptedContent", Kind.BYTES)),
+    KEY_EXCHANGE(11, field("method", Kind.STRING), field("encryptedKey", Kind.BYTES), field("u", Kind.BYTES),
+            field("v", Kind.BYTES), field("ephemeralPublicKey", Kind.BYTES),
+            field("earlyRequest", EARLY_REQUEST)),
+    EARLY_RESPONSE(12, field("statusCode", Kind.INT), field("body", Kind.PAYLOAD)),
+    HANDSHAKE_RESPONSE(13, field("status", Kind.STRING), field("earlyResponse", EARLY_RESPONSE)),
+
+    // Canal TCP multiplexé: rattachement à une session (preuve = identifiant de session chiffré), puis requêtes et réponses
+    CHANNEL_HELLO(14, field("sessionId", Kind.STRING), field("proof", Kind.BYTES)),
+    CHANNEL_REQUEST(15, field("streamId", Kind.INT), field("endpoint", Kind.STRING), field("body", Kind.PAYLOAD)),
+    CHANNEL_RESPONSE(16, field("streamId", Kind.INT), field("statusCode", Kind.INT), field("body", Kind.PAYLOAD)),
+
+    // Fermeture d'une session par son client (preuve = identifiant de session chiffré, avec un préfixe propre)
+    SESSION_CLOSE(17, field("proof", Kind.BYTES));
+
+    /**
+     * Nature d'un champ et sa représentation sur chaque format
+     */
+    public enum Kind {
+        STRING,
+        // Octets bruts en binaire, Base64 en JSON
+        BYTES,
+        BOOLEAN,
+        INT,
+        STRING_LIST,
+        MESSAGE,
+        // Corps déjà encodé par le même format (enveloppe chiffrée): octets bruts en binaire, texte en JSON
+        PAYLOAD
+    }
+
+    /**
+     * Champ d'un message
+     */
+    public static final class Field {
+        private final String name;
+        private final Kind kind;
+        private final MessageType nestedType;
+
+        private Field(String name, Kind kind, MessageType nestedType) {
+            this.name = name;
+            this.kind = kind;
+            this.nestedType = nestedType;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public Kind getKind() {
+            return kind;
+        }
+
+        /**
+         * @return Le type du message imbriqué, pour un champ MESSAGE
+         */
+        public MessageType getNestedType() {
+            return nestedType;
+        }
+    }
+
+    private static final MessageType[] BY_ID = new MessageType[32];
+
+    static {
+        for (MessageType type : values()) {
+            BY_ID[type.id] = type;
+        }
+    }
+
+    private final int id;
+    private final Field[] fields;
+    private final Map<String, Integer> indexByName = new HashMap<>();
+
+    MessageType(int id, Field... fields) {
+        this.id = id;
+        this.fields = fields;
+        for (int i = 0; i < fields.length; i++) {
+            indexByName.put(fields[i].name, i);
+        }
+    }
+
+    private static Field field(String name, Kind kind) {
+        return new Field(name, kind, null);
+    }
+
+    private static Field field(String name, MessageType nestedType) {
+        return new Field(name, Kind.MESSAGE, nestedType);
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public int getFieldCount() {
+        return fields.length;
+    }
+
+    public Field getField(int index) {
+        return fields[index];
+    }
+
+    /**
+     * @return La position du champ, ou -1 s'il n'appartient pas à ce type
+     */
+    public int indexOf(String name) {
+        Integer index = indexByName.get(name);
+        return index != null ? index : -1;
+    }
+
+    /**
+     * @return Le type correspondant à l'identifiant, ou null s'il est inconnu
+     */
+    public static MessageType fromId(int id) {
+        return id > 0 && id < BY_ID.length ? BY_ID[id] : null;
+    }
+}
@@ -0,0 +1,61 @@
+package fr.insa.crypto.trustAuthority.protocol;
+
+/**
+ * Format de transport des messages de l'autorité, négocié par les headers Content-Type et Accept.
+ * JSON reste le format par défaut pour les clients qui ne demandent rien d'autre.
+ */
+public interface WireCodec {
+    String BINARY_MEDIA_TYPE = "application/x-ta-binary";
+    String JSON_MEDIA_TYPE = "application/json";
+
+    WireCodec JSON = new JsonCodec();
+    WireCodec BINARY = new BinaryCodec();
+
+    /**
+     * @return Le nom annoncé dans les capacités du serveur ("json" ou "binary")
+     */
+    String getName();
+
+    String getContentType();
+
+    byte[] encode(Message message);
+
+    /**
+     * Décode un corps de message. Un message textuel (TEXT) est toujours accepté à la place
+     * du type attendu: c'est la forme des réponses d'erreur.
+     *
+     * @throws IllegalArgumentException si le corps est invalide ou d'un autre type
+     */
+    Message decode(MessageType expectedType, byte[] body);
+
+    /**
+     * Enveloppe un contenu chiffré avec la clé de session
+     */
+    byte[] wrapSecure(byte[] ciphertext);
+
+    /**
+     * @return Le contenu chiffré transporté par le corps, ou null si le corps n'est pas une enveloppe sécurisée
+     */
+    byte[] unwrapSecure(byte[] body);
+
+    /**
+     * @return Le format correspondant au Content-Type (JSON par défaut)
+     */
+    static WireCodec forContentType(String contentType) {
+        return contentType != null && contentType.startsWith(BINARY_MEDIA_TYPE) ? BINARY : JSON;
+    }
+
+    /**
+     * @return Le format binaire si le header Accept le mentionne, JSON sinon
+     */
+    static WireCodec forAccept(String accept) {
+        return accept != null && accept.contains(BINARY_MEDIA_TYPE) ? BINARY : JSON;
+    }
+
+    /**
+     * @return Le format portant ce nom (JSON par défaut)
+     */
+    static WireCodec forName(String name) {
+        return BINARY.getName().equalsIgnoreCase(name) ? BINARY : JSON;
+    }
+}
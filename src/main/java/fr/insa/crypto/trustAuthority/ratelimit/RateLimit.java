@@ -0,0 +1,60 @@
+package fr.insa.crypto.trustAuthority.ratelimit;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Limite d'un seau à jetons: capacité (rafale autorisée) et période de remplissage complet.
+ * "5/1m" autorise une rafale de 5 requêtes puis une requête toutes les 12 secondes.
+ */
+public final class RateLimit {
+    private final int capacity;
+    private final long periodNanos;
+
+    public RateLimit(int capacity, long period, TimeUnit unit) {
+        if (capacity <= 0 || period <= 0) {
+            throw new IllegalArgumentException("Limite invalide: " + capacity + "/" + period + " " + unit);
+        }
+        this.capacity = capacity;
+        this.periodNanos = unit.toNanos(period);
+    }
+
+    /**
+     * @param spec Limite au format "capacité/période", période suffixée par s, m ou h (ex. "10/1m")
+     */
+    public static RateLimit parse(String spec) {
+        String[] parts = spec.trim().split("/");
+        if (parts.length != 2 || parts[1].length() < 2) {
+            throw new IllegalArgumentException("Limite invalide (attendu capacité/période, ex. 10/1m): " + spec);
+        }
+        String period = parts[1].trim();
+        long amount = Long.parseLong(period.substring(0, period.length() - 1));
+        TimeUnit unit;
+        switch (period.charAt(period.length() - 1)) {
+            case 's': unit = TimeUnit.SECONDS; break;
+            case 'm': unit = TimeUnit.MINUTES; break;
+            case 'h': unit = TimeUnit.HOURS; break;
+            default: throw new IllegalArgumentException("Unité de période inconnue (s, m ou h): " + spec);
+        }
+        return new RateLimit(Integer.parseInt(parts[0].trim()), amount, unit);
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public long getPeriodNanos() {
+        return periodNanos;
+    }
+
+    /**
+     * @return L'intervalle entre deux jetons
+     */
+    long getEmissionIntervalNanos() {
+        return Math.max(1, periodNanos / capacity);
+    }
+
+    @Override
+    public String toString() {
+        return capacity + "/" + TimeUnit.NANOSECONDS.toSeconds(periodNanos) + "s";
+    }
+}
@@ -0,0 +1,45 @@
+package fr.insa.crypto.trustAuthority.ratelimit;
+
+import com.sun.net.httpserver.Filter;
+import com.sun.net.httpserver.HttpExchange;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Filtre HTTP appliquant la limite par adresse IP de son contexte avant le handler.
+ * Une requête refusée reçoit 429 avec Retry-After, sans que le corps ne soit décodé ni déchiffré.
+ */
+public class RateLimitFilter extends Filter {
+    private final RateLimiter limiter;
+    private final String endpoint;
+
+    public RateLimitFilter(RateLimiter limiter, String endpoint) {
+        this.limiter = limiter;
+        this.endpoint = endpoint;
+    }
+
+    @Override
+    public void doFilter(HttpExchange exchange, Chain chain) throws IOException {
+        String address = exchange.getRemoteAddress().getAddress().getHostAddress();
+        long waitNanos = limiter.check(endpoint, RateLimiter.Scope.IP, address);
+        if (waitNanos == 0) {
+            chain.doFilter(exchange);
+            return;
+        }
+
+        byte[] body = "Too Many Requests".getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Retry-After", String.valueOf(RateLimiter.retryAfterSeconds(waitNanos)));
+        exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=UTF-8");
+        exchange.sendResponseHeaders(429, body.length);
+        try (OutputStream os = exchange.getResponseBody()) {
+            os.write(body);
+        }
+    }
+
+    @Override
+    public String description() {
+        return "Limite de débit par adresse IP";
+    }
+}
@@ -0,0 +1,165 @@
+package fr.insa.crypto.trustAuthority.ratelimit;
+
+import fr.insa.crypto.utils.Logger;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Limites de débit de l'autorité par endpoint, par adresse IP et par identité.
+ *
+ * Format de configuration: entrées séparées par ';', chacune "endpoints=règles", les endpoints
+ * séparés par '|' partageant les mêmes seaux, les règles "ip:capacité/période" ou
+ * "identity:capacité/période" séparées par ','. Exemple:
+ * "/auth/register=ip:10/1m,identity:3/15m;/auth/verify-totp|/get-private-key=identity:5/1m".
+ * Une chaîne vide désactive toute limite.
+ */
+public class RateLimiter implements Closeable {
+    private static final long EVICTION_INTERVAL_SECONDS = 30;
+
+    /**
+     * Clé des seaux d'une règle
+     */
+    public enum Scope {
+        IP, IDENTITY
+    }
+
+    private final Map<String, Map<Scope, TokenBucketLimiter>> limitersByEndpoint = new HashMap<>();
+    private final List<TokenBucketLimiter> limiters = new ArrayList<>();
+    private final Map<Scope, LongAdder> rejections = new EnumMap<>(Scope.class);
+    private final ScheduledExecutorService evictor;
+
+    private RateLimiter(String spec) {
+        for (Scope scope : Scope.values()) {
+            rejections.put(scope, new LongAdder());
+        }
+        parse(spec);
+
+        if (limiters.isEmpty()) {
+            evictor = null;
+            return;
+        }
+        evictor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "rate-limit-eviction");
+            thread.setDaemon(true);
+            return thread;
+        });
+        evictor.scheduleWithFixedDelay(this::evictIdle, EVICTION_INTERVAL_SECONDS, EVICTION_INTERVAL_SECONDS, TimeUnit.SECONDS);
+    }
+
+    /**
+     * @param spec Limites au format décrit ci-dessus (vide ou null: aucune limite)
+     */
+    public static RateLimiter fromSpec(String spec) {
+        return new RateLimiter(spec);
+    }
+
+    private void parse(String spec) {
+        if (spec == null || spec.isBlank()) {
+            return;
+        }
+        for (String entry : spec.split(";")) {
+            if (entry.isBlank()) {
+                continue;
+            }
+            String[] sides = entry.split("=", 2);
+            if (sides.length != 2) {
+                throw new IllegalArgumentException("Entrée de limite invalide (attendu endpoints=règles): " + entry);
+            }
+
+            Map<Scope, TokenBucketLimiter> group = new EnumMap<>(Scope.class);
+            for (String rule : sides[1].split(",")) {
+                String[] parts = rule.trim().split(":", 2);
+                if (parts.length != 2) {
+                    throw new IllegalArgumentException("Règle de limite invalide (attendu ip:… ou identity:…): " + rule);
+                }
+                Scope scope = Scope.valueOf(parts[0].trim().toUpperCase(Locale.ROOT));
+                if (group.containsKey(scope)) {
+                    throw new IllegalArgumentException("Une seule règle " + scope + " par groupe d'endpoints: " + entry);
+                }
+                TokenBucketLimiter limiter = new TokenBucketLimiter(RateLimit.parse(parts[1]));
+                group.put(scope, limiter);
+                limiters.add(limiter);
+            }
+
+            for (String endpoint : sides[0].split("\\|")) {
+                limitersByEndpoint.put(endpoint.trim(), group);
+                Logger.info("Limite de débit " + endpoint.trim() + ": " + sides[1].trim());
+            }
+        }
+    }
+
+    /**
+     * @return true si l'endpoint a une limite pour cette portée
+     */
+    public boolean hasLimit(String endpoint, Scope scope) {
+        Map<Scope, TokenBucketLimiter> group = limitersByEndpoint.get(endpoint);
+        return group != null && group.containsKey(scope);
+    }
+
+    /**
+     * Consomme un jeton pour la clé (adresse IP ou identité) sur l'endpoint
+     *
+     * @return 0 si la requête est acceptée ou non limitée, sinon le délai en nanosecondes avant de réessayer
+     */
+    public long check(String endpoint, Scope scope, String key) {
+        Map<Scope, TokenBucketLimiter> group = limitersByEndpoint.get(endpoint);
+        TokenBucketLimiter limiter = group != null ? group.get(scope) : null;
+        if (limiter == null || key == null) {
+            return 0;
+        }
+
+        // Les identités sont des adresses email: une variante de casse ne doit pas ouvrir un nouveau seau
+        String normalizedKey = scope == Scope.IDENTITY ? key.trim().toLowerCase(Locale.ROOT) : key;
+        long waitNanos = limiter.tryAcquire(normalizedKey);
+        if (waitNanos > 0) {
+            rejections.get(scope).increment();
+        }
+        return waitNanos;
+    }
+
+    /**
+     * @return Le délai à annoncer dans Retry-After, en secondes arrondies au supérieur
+     */
+    public static long retryAfterSeconds(long waitNanos) {
+        return Math.max(1, TimeUnit.NANOSECONDS.toSeconds(waitNanos + 999_999_999L));
+    }
+
+    private void evictIdle() {
+        int evicted = 0;
+        for (TokenBucketLimiter limiter : limiters) {
+            evicted += limiter.evictIdle();
+        }
+        if (evicted > 0) {
+            Logger.debug("Seaux de limitation inactifs retirés: " + evicted);
+        }
+    }
+
+    public long getRejectedCount(Scope scope) {
+        return rejections.get(scope).sum();
+    }
+
+    public int getBucketCount() {
+        int count = 0;
+        for (TokenBucketLimiter limiter : limiters) {
+            count += limiter.getBucketCount();
+        }
+        return count;
+    }
+
+    @Override
+    public void close() {
+        if (evictor != null) {
+            evictor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package fr.insa.crypto.trustAuthority.ratelimit;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Seaux à jetons indexés par clé (adresse IP, identité), sans verrou.
+ *
+ * Chaque seau tient en un seul long: l'instant théorique où il aura de nouveau un jeton de plus
+ * (algorithme GCRA, strictement équivalent au seau à jetons de même capacité et même débit).
+ * Une requête est acceptée si now >= tat - tolérance, et tat avance alors d'un intervalle par
+ * compare-and-set: aucune requête concurrente ne peut consommer le même jeton.
+ *
+ * Un seau dont tat est dépassé est plein, donc identique à un seau absent: il peut être évincé.
+ * L'éviction le marque d'abord comme retiré par CAS, ce qui force une requête concurrente à
+ * recréer un seau neuf au lieu de consommer un jeton dans un seau orphelin.
+ */
+public class TokenBucketLimiter {
+    private static final long RETIRED = Long.MIN_VALUE;
+
+    private final RateLimit limit;
+    private final long interval;
+    private final long tolerance;
+    // Origine de l'horloge: les instants manipulés restent positifs
+    private final long origin = System.nanoTime();
+    private final ConcurrentHashMap<String, Bucket> buckets = new ConcurrentHashMap<>();
+
+    private static final class Bucket extends AtomicLong {
+        Bucket(long theoreticalArrival) {
+            super(theoreticalArrival);
+        }
+    }
+
+    public TokenBucketLimiter(RateLimit limit) {
+        this.limit = limit;
+        this.interval = limit.getEmissionIntervalNanos();
+        this.tolerance = (limit.getCapacity() - 1) * interval;
+    }
+
+    public RateLimit getLimit() {
+        return limit;
+    }
+
+    /**
+     * Consomme un jeton du seau de la clé
+     *
+     * @return 0 si la requête est acceptée, sinon le délai en nanosecondes avant le prochain jeton
+     */
+    public long tryAcquire(String key) {
+        long now = System.nanoTime() - origin;
+        while (true) {
+            Bucket bucket = buckets.get(key);
+            if (bucket == null) {
+                // Seau neuf, donc plein: le premier jeton est consommé à la création
+                bucket = buckets.putIfAbsent(key, new Bucket(now + interval));
+                if (bucket == null) {
+                    return 0;
+                }
+            }
+
+            while (true) {
+                long tat = bucket.get();
+                if (tat == RETIRED) {
+                    buckets.remove(key, bucket);
+                    break;
+                }
+                long allowedAt = tat - tolerance;
+                if (now < allowedAt) {
+                    return allowedAt - now;
+                }
+                if (bucket.compareAndSet(tat, Math.max(tat, now) + interval)) {
+                    return 0;
+                }
+            }
+        }
+    }
+
+    /**
+     * Retire les seaux pleins (clés inactives depuis au moins une période)
+     *
+     * @return Le nombre de seaux retirés
+     */
+    public int evictIdle() {
+        long now = System.nanoTime() - origin;
+        int evicted = 0;
+        for (Map.Entry<String, Bucket> entry : buckets.entrySet()) {
+            Bucket bucket = entry.getValue();
+            long tat = bucket.get();
+            if (tat != RETIRED && tat <= now && bucket.compareAndSet(tat, RETIRED)) {
+                buckets.remove(entry.getKey(), bucket);
+                evicted++;
+            }
+        }
+        return evicted;
+    }
+
+    public int getBucketCount() {
+        return buckets.size();
+    }
+}
@@ -0,0 +1,49 @@
+package fr.insa.crypto.trustAuthority.user;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Stockage des comptes en mémoire uniquement (perdus au redémarrage de l'autorité)
+ */
+public class InMemoryUserStore implements UserStore {
+    private final Map<String, UserAccount> users = new ConcurrentHashMap<>();
+
+    @Override
+    public UserAccount get(String key) {
+        return users.get(key);
+    }
+
+    @Override
+    public UserAccount computeIfAbsent(String key, Function<String, UserAccount> factory) {
+        return users.computeIfAbsent(key, factory);
+    }
+
+    @Override
+    public boolean replace(String key, UserAccount expected, UserAccount updated) {
+        // UserAccount ne redéfinit pas equals: comparaison par identité, comme un compare-and-set
+        return users.replace(key, expected, updated);
+    }
+
+    @Override
+    public void save(String key, UserAccount account) {
+        users.put(key, account);
+    }
+
+    @Override
+    public void forEach(Consumer<UserAccount> action) {
+        users.values().forEach(action);
+    }
+
+    @Override
+    public int size() {
+        return users.size();
+    }
+
+    @Override
+    public void close() {
+        // Rien à libérer
+    }
+}
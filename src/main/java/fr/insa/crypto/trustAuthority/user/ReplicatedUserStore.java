@@ -0,0 +1,271 @@
+package fr.insa.crypto.trustAuthority.user;
+
+import fr.insa.crypto.utils.Logger;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Stockage répliqué entre plusieurs nœuds de l'autorité de confiance, par expédition asynchrone
+ * des modifications (log shipping) sur TCP.
+ *
+ * - Chaque écriture est d'abord appliquée au stockage local (persisté), puis expédiée aux nœuds
+ *   abonnés: le nœud qui écrit relit toujours sa propre écriture.
+ * - Chaque nœud s'abonne à tous ses pairs. Un abonné reçoit d'abord l'état complet du pair
+ *   (rattrapage d'un nouveau nœud ou après une coupure), puis les modifications au fil de l'eau.
+ * - Les conflits sont résolus par "dernier écrivain gagnant" sur une horloge hybride
+ *   (temps physique, compteur), départagée par l'identifiant du nœud. Seule exception, la dernière période
+ *   TOTP consommée ne recule jamais: le compte retenu reprend la plus récente des deux (anti-rejeu entre nœuds).
+ *
+ * Les nœuds s'authentifient mutuellement par un secret partagé et le flux des comptes (secrets TOTP,
+ * OTP en attente) est chiffré: sans secret configuré, la réplication refuse de démarrer.
+ *
+ * La réplication étant asynchrone, un OTP enregistré sur un nœud n'est visible sur les autres qu'après
+ * quelques millisecondes, bien avant que l'utilisateur ne reçoive l'email et ne saisisse le code.
+ */
+public class ReplicatedUserStore implements UserStore {
+    private static final int LOCK_STRIPES = 64;
+
+    private final UserStore local;
+    private final String nodeId;
+    private final Object[] locks = new Object[LOCK_STRIPES];
+    private final AtomicLong clock = new AtomicLong();
+    private final ReplicationServer replicationServer;
+    private final List<ReplicationClient> replicationClients = new ArrayList<>();
+
+    private final LongAdder appliedCount = new LongAdder();
+    private final LongAdder ignoredCount = new LongAdder();
+
+    /**
+     * @param local       Stockage local (persistant ou en mémoire)
+     * @param nodeId      Identifiant unique du nœud
+     * @param bindAddress Adresse d'écoute pour les abonnés
+     * @param listenPort  Port d'écoute pour les abonnés (0 pour un port libre)
+     * @param peers       Adresses de réplication des autres nœuds
+     * @param secret      Secret partagé par tous les nœuds (au moins 16 caractères)
+     * @throws IllegalArgumentException Si le secret est absent ou trop court
+     */
+    public ReplicatedUserStore(UserStore local, String nodeId, String bindAddress, int listenPort,
+                               List<InetSocketAddress> peers, String secret) throws IOException {
+        if (secret == null || secret.length() < ReplicationChannel.MIN_SECRET_LENGTH) {
+            throw new IllegalArgumentException("Réplication refusée: secret partagé absent ou trop court (au moins "
+                    + ReplicationChannel.MIN_SECRET_LENGTH + " caractères, TA_REPLICATION_SECRET)");
+        }
+        byte[] sharedSecret = secret.getBytes(StandardCharsets.UTF_8);
+        this.local = local;
+        this.nodeId = nodeId;
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            locks[i] = new Object();
+        }
+
+        // L'horloge reprend après la plus grande version connue
+        local.forEach(account -> clock.accumulateAndGet(account.getVersion(), Math::max));
+
+        this.replicationServer = new ReplicationServer(this, bindAddress, listenPort, sharedSecret);
+        for (InetSocketAddress peer : peers) {
+            replicationClients.add(new ReplicationClient(this, peer, sharedSecret));
+        }
+        Logger.info("Réplication des comptes active: nœud " + nodeId + ", écoute " + bindAddress + ":" + replicationServer.getPort()
+                + ", " + peers.size() + " pair(s)");
+    }
+
+    @Override
+    public UserAccount get(String key) {
+        return local.get(key);
+    }
+
+    @Override
+    public UserAccount computeIfAbsent(String key, Function<String, UserAccount> factory) {
+        UserAccount existing = local.get(key);
+        if (existing != null) {
+            return existing;
+        }
+
+        UserAccount account;
+        PendingWrite write;
+        synchronized (lockFor(key)) {
+            // Toutes les écritures d'un compte passent par ce verrou: vérifier puis écrire est atomique
+            existing = local.get(key);
+            if (existing != null) {
+                return existing;
+            }
+            account = factory.apply(key).withVersion(nextVersion(), nodeId);
+            write = local.saveDeferred(key, account);
+        }
+        commit(write, account);
+        return account;
+    }
+
+    @Override
+    public boolean replace(String key, UserAccount expected, UserAccount updated) {
+        UserAccount stamped;
+        PendingWrite write;
+        synchronized (lockFor(key)) {
+            // Le verrou ordonne le compare-and-set local avec l'application des comptes reçus des pairs
+            if (local.get(key) != expected) {
+                return false;
+            }
+            stamped = updated.withVersion(nextVersion(), nodeId);
+            write = local.saveDeferred(key, stamped);
+        }
+        commit(write, stamped);
+        return true;
+    }
+
+    @Override
+    public void save(String key, UserAccount account) {
+        UserAccount stamped;
+        PendingWrite write;
+        synchronized (lockFor(key)) {
+            stamped = account.withVersion(nextVersion(), nodeId);
+            write = local.saveDeferred(key, stamped);
+        }
+        commit(write, stamped);
+    }
+
+    /**
+     * Attend la persistance locale hors du verrou du compte (les écritures des autres comptes du même
+     * verrou ne patientent pas derrière le fsync), puis expédie le compte aux abonnés
+     */
+    private void commit(PendingWrite write, UserAccount account) {
+        write.awaitDurable();
+        replicationServer.publish(encode(account));
+    }
+
+    /**
+     * Applique un compte reçu d'un pair s'il est plus récent que la version locale
+     */
+    void applyRemote(UserAccount incoming) {
+        clock.accumulateAndGet(incoming.getVersion(), Math::max);
+        String key = incoming.getEmail().toLowerCase();
+        PendingWrite write;
+        synchronized (lockFor(key)) {
+            UserAccount existing = local.get(key);
+            UserAccount merged;
+            if (existing == null || isNewer(incoming, existing)) {
+                merged = withLatestTotpStep(incoming, existing);
+            } else {
+                merged = withLatestTotpStep(existing, incoming);
+                if (merged == existing) {
+                    ignoredCount.increment();
+                    return;
+                }
+            }
+            write = local.saveDeferred(key, merged);
+        }
+        write.awaitDurable();
+        appliedCount.increment();
+    }
+
+    /**
+     * Une période TOTP consommée sur un nœud ne doit pas être effacée par une écriture concurrente d'un autre
+     * nœud qui ne l'avait pas encore reçue: le compte retenu reprend la plus récente, pour le même secret
+     */
+    private static UserAccount withLatestTotpStep(UserAccount retained, UserAccount other) {
+        if (other == null || other.getLastTotpStep() <= retained.getLastTotpStep()
+                || !Objects.equals(other.getTotpSecret(), retained.getTotpSecret())) {
+            return retained;
+        }
+        return retained.withTotpStepUsed(other.getLastTotpStep());
+    }
+
+    private static boolean isNewer(UserAccount incoming, UserAccount existing) {
+        if (incoming.getVersion() != existing.getVersion()) {
+            return incoming.getVersion() > existing.getVersion();
+        }
+        String incomingNode = incoming.getOriginNode() != null ? incoming.getOriginNode() : "";
+        String existingNode = existing.getOriginNode() != null ? existing.getOriginNode() : "";
+        return incomingNode.compareTo(existingNode) > 0;
+    }
+
+    /**
+     * Horloge hybride: millisecondes dans les bits de poids fort, compteur dans les 16 bits de poids faible
+     */
+    private long nextVersion() {
+        long physical = System.currentTimeMillis() << 16;
+        return clock.accumulateAndGet(physical, (last, now) -> Math.max(last + 1, now));
+    }
+
+    private Object lockFor(String key) {
+        return locks[(key.hashCode() & 0x7fffffff) % LOCK_STRIPES];
+    }
+
+    static byte[] encode(UserAccount account) {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(96);
+            UserAccountCodec.write(new DataOutputStream(bytes), account);
+            return bytes.toByteArray();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public void forEach(Consumer<UserAccount> action) {
+        local.forEach(action);
+    }
+
+    @Override
+    public int size() {
+        return local.size();
+    }
+
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    /**
+     * @return Port d'écoute effectif de la réplication
+     */
+    public int getReplicationPort() {
+        return replicationServer.getPort();
+    }
+
+    /**
+     * @return true si l'état complet de chaque pair a été reçu au moins une fois
+     */
+    public boolean isCaughtUp() {
+        for (ReplicationClient client : replicationClients) {
+            if (!client.isCaughtUp()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public long getAppliedCount() {
+        return appliedCount.sum();
+    }
+
+    public long getIgnoredCount() {
+        return ignoredCount.sum();
+    }
+
+    public int getSubscriberCount() {
+        return replicationServer.getSubscriberCount();
+    }
+
+    public long getRejectedConnectionCount() {
+        return replicationServer.getRejectedConnectionCount();
+    }
+
+    @Override
+    public void close() throws IOException {
+        for (ReplicationClient client : replicationClients) {
+            client.close();
+        }
+        replicationServer.close();
+        local.close();
+    }
+}
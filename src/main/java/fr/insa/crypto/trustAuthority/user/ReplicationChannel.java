@@ -0,0 +1,164 @@
+package fr.insa.crypto.trustAuthority.user;
+
+import javax.crypto.Cipher;
+import javax.crypto.Mac;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+
+/**
+ * Authentification mutuelle des nœuds et protection du flux de réplication, à partir du secret partagé
+ * entre les nœuds (TA_REPLICATION_SECRET).
+ *
+ * Poignée de main (après [MAGIC][identifiant du nœud] de l'abonné):
+ * - abonné -> émetteur: aléa de l'abonné
+ * - émetteur -> abonné: aléa de l'émetteur, HMAC(secret, "serveur" | aléas)
+ * - abonné -> émetteur: HMAC(secret, "abonné" | aléas | identifiant du nœud)
+ * Chaque côté vérifie la preuve de l'autre avant d'aller plus loin: sans le secret, un hôte ne peut ni
+ * s'abonner (et lire les comptes) ni se faire passer pour un pair (et injecter des comptes).
+ *
+ * Les trames de l'émetteur sont ensuite chiffrées et authentifiées (AES-GCM) sous une clé propre à la
+ * connexion, dérivée du secret et des deux aléas; l'IV est le numéro de la trame, ce qui refuse aussi
+ * les trames rejouées, supprimées ou réordonnées.
+ */
+final class ReplicationChannel {
+    static final int MIN_SECRET_LENGTH = 16;
+    private static final int NONCE_LENGTH = 32;
+    private static final int PROOF_LENGTH = 32;
+    private static final int GCM_TAG_BITS = 128;
+    private static final int MAX_FRAME_LENGTH = 16 * 1024 * 1024;
+
+    private static final byte[] SERVER_LABEL = "ta-replication-server".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] CLIENT_LABEL = "ta-replication-client".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] STREAM_LABEL = "ta-replication-stream".getBytes(StandardCharsets.UTF_8);
+
+    private static final SecureRandom RANDOM = new SecureRandom();
+
+    private final SecretKeySpec streamKey;
+    private long sequence;
+
+    /**
+     * Trame déchiffrée
+     */
+    static final class Frame {
+        final byte type;
+        final byte[] payload;
+
+        private Frame(byte type, byte[] payload) {
+            this.type = type;
+            this.payload = payload;
+        }
+    }
+
+    private ReplicationChannel(byte[] streamKey) {
+        this.streamKey = new SecretKeySpec(streamKey, "AES");
+    }
+
+    /**
+     * Côté émetteur: authentifie l'abonné dont l'identifiant vient d'être lu
+     *
+     * @throws IOException Si l'abonné ne connaît pas le secret
+     */
+    static ReplicationChannel authenticateSubscriber(DataInputStream in, DataOutputStream out, byte[] secret,
+                                                     String peerNode) throws IOException {
+        byte[] clientNonce = new byte[NONCE_LENGTH];
+        in.readFully(clientNonce);
+        byte[] serverNonce = new byte[NONCE_LENGTH];
+        RANDOM.nextBytes(serverNonce);
+
+        out.write(serverNonce);
+        out.write(hmac(secret, SERVER_LABEL, clientNonce, serverNonce));
+        out.flush();
+
+        byte[] proof = new byte[PROOF_LENGTH];
+        in.readFully(proof);
+        byte[] expected = hmac(secret, CLIENT_LABEL, clientNonce, serverNonce, peerNode.getBytes(StandardCharsets.UTF_8));
+        if (!MessageDigest.isEqual(proof, expected)) {
+            throw new IOException("Nœud " + peerNode + " refusé: secret de réplication invalide");
+        }
+        return new ReplicationChannel(hmac(secret, STREAM_LABEL, clientNonce, serverNonce));
+    }
+
+    /**
+     * Côté abonné: authentifie l'émetteur puis prouve la connaissance du secret
+     *
+     * @throws IOException Si l'émetteur ne connaît pas le secret
+     */
+    static ReplicationChannel authenticatePublisher(DataInputStream in, DataOutputStream out, byte[] secret,
+                                                    String nodeId) throws IOException {
+        byte[] clientNonce = new byte[NONCE_LENGTH];
+        RANDOM.nextBytes(clientNonce);
+        out.write(clientNonce);
+        out.flush();
+
+        byte[] serverNonce = new byte[NONCE_LENGTH];
+        in.readFully(serverNonce);
+        byte[] proof = new byte[PROOF_LENGTH];
+        in.readFully(proof);
+        if (!MessageDigest.isEqual(proof, hmac(secret, SERVER_LABEL, clientNonce, serverNonce))) {
+            throw new IOException("Pair de réplication refusé: secret de réplication invalide");
+        }
+
+        out.write(hmac(secret, CLIENT_LABEL, clientNonce, serverNonce, nodeId.getBytes(StandardCharsets.UTF_8)));
+        out.flush();
+        return new ReplicationChannel(hmac(secret, STREAM_LABEL, clientNonce, serverNonce));
+    }
+
+    /**
+     * Écrit une trame [type][longueur][contenu chiffré]
+     */
+    void writeFrame(DataOutputStream out, byte type, byte[] payload) throws IOException {
+        byte[] sealed = crypt(Cipher.ENCRYPT_MODE, type, payload);
+        out.writeByte(type);
+        out.writeInt(sealed.length);
+        out.write(sealed);
+    }
+
+    /**
+     * Lit et déchiffre la trame suivante
+     *
+     * @throws IOException Si la trame a été altérée, rejouée ou tronquée
+     */
+    Frame readFrame(DataInputStream in) throws IOException {
+        byte type = in.readByte();
+        int length = in.readInt();
+        if (length < 0 || length > MAX_FRAME_LENGTH) {
+            throw new IOException("Trame de réplication invalide (" + length + " octets)");
+        }
+        byte[] sealed = new byte[length];
+        in.readFully(sealed);
+        return new Frame(type, crypt(Cipher.DECRYPT_MODE, type, sealed));
+    }
+
+    private byte[] crypt(int mode, byte type, byte[] input) throws IOException {
+        byte[] iv = ByteBuffer.allocate(12).putInt(0).putLong(sequence++).array();
+        try {
+            Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
+            cipher.init(mode, streamKey, new GCMParameterSpec(GCM_TAG_BITS, iv));
+            cipher.updateAAD(new byte[]{type});
+            return cipher.doFinal(input);
+        } catch (GeneralSecurityException e) {
+            throw new IOException("Trame de réplication refusée: " + e.getMessage());
+        }
+    }
+
+    private static byte[] hmac(byte[] secret, byte[]... parts) {
+        try {
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(new SecretKeySpec(secret, "HmacSHA256"));
+            for (byte[] part : parts) {
+                mac.update(part);
+            }
+            return mac.doFinal();
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("HMAC-SHA256 indisponible", e);
+        }
+    }
+}
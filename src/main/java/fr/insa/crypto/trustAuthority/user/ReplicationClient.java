@@ -0,0 +1,117 @@
+package fr.insa.crypto.trustAuthority.user;
+
+import fr.insa.crypto.utils.Logger;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+
+/**
+ * Côté abonné de la réplication: reçoit l'état complet d'un pair puis ses modifications,
+ * et se réabonne automatiquement (avec un délai croissant) après une coupure.
+ */
+class ReplicationClient implements Closeable {
+    private static final int CONNECT_TIMEOUT_MS = 2000;
+    private static final long MAX_RECONNECT_DELAY_MS = 10000;
+
+    private final ReplicatedUserStore store;
+    private final InetSocketAddress peer;
+    private final byte[] secret;
+    private final Thread thread;
+    private volatile Socket socket;
+    private volatile boolean running = true;
+    private volatile boolean caughtUp;
+
+    ReplicationClient(ReplicatedUserStore store, InetSocketAddress peer, byte[] secret) {
+        this.store = store;
+        this.peer = peer;
+        this.secret = secret;
+        this.thread = new Thread(this::run, "replication-client-" + peer.getPort());
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    boolean isCaughtUp() {
+        return caughtUp;
+    }
+
+    private void run() {
+        long reconnectDelay = 200;
+        while (running) {
+            try (Socket connection = new Socket()) {
+                socket = connection;
+                connection.connect(peer, CONNECT_TIMEOUT_MS);
+                connection.setTcpNoDelay(true);
+                // Un pair silencieux (sans battement de cœur) est considéré comme perdu
+                connection.setSoTimeout(ReplicationServer.HEARTBEAT_INTERVAL_MS * 5);
+
+                DataOutputStream out = new DataOutputStream(connection.getOutputStream());
+                DataInputStream in = new DataInputStream(new BufferedInputStream(connection.getInputStream(), 1 << 16));
+                out.writeInt(ReplicationServer.MAGIC);
+                out.writeUTF(store.getNodeId());
+                ReplicationChannel channel;
+                try {
+                    channel = ReplicationChannel.authenticatePublisher(in, out, secret, store.getNodeId());
+                } catch (IOException e) {
+                    Logger.warning("Poignée de main de réplication avec " + peer + " refusée: " + e);
+                    throw e;
+                }
+
+                reconnectDelay = 200;
+                receive(channel, in);
+            } catch (IOException e) {
+                if (running) {
+                    Logger.debug("Pair de réplication " + peer + " injoignable: " + e.getMessage());
+                }
+            }
+
+            if (running) {
+                try {
+                    Thread.sleep(reconnectDelay);
+                } catch (InterruptedException e) {
+                    return;
+                }
+                reconnectDelay = Math.min(MAX_RECONNECT_DELAY_MS, reconnectDelay * 2);
+            }
+        }
+    }
+
+    private void receive(ReplicationChannel channel, DataInputStream in) throws IOException {
+        long start = System.nanoTime();
+        int received = 0;
+        while (running) {
+            ReplicationChannel.Frame frame = channel.readFrame(in);
+
+            switch (frame.type) {
+                case ReplicationServer.FRAME_ACCOUNT:
+                    store.applyRemote(UserAccountCodec.read(ByteBuffer.wrap(frame.payload)));
+                    received++;
+                    break;
+                case ReplicationServer.FRAME_SNAPSHOT_END:
+                    caughtUp = true;
+                    Logger.info("Rattrapage depuis " + peer + " terminé: " + received + " comptes en "
+                            + (System.nanoTime() - start) / 1_000_000 + " ms");
+                    break;
+                case ReplicationServer.FRAME_HEARTBEAT:
+                    break;
+                default:
+                    throw new IOException("Trame de réplication inconnue: " + frame.type);
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        running = false;
+        thread.interrupt();
+        Socket current = socket;
+        if (current != null) {
+            current.close();
+        }
+    }
+}
@@ -0,0 +1,263 @@
+package fr.insa.crypto.trustAuthority.user;
+
+import fr.insa.crypto.utils.Logger;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Côté émetteur de la réplication: accepte les abonnements des pairs, leur envoie l'état complet
+ * puis les modifications locales au fil de l'eau.
+ *
+ * Protocole: l'abonné envoie [MAGIC][identifiant du nœud], puis les deux nœuds s'authentifient
+ * mutuellement par le secret partagé (ReplicationChannel); l'émetteur répond ensuite par des trames
+ * chiffrées [type][longueur][compte encodé] (ACCOUNT pour l'état initial et les modifications,
+ * SNAPSHOT_END à la fin de l'état initial, HEARTBEAT en l'absence de modification).
+ * L'écoute se fait sur l'adresse configurée (boucle locale par défaut).
+ *
+ * Chaque connexion occupe un thread dès son acceptation: le nombre total de connexions et celui des
+ * connexions en cours d'authentification sont bornés, une connexion au-delà est fermée aussitôt.
+ */
+class ReplicationServer implements Closeable {
+    static final int MAGIC = 0x54415250; // "TARP"
+    static final byte FRAME_ACCOUNT = 1;
+    static final byte FRAME_SNAPSHOT_END = 2;
+    static final byte FRAME_HEARTBEAT = 3;
+    static final int HEARTBEAT_INTERVAL_MS = 1000;
+
+    // Un abonné trop lent est déconnecté; il se réabonnera et repartira de l'état complet
+    private static final int SUBSCRIBER_QUEUE_CAPACITY = 100_000;
+
+    // Délai maximal de la poignée de main: une connexion non authentifiée retient son thread au plus ce délai
+    static final int HANDSHAKE_TIMEOUT_MS = 5000;
+    // Connexions au plus (abonnés et poignées de main) et poignées de main en cours au plus
+    static final int MAX_CONNECTIONS = 64;
+    static final int MAX_PENDING_HANDSHAKES = 8;
+
+    private final ReplicatedUserStore store;
+    private final ServerSocket serverSocket;
+    private final byte[] secret;
+    private final Semaphore connectionSlots;
+    private final Semaphore handshakeSlots;
+    private final Set<Subscriber> subscribers = ConcurrentHashMap.newKeySet();
+    private final LongAdder rejectedConnectionCount = new LongAdder();
+    private volatile boolean running = true;
+
+    /**
+     * @param bindAddress Adresse d'écoute
+     * @param secret      Secret partagé entre les nœuds
+     */
+    ReplicationServer(ReplicatedUserStore store, String bindAddress, int port, byte[] secret) throws IOException {
+        this(store, bindAddress, port, secret, MAX_CONNECTIONS, MAX_PENDING_HANDSHAKES);
+    }
+
+    /**
+     * @param maxConnections       Connexions ouvertes au plus, authentifiées ou non
+     * @param maxPendingHandshakes Connexions au plus en cours d'authentification
+     */
+    ReplicationServer(ReplicatedUserStore store, String bindAddress, int port, byte[] secret, int maxConnections,
+                      int maxPendingHandshakes) throws IOException {
+        this.store = store;
+        this.secret = secret;
+        this.connectionSlots = new Semaphore(maxConnections);
+        this.handshakeSlots = new Semaphore(maxPendingHandshakes);
+        this.serverSocket = new ServerSocket();
+        serverSocket.setReuseAddress(true);
+        serverSocket.bind(new InetSocketAddress(bindAddress, port));
+
+        Thread acceptor = new Thread(this::acceptLoop, "replication-accept");
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    int getSubscriberCount() {
+        return subscribers.size();
+    }
+
+    long getRejectedConnectionCount() {
+        return rejectedConnectionCount.sum();
+    }
+
+    /**
+     * Transmet une modification locale à tous les abonnés
+     */
+    void publish(byte[] record) {
+        for (Subscriber subscriber : subscribers) {
+            if (!subscriber.queue.offer(record)) {
+                Logger.warning("Abonné de réplication " + subscriber.peerNode + " trop lent, déconnexion");
+                subscriber.disconnect();
+            }
+        }
+    }
+
+    private void acceptLoop() {
+        while (running) {
+            try {
+                Socket socket = serverSocket.accept();
+                if (!connectionSlots.tryAcquire()) {
+                    reject(socket);
+                    continue;
+                }
+                if (!handshakeSlots.tryAcquire()) {
+                    connectionSlots.release();
+                    reject(socket);
+                    continue;
+                }
+                Thread thread = new Thread(() -> serve(socket), "replication-subscriber");
+                thread.setDaemon(true);
+                thread.start();
+            } catch (IOException e) {
+                if (running) {
+                    Logger.error("Erreur d'acceptation de réplication: " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    private void reject(Socket socket) {
+        rejectedConnectionCount.increment();
+        try {
+            socket.close();
+        } catch (IOException e) {
+            // Déjà fermée
+        }
+    }
+
+    /**
+     * Sert une connexion acceptée, qui détient une place de connexion et une place de poignée de main
+     */
+    private void serve(Socket socket) {
+        Subscriber subscriber = null;
+        boolean handshaking = true;
+        try {
+            socket.setTcpNoDelay(true);
+            DataInputStream in = new DataInputStream(socket.getInputStream());
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream(), 1 << 16));
+            socket.setSoTimeout(HANDSHAKE_TIMEOUT_MS);
+            if (in.readInt() != MAGIC) {
+                throw new IOException("Protocole de réplication inconnu");
+            }
+            String peerNode = in.readUTF();
+            ReplicationChannel channel;
+            try {
+                channel = ReplicationChannel.authenticateSubscriber(in, out, secret, peerNode);
+            } catch (IOException e) {
+                Logger.warning("Abonnement de réplication refusé (" + socket.getRemoteSocketAddress() + ", nœud "
+                        + peerNode + "): " + e);
+                return;
+            }
+            handshaking = false;
+            handshakeSlots.release();
+            socket.setSoTimeout(0);
+            subscriber = new Subscriber(socket, peerNode);
+
+            // S'inscrire avant de parcourir l'état: aucune modification concurrente n'est perdue
+            // (les doublons sont sans effet grâce aux versions)
+            subscribers.add(subscriber);
+            long start = System.nanoTime();
+            int[] count = new int[1];
+            try {
+                store.forEach(account -> {
+                    writeFrame(channel, out, FRAME_ACCOUNT, ReplicatedUserStore.encode(account));
+                    count[0]++;
+                });
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            writeFrame(channel, out, FRAME_SNAPSHOT_END, new byte[0]);
+            out.flush();
+            Logger.info("État complet (" + count[0] + " comptes) envoyé au nœud " + subscriber.peerNode
+                    + " en " + (System.nanoTime() - start) / 1_000_000 + " ms");
+
+            while (running && !socket.isClosed()) {
+                byte[] record = subscriber.queue.poll(HEARTBEAT_INTERVAL_MS, TimeUnit.MILLISECONDS);
+                if (record == null) {
+                    writeFrame(channel, out, FRAME_HEARTBEAT, new byte[0]);
+                } else {
+                    writeFrame(channel, out, FRAME_ACCOUNT, record);
+                    // Regrouper les modifications déjà en attente dans une même écriture réseau
+                    while ((record = subscriber.queue.poll()) != null) {
+                        writeFrame(channel, out, FRAME_ACCOUNT, record);
+                    }
+                }
+                out.flush();
+            }
+        } catch (IOException | UncheckedIOException e) {
+            if (running) {
+                Logger.warning("Abonné de réplication déconnecté: " + e.getMessage());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            if (handshaking) {
+                handshakeSlots.release();
+            }
+            if (subscriber != null) {
+                subscribers.remove(subscriber);
+            }
+            try {
+                socket.close();
+            } catch (IOException e) {
+                // Déjà fermée
+            }
+            connectionSlots.release();
+        }
+    }
+
+    private static void writeFrame(ReplicationChannel channel, DataOutputStream out, byte type, byte[] payload) {
+        try {
+            channel.writeFrame(out, type, payload);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Un pair abonné et les modifications en attente d'envoi
+     */
+    private static class Subscriber {
+        final Socket socket;
+        final String peerNode;
+        final BlockingQueue<byte[]> queue = new LinkedBlockingQueue<>(SUBSCRIBER_QUEUE_CAPACITY);
+
+        Subscriber(Socket socket, String peerNode) {
+            this.socket = socket;
+            this.peerNode = peerNode;
+        }
+
+        void disconnect() {
+            try {
+                socket.close();
+            } catch (IOException e) {
+                // Déjà fermée
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        running = false;
+        serverSocket.close();
+        for (Subscriber subscriber : subscribers) {
+            subscriber.disconnect();
+        }
+    }
+}
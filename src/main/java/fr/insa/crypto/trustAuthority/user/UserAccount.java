@@ -3,14 +3,26 @@ package fr.insa.crypto.trustAuthority.user;
 import java.time.Instant;
 
 /**
- * Représente un compte utilisateur dans le système d'autorité de confiance
+ * Représente un compte utilisateur dans le système d'autorité de confiance.
+ *
+ * Un compte est un instantané immuable: chaque modification produit un nouveau compte, que le
+ * stockage installe par compare-and-set (UserStore.replace). Deux requêtes concurrentes ne peuvent
+ * donc ni observer un compte à moitié modifié, ni consommer deux fois le même OTP.
  */
-public class UserAccount {
+public final class UserAccount {
     private final String email;
-    private String totpSecret;
-    private boolean isVerified;
-    private String pendingOtp;
-    private long otpExpirationTime;
+    private final String totpSecret;
+    private final boolean isVerified;
+    // Configuration TOTP non encore confirmée par une première connexion
+    private final boolean totpSetupPending;
+    // Dernière période TOTP acceptée (0 si aucune): répliquée avec le compte, elle refuse un code rejoué sur un autre nœud
+    private final long lastTotpStep;
+    private final String pendingOtp;
+    private final long otpExpirationTime;
+
+    // Version de la dernière modification et nœud d'origine (résolution "dernier écrivain gagnant" entre nœuds)
+    private final long version;
+    private final String originNode;
 
     /**
      * Crée un nouveau compte utilisateur
@@ -18,8 +30,33 @@ public class UserAccount {
      * @param email L'adresse email de l'utilisateur
      */
     public UserAccount(String email) {
+        this(email, null, false, false, 0, null, 0, 0, null);
+    }
+
+    /**
+     * Restaure un compte persisté ou répliqué
+     *
+     * @param email             L'adresse email de l'utilisateur
+     * @param totpSecret        Le secret TOTP, ou null
+     * @param verified          true si le compte est vérifié
+     * @param totpSetupPending  true si la configuration TOTP n'a pas encore été confirmée par une connexion
+     * @param lastTotpStep      Dernière période TOTP acceptée, ou 0
+     * @param pendingOtp        L'OTP en attente, ou null
+     * @param otpExpirationTime Expiration de l'OTP (secondes epoch)
+     * @param version           Version de la dernière modification
+     * @param originNode        Nœud ayant effectué la dernière modification, ou null
+     */
+    UserAccount(String email, String totpSecret, boolean verified, boolean totpSetupPending, long lastTotpStep,
+                String pendingOtp, long otpExpirationTime, long version, String originNode) {
         this.email = email;
-        this.isVerified = false;
+        this.totpSecret = totpSecret;
+        this.isVerified = verified;
+        this.totpSetupPending = totpSetupPending;
+        this.lastTotpStep = lastTotpStep;
+        this.pendingOtp = pendingOtp;
+        this.otpExpirationTime = otpExpirationTime;
+        this.version = version;
+        this.originNode = originNode;
     }
 
     /**
@@ -37,60 +74,116 @@ public class UserAccount {
     }
 
     /**
-     * Définit le secret TOTP
-     *
-     * @param totpSecret Nouveau secret
+     * @return true si le compte est vérifié
      */
-    public void setTotpSecret(String totpSecret) {
-        this.totpSecret = totpSecret;
+    public boolean isVerified() {
+        return isVerified;
     }
 
     /**
-     * @return true si le compte est vérifié
+     * @return true si la configuration TOTP attend encore sa confirmation (aucun code consommé depuis)
      */
-    public boolean isVerified() {
-        return isVerified;
+    public boolean isTotpSetupPending() {
+        return totpSetupPending;
     }
 
     /**
-     * Marque le compte comme vérifié
+     * @return La dernière période TOTP acceptée pour une connexion, ou 0 si aucune depuis l'activation
      */
-    public void setVerified() {
-        this.isVerified = true;
+    public long getLastTotpStep() {
+        return lastTotpStep;
     }
 
     /**
-     * Stocke un OTP en attente pour ce compte
+     * @return true si un OTP est en attente de validation
+     */
+    public boolean hasPendingOtp() {
+        return pendingOtp != null;
+    }
+
+    /**
+     * @param nowSeconds Instant courant (secondes epoch)
+     * @return true si l'OTP en attente a expiré
+     */
+    public boolean isOtpExpired(long nowSeconds) {
+        return pendingOtp != null && nowSeconds > otpExpirationTime;
+    }
+
+    /**
+     * Vérifie si l'OTP fourni correspond à l'OTP en attente et n'est pas expiré (sans le consommer)
      *
+     * @param otp        Code OTP à vérifier
+     * @param nowSeconds Instant courant (secondes epoch)
+     * @return true si l'OTP est valide
+     */
+    public boolean matchesOtp(String otp, long nowSeconds) {
+        return pendingOtp != null && otp != null && !isOtpExpired(nowSeconds) && pendingOtp.equals(otp);
+    }
+
+    /**
      * @param otp               Code OTP
      * @param expirationSeconds Délai d'expiration en secondes
+     * @return Le compte avec cet OTP en attente
      */
-    public void storePendingOtp(String otp, int expirationSeconds) {
-        this.pendingOtp = otp;
-        this.otpExpirationTime = Instant.now().getEpochSecond() + expirationSeconds;
+    public UserAccount withPendingOtp(String otp, int expirationSeconds) {
+        return new UserAccount(email, totpSecret, isVerified, totpSetupPending, lastTotpStep, otp, Instant.now().getEpochSecond() + expirationSeconds,
+                version, originNode);
     }
 
     /**
-     * Vérifie si l'OTP fourni correspond à l'OTP en attente et n'est pas expiré
-     *
-     * @param otp Code OTP à vérifier
-     * @return true si l'OTP est valide
+     * @return Le compte sans OTP en attente (OTP consommé ou expiré)
+     */
+    public UserAccount withoutPendingOtp() {
+        return new UserAccount(email, totpSecret, isVerified, totpSetupPending, lastTotpStep, null, 0, version,
+                originNode);
+    }
+
+    /**
+     * @param totpSecret Secret TOTP pour Google Authenticator
+     * @return Le compte vérifié avec ce secret, sans OTP en attente, dont la configuration TOTP reste à confirmer
+     */
+    public UserAccount verifiedWithTotpSecret(String totpSecret) {
+        return new UserAccount(email, totpSecret, true, true, 0, null, 0, version, originNode);
+    }
+
+    /**
+     * @return Le compte dont la configuration TOTP est confirmée
+     */
+    public UserAccount withTotpSetupConfirmed() {
+        return new UserAccount(email, totpSecret, isVerified, false, lastTotpStep, pendingOtp, otpExpirationTime,
+                version, originNode);
+    }
+
+    /**
+     * @param step Période TOTP du code accepté (postérieure à la dernière acceptée)
+     * @return Le compte ayant consommé ce code, ce qui confirme aussi sa configuration TOTP
+     */
+    public UserAccount withTotpStepUsed(long step) {
+        return new UserAccount(email, totpSecret, isVerified, false, step, pendingOtp, otpExpirationTime, version,
+                originNode);
+    }
+
+    String getPendingOtp() {
+        return pendingOtp;
+    }
+
+    long getOtpExpirationTime() {
+        return otpExpirationTime;
+    }
+
+    long getVersion() {
+        return version;
+    }
+
+    String getOriginNode() {
+        return originNode;
+    }
+
+    /**
+     * Horodate une modification locale avant sa persistance et sa réplication
      */
-    public boolean validateOtp(String otp) {
-        if (pendingOtp == null || otp == null) {
-            return false;
-        }
-
-        // Vérifier expiration
-        if (Instant.now().getEpochSecond() > otpExpirationTime) {
-            pendingOtp = null;
-            return false;
-        }
-
-        boolean isValid = pendingOtp.equals(otp);
-        if (isValid) {
-            pendingOtp = null; // Utilisation unique
-        }
-        return isValid;
+    UserAccount withVersion(long version, String originNode) {
+        return new UserAccount(email, totpSecret, isVerified, totpSetupPending, lastTotpStep, pendingOtp,
+                otpExpirationTime, version, originNode);
     }
 }
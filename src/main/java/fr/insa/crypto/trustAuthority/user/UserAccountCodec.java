@@ -0,0 +1,91 @@
+package fr.insa.crypto.trustAuthority.user;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Encodage binaire d'un compte, partagé par le journal, les instantanés et la réplication:
+ * [email][secret TOTP][drapeaux] puis, selon les drapeaux, [OTP][expiration], [version][nœud d'origine]
+ * et [dernière période TOTP acceptée].
+ * Une chaîne absente est encodée par la longueur -1.
+ */
+final class UserAccountCodec {
+    private static final int FLAG_VERIFIED = 1;
+    private static final int FLAG_PENDING_OTP = 2;
+    private static final int FLAG_VERSIONED = 4;
+    private static final int FLAG_TOTP_SETUP_PENDING = 8;
+    private static final int FLAG_TOTP_STEP = 16;
+
+    private UserAccountCodec() {
+    }
+
+    static void write(DataOutputStream out, UserAccount account) throws IOException {
+        String pendingOtp = account.getPendingOtp();
+        long version = account.getVersion();
+        long lastTotpStep = account.getLastTotpStep();
+        int flags = (account.isVerified() ? FLAG_VERIFIED : 0)
+                | (pendingOtp != null ? FLAG_PENDING_OTP : 0)
+                | (version != 0 ? FLAG_VERSIONED : 0)
+                | (account.isTotpSetupPending() ? FLAG_TOTP_SETUP_PENDING : 0)
+                | (lastTotpStep != 0 ? FLAG_TOTP_STEP : 0);
+
+        writeString(out, account.getEmail());
+        writeString(out, account.getTotpSecret());
+        out.writeByte(flags);
+        if (pendingOtp != null) {
+            writeString(out, pendingOtp);
+            out.writeLong(account.getOtpExpirationTime());
+        }
+        if (version != 0) {
+            out.writeLong(version);
+            writeString(out, account.getOriginNode());
+        }
+        if (lastTotpStep != 0) {
+            out.writeLong(lastTotpStep);
+        }
+    }
+
+    static UserAccount read(ByteBuffer buffer) {
+        String email = readString(buffer);
+        String totpSecret = readString(buffer);
+        int flags = buffer.get();
+
+        String pendingOtp = null;
+        long otpExpirationTime = 0;
+        if ((flags & FLAG_PENDING_OTP) != 0) {
+            pendingOtp = readString(buffer);
+            otpExpirationTime = buffer.getLong();
+        }
+        long version = 0;
+        String originNode = null;
+        if ((flags & FLAG_VERSIONED) != 0) {
+            version = buffer.getLong();
+            originNode = readString(buffer);
+        }
+        long lastTotpStep = (flags & FLAG_TOTP_STEP) != 0 ? buffer.getLong() : 0;
+        return new UserAccount(email, totpSecret, (flags & FLAG_VERIFIED) != 0,
+                (flags & FLAG_TOTP_SETUP_PENDING) != 0, lastTotpStep, pendingOtp, otpExpirationTime, version, originNode);
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeShort(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeShort(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        short length = buffer.getShort();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
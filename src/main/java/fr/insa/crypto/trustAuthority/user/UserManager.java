@@ -1,15 +1,84 @@
 package fr.insa.crypto.trustAuthority.user;
 
+import fr.insa.crypto.utils.Config;
 import fr.insa.crypto.utils.Logger;
 
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.file.Paths;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.UnaryOperator;
 
 /**
  * Gestionnaire des comptes utilisateurs pour l'autorité de confiance
  */
 public class UserManager {
-    private final Map<String, UserAccount> users = new ConcurrentHashMap<>();
+    private final UserStore users;
+
+    /**
+     * Crée le gestionnaire avec le stockage défini par la configuration (TA_USER_STORE)
+     */
+    public UserManager() {
+        this(createStore());
+    }
+
+    public UserManager(UserStore users) {
+        this.users = users;
+    }
+
+    /**
+     * Crée le stockage configuré; en cas d'échec d'ouverture du journal, l'autorité ne doit pas démarrer
+     * avec un stockage vide qui masquerait les comptes existants
+     */
+    private static UserStore createStore() {
+        UserStore store;
+        if ("memory".equalsIgnoreCase(Config.TA_USER_STORE)) {
+            Logger.warning("Stockage des comptes en mémoire: les comptes seront perdus au redémarrage");
+            store = new InMemoryUserStore();
+        } else {
+            try {
+                store = new WalUserStore(Paths.get(Config.TA_USER_DATA_DIR),
+                        Config.TA_USER_WAL_SEGMENT_BYTES, Config.TA_USER_SNAPSHOT_INTERVAL_MS);
+            } catch (IOException e) {
+                throw new IllegalStateException("Impossible d'ouvrir le stockage des comptes dans "
+                        + Config.TA_USER_DATA_DIR + ": " + e.getMessage(), e);
+            }
+        }
+
+        // Réplication entre nœuds de l'autorité (désactivée si aucun port n'est configuré)
+        if (Config.TA_REPLICATION_PORT <= 0) {
+            return store;
+        }
+        try {
+            return new ReplicatedUserStore(store, Config.TA_NODE_ID, Config.TA_REPLICATION_BIND, Config.TA_REPLICATION_PORT,
+                    parsePeers(Config.TA_REPLICATION_PEERS), Config.TA_REPLICATION_SECRET);
+        } catch (IOException e) {
+            throw new IllegalStateException("Impossible de démarrer la réplication des comptes sur le port "
+                    + Config.TA_REPLICATION_PORT + ": " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * @param peers Liste "hôte:port" séparée par des virgules
+     */
+    static List<InetSocketAddress> parsePeers(String peers) {
+        List<InetSocketAddress> addresses = new ArrayList<>();
+        if (peers == null) {
+            return addresses;
+        }
+        for (String peer : peers.split(",")) {
+            String trimmed = peer.trim();
+            if (trimmed.isEmpty()) {
+                continue;
+            }
+            int separator = trimmed.lastIndexOf(':');
+            addresses.add(new InetSocketAddress(trimmed.substring(0, separator),
+                    Integer.parseInt(trimmed.substring(separator + 1))));
+        }
+        return addresses;
+    }
 
     /**
      * Vérifie si l'utilisateur est déjà enregistré
@@ -18,7 +87,7 @@ public class UserManager {
      * @return true si l'utilisateur existe
      */
     public boolean isUserRegistered(String email) {
-        return users.containsKey(email.toLowerCase());
+        return users.get(email.toLowerCase()) != null;
     }
 
     /**
@@ -56,6 +125,81 @@ public class UserManager {
         return users.get(email.toLowerCase());
     }
 
+    /**
+     * Enregistre un OTP d'inscription en attente (persisté et répliqué avec le compte)
+     *
+     * @param account           Compte utilisateur
+     * @param otp               Code OTP
+     * @param expirationSeconds Délai d'expiration en secondes
+     */
+    public void storePendingOtp(UserAccount account, String otp, int expirationSeconds) {
+        update(account.getEmail(), current -> current.withPendingOtp(otp, expirationSeconds));
+    }
+
+    /**
+     * Vérifie et consomme l'OTP en attente d'un compte, en une seule transition atomique:
+     * parmi des requêtes concurrentes portant le même OTP, une seule le voit valide
+     *
+     * @param account Compte utilisateur
+     * @param otp     Code OTP à vérifier
+     * @return true si l'OTP est valide
+     */
+    public boolean validateOtp(UserAccount account, String otp) {
+        return consumeOtp(account.getEmail(), otp, UserAccount::withoutPendingOtp);
+    }
+
+    /**
+     * Confirme la configuration TOTP du compte après la première vérification consommant un code:
+     * la confirmation non consommante n'est plus acceptée ensuite
+     *
+     * @param email Adresse email de l'utilisateur
+     */
+    public void confirmTotpSetup(String email) {
+        UserAccount account = getUser(email);
+        if (account != null && account.isTotpSetupPending()) {
+            update(email, UserAccount::withTotpSetupConfirmed);
+        }
+    }
+
+    /**
+     * Consomme la période d'un code TOTP accepté par compare-and-set sur le compte, persisté et répliqué:
+     * ce code (ou un code antérieur) est ensuite refusé sur ce nœud comme sur les autres, dès que la
+     * modification leur est parvenue. La première consommation confirme aussi la configuration TOTP.
+     *
+     * @param email Adresse email de l'utilisateur
+     * @param step  Période TOTP du code accepté
+     * @return true si la période est postérieure à la dernière consommée, et l'est désormais
+     */
+    public boolean consumeTotpStep(String email, long step) {
+        String key = email.toLowerCase();
+        while (true) {
+            UserAccount current = users.get(key);
+            if (current == null || step <= current.getLastTotpStep()) {
+                return false;
+            }
+            if (users.replace(key, current, current.withTotpStepUsed(step))) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Consomme l'OTP, marque le compte comme vérifié et enregistre son secret TOTP en une seule
+     * transition atomique: le compte n'est jamais vérifié sans secret, ni l'OTP réutilisable
+     *
+     * @param email      Adresse email de l'utilisateur
+     * @param otp        Code OTP reçu par email
+     * @param totpSecret Secret TOTP pour Google Authenticator
+     * @return true si l'OTP était valide et le compte est vérifié
+     */
+    public boolean verifyOtpAndSetTotpSecret(String email, String otp, String totpSecret) {
+        boolean verified = consumeOtp(email, otp, current -> current.verifiedWithTotpSecret(totpSecret));
+        if (verified) {
+            Logger.info("Utilisateur vérifié avec succès: " + email);
+        }
+        return verified;
+    }
+
     /**
      * Marque un utilisateur comme vérifié et définit son secret TOTP
      *
@@ -64,14 +208,72 @@ public class UserManager {
      * @return true si l'opération a réussi
      */
     public boolean verifyUserAndSetTotpSecret(String email, String totpSecret) {
-        UserAccount account = users.get(email.toLowerCase());
-        if (account == null) {
+        if (update(email, current -> current.verifiedWithTotpSecret(totpSecret)) == null) {
             return false;
         }
-
-        account.setTotpSecret(totpSecret);
-        account.setVerified();
         Logger.info("Utilisateur vérifié avec succès: " + email);
         return true;
     }
+
+    /**
+     * Applique une transition à l'OTP en attente s'il est valide; un OTP expiré est retiré.
+     * Un code erroné laisse l'OTP en attente (la limite de débit par identité borne les essais).
+     */
+    private boolean consumeOtp(String email, String otp, UnaryOperator<UserAccount> onValid) {
+        String key = email.toLowerCase();
+        long now = Instant.now().getEpochSecond();
+        while (true) {
+            UserAccount current = users.get(key);
+            if (current == null || !current.hasPendingOtp()) {
+                return false;
+            }
+            boolean valid = current.matchesOtp(otp, now);
+            if (!valid && !current.isOtpExpired(now)) {
+                return false;
+            }
+            // L'OTP consommé (ou expiré) doit l'être aussi sur les autres nœuds
+            UserAccount updated = valid ? onValid.apply(current) : current.withoutPendingOtp();
+            if (users.replace(key, current, updated)) {
+                return valid;
+            }
+            // Un autre écrivain est passé entre la lecture et le compare-and-set: relire
+        }
+    }
+
+    /**
+     * Remplace le compte par compare-and-set jusqu'à ce que la transition s'applique sur l'état courant
+     *
+     * @return Le compte modifié, ou null si le compte n'existe pas
+     */
+    private UserAccount update(String email, UnaryOperator<UserAccount> transition) {
+        String key = email.toLowerCase();
+        while (true) {
+            UserAccount current = users.get(key);
+            if (current == null) {
+                return null;
+            }
+            UserAccount updated = transition.apply(current);
+            if (users.replace(key, current, updated)) {
+                return updated;
+            }
+        }
+    }
+
+    /**
+     * @return Nombre de comptes enregistrés
+     */
+    public int getUserCount() {
+        return users.size();
+    }
+
+    /**
+     * Ferme le stockage des comptes
+     */
+    public void close() {
+        try {
+            users.close();
+        } catch (IOException e) {
+            Logger.error("Erreur lors de la fermeture du stockage des comptes: " + e.getMessage());
+        }
+    }
 }
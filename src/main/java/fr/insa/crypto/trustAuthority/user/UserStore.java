@@ -0,0 +1,76 @@
+package fr.insa.crypto.trustAuthority.user;
+
+import java.io.IOException;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Stockage des comptes utilisateurs de l'autorité de confiance.
+ * Les clés sont les adresses email en minuscules. Les lectures ne doivent jamais
+ * attendre une écriture; une écriture ne rend la main qu'une fois le compte persisté
+ * (pour les implémentations durables). Les comptes étant immuables, une modification
+ * remplace le compte lu par compare-and-set et réessaie si un autre écrivain est passé avant.
+ */
+public interface UserStore {
+
+    /**
+     * @param key Adresse email en minuscules
+     * @return Le compte, ou null s'il n'existe pas
+     */
+    UserAccount get(String key);
+
+    /**
+     * Retourne le compte existant ou crée (et persiste) celui produit par la fabrique
+     */
+    UserAccount computeIfAbsent(String key, Function<String, UserAccount> factory);
+
+    /**
+     * Remplace le compte si le compte courant est toujours celui lu (même instance), puis le persiste
+     *
+     * @return false si le compte a été modifié entre-temps (rien n'est écrit)
+     */
+    boolean replace(String key, UserAccount expected, UserAccount updated);
+
+    /**
+     * Écrit un compte sans condition (état reçu d'un autre nœud de l'autorité)
+     */
+    void save(String key, UserAccount account);
+
+    /**
+     * Écriture appliquée et journalisée dont la persistance est attendue séparément
+     */
+    @FunctionalInterface
+    interface PendingWrite {
+        PendingWrite DURABLE = () -> { };
+
+        /**
+         * Attend que l'écriture soit sur disque
+         */
+        void awaitDurable();
+    }
+
+    /**
+     * Comme save, mais rend la main sans attendre le disque: l'appelant attend la persistance
+     * hors de ses propres verrous, et les écritures concurrentes partagent le même fsync.
+     * Les implémentations non durables écrivent directement.
+     */
+    default PendingWrite saveDeferred(String key, UserAccount account) {
+        save(key, account);
+        return PendingWrite.DURABLE;
+    }
+
+    /**
+     * Parcourt tous les comptes (vue faiblement cohérente, sans bloquer les écritures)
+     */
+    void forEach(Consumer<UserAccount> action);
+
+    /**
+     * @return Nombre de comptes enregistrés
+     */
+    int size();
+
+    /**
+     * Libère les ressources (fichiers, threads) du stockage
+     */
+    void close() throws IOException;
+}
@@ -0,0 +1,521 @@
+package fr.insa.crypto.trustAuthority.user;
+
+import fr.insa.crypto.utils.Logger;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Stockage persistant des comptes: journal d'écriture anticipée (WAL) en ajout seul
+ * et instantanés compactés périodiques.
+ *
+ * - Les lectures se font uniquement dans l'index en mémoire et n'attendent jamais le disque.
+ * - Chaque écriture ajoute l'état complet du compte au journal puis attend sa synchronisation;
+ *   un thread unique regroupe les écritures concurrentes dans un même fsync (group commit).
+ * - Le journal est découpé en segments nommés par leur premier numéro de séquence. Au-delà d'une
+ *   taille limite (ou périodiquement), un nouveau segment est ouvert et un instantané de l'index
+ *   est écrit; les segments entièrement couverts par l'instantané sont alors supprimés.
+ * - Les OTP d'inscription en attente sont journalisés avec le compte: une inscription en cours
+ *   survit au redémarrage et peut être répliquée vers les autres nœuds.
+ * - Au démarrage, l'instantané puis les segments sont lus par projection mémoire (mmap) et les
+ *   enregistrements postérieurs à l'instantané sont rejoués. Une fin de segment tronquée par un
+ *   arrêt brutal est détectée par CRC et coupée.
+ * - Les enregistrements portent les secrets TOTP et les OTP en attente: le répertoire n'est accessible
+ *   qu'au propriétaire (rwx------) et les segments et instantanés sont créés en rw-------.
+ */
+public class WalUserStore implements UserStore {
+    private static final int SNAPSHOT_MAGIC = 0x54415553; // "TAUS"
+    private static final int FORMAT_VERSION = 1;
+    private static final int SNAPSHOT_HEADER_SIZE = 24;
+    private static final short END_OF_RECORDS = -1;
+
+    private static final String SNAPSHOT_FILE = "users.snapshot";
+    private static final String SEGMENT_PREFIX = "users-";
+    private static final String SEGMENT_SUFFIX = ".wal";
+    private static final Set<PosixFilePermission> OWNER_ONLY_DIRECTORY = PosixFilePermissions.fromString("rwx------");
+    private static final Set<PosixFilePermission> OWNER_ONLY_FILE = PosixFilePermissions.fromString("rw-------");
+
+    private final Path directory;
+    private final long segmentMaxBytes;
+    private final Map<String, UserAccount> users;
+
+    // Journal en attente d'écriture (protégé par appendLock)
+    private final Object appendLock = new Object();
+    private ByteArrayOutputStream pending = new ByteArrayOutputStream(64 * 1024);
+    private long lastAppendedSeq;
+    private boolean snapshotRequested;
+    private boolean closed;
+
+    // Progression de la synchronisation (protégée par durableMonitor)
+    private final Object durableMonitor = new Object();
+    private long durableSeq;
+    private IOException failure;
+
+    // Segment courant, utilisé uniquement par le thread de synchronisation
+    private FileChannel segmentChannel;
+    private long segmentSize;
+    private long lastSnapshotSeq;
+
+    private final Thread flusher;
+    private final ScheduledExecutorService snapshotExecutor = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "user-store-snapshot");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * Ouvre (ou crée) le stockage et restaure les comptes existants
+     *
+     * @param directory          Répertoire des fichiers de données
+     * @param segmentMaxBytes    Taille d'un segment de journal déclenchant un instantané
+     * @param snapshotIntervalMs Intervalle entre deux instantanés (0 pour désactiver)
+     */
+    public WalUserStore(Path directory, long segmentMaxBytes, long snapshotIntervalMs) throws IOException {
+        this.directory = directory;
+        this.segmentMaxBytes = segmentMaxBytes;
+        Files.createDirectories(directory);
+        try {
+            // Répertoire existant compris: les fichiers créés avant ne sont plus lisibles par les autres
+            Files.setPosixFilePermissions(directory, OWNER_ONLY_DIRECTORY);
+        } catch (UnsupportedOperationException e) {
+            // Système de fichiers non POSIX
+        }
+
+        long start = System.nanoTime();
+        Map<String, UserAccount> restored = new ConcurrentHashMap<>();
+        long snapshotSeq = loadSnapshot(restored);
+        long lastSeq = replaySegments(restored, snapshotSeq);
+        this.users = restored;
+        this.lastAppendedSeq = lastSeq;
+        this.durableSeq = lastSeq;
+        this.lastSnapshotSeq = snapshotSeq;
+        Logger.info("Restauration de " + users.size() + " compte(s) en " + (System.nanoTime() - start) / 1_000_000
+                + " ms (instantané #" + snapshotSeq + ", journal jusqu'à #" + lastSeq + ")");
+
+        openSegment(lastSeq + 1);
+
+        flusher = new Thread(this::runFlusher, "user-store-wal");
+        flusher.setDaemon(true);
+        flusher.start();
+
+        if (snapshotIntervalMs > 0) {
+            snapshotExecutor.scheduleWithFixedDelay(this::requestSnapshot,
+                    snapshotIntervalMs, snapshotIntervalMs, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @Override
+    public UserAccount get(String key) {
+        return users.get(key);
+    }
+
+    @Override
+    public UserAccount computeIfAbsent(String key, Function<String, UserAccount> factory) {
+        boolean[] created = new boolean[1];
+        UserAccount account = users.computeIfAbsent(key, k -> {
+            created[0] = true;
+            return factory.apply(k);
+        });
+        // Journaliser hors du verrou de la table pour ne pas bloquer les lectures pendant le fsync
+        if (created[0]) {
+            append(key);
+        }
+        return account;
+    }
+
+    @Override
+    public boolean replace(String key, UserAccount expected, UserAccount updated) {
+        if (!users.replace(key, expected, updated)) {
+            return false;
+        }
+        append(key);
+        return true;
+    }
+
+    @Override
+    public void save(String key, UserAccount account) {
+        saveDeferred(key, account).awaitDurable();
+    }
+
+    @Override
+    public PendingWrite saveDeferred(String key, UserAccount account) {
+        users.put(key, account);
+        long seq = enqueue(key);
+        return () -> awaitDurable(seq);
+    }
+
+    @Override
+    public void forEach(Consumer<UserAccount> action) {
+        users.values().forEach(action);
+    }
+
+    @Override
+    public int size() {
+        return users.size();
+    }
+
+    /**
+     * Demande l'écriture d'un instantané lors de la prochaine synchronisation
+     */
+    public void requestSnapshot() {
+        synchronized (appendLock) {
+            snapshotRequested = true;
+            appendLock.notifyAll();
+        }
+    }
+
+    /**
+     * Ajoute l'état courant du compte au journal et attend qu'il soit sur disque
+     */
+    private void append(String key) {
+        awaitDurable(enqueue(key));
+    }
+
+    /**
+     * Ajoute l'état courant du compte au journal, sans attendre le disque
+     *
+     * @return Numéro de séquence de l'enregistrement, à passer à awaitDurable
+     */
+    private long enqueue(String key) {
+        long seq;
+        synchronized (appendLock) {
+            if (closed) {
+                throw new IllegalStateException("Stockage des comptes fermé");
+            }
+            seq = ++lastAppendedSeq;
+            // Relire l'état sous le verrou: si deux écrivains se suivent de près, le dernier enregistrement
+            // du compte reste son état le plus récent, quel que soit l'ordre d'arrivée au journal
+            writeWalRecord(pending, seq, users.get(key));
+            appendLock.notifyAll();
+        }
+        return seq;
+    }
+
+    private void awaitDurable(long seq) {
+        synchronized (durableMonitor) {
+            while (durableSeq < seq) {
+                if (failure != null) {
+                    throw new UncheckedIOException("Échec d'écriture du journal des comptes", failure);
+                }
+                try {
+                    durableMonitor.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException("Interrompu en attendant la persistance du compte", e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Thread de synchronisation: écrit tout ce qui s'est accumulé pendant le fsync précédent en un seul fsync
+     */
+    private void runFlusher() {
+        while (true) {
+            byte[] batch;
+            long batchSeq;
+            boolean snapshot;
+            synchronized (appendLock) {
+                while (pending.size() == 0 && !closed && !snapshotRequested) {
+                    try {
+                        appendLock.wait();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+                if (pending.size() == 0 && closed) {
+                    return;
+                }
+                batch = pending.toByteArray();
+                pending.reset();
+                batchSeq = lastAppendedSeq;
+                snapshot = snapshotRequested;
+                snapshotRequested = false;
+            }
+
+            try {
+                if (batch.length > 0) {
+                    ByteBuffer buffer = ByteBuffer.wrap(batch);
+                    while (buffer.hasRemaining()) {
+                        segmentChannel.write(buffer);
+                    }
+                    segmentChannel.force(false);
+                    segmentSize += batch.length;
+                }
+                synchronized (durableMonitor) {
+                    durableSeq = batchSeq;
+                    durableMonitor.notifyAll();
+                }
+
+                if ((snapshot || segmentSize >= segmentMaxBytes) && batchSeq > lastSnapshotSeq) {
+                    rotate(batchSeq);
+                }
+            } catch (IOException e) {
+                Logger.error("Échec d'écriture du journal des comptes: " + e.getMessage());
+                synchronized (durableMonitor) {
+                    failure = e;
+                    durableMonitor.notifyAll();
+                }
+                return;
+            }
+        }
+    }
+
+    /**
+     * Ouvre un nouveau segment commençant après seq et programme l'instantané correspondant
+     */
+    private void rotate(long seq) throws IOException {
+        segmentChannel.close();
+        openSegment(seq + 1);
+        lastSnapshotSeq = seq;
+        snapshotExecutor.execute(() -> writeSnapshot(seq));
+    }
+
+    private void openSegment(long firstSeq) throws IOException {
+        Path segment = directory.resolve(SEGMENT_PREFIX + String.format("%020d", firstSeq) + SEGMENT_SUFFIX);
+        segmentChannel = openOwnerOnly(segment, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        segmentSize = segmentChannel.size();
+    }
+
+    /**
+     * Ouvre un fichier de données, créé lisible et modifiable par le seul propriétaire
+     */
+    private static FileChannel openOwnerOnly(Path path, StandardOpenOption... options) throws IOException {
+        try {
+            return FileChannel.open(path, Set.of(options), PosixFilePermissions.asFileAttribute(OWNER_ONLY_FILE));
+        } catch (UnsupportedOperationException e) {
+            // Système de fichiers non POSIX
+            return FileChannel.open(path, options);
+        }
+    }
+
+    /**
+     * Écrit un instantané de l'index couvrant au moins le journal jusqu'à seq, puis supprime les segments couverts.
+     * L'index peut contenir des états plus récents: leur rejeu au démarrage est sans effet (état complet du compte).
+     */
+    private void writeSnapshot(long seq) {
+        long start = System.nanoTime();
+        Path snapshot = directory.resolve(SNAPSHOT_FILE);
+        Path tmp = directory.resolve(SNAPSHOT_FILE + ".tmp");
+        try (FileChannel channel = openOwnerOnly(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            CRC32 crc = new CRC32();
+            channel.position(SNAPSHOT_HEADER_SIZE);
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                    new CheckedOutputStream(Channels.newOutputStream(channel), crc), 1 << 16));
+            int count = 0;
+            for (UserAccount account : users.values()) {
+                UserAccountCodec.write(out, account);
+                count++;
+            }
+            out.writeShort(END_OF_RECORDS);
+            out.flush();
+
+            ByteBuffer header = ByteBuffer.allocate(SNAPSHOT_HEADER_SIZE);
+            header.putInt(SNAPSHOT_MAGIC).putInt(FORMAT_VERSION).putLong(seq).putInt(count).putInt((int) crc.getValue());
+            header.flip();
+            while (header.hasRemaining()) {
+                channel.write(header, header.position());
+            }
+            channel.force(true);
+        } catch (IOException e) {
+            Logger.error("Échec de l'écriture de l'instantané des comptes: " + e.getMessage());
+            return;
+        }
+
+        try {
+            Files.move(tmp, snapshot, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            for (SegmentFile segment : listSegments()) {
+                if (segment.firstSeq <= seq) {
+                    Files.deleteIfExists(segment.path);
+                }
+            }
+            Logger.info("Instantané des comptes écrit jusqu'à #" + seq + " en " + (System.nanoTime() - start) / 1_000_000 + " ms");
+        } catch (IOException e) {
+            Logger.error("Échec de la compaction du journal des comptes: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Charge l'instantané dans l'index
+     *
+     * @return Numéro de séquence couvert par l'instantané (0 s'il n'y en a pas)
+     */
+    private long loadSnapshot(Map<String, UserAccount> target) throws IOException {
+        Path snapshot = directory.resolve(SNAPSHOT_FILE);
+        if (!Files.exists(snapshot)) {
+            return 0;
+        }
+
+        try (FileChannel channel = FileChannel.open(snapshot, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.remaining() < SNAPSHOT_HEADER_SIZE || buffer.getInt() != SNAPSHOT_MAGIC) {
+                throw new IOException("Instantané des comptes invalide: " + snapshot);
+            }
+            int version = buffer.getInt();
+            if (version != FORMAT_VERSION) {
+                throw new IOException("Version d'instantané non supportée: " + version);
+            }
+            long seq = buffer.getLong();
+            int count = buffer.getInt();
+            int expectedCrc = buffer.getInt();
+
+            CRC32 crc = new CRC32();
+            crc.update(buffer.slice());
+            if ((int) crc.getValue() != expectedCrc) {
+                throw new IOException("Instantané des comptes corrompu (CRC): " + snapshot);
+            }
+
+            for (int i = 0; i < count; i++) {
+                UserAccount account = UserAccountCodec.read(buffer);
+                target.put(account.getEmail().toLowerCase(), account);
+            }
+            return seq;
+        }
+    }
+
+    /**
+     * Rejoue les enregistrements du journal postérieurs à l'instantané
+     *
+     * @return Dernier numéro de séquence valide
+     */
+    private long replaySegments(Map<String, UserAccount> target, long snapshotSeq) throws IOException {
+        long lastSeq = snapshotSeq;
+        List<SegmentFile> segments = listSegments();
+        for (int s = 0; s < segments.size(); s++) {
+            SegmentFile segment = segments.get(s);
+            long validLength;
+            try (FileChannel channel = FileChannel.open(segment.path, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+                CRC32 crc = new CRC32();
+                validLength = 0;
+                while (buffer.remaining() >= 8) {
+                    int length = buffer.getInt();
+                    int expectedCrc = buffer.getInt();
+                    if (length <= 8 || length > buffer.remaining()) {
+                        break;
+                    }
+                    ByteBuffer payload = buffer.slice(buffer.position(), length);
+                    crc.reset();
+                    crc.update(payload.duplicate());
+                    if ((int) crc.getValue() != expectedCrc) {
+                        break;
+                    }
+                    buffer.position(buffer.position() + length);
+                    validLength = buffer.position();
+
+                    long seq = payload.getLong();
+                    UserAccount account = UserAccountCodec.read(payload);
+                    if (seq > snapshotSeq) {
+                        target.put(account.getEmail().toLowerCase(), account);
+                    }
+                    lastSeq = Math.max(lastSeq, seq);
+                }
+
+                if (validLength < channel.size()) {
+                    if (s < segments.size() - 1) {
+                        throw new IOException("Segment de journal corrompu avant la fin du journal: " + segment.path);
+                    }
+                    Logger.warning("Fin de journal incomplète tronquée (" + (channel.size() - validLength) + " octets): " + segment.path);
+                    channel.truncate(validLength);
+                }
+            }
+        }
+        return lastSeq;
+    }
+
+    private List<SegmentFile> listSegments() throws IOException {
+        List<SegmentFile> segments = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX)) {
+            for (Path path : stream) {
+                String name = path.getFileName().toString();
+                String seq = name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length());
+                segments.add(new SegmentFile(path, Long.parseLong(seq)));
+            }
+        }
+        segments.sort((a, b) -> Long.compare(a.firstSeq, b.firstSeq));
+        return segments;
+    }
+
+    private static class SegmentFile {
+        final Path path;
+        final long firstSeq;
+
+        SegmentFile(Path path, long firstSeq) {
+            this.path = path;
+            this.firstSeq = firstSeq;
+        }
+    }
+
+    /**
+     * Enregistrement du journal: [longueur][crc][séquence][compte]
+     */
+    private static void writeWalRecord(ByteArrayOutputStream target, long seq, UserAccount account) {
+        try {
+            ByteArrayOutputStream payloadBytes = new ByteArrayOutputStream(96);
+            DataOutputStream payload = new DataOutputStream(payloadBytes);
+            payload.writeLong(seq);
+            UserAccountCodec.write(payload, account);
+            byte[] body = payloadBytes.toByteArray();
+
+            CRC32 crc = new CRC32();
+            crc.update(body);
+            DataOutputStream out = new DataOutputStream(target);
+            out.writeInt(body.length);
+            out.writeInt((int) crc.getValue());
+            out.write(body);
+        } catch (IOException e) {
+            // Écriture en mémoire: ne peut pas échouer
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        synchronized (appendLock) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            appendLock.notifyAll();
+        }
+        try {
+            flusher.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        snapshotExecutor.shutdown();
+        try {
+            snapshotExecutor.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        segmentChannel.close();
+    }
+}
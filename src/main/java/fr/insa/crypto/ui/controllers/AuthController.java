@@ -1,11 +1,11 @@
 package fr.insa.crypto.ui.controllers;
 
 import fr.insa.crypto.MainUI;
-import fr.insa.crypto.trustAuthority.AccountStatus;
 import fr.insa.crypto.trustAuthority.TrustAuthorityClient;
 import fr.insa.crypto.ui.ViewManager;
 import fr.insa.crypto.utils.Logger;
-import javafx.concurrent.Task;
+import fr.insa.crypto.utils.SessionManager;
+import javafx.application.Platform;
 import javafx.fxml.FXML;
 import javafx.scene.control.Button;
 import javafx.scene.control.Label;
@@ -130,16 +130,15 @@ public class AuthController {
         // Check if the user has an account
         showLoading("Verifying account...");
 
-        Task<AccountStatus> checkTask = new Task<AccountStatus>() {
-            @Override
-            protected AccountStatus call() throws Exception {
-                return trustClient.checkAccountStatus(email);
-            }
-        };
-
-        checkTask.setOnSucceeded(e -> {
+        trustClient.checkAccountStatusAsync(email).whenComplete((status, error) -> Platform.runLater(() -> {
             hideLoading();
-            AccountStatus status = checkTask.getValue();
+            if (error != null) {
+                Logger.error("Error checking account: " + error.getMessage());
+                viewManager.showErrorAlert("Account Check Error",
+                        "Unable to verify account status: " + error.getMessage());
+                showRegisterPanel(); // Default to account creation
+                return;
+            }
 
             if (status.exists() && status.isVerified()) {
                 // User has a verified account, show TOTP authentication screen
@@ -148,17 +147,7 @@ public class AuthController {
                 // User doesn't have an account or is not verified, show registration screen
                 showRegisterPanel();
             }
-        });
-
-        checkTask.setOnFailed(e -> {
-            hideLoading();
-            Logger.error("Error checking account: " + checkTask.getException().getMessage());
-            viewManager.showErrorAlert("Account Check Error",
-                    "Unable to verify account status: " + checkTask.getException().getMessage());
-            showRegisterPanel(); // Default to account creation
-        });
-
-        new Thread(checkTask).start();
+        }));
     }
 
     /**
@@ -174,35 +163,26 @@ public class AuthController {
 
         showLoading("Verifying code...");
 
-        Task<Boolean> verifyTask = new Task<Boolean>() {
-            @Override
-            protected Boolean call() throws Exception {
-                return trustClient.verifyTOTP(currentEmail, totpCode);
-            }
-        };
-
-        verifyTask.setOnSucceeded(e -> {
+        // Verify the code and fetch the private key in a single round trip
+        String password = SessionManager.getInstance().getPasswordFor(currentEmail);
+        trustClient.authenticateAndRequestPrivateKeyAsync(currentEmail, totpCode, password).whenComplete((keyPair, error) -> Platform.runLater(() -> {
             hideLoading();
-            boolean isValid = verifyTask.getValue();
+            if (error != null) {
+                Logger.error("Error verifying code: " + error.getMessage());
+                viewManager.showErrorAlert("Verification Error",
+                        "Unable to verify code: " + error.getMessage());
+                return;
+            }
 
-            if (isValid) {
+            if (keyPair != null) {
                 // Valid code, continue with main authentication process
-                mainApp.completeAuthentication(currentEmail, totpCode);
+                mainApp.completeAuthentication(currentEmail, totpCode, keyPair);
             } else {
                 viewManager.showErrorAlert("Incorrect Code", "The code you entered is incorrect. Please try again.");
                 totpCodeField.clear();
                 totpCodeField.requestFocus();
             }
-        });
-
-        verifyTask.setOnFailed(e -> {
-            hideLoading();
-            Logger.error("Error verifying code: " + verifyTask.getException().getMessage());
-            viewManager.showErrorAlert("Verification Error",
-                    "Unable to verify code: " + verifyTask.getException().getMessage());
-        });
-
-        new Thread(verifyTask).start();
+        }));
     }
 
     /**
@@ -224,16 +204,14 @@ public class AuthController {
         final String finalEmail = email;
         showLoading("Sending verification code...");
 
-        Task<Boolean> otpTask = new Task<Boolean>() {
-            @Override
-            protected Boolean call() throws Exception {
-                return trustClient.requestRegistration(finalEmail);
-            }
-        };
-
-        otpTask.setOnSucceeded(e -> {
+        trustClient.requestRegistrationAsync(finalEmail).whenComplete((success, error) -> Platform.runLater(() -> {
             hideLoading();
-            boolean success = otpTask.getValue();
+            if (error != null) {
+                Logger.error("Error sending OTP: " + error.getMessage());
+                viewManager.showErrorAlert("Send Error",
+                        "Unable to send verification code: " + error.getMessage());
+                return;
+            }
 
             if (success) {
                 // Show OTP input panel
@@ -242,16 +220,7 @@ public class AuthController {
                 viewManager.showErrorAlert("Send Error",
                         "Unable to send verification code. Please try again.");
             }
-        });
-
-        otpTask.setOnFailed(e -> {
-            hideLoading();
-            Logger.error("Error sending OTP: " + otpTask.getException().getMessage());
-            viewManager.showErrorAlert("Send Error",
-                    "Unable to send verification code: " + otpTask.getException().getMessage());
-        });
-
-        new Thread(otpTask).start();
+        }));
     }
 
     /**
@@ -267,16 +236,14 @@ public class AuthController {
 
         showLoading("Verifying code...");
 
-        Task<String> verifyTask = new Task<String>() {
-            @Override
-            protected String call() throws Exception {
-                return trustClient.verifyOtpAndSetupTOTP(currentEmail, otp);
-            }
-        };
-
-        verifyTask.setOnSucceeded(e -> {
+        trustClient.verifyOtpAndSetupTOTPAsync(currentEmail, otp).whenComplete((qrCodeUri, error) -> Platform.runLater(() -> {
             hideLoading();
-            String qrCodeUri = verifyTask.getValue();
+            if (error != null) {
+                Logger.error("Error verifying OTP: " + error.getMessage());
+                viewManager.showErrorAlert("Verification Error",
+                        "Unable to verify code: " + error.getMessage());
+                return;
+            }
 
             if (qrCodeUri != null) {
                 // Show QR code for Google Authenticator
@@ -287,16 +254,7 @@ public class AuthController {
                 otpField.clear();
                 otpField.requestFocus();
             }
-        });
-
-        verifyTask.setOnFailed(e -> {
-            hideLoading();
-            Logger.error("Error verifying OTP: " + verifyTask.getException().getMessage());
-            viewManager.showErrorAlert("Verification Error",
-                    "Unable to verify code: " + verifyTask.getException().getMessage());
-        });
-
-        new Thread(verifyTask).start();
+        }));
     }
 
     /**
@@ -312,16 +270,14 @@ public class AuthController {
 
         showLoading("Verifying code...");
 
-        Task<Boolean> verifyTask = new Task<Boolean>() {
-            @Override
-            protected Boolean call() throws Exception {
-                return trustClient.verifyTOTP(currentEmail, code);
-            }
-        };
-
-        verifyTask.setOnSucceeded(e -> {
+        trustClient.confirmTOTPSetupAsync(currentEmail, code).whenComplete((isValid, error) -> Platform.runLater(() -> {
             hideLoading();
-            boolean isValid = verifyTask.getValue();
+            if (error != null) {
+                Logger.error("Error verifying TOTP: " + error.getMessage());
+                viewManager.showErrorAlert("Verification Error",
+                        "Unable to verify code: " + error.getMessage());
+                return;
+            }
 
             if (isValid) {
                 viewManager.showInfoAlert("Setup Successful",
@@ -333,16 +289,7 @@ public class AuthController {
                 setupTotpField.clear();
                 setupTotpField.requestFocus();
             }
-        });
-
-        verifyTask.setOnFailed(e -> {
-            hideLoading();
-            Logger.error("Error verifying TOTP: " + verifyTask.getException().getMessage());
-            viewManager.showErrorAlert("Verification Error",
-                    "Unable to verify code: " + verifyTask.getException().getMessage());
-        });
-
-        new Thread(verifyTask).start();
+        }));
     }
 
     /**
@@ -4,7 +4,7 @@ import fr.insa.crypto.MainUI;
 import fr.insa.crypto.trustAuthority.TrustAuthorityClient;
 import fr.insa.crypto.ui.ViewManager;
 import fr.insa.crypto.utils.Logger;
-import javafx.concurrent.Task;
+import javafx.application.Platform;
 import javafx.fxml.FXML;
 import javafx.scene.control.Button;
 import javafx.scene.control.Label;
@@ -73,17 +73,15 @@ public class OTPVerifyController {
         
         showLoading("Vérification du code...");
         
-        Task<String> verifyTask = new Task<String>() {
-            @Override
-            protected String call() throws Exception {
-                return trustClient.verifyOtpAndSetupTOTP(email, otp);
-            }
-        };
-        
-        verifyTask.setOnSucceeded(e -> {
+        trustClient.verifyOtpAndSetupTOTPAsync(email, otp).whenComplete((qrCodeUri, error) -> Platform.runLater(() -> {
             hideLoading();
-            String qrCodeUri = verifyTask.getValue();
-            
+            if (error != null) {
+                Logger.error("Erreur lors de la vérification OTP: " + error.getMessage());
+                viewManager.showErrorAlert("Erreur de vérification", 
+                        "Impossible de vérifier le code: " + error.getMessage());
+                return;
+            }
+
             if (qrCodeUri != null) {
                 // Succès, passer à la configuration TOTP
                 mainApp.showTotpSetup(email, qrCodeUri);
@@ -93,16 +91,7 @@ public class OTPVerifyController {
                 otpField.clear();
                 otpField.requestFocus();
             }
-        });
-        
-        verifyTask.setOnFailed(e -> {
-            hideLoading();
-            Logger.error("Erreur lors de la vérification OTP: " + verifyTask.getException().getMessage());
-            viewManager.showErrorAlert("Erreur de vérification", 
-                    "Impossible de vérifier le code: " + verifyTask.getException().getMessage());
-        });
-        
-        new Thread(verifyTask).start();
+        }));
     }
     
     /**
@@ -111,17 +100,15 @@ public class OTPVerifyController {
     private void resendOtp() {
         showLoading("Envoi d'un nouveau code...");
         
-        Task<Boolean> resendTask = new Task<Boolean>() {
-            @Override
-            protected Boolean call() throws Exception {
-                return trustClient.requestRegistration(email);
-            }
-        };
-        
-        resendTask.setOnSucceeded(e -> {
+        trustClient.requestRegistrationAsync(email).whenComplete((success, error) -> Platform.runLater(() -> {
             hideLoading();
-            boolean success = resendTask.getValue();
-            
+            if (error != null) {
+                Logger.error("Erreur lors du renvoi de l'OTP: " + error.getMessage());
+                viewManager.showErrorAlert("Erreur d'envoi", 
+                        "Impossible d'envoyer un nouveau code: " + error.getMessage());
+                return;
+            }
+
             if (success) {
                 viewManager.showInfoAlert("Code envoyé", 
                         "Un nouveau code de vérification a été envoyé à " + email);
@@ -131,16 +118,7 @@ public class OTPVerifyController {
                 viewManager.showErrorAlert("Échec de l'envoi", 
                         "Impossible d'envoyer un nouveau code. Veuillez réessayer plus tard.");
             }
-        });
-        
-        resendTask.setOnFailed(e -> {
-            hideLoading();
-            Logger.error("Erreur lors du renvoi de l'OTP: " + resendTask.getException().getMessage());
-            viewManager.showErrorAlert("Erreur d'envoi", 
-                    "Impossible d'envoyer un nouveau code: " + resendTask.getException().getMessage());
-        });
-        
-        new Thread(resendTask).start();
+        }));
     }
     
     /**
@@ -32,6 +32,7 @@ import java.util.Collections;
 import java.util.Comparator;
 import java.util.Date;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.stream.Collectors;
@@ -122,6 +123,16 @@ public class ReceptController {
      * Sets up the controller with necessary references and data
      */
     public void setup(MainUI mainApp, ViewManager viewManager, String userEmail, MailReceiver mailReceiver) {
+        setup(mainApp, viewManager, userEmail, mailReceiver, null);
+    }
+
+    /**
+     * Sets up the controller, using the inbox fetched during login when there is no valid cache
+     *
+     * @param prefetchedInbox Inbox fetch started during login, or null
+     */
+    public void setup(MainUI mainApp, ViewManager viewManager, String userEmail, MailReceiver mailReceiver,
+                      CompletableFuture<Message[]> prefetchedInbox) {
         this.mainApp = mainApp;
         this.viewManager = viewManager;
         this.mailReceiver = mailReceiver;
@@ -151,14 +162,14 @@ public class ReceptController {
         // Show loading overlay
         loadingOverlay.setVisible(true);
 
-        // Load emails (from cache if available, otherwise refresh)
-        loadEmailsWithCache(mailReceiver);
+        // Load emails (from cache if available, otherwise prefetch or refresh)
+        loadEmailsWithCache(mailReceiver, prefetchedInbox);
     }
 
     /**
      * Loads emails using cache when possible
      */
-    private void loadEmailsWithCache(MailReceiver mailReceiver) {
+    private void loadEmailsWithCache(MailReceiver mailReceiver, CompletableFuture<Message[]> prefetchedInbox) {
         long currentTime = System.currentTimeMillis();
         
         if (isEmailListCached && !cachedEmailItems.isEmpty() && 
@@ -172,6 +183,18 @@ public class ReceptController {
                 updateEmailListView();
                 loadingOverlay.setVisible(false);
             });
+        } else if (prefetchedInbox != null) {
+            // Inbox already fetched (or being fetched) while the user typed the TOTP code
+            prefetchedInbox.whenComplete((prefetched, error) -> Platform.runLater(() -> {
+                if (error != null || prefetched == null) {
+                    refreshMessages(mailReceiver);
+                    return;
+                }
+                Logger.info("Utilisation de la boîte de réception préchargée (" + prefetched.length + " messages)");
+                messages = prefetched;
+                processMessages(messages);
+                lastRefreshTime = System.currentTimeMillis();
+            }));
         } else {
             // Cache expired or empty, refresh from server
             refreshMessages(mailReceiver);
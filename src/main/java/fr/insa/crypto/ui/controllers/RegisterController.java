@@ -4,7 +4,7 @@ import fr.insa.crypto.MainUI;
 import fr.insa.crypto.trustAuthority.TrustAuthorityClient;
 import fr.insa.crypto.ui.ViewManager;
 import fr.insa.crypto.utils.Logger;
-import javafx.concurrent.Task;
+import javafx.application.Platform;
 import javafx.fxml.FXML;
 import javafx.scene.control.Button;
 import javafx.scene.control.Label;
@@ -69,16 +69,14 @@ public class RegisterController {
         // Afficher l'overlay de chargement
         showLoading("Envoi du code de vérification...");
 
-        Task<Boolean> otpTask = new Task<Boolean>() {
-            @Override
-            protected Boolean call() throws Exception {
-                return trustClient.requestRegistration(email);
-            }
-        };
-
-        otpTask.setOnSucceeded(e -> {
+        trustClient.requestRegistrationAsync(email).whenComplete((success, error) -> Platform.runLater(() -> {
             hideLoading();
-            boolean success = otpTask.getValue();
+            if (error != null) {
+                Logger.error("Erreur lors de l'envoi de l'OTP: " + error.getMessage());
+                viewManager.showErrorAlert("Erreur d'envoi",
+                        "Impossible d'envoyer le code de vérification: " + error.getMessage());
+                return;
+            }
 
             if (success) {
                 // Rediriger vers l'écran de vérification OTP
@@ -87,16 +85,7 @@ public class RegisterController {
                 viewManager.showErrorAlert("Erreur d'envoi", 
                         "Impossible d'envoyer le code de vérification. Veuillez réessayer.");
             }
-        });
-
-        otpTask.setOnFailed(e -> {
-            hideLoading();
-            Logger.error("Erreur lors de l'envoi de l'OTP: " + otpTask.getException().getMessage());
-            viewManager.showErrorAlert("Erreur d'envoi",
-                    "Impossible d'envoyer le code de vérification: " + otpTask.getException().getMessage());
-        });
-
-        new Thread(otpTask).start();
+        }));
     }
 
     /**
@@ -4,7 +4,8 @@ import fr.insa.crypto.MainUI;
 import fr.insa.crypto.trustAuthority.TrustAuthorityClient;
 import fr.insa.crypto.ui.ViewManager;
 import fr.insa.crypto.utils.Logger;
-import javafx.concurrent.Task;
+import fr.insa.crypto.utils.SessionManager;
+import javafx.application.Platform;
 import javafx.fxml.FXML;
 import javafx.scene.control.Button;
 import javafx.scene.control.Label;
@@ -103,37 +104,28 @@ public class TOTPSetupController {
         
         showLoading("Vérification du code...");
         
-        Task<Boolean> verifyTask = new Task<Boolean>() {
-            @Override
-            protected Boolean call() throws Exception {
-                return trustClient.verifyTOTP(email, code);
-            }
-        };
-        
-        verifyTask.setOnSucceeded(e -> {
+        // Vérification du code et obtention de la clé privée en un seul aller-retour
+        String password = SessionManager.getInstance().getPasswordFor(email);
+        trustClient.authenticateAndRequestPrivateKeyAsync(email, code, password).whenComplete((keyPair, error) -> Platform.runLater(() -> {
             hideLoading();
-            boolean isValid = verifyTask.getValue();
-            
-            if (isValid) {
+            if (error != null) {
+                Logger.error("Erreur lors de la vérification TOTP: " + error.getMessage());
+                viewManager.showErrorAlert("Erreur de vérification", 
+                        "Impossible de vérifier le code: " + error.getMessage());
+                return;
+            }
+
+            if (keyPair != null) {
                 viewManager.showInfoAlert("Configuration réussie", 
                         "Votre compte est maintenant protégé par l'authentification à deux facteurs.");
-                mainApp.completeAuthentication(email, code);
+                mainApp.completeAuthentication(email, code, keyPair);
             } else {
                 viewManager.showErrorAlert("Code incorrect", 
                         "Le code entré est incorrect. Veuillez vérifier l'heure de votre téléphone et réessayer.");
                 totpField.clear();
                 totpField.requestFocus();
             }
-        });
-        
-        verifyTask.setOnFailed(e -> {
-            hideLoading();
-            Logger.error("Erreur lors de la vérification TOTP: " + verifyTask.getException().getMessage());
-            viewManager.showErrorAlert("Erreur de vérification", 
-                    "Impossible de vérifier le code: " + verifyTask.getException().getMessage());
-        });
-        
-        new Thread(verifyTask).start();
+        }));
     }
     
     /**
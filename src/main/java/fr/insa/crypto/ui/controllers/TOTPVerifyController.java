@@ -4,7 +4,8 @@ import fr.insa.crypto.MainUI;
 import fr.insa.crypto.trustAuthority.TrustAuthorityClient;
 import fr.insa.crypto.ui.ViewManager;
 import fr.insa.crypto.utils.Logger;
-import javafx.concurrent.Task;
+import fr.insa.crypto.utils.SessionManager;
+import javafx.application.Platform;
 import javafx.fxml.FXML;
 import javafx.scene.control.Button;
 import javafx.scene.control.Label;
@@ -72,30 +73,27 @@ public class TOTPVerifyController {
 
         showLoading("Vérification du code...");
 
-        Task<Boolean> verifyTask = new Task<Boolean>() {
-            @Override
-            protected Boolean call() throws Exception {
-                try {
-                    Logger.debug("Vérification du code TOTP pour " + email + ": " + totpCode);
-                    return trustClient.verifyTOTP(email, totpCode);
-                } catch (Exception e) {
-                    Logger.error("Erreur lors de la vérification TOTP: " + e.getMessage());
-                    throw e;
-                }
+        // Vérification du code et obtention de la clé privée en un seul aller-retour
+        Logger.debug("Vérification du code TOTP pour " + email + ": " + totpCode);
+        String password = SessionManager.getInstance().getPasswordFor(email);
+        trustClient.authenticateAndRequestPrivateKeyAsync(email, totpCode, password).whenComplete((keyPair, error) -> Platform.runLater(() -> {
+            hideLoading();
+            if (error != null) {
+                Logger.error("Erreur de vérification: " + error.getMessage());
+                viewManager.showErrorAlert("Erreur de vérification",
+                        "Impossible de vérifier le code: " + error.getMessage());
+                return;
             }
-        };
 
-        verifyTask.setOnSucceeded(e -> {
-            hideLoading();
-            boolean isValid = verifyTask.getValue();
+            boolean isValid = keyPair != null;
 
             Logger.info("Résultat de la vérification TOTP: " + isValid + " pour " + email);
             
             if (isValid) {
                 try {
                     Logger.info("Validation TOTP réussie, redirection vers completeAuthentication...");
-                    // Code valide, poursuivre l'authentification
-                    mainApp.completeAuthentication(email, totpCode);
+                    // Code valide, poursuivre l'authentification avec la clé déjà obtenue
+                    mainApp.completeAuthentication(email, totpCode, keyPair);
                 } catch (Exception ex) {
                     Logger.error("Erreur lors de la complétion de l'authentification: " + ex.getMessage(), ex);
                     ex.printStackTrace();
@@ -109,16 +107,7 @@ public class TOTPVerifyController {
                 totpCodeField.clear();
                 totpCodeField.requestFocus();
             }
-        });
-
-        verifyTask.setOnFailed(e -> {
-            hideLoading();
-            Logger.error("Erreur de vérification: " + verifyTask.getException().getMessage());
-            viewManager.showErrorAlert("Erreur de vérification",
-                    "Impossible de vérifier le code: " + verifyTask.getException().getMessage());
-        });
-
-        new Thread(verifyTask).start();
+        }));
     }
 
     /**
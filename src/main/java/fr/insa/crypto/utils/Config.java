@@ -22,6 +22,100 @@ public class Config {
     // Paramètres de chiffrement
     public static final String PAIRING_PARAMETERS_PATH = getEnv("PAIRING_PARAMETERS_PATH", "params/curves/a.properties");
     
+    // Paramètres de performance de l'autorité de confiance
+    public static final int TA_CRYPTO_THREADS = Integer.parseInt(getEnv("TA_CRYPTO_THREADS",
+            String.valueOf(Runtime.getRuntime().availableProcessors())));
+    public static final int TA_HTTP_THREADS = Integer.parseInt(getEnv("TA_HTTP_THREADS", "16"));
+    
+    // Cache court des clés extraites (durée de vie 0 = cache désactivé, la coalescence reste active)
+    public static final long TA_KEY_CACHE_TTL_MS = Long.parseLong(getEnv("TA_KEY_CACHE_TTL_MS", "60000"));
+    public static final int TA_KEY_CACHE_MAX_SIZE = Integer.parseInt(getEnv("TA_KEY_CACHE_MAX_SIZE", "10000"));
+    
+    // Paramètres des endpoints par lots (désactivés si aucun jeton de service n'est défini)
+    public static final String TA_SERVICE_TOKEN = getEnv("TA_SERVICE_TOKEN", null);
+    public static final int TA_BATCH_MAX_IDENTITIES = Integer.parseInt(getEnv("TA_BATCH_MAX_IDENTITIES", "10000"));
+    
+    // File d'envoi des OTP (connexions SMTP persistantes, lots et réessais)
+    public static final int TA_SMTP_POOL_SIZE = Integer.parseInt(getEnv("TA_SMTP_POOL_SIZE", "2"));
+    public static final int TA_OTP_QUEUE_CAPACITY = Integer.parseInt(getEnv("TA_OTP_QUEUE_CAPACITY", "10000"));
+    public static final int TA_OTP_BATCH_SIZE = Integer.parseInt(getEnv("TA_OTP_BATCH_SIZE", "20"));
+    public static final int TA_OTP_MAX_ATTEMPTS = Integer.parseInt(getEnv("TA_OTP_MAX_ATTEMPTS", "5"));
+    
+    // Rendu des QR codes TOTP pour les anciens clients (pool de basse priorité, file bornée, attente maximale)
+    public static final int TA_QR_THREADS = Integer.parseInt(getEnv("TA_QR_THREADS", "1"));
+    public static final int TA_QR_QUEUE_CAPACITY = Integer.parseInt(getEnv("TA_QR_QUEUE_CAPACITY", "64"));
+    public static final long TA_QR_RENDER_TIMEOUT_MS = Long.parseLong(getEnv("TA_QR_RENDER_TIMEOUT_MS", "2000"));
+    
+    // Stockage des comptes ("wal" persistant ou "memory") et compaction du journal
+    public static final String TA_USER_STORE = getEnv("TA_USER_STORE", "wal");
+    public static final String TA_USER_DATA_DIR = getEnv("TA_USER_DATA_DIR", "data/users");
+    public static final long TA_USER_WAL_SEGMENT_BYTES = Long.parseLong(getEnv("TA_USER_WAL_SEGMENT_BYTES", String.valueOf(64L * 1024 * 1024)));
+    public static final long TA_USER_SNAPSHOT_INTERVAL_MS = Long.parseLong(getEnv("TA_USER_SNAPSHOT_INTERVAL_MS", "600000"));
+    
+    // Réplication des comptes entre nœuds de l'autorité (port 0 = désactivée, pairs "hôte:port,hôte:port"),
+    // adresse d'écoute (boucle locale par défaut) et secret partagé par les nœuds (obligatoire)
+    public static final int TA_REPLICATION_PORT = Integer.parseInt(getEnv("TA_REPLICATION_PORT", "0"));
+    public static final String TA_REPLICATION_BIND = getEnv("TA_REPLICATION_BIND", "127.0.0.1");
+    public static final String TA_REPLICATION_SECRET = getEnv("TA_REPLICATION_SECRET", null);
+    public static final String TA_REPLICATION_PEERS = getEnv("TA_REPLICATION_PEERS", "");
+    public static final String TA_NODE_ID = getEnv("TA_NODE_ID", java.util.UUID.randomUUID().toString());
+    
+    // Instantané des paramètres de l'autorité (clé maître scellée par la phrase secrète; sans phrase, paramètres éphémères)
+    public static final String TA_PARAMS_SNAPSHOT_PATH = getEnv("TA_PARAMS_SNAPSHOT_PATH", "data/ta-params.snapshot");
+    public static final String TA_MASTER_KEY_PASSPHRASE = getEnv("TA_MASTER_KEY_PASSPHRASE", null);
+    
+    // Préchauffage avant mise en service (durée maximale 0 = désactivé)
+    public static final long TA_WARMUP_MAX_MS = Long.parseLong(getEnv("TA_WARMUP_MAX_MS", "30000"));
+    public static final int TA_WARMUP_ROUND_SIZE = Integer.parseInt(getEnv("TA_WARMUP_ROUND_SIZE", "50"));
+    public static final double TA_WARMUP_TOLERANCE = Double.parseDouble(getEnv("TA_WARMUP_TOLERANCE", "0.10"));
+    
+    // Format des échanges avec l'autorité préféré par le client ("binary" si le serveur l'annonce, sinon "json")
+    public static final String TA_WIRE_FORMAT = getEnv("TA_WIRE_FORMAT", "binary");
+    
+    // Copies locales du client (paramètres publics de l'autorité, revalidés à chaque démarrage)
+    public static final String CLIENT_CACHE_DIR = getEnv("CLIENT_CACHE_DIR",
+            System.getProperty("user.home") + "/.messenger-secure/cache");
+    
+    // Coffre local des clés privées, scellées sous le mot de passe de l'utilisateur (durée 0 = coffre désactivé)
+    public static final String CLIENT_KEY_VAULT_DIR = getEnv("CLIENT_KEY_VAULT_DIR",
+            System.getProperty("user.home") + "/.messenger-secure/keys");
+    public static final long CLIENT_KEY_VAULT_TTL_HOURS = Long.parseLong(getEnv("CLIENT_KEY_VAULT_TTL_HOURS", "720"));
+    
+    // Pool de canaux sécurisés du client (services multi-threads): taille, durée de vie d'un canal, messages par
+    // clé de session avant son renouvellement (IV aléatoires en AES-GCM) et attente maximale d'un canal libre
+    public static final int CLIENT_CHANNEL_POOL_SIZE = Integer.parseInt(getEnv("CLIENT_CHANNEL_POOL_SIZE", "8"));
+    public static final long CLIENT_CHANNEL_LIFETIME_MS = Long.parseLong(getEnv("CLIENT_CHANNEL_LIFETIME_MS", "1800000"));
+    public static final long CLIENT_CHANNEL_MAX_MESSAGES = Long.parseLong(getEnv("CLIENT_CHANNEL_MAX_MESSAGES", "1000000"));
+    public static final long CLIENT_CHANNEL_LEASE_TIMEOUT_MS = Long.parseLong(getEnv("CLIENT_CHANNEL_LEASE_TIMEOUT_MS", "30000"));
+    
+    // Sessions sécurisées de l'autorité: retirées après ce délai sans requête, ou au plus tard à la fin de leur
+    // durée de vie (supérieure à CLIENT_CHANNEL_LIFETIME_MS: les canaux des pools sont rétablis avant)
+    public static final long TA_SESSION_IDLE_TIMEOUT_MS = Long.parseLong(getEnv("TA_SESSION_IDLE_TIMEOUT_MS", "900000"));
+    public static final long TA_SESSION_MAX_LIFETIME_MS = Long.parseLong(getEnv("TA_SESSION_MAX_LIFETIME_MS", "7200000"));
+    
+    // Canal TCP persistant et multiplexé de l'autorité (port 0 = désactivé) et requêtes en cours par connexion
+    public static final int TA_CHANNEL_PORT = Integer.parseInt(getEnv("TA_CHANNEL_PORT", "0"));
+    public static final int TA_CHANNEL_MAX_STREAMS = Integer.parseInt(getEnv("TA_CHANNEL_MAX_STREAMS", "256"));
+    // Connexions au canal (un thread chacune): au plus ce nombre au total, dont ce nombre en attente du HELLO
+    public static final int TA_CHANNEL_MAX_CONNECTIONS = Integer.parseInt(getEnv("TA_CHANNEL_MAX_CONNECTIONS", "1024"));
+    public static final int TA_CHANNEL_MAX_PENDING_HELLOS = Integer.parseInt(getEnv("TA_CHANNEL_MAX_PENDING_HELLOS", "64"));
+    
+    // Frontal HTTP de l'autorité ("jdk" ou "nio" à boucles d'événements) et réglages du frontal NIO
+    public static final String TA_HTTP_FRONTEND = getEnv("TA_HTTP_FRONTEND", "jdk");
+    public static final int TA_NIO_EVENT_LOOPS = Integer.parseInt(getEnv("TA_NIO_EVENT_LOOPS", "2"));
+    public static final long TA_NIO_KEEPALIVE_MS = Long.parseLong(getEnv("TA_NIO_KEEPALIVE_MS", "30000"));
+    public static final int TA_NIO_KEEPALIVE_MAX_REQUESTS = Integer.parseInt(getEnv("TA_NIO_KEEPALIVE_MAX_REQUESTS", "1000"));
+    public static final int TA_NIO_MAX_REQUEST_BYTES = Integer.parseInt(getEnv("TA_NIO_MAX_REQUEST_BYTES", String.valueOf(4 * 1024 * 1024)));
+
+    // Limites de débit par endpoint ("endpoints=ip:capacité/période,identity:capacité/période;...", vide = désactivées).
+    // Les endpoints séparés par '|' partagent leurs seaux: les essais TOTP sont comptés ensemble.
+    public static final String TA_RATE_LIMITS = getEnv("TA_RATE_LIMITS",
+            "/auth/register=ip:10/1m,identity:3/15m;"
+            + "/auth/verify-otp=ip:30/1m,identity:5/5m;"
+            + "/auth/verify-totp|/auth/verify-totp-and-get-key|/get-private-key=ip:60/1m,identity:5/1m;"
+            + "/auth/check-account=ip:120/1m;"
+            + "/establish-secure-channel=ip:60/1m");
+
     // Mode débogage
     public static boolean DEBUG_MODE = Boolean.parseBoolean(getEnv("DEBUG_MODE", "false"));
     
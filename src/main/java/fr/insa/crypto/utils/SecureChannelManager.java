@@ -4,14 +4,25 @@ import fr.insa.crypto.encryption.IBEcipher;
 import fr.insa.crypto.encryption.IdentityBasedEncryption;
 import fr.insa.crypto.trustAuthority.SettingParameters;
 import it.unisa.dia.gas.jpbc.Element;
+import it.unisa.dia.gas.jpbc.PairingPreProcessing;
 import org.json.JSONObject;
 
 import javax.crypto.Cipher;
+import javax.crypto.KeyAgreement;
 import javax.crypto.KeyGenerator;
+import javax.crypto.Mac;
 import javax.crypto.SecretKey;
 import javax.crypto.spec.GCMParameterSpec;
 import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.KeyFactory;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.PrivateKey;
+import java.security.PublicKey;
 import java.security.SecureRandom;
+import java.security.spec.X509EncodedKeySpec;
 import java.util.Base64;
 
 /**
@@ -21,6 +32,20 @@ public class SecureChannelManager {
     // Constantes pour AES-GCM
     private static final int GCM_IV_LENGTH = 12;
     private static final int GCM_TAG_LENGTH = 16;
+
+    // Méthodes d'établissement du canal négociables avec le serveur
+    public static final String HANDSHAKE_IBE = "ibe";
+    public static final String HANDSHAKE_X25519 = "x25519";
+
+    // Constantes pour l'échange X25519 + HKDF-SHA256
+    private static final String X25519 = "X25519";
+    private static final String HMAC_SHA256 = "HmacSHA256";
+    private static final int SESSION_KEY_LENGTH = 32;
+    private static final byte[] HKDF_INFO = "ta-secure-channel-v1".getBytes(StandardCharsets.UTF_8);
+
+    // Préfixe de séparation de domaine pour la liaison de la clé statique du serveur.
+    // Le caractère nul garantit que l'entrée hachée ne peut jamais être une identité email valide.
+    private static final byte[] CHANNEL_KEY_DOMAIN = "ta-channel-key\0".getBytes(StandardCharsets.UTF_8);
     
     // Générateur de nombres aléatoires sécurisé
     private static final SecureRandom secureRandom = new SecureRandom();
@@ -58,6 +83,24 @@ public class SecureChannelManager {
      * @return Message chiffré encodé en Base64
      */
     public String encryptWithSessionKey(String message) throws Exception {
+        return Base64.getEncoder().encodeToString(encrypt(message.getBytes(StandardCharsets.UTF_8)));
+    }
+    
+    /**
+     * Déchiffre un message avec la clé de session AES
+     * @param encryptedMessage Message chiffré encodé en Base64
+     * @return Message déchiffré
+     */
+    public String decryptWithSessionKey(String encryptedMessage) throws Exception {
+        return new String(decrypt(Base64.getDecoder().decode(encryptedMessage)), StandardCharsets.UTF_8);
+    }
+    
+    /**
+     * Chiffre des octets avec la clé de session AES
+     * @param plaintext Contenu à chiffrer
+     * @return IV || texte chiffré || tag
+     */
+    public byte[] encrypt(byte[] plaintext) throws Exception {
         if (sessionKey == null) {
             throw new IllegalStateException("Session key not established");
         }
@@ -71,48 +114,33 @@ public class SecureChannelManager {
         GCMParameterSpec gcmParameterSpec = new GCMParameterSpec(GCM_TAG_LENGTH * 8, iv);
         cipher.init(Cipher.ENCRYPT_MODE, sessionKey, gcmParameterSpec);
         
-        // Chiffrer le message
-        byte[] ciphertext = cipher.doFinal(message.getBytes());
-        
-        // Concaténer IV et texte chiffré
-        byte[] encrypted = new byte[iv.length + ciphertext.length];
-        System.arraycopy(iv, 0, encrypted, 0, iv.length);
-        System.arraycopy(ciphertext, 0, encrypted, iv.length, ciphertext.length);
-        
-        // Encoder en Base64
-        return Base64.getEncoder().encodeToString(encrypted);
+        // Chiffrer directement après l'IV
+        byte[] encrypted = new byte[GCM_IV_LENGTH + cipher.getOutputSize(plaintext.length)];
+        System.arraycopy(iv, 0, encrypted, 0, GCM_IV_LENGTH);
+        cipher.doFinal(plaintext, 0, plaintext.length, encrypted, GCM_IV_LENGTH);
+        return encrypted;
     }
     
     /**
-     * Déchiffre un message avec la clé de session AES
-     * @param encryptedMessage Message chiffré encodé en Base64
-     * @return Message déchiffré
+     * Déchiffre des octets avec la clé de session AES
+     * @param encrypted IV || texte chiffré || tag
+     * @return Contenu déchiffré
      */
-    public String decryptWithSessionKey(String encryptedMessage) throws Exception {
+    public byte[] decrypt(byte[] encrypted) throws Exception {
         if (sessionKey == null) {
             throw new IllegalStateException("Session key not established");
         }
+        if (encrypted.length < GCM_IV_LENGTH + GCM_TAG_LENGTH) {
+            throw new GeneralSecurityException("Encrypted message too short");
+        }
         
-        // Décoder depuis Base64
-        byte[] encrypted = Base64.getDecoder().decode(encryptedMessage);
-        
-        // Extraire l'IV
-        byte[] iv = new byte[GCM_IV_LENGTH];
-        System.arraycopy(encrypted, 0, iv, 0, iv.length);
-        
-        // Extraire le texte chiffré
-        byte[] ciphertext = new byte[encrypted.length - GCM_IV_LENGTH];
-        System.arraycopy(encrypted, GCM_IV_LENGTH, ciphertext, 0, ciphertext.length);
-        
-        // Initialiser le cipher pour le déchiffrement
+        // Initialiser le cipher pour le déchiffrement avec l'IV en tête du message
         Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
-        GCMParameterSpec gcmParameterSpec = new GCMParameterSpec(GCM_TAG_LENGTH * 8, iv);
+        GCMParameterSpec gcmParameterSpec = new GCMParameterSpec(GCM_TAG_LENGTH * 8, encrypted, 0, GCM_IV_LENGTH);
         cipher.init(Cipher.DECRYPT_MODE, sessionKey, gcmParameterSpec);
         
         // Déchiffrer
-        byte[] plaintext = cipher.doFinal(ciphertext);
-        
-        return new String(plaintext);
+        return cipher.doFinal(encrypted, GCM_IV_LENGTH, encrypted.length - GCM_IV_LENGTH);
     }
     
     /**
@@ -122,13 +150,7 @@ public class SecureChannelManager {
      * @return Un objet JSONObject contenant la clé de session chiffrée
      */
     public JSONObject encryptSessionKeyForServer(String serverIdentity, IdentityBasedEncryption ibeEngine) throws Exception {
-        // Générer une clé de session si nécessaire
-        if (sessionKey == null) {
-            sessionKey = generateAESKey();
-        }
-        
-        // Chiffrer la clé AES avec IBE pour le serveur
-        IBEcipher encryptedSessionKey = ibeEngine.IBEencryption(sessionKey.getEncoded(), serverIdentity);
+        IBEcipher encryptedSessionKey = encryptSessionKey(serverIdentity, ibeEngine);
         
         // Créer un objet JSON pour transporter la clé chiffrée
         JSONObject keyExchange = new JSONObject();
@@ -139,6 +161,29 @@ public class SecureChannelManager {
         return keyExchange;
     }
     
+    /**
+     * Chiffre la clé de session avec IBE pour le serveur, sans mise en forme pour le transport
+     * @return La clé de session chiffrée (U, V et clé AES chiffrée)
+     */
+    public IBEcipher encryptSessionKey(String serverIdentity, IdentityBasedEncryption ibeEngine) throws Exception {
+        // Générer une clé de session si nécessaire
+        if (sessionKey == null) {
+            sessionKey = generateAESKey();
+        }
+        return ibeEngine.IBEencryption(sessionKey.getEncoded(), serverIdentity);
+    }
+
+    /**
+     * Chiffre la clé de session avec IBE pour le serveur, à partir de e(H1(serveur), P_pub) déjà calculé
+     * @return La clé de session chiffrée (U, V et clé AES chiffrée)
+     */
+    public IBEcipher encryptSessionKey(Element serverIdentityPairing, IdentityBasedEncryption ibeEngine) throws Exception {
+        if (sessionKey == null) {
+            sessionKey = generateAESKey();
+        }
+        return ibeEngine.IBEencryption(sessionKey.getEncoded(), serverIdentityPairing);
+    }
+    
     /**
      * Déchiffre une clé de session avec IBE côté serveur
      * @param encryptedKeyData JSONObject contenant la clé de session chiffrée
@@ -146,13 +191,7 @@ public class SecureChannelManager {
      * @param ibeEngine Moteur de chiffrement IBE
      */
     public void decryptSessionKey(JSONObject encryptedKeyData, Element privateKey, IdentityBasedEncryption ibeEngine) throws Exception {
-        // Reconstruire l'objet IBEcipher
-        byte[] uBytes = Base64.getDecoder().decode(encryptedKeyData.getString("u"));
-        byte[] vBytes = Base64.getDecoder().decode(encryptedKeyData.getString("v"));
-        byte[] encryptedKeyBytes = Base64.getDecoder().decode(encryptedKeyData.getString("encryptedKey"));
-        
-        Element uElement = ibeEngine.getParameters().getPairing().getG1().newElementFromBytes(uBytes);
-        IBEcipher encryptedSessionKey = new IBEcipher(uElement, vBytes, encryptedKeyBytes);
+        IBEcipher encryptedSessionKey = parseKeyExchange(encryptedKeyData, ibeEngine);
         
         // Déchiffrer la clé de session avec la clé privée
         byte[] sessionKeyBytes = ibeEngine.IBEdecryption(privateKey, encryptedSessionKey);
@@ -161,6 +200,155 @@ public class SecureChannelManager {
         this.sessionKey = new SecretKeySpec(sessionKeyBytes, "AES");
     }
     
+    /**
+     * Déchiffre une clé de session avec IBE côté serveur, avec la clé privée du serveur prétraitée
+     * @param encryptedKeyData JSONObject contenant la clé de session chiffrée
+     * @param preprocessedKey Appariement prétraité de la clé privée du serveur
+     * @param ibeEngine Moteur de chiffrement IBE
+     */
+    public void decryptSessionKey(JSONObject encryptedKeyData, PairingPreProcessing preprocessedKey, IdentityBasedEncryption ibeEngine) throws Exception {
+        decryptSessionKey(Base64.getDecoder().decode(encryptedKeyData.getString("u")),
+                Base64.getDecoder().decode(encryptedKeyData.getString("v")),
+                Base64.getDecoder().decode(encryptedKeyData.getString("encryptedKey")),
+                preprocessedKey, ibeEngine);
+    }
+    
+    /**
+     * Déchiffre une clé de session avec IBE côté serveur à partir des composantes brutes de l'échange
+     * @param uBytes Élément U sérialisé
+     * @param vBytes Masque V
+     * @param encryptedKeyBytes Clé AES chiffrée
+     * @param preprocessedKey Appariement prétraité de la clé privée du serveur
+     * @param ibeEngine Moteur de chiffrement IBE
+     */
+    public void decryptSessionKey(byte[] uBytes, byte[] vBytes, byte[] encryptedKeyBytes,
+                                  PairingPreProcessing preprocessedKey, IdentityBasedEncryption ibeEngine) throws Exception {
+        Element uElement = ibeEngine.getParameters().getPairing().getG1().newElementFromBytes(uBytes);
+        byte[] sessionKeyBytes = ibeEngine.IBEdecryption(preprocessedKey, new IBEcipher(uElement, vBytes, encryptedKeyBytes));
+        this.sessionKey = new SecretKeySpec(sessionKeyBytes, "AES");
+    }
+    
+    /**
+     * Reconstruit l'objet IBEcipher transporté dans le message d'échange de clé
+     */
+    private static IBEcipher parseKeyExchange(JSONObject encryptedKeyData, IdentityBasedEncryption ibeEngine) {
+        byte[] uBytes = Base64.getDecoder().decode(encryptedKeyData.getString("u"));
+        byte[] vBytes = Base64.getDecoder().decode(encryptedKeyData.getString("v"));
+        byte[] encryptedKeyBytes = Base64.getDecoder().decode(encryptedKeyData.getString("encryptedKey"));
+        
+        Element uElement = ibeEngine.getParameters().getPairing().getG1().newElementFromBytes(uBytes);
+        return new IBEcipher(uElement, vBytes, encryptedKeyBytes);
+    }
+    
+    /**
+     * Génère une paire de clés X25519 (clé statique du serveur ou clé éphémère du client)
+     */
+    public static KeyPair generateX25519KeyPair() throws GeneralSecurityException {
+        return KeyPairGenerator.getInstance(X25519).generateKeyPair();
+    }
+
+    /**
+     * Reconstruit une clé publique X25519 à partir de son encodage X.509
+     */
+    public static PublicKey decodeX25519PublicKey(byte[] encodedKey) throws GeneralSecurityException {
+        return KeyFactory.getInstance(X25519).generatePublic(new X509EncodedKeySpec(encodedKey));
+    }
+
+    /**
+     * Construit l'entrée hachée sur G1 pour lier la clé statique X25519 du serveur à l'autorité
+     * @param encodedKey Clé publique X25519 encodée
+     * @return Les octets à hacher (préfixe de domaine || clé)
+     */
+    public static byte[] channelKeyBindingInput(byte[] encodedKey) {
+        byte[] input = new byte[CHANNEL_KEY_DOMAIN.length + encodedKey.length];
+        System.arraycopy(CHANNEL_KEY_DOMAIN, 0, input, 0, CHANNEL_KEY_DOMAIN.length);
+        System.arraycopy(encodedKey, 0, input, CHANNEL_KEY_DOMAIN.length, encodedKey.length);
+        return input;
+    }
+
+    /**
+     * Établit la clé de session côté client avec un échange X25519 éphémère-statique.
+     * Aucun appariement n'est calculé : la clé statique du serveur a déjà été authentifiée
+     * par les paramètres publics de l'autorité.
+     * @param serverStaticKey Clé publique X25519 statique du serveur
+     * @return Un objet JSONObject contenant la clé publique éphémère du client
+     */
+    public JSONObject createX25519KeyExchange(PublicKey serverStaticKey) throws Exception {
+        JSONObject keyExchange = new JSONObject();
+        keyExchange.put("method", HANDSHAKE_X25519);
+        keyExchange.put("ephemeralPublicKey", Base64.getEncoder().encodeToString(createX25519EphemeralKey(serverStaticKey)));
+        return keyExchange;
+    }
+
+    /**
+     * Établit la clé de session côté client avec un échange X25519 éphémère-statique
+     * @param serverStaticKey Clé publique X25519 statique du serveur
+     * @return La clé publique éphémère du client, encodée en X.509
+     */
+    public byte[] createX25519EphemeralKey(PublicKey serverStaticKey) throws Exception {
+        KeyPair ephemeral = generateX25519KeyPair();
+        byte[] ephemeralPublic = ephemeral.getPublic().getEncoded();
+
+        byte[] sharedSecret = agree(ephemeral.getPrivate(), serverStaticKey);
+        this.sessionKey = deriveSessionKey(sharedSecret, ephemeralPublic, serverStaticKey.getEncoded());
+        return ephemeralPublic;
+    }
+
+    /**
+     * Dérive la clé de session côté serveur à partir de la clé éphémère du client
+     * @param keyExchangeData JSONObject contenant la clé publique éphémère du client
+     * @param serverStaticKeyPair Paire de clés X25519 statique du serveur
+     */
+    public void deriveX25519SessionKey(JSONObject keyExchangeData, KeyPair serverStaticKeyPair) throws Exception {
+        deriveX25519SessionKey(Base64.getDecoder().decode(keyExchangeData.getString("ephemeralPublicKey")), serverStaticKeyPair);
+    }
+
+    /**
+     * Dérive la clé de session côté serveur à partir de la clé éphémère du client
+     * @param ephemeralPublic Clé publique éphémère du client, encodée en X.509
+     * @param serverStaticKeyPair Paire de clés X25519 statique du serveur
+     */
+    public void deriveX25519SessionKey(byte[] ephemeralPublic, KeyPair serverStaticKeyPair) throws Exception {
+        PublicKey clientKey = decodeX25519PublicKey(ephemeralPublic);
+
+        byte[] sharedSecret = agree(serverStaticKeyPair.getPrivate(), clientKey);
+        this.sessionKey = deriveSessionKey(sharedSecret, ephemeralPublic, serverStaticKeyPair.getPublic().getEncoded());
+    }
+
+    /**
+     * Calcule le secret partagé X25519
+     */
+    private static byte[] agree(PrivateKey privateKey, PublicKey publicKey) throws GeneralSecurityException {
+        KeyAgreement agreement = KeyAgreement.getInstance(X25519);
+        agreement.init(privateKey);
+        agreement.doPhase(publicKey, true);
+        return agreement.generateSecret();
+    }
+
+    /**
+     * Dérive la clé AES de session avec HKDF-SHA256 (RFC 5869).
+     * Le sel lie la clé dérivée aux deux clés publiques de l'échange.
+     */
+    private static SecretKey deriveSessionKey(byte[] sharedSecret, byte[] clientPublic, byte[] serverPublic)
+            throws GeneralSecurityException {
+        byte[] salt = new byte[clientPublic.length + serverPublic.length];
+        System.arraycopy(clientPublic, 0, salt, 0, clientPublic.length);
+        System.arraycopy(serverPublic, 0, salt, clientPublic.length, serverPublic.length);
+
+        // Extract
+        Mac mac = Mac.getInstance(HMAC_SHA256);
+        mac.init(new SecretKeySpec(salt, HMAC_SHA256));
+        byte[] prk = mac.doFinal(sharedSecret);
+
+        // Expand (un seul bloc suffit pour 32 octets)
+        mac.init(new SecretKeySpec(prk, HMAC_SHA256));
+        mac.update(HKDF_INFO);
+        mac.update((byte) 1);
+        byte[] okm = mac.doFinal();
+
+        return new SecretKeySpec(okm, 0, SESSION_KEY_LENGTH, "AES");
+    }
+
     /**
      * Prépare une requête HTTP sécurisée
      * @param originalMessage Message original
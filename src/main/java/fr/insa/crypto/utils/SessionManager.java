@@ -60,6 +60,14 @@ public class SessionManager {
         return password;
     }
     
+    /**
+     * Récupère le mot de passe stocké s'il appartient à cet email
+     * @return Le mot de passe, ou null si aucun identifiant n'est stocké pour cet email
+     */
+    public String getPasswordFor(String email) {
+        return hasCredentialsFor(email) ? password : null;
+    }
+    
     /**
      * Récupère la session d'authentification
      */
@@ -12,6 +12,7 @@ module fr.insa.crypto {
     requires owasp.encoder;
     requires totp;
     requires jdk.httpserver;
+    requires java.net.http;
 
     // Export packages to JavaFX FXML
     exports fr.insa.crypto to javafx.graphics;
@@ -0,0 +1,99 @@
+package fr.insa.crypto.benchmark;
+
+import fr.insa.crypto.trustAuthority.SecureChannelPool;
+import fr.insa.crypto.trustAuthority.TrustAuthority;
+import fr.insa.crypto.trustAuthority.TrustAuthorityClient;
+import fr.insa.crypto.trustAuthority.TrustAuthorityServer;
+import fr.insa.crypto.trustAuthority.metrics.LatencyHistogram;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Banc d'essai du pool de canaux sécurisés: requêtes sécurisées (/auth/check-account) envoyées par de
+ * nombreux threads d'un même client, d'abord sur le canal unique du client, puis avec des pools de
+ * tailles croissantes. Pour chaque pool: débit, latences et temps d'attente d'un canal libre,
+ * qui indiquent si le pool est sous-dimensionné pour la charge.
+ *
+ * Usage: ChannelPoolBenchmark [requêtes par mesure] [threads] [port HTTP]
+ * (TA_USER_STORE=memory pour ne rien écrire sur le disque)
+ */
+public class ChannelPoolBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int requests = args.length > 0 ? Integer.parseInt(args[0]) : 20_000;
+        int threads = args.length > 1 ? Integer.parseInt(args[1]) : 32;
+        int httpPort = args.length > 2 ? Integer.parseInt(args[2]) : 18080;
+        String serverUrl = "http://127.0.0.1:" + httpPort;
+
+        System.out.println("\n======= BANC D'ESSAI DU POOL DE CANAUX SÉCURISÉS =======\n");
+        System.out.println(requests + " requêtes par mesure, " + threads + " threads\n");
+
+        // Toutes les requêtes viennent de la boucle locale: mesurer le client, pas les limites de débit
+        TrustAuthorityServer server = new TrustAuthorityServer.Builder(new TrustAuthority(), httpPort)
+                .otpDispatcher(null).rateLimits("").build();
+        server.start();
+        try {
+            TrustAuthorityClient client = new TrustAuthorityClient(serverUrl, null);
+            // Établir le canal unique avant les mesures
+            client.checkAccountStatus("bench@example.com");
+            run("Canal unique", client, null, requests / 10, threads);
+            run("Canal unique", client, null, requests, threads);
+
+            for (int size : new int[]{1, 4, 16}) {
+                SecureChannelPool pool = client.openChannelPool(size);
+                run("Pool de " + size, client, pool, requests / 10, threads);
+                run("Pool de " + size, client, pool, requests, threads);
+                client.closeChannelPool();
+            }
+        } finally {
+            server.stop();
+        }
+    }
+
+    /**
+     * Envoie les requêtes depuis plusieurs threads et affiche débit, latences et attentes d'un canal
+     */
+    private static void run(String label, TrustAuthorityClient client, SecureChannelPool pool, int requests,
+                            int threads) throws InterruptedException {
+        LatencyHistogram latency = new LatencyHistogram();
+        AtomicInteger next = new AtomicInteger();
+        AtomicInteger errors = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        long waitsBefore = pool != null ? pool.getWaitTimes().getCount() : 0;
+        long contendedBefore = pool != null ? pool.getContendedLeaseCount() : 0;
+
+        long start = System.nanoTime();
+        for (int t = 0; t < threads; t++) {
+            executor.execute(() -> {
+                int i;
+                while ((i = next.getAndIncrement()) < requests) {
+                    long t0 = System.nanoTime();
+                    try {
+                        client.checkAccountStatus("user" + i + "@example.com");
+                        latency.recordNanos(System.nanoTime() - t0);
+                    } catch (Exception e) {
+                        errors.incrementAndGet();
+                    }
+                }
+            });
+        }
+        executor.shutdown();
+        executor.awaitTermination(10, TimeUnit.MINUTES);
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        long[] percentiles = latency.percentilesMicros(0.5, 0.99);
+        System.out.printf("%-14s %8.0f req/s  p50 %7.2f ms  p99 %7.2f ms  erreurs %d",
+                label, requests / seconds, percentiles[0] / 1000.0, percentiles[1] / 1000.0, errors.get());
+        if (pool != null) {
+            // Histogramme cumulé sur la durée de vie du pool (échauffement compris)
+            long[] waits = pool.getWaitTimes().percentilesMicros(0.5, 0.99);
+            System.out.printf(" | attente d'un canal: p50 %7.2f ms  p99 %7.2f ms  attentes %d/%d",
+                    waits[0] / 1000.0, waits[1] / 1000.0, pool.getContendedLeaseCount() - contendedBefore,
+                    pool.getWaitTimes().getCount() - waitsBefore);
+        }
+        System.out.println();
+    }
+}
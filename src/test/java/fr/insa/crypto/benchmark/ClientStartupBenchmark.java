@@ -0,0 +1,80 @@
+package fr.insa.crypto.benchmark;
+
+import fr.insa.crypto.trustAuthority.TrustAuthority;
+import fr.insa.crypto.trustAuthority.TrustAuthorityClient;
+import fr.insa.crypto.trustAuthority.TrustAuthorityServer;
+import fr.insa.crypto.trustAuthority.metrics.LatencyHistogram;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.Stream;
+
+/**
+ * Banc d'essai du démarrage du client: délai avant que le client soit utilisable (constructeur, sur le
+ * chemin de l'écran de connexion) puis avant la première requête sécurisée, sans copie locale des
+ * paramètres publics (téléchargement, courbe, éléments, vérification de la clé du canal) et avec
+ * (reprise des paramètres et des précalculs, revalidation en arrière-plan).
+ *
+ * Usage: ClientStartupBenchmark [démarrages par mesure] [port HTTP]
+ * (TA_USER_STORE=memory pour ne rien écrire sur le disque)
+ */
+public class ClientStartupBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int rounds = args.length > 0 ? Integer.parseInt(args[0]) : 50;
+        int httpPort = args.length > 1 ? Integer.parseInt(args[1]) : 18080;
+        String serverUrl = "http://127.0.0.1:" + httpPort;
+
+        System.out.println("\n======= BANC D'ESSAI DU DÉMARRAGE DU CLIENT =======\n");
+        System.out.println(rounds + " démarrages par mesure\n");
+
+        TrustAuthorityServer server = new TrustAuthorityServer.Builder(new TrustAuthority(), httpPort)
+                .otpDispatcher(null).rateLimits("").build();
+        server.start();
+        Path cacheDirectory = Files.createTempDirectory("ta-client-cache");
+        try {
+            run("Sans copie locale", serverUrl, null, rounds);
+
+            // Premier démarrage avec répertoire: la copie locale est écrite en arrière-plan
+            new TrustAuthorityClient(serverUrl, cacheDirectory);
+            long deadline = System.currentTimeMillis() + 30_000;
+            while (isEmpty(cacheDirectory) && System.currentTimeMillis() < deadline) {
+                Thread.sleep(50);
+            }
+            run("Copie locale", serverUrl, cacheDirectory, rounds);
+        } finally {
+            server.stop();
+            try (Stream<Path> files = Files.list(cacheDirectory)) {
+                for (Path file : (Iterable<Path>) files::iterator) {
+                    Files.deleteIfExists(file);
+                }
+            }
+            Files.deleteIfExists(cacheDirectory);
+        }
+    }
+
+    private static boolean isEmpty(Path directory) throws Exception {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.noneMatch(file -> file.toString().endsWith(".params"));
+        }
+    }
+
+    private static void run(String label, String serverUrl, Path cacheDirectory, int rounds) throws Exception {
+        LatencyHistogram ready = new LatencyHistogram();
+        LatencyHistogram firstRequest = new LatencyHistogram();
+        for (int i = 0; i < rounds; i++) {
+            long t0 = System.nanoTime();
+            TrustAuthorityClient client = new TrustAuthorityClient(serverUrl, cacheDirectory);
+            long t1 = System.nanoTime();
+            client.checkAccountStatus("startup" + i + "@example.com");
+            long t2 = System.nanoTime();
+            ready.recordNanos(t1 - t0);
+            firstRequest.recordNanos(t2 - t0);
+        }
+        long[] readyPercentiles = ready.percentilesMicros(0.5, 0.99);
+        long[] firstPercentiles = firstRequest.percentilesMicros(0.5, 0.99);
+        System.out.printf("%-18s client prêt: p50 %7.2f ms  p99 %7.2f ms | première requête: p50 %7.2f ms  p99 %7.2f ms%n",
+                label, readyPercentiles[0] / 1000.0, readyPercentiles[1] / 1000.0,
+                firstPercentiles[0] / 1000.0, firstPercentiles[1] / 1000.0);
+    }
+}
@@ -0,0 +1,110 @@
+package fr.insa.crypto.benchmark;
+
+import fr.insa.crypto.encryption.IdentityBasedEncryption;
+import fr.insa.crypto.trustAuthority.ServerDecryptionContext;
+import fr.insa.crypto.trustAuthority.TrustAuthority;
+import fr.insa.crypto.utils.SecureChannelManager;
+import it.unisa.dia.gas.jpbc.Element;
+import org.json.JSONObject;
+
+import java.security.KeyPair;
+
+/**
+ * Banc d'essai comparant le débit d'établissement du canal sécurisé (handshakes/s)
+ * entre l'échange IBE (clé du serveur extraite à chaque requête ou contexte précalculé)
+ * et l'échange X25519 + HKDF.
+ * Le travail cryptographique du client et du serveur est mesuré, hors transport HTTP.
+ *
+ * Usage: HandshakeBenchmark [durée de mesure en ms]
+ */
+public class HandshakeBenchmark {
+
+    private static final String SERVER_IDENTITY = "server@trust.authority";
+    private static final long WARMUP_MS = 2000;
+
+    /**
+     * Un établissement complet de canal (côté client puis côté serveur)
+     */
+    private interface Handshake {
+        SecureChannelManager[] run() throws Exception;
+    }
+
+    public static void main(String[] args) throws Exception {
+        long durationMs = args.length > 0 ? Long.parseLong(args[0]) : 5000;
+
+        System.out.println("\n======= BANC D'ESSAI DES HANDSHAKES DU CANAL SÉCURISÉ =======\n");
+
+        TrustAuthority trustAuthority = new TrustAuthority();
+        IdentityBasedEncryption ibeEngine = new IdentityBasedEncryption(trustAuthority.getParameters());
+        ServerDecryptionContext serverContext = trustAuthority.getServerDecryptionContext();
+        KeyPair channelKeyPair = SecureChannelManager.generateX25519KeyPair();
+
+        // Chemin historique: extraction de la clé du serveur et nouveau moteur IBE à chaque handshake
+        Handshake ibe = () -> {
+            SecureChannelManager client = new SecureChannelManager();
+            JSONObject keyExchange = client.encryptSessionKeyForServer(SERVER_IDENTITY, ibeEngine);
+            SecureChannelManager server = new SecureChannelManager();
+            Element serverPrivateKey = trustAuthority.generatePrivateKey(SERVER_IDENTITY).getSk();
+            server.decryptSessionKey(keyExchange, serverPrivateKey, new IdentityBasedEncryption(trustAuthority.getParameters()));
+            return new SecureChannelManager[]{client, server};
+        };
+
+        Handshake ibeContext = () -> {
+            SecureChannelManager client = new SecureChannelManager();
+            JSONObject keyExchange = client.encryptSessionKeyForServer(SERVER_IDENTITY, ibeEngine);
+            SecureChannelManager server = new SecureChannelManager();
+            server.decryptSessionKey(keyExchange, serverContext.getPreprocessedKey(), serverContext.getIbeEngine());
+            return new SecureChannelManager[]{client, server};
+        };
+
+        Handshake x25519 = () -> {
+            SecureChannelManager client = new SecureChannelManager();
+            JSONObject keyExchange = client.createX25519KeyExchange(channelKeyPair.getPublic());
+            SecureChannelManager server = new SecureChannelManager();
+            server.deriveX25519SessionKey(keyExchange, channelKeyPair);
+            return new SecureChannelManager[]{client, server};
+        };
+
+        // Vérifier que les deux méthodes aboutissent à une clé partagée
+        checkSharedKey("ibe", ibe);
+        checkSharedKey("ibe-ctx", ibeContext);
+        checkSharedKey("x25519", x25519);
+
+        double ibeRate = measure("ibe", ibe, durationMs);
+        double ibeContextRate = measure("ibe-ctx", ibeContext, durationMs);
+        double x25519Rate = measure("x25519", x25519, durationMs);
+
+        System.out.printf("%nGain contexte précalculé / IBE: x%.1f%n", ibeContextRate / ibeRate);
+        System.out.printf("Gain X25519 / IBE: x%.1f%n", x25519Rate / ibeRate);
+    }
+
+    private static void checkSharedKey(String name, Handshake handshake) throws Exception {
+        SecureChannelManager[] channel = handshake.run();
+        String probe = "probe-" + name;
+        if (!probe.equals(channel[1].decryptWithSessionKey(channel[0].encryptWithSessionKey(probe)))) {
+            throw new IllegalStateException("Clés de session différentes pour la méthode " + name);
+        }
+    }
+
+    private static double measure(String name, Handshake handshake, long durationMs) throws Exception {
+        // Préchauffage pour que le JIT compile le chemin mesuré
+        long warmupEnd = System.currentTimeMillis() + WARMUP_MS;
+        while (System.currentTimeMillis() < warmupEnd) {
+            handshake.run();
+        }
+
+        long count = 0;
+        long start = System.nanoTime();
+        long end = start + durationMs * 1_000_000L;
+        while (System.nanoTime() < end) {
+            handshake.run();
+            count++;
+        }
+        double elapsedSeconds = (System.nanoTime() - start) / 1e9;
+        double rate = count / elapsedSeconds;
+
+        System.out.printf("%-8s %10.1f handshakes/s  (%.3f ms/handshake, %d itérations)%n",
+                name, rate, 1000.0 / rate, count);
+        return rate;
+    }
+}
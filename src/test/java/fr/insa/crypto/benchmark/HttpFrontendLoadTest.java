@@ -0,0 +1,191 @@
+package fr.insa.crypto.benchmark;
+
+import fr.insa.crypto.trustAuthority.TrustAuthority;
+import fr.insa.crypto.trustAuthority.TrustAuthorityServer;
+import fr.insa.crypto.trustAuthority.metrics.LatencyHistogram;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Test de charge des frontaux HTTP de l'autorité (serveur du JDK contre frontal NIO) à nombre
+ * croissant de connexions persistantes simultanées. Chaque connexion a toujours une requête en
+ * cours (/ready, qui ne mesure que le frontal et le filtre de métriques). Pour chaque palier:
+ * débit, latences, connexions refusées, mémoire occupée après GC et threads vivants.
+ *
+ * Usage: HttpFrontendLoadTest [paliers de connexions, ex. 250,1000,4000] [durée par palier en ms] [port de base]
+ * (TA_USER_STORE=memory pour ne rien écrire sur le disque; prévoir ulimit -n au-delà du plus grand palier)
+ */
+public class HttpFrontendLoadTest {
+    private static final int CLIENT_THREADS = 8;
+    private static final byte[] REQUEST = "GET /ready HTTP/1.1\r\nHost: localhost\r\n\r\n".getBytes(StandardCharsets.ISO_8859_1);
+
+    public static void main(String[] args) throws Exception {
+        String[] levels = (args.length > 0 ? args[0] : "250,1000,4000").split(",");
+        long durationMs = args.length > 1 ? Long.parseLong(args[1]) : 5000;
+        int basePort = args.length > 2 ? Integer.parseInt(args[2]) : 18090;
+
+        System.out.println("\n======= TEST DE CHARGE DES FRONTAUX HTTP DE L'AUTORITÉ =======\n");
+        TrustAuthority trustAuthority = new TrustAuthority();
+
+        String[] frontends = {"jdk", "nio"};
+        for (int f = 0; f < frontends.length; f++) {
+            int port = basePort + f;
+            TrustAuthorityServer server = new TrustAuthorityServer.Builder(trustAuthority, port)
+                    .otpDispatcher(null).httpFrontend(frontends[f]).build();
+            server.start();
+            System.out.println("\n--- Frontal " + frontends[f] + " ---");
+            System.out.printf("%-12s %10s %9s %9s %9s %9s %10s %8s%n",
+                    "Connexions", "req/s", "p50 ms", "p99 ms", "max ms", "refusées", "Tas (Mo)", "Threads");
+            try {
+                for (String level : levels) {
+                    runLevel(port, Integer.parseInt(level.trim()), durationMs);
+                }
+            } finally {
+                server.stop();
+            }
+        }
+    }
+
+    /**
+     * Ouvre les connexions du palier puis les fait tourner pendant la durée donnée
+     */
+    private static void runLevel(int port, int connectionCount, long durationMs) throws InterruptedException {
+        List<List<Socket>> perThread = new ArrayList<>();
+        for (int t = 0; t < CLIENT_THREADS; t++) {
+            perThread.add(new ArrayList<>());
+        }
+        int refused = 0;
+        for (int i = 0; i < connectionCount; i++) {
+            try {
+                Socket socket = new Socket();
+                socket.connect(new InetSocketAddress("127.0.0.1", port), 5000);
+                socket.setTcpNoDelay(true);
+                socket.setSoTimeout(10_000);
+                perThread.get(i % CLIENT_THREADS).add(socket);
+            } catch (IOException e) {
+                refused++;
+            }
+        }
+
+        LatencyHistogram latency = new LatencyHistogram();
+        AtomicLong completed = new AtomicLong();
+        AtomicInteger failures = new AtomicInteger();
+        long deadline = System.currentTimeMillis() + durationMs;
+        ExecutorService pool = Executors.newFixedThreadPool(CLIENT_THREADS);
+        long start = System.nanoTime();
+        for (List<Socket> sockets : perThread) {
+            pool.execute(() -> drive(sockets, deadline, latency, completed, failures));
+        }
+        pool.shutdown();
+        pool.awaitTermination(durationMs + 60_000, TimeUnit.MILLISECONDS);
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        // Mesures prises connexions encore ouvertes: c'est leur coût au repos qui nous intéresse
+        System.gc();
+        long heapMb = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed() / (1024 * 1024);
+        int threads = ManagementFactory.getThreadMXBean().getThreadCount();
+
+        long[] percentiles = latency.percentilesMicros(0.5, 0.99);
+        System.out.printf("%-12d %10.0f %9.2f %9.2f %9.2f %9d %10d %8d%n", connectionCount, completed.get() / seconds,
+                percentiles[0] / 1000.0, percentiles[1] / 1000.0, latency.getMaxMicros() / 1000.0,
+                refused + failures.get(), heapMb, threads);
+
+        for (List<Socket> sockets : perThread) {
+            for (Socket socket : sockets) {
+                try {
+                    socket.close();
+                } catch (IOException e) {
+                    // Déjà fermée
+                }
+            }
+        }
+    }
+
+    /**
+     * Envoie une requête sur chaque connexion du thread, puis lit toutes les réponses, jusqu'à l'échéance
+     */
+    private static void drive(List<Socket> sockets, long deadline, LatencyHistogram latency, AtomicLong completed, AtomicInteger failures) {
+        List<Socket> alive = new ArrayList<>(sockets);
+        List<DataInputStream> inputs = new ArrayList<>();
+        try {
+            for (Socket socket : alive) {
+                inputs.add(new DataInputStream(new BufferedInputStream(socket.getInputStream(), 1024)));
+            }
+        } catch (IOException e) {
+            failures.addAndGet(alive.size());
+            return;
+        }
+
+        long[] sentAt = new long[alive.size()];
+        while (System.currentTimeMillis() < deadline && !alive.isEmpty()) {
+            for (int i = 0; i < alive.size(); i++) {
+                try {
+                    OutputStream out = alive.get(i).getOutputStream();
+                    sentAt[i] = System.nanoTime();
+                    out.write(REQUEST);
+                    out.flush();
+                } catch (IOException e) {
+                    sentAt[i] = -1;
+                }
+            }
+            for (int i = alive.size() - 1; i >= 0; i--) {
+                try {
+                    if (sentAt[i] < 0) {
+                        throw new IOException("Envoi impossible");
+                    }
+                    readResponse(inputs.get(i));
+                    latency.recordNanos(System.nanoTime() - sentAt[i]);
+                    completed.incrementAndGet();
+                } catch (IOException e) {
+                    failures.incrementAndGet();
+                    alive.remove(i);
+                    inputs.remove(i);
+                }
+            }
+        }
+    }
+
+    /**
+     * Lit une réponse HTTP de longueur fixe (en-têtes puis corps)
+     */
+    private static void readResponse(DataInputStream in) throws IOException {
+        int contentLength = 0;
+        String line;
+        while (!(line = readLine(in)).isEmpty()) {
+            int colon = line.indexOf(':');
+            if (colon > 0 && line.substring(0, colon).trim().equalsIgnoreCase("Content-Length")) {
+                contentLength = Integer.parseInt(line.substring(colon + 1).trim());
+            }
+        }
+        in.readFully(new byte[contentLength]);
+    }
+
+    private static String readLine(InputStream in) throws IOException {
+        StringBuilder line = new StringBuilder();
+        int c;
+        while ((c = in.read()) != '\n') {
+            if (c < 0) {
+                throw new IOException("Connexion fermée par le serveur");
+            }
+            if (c != '\r') {
+                line.append((char) c);
+            }
+        }
+        return line.toString();
+    }
+}
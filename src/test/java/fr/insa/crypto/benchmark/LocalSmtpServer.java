@@ -0,0 +1,195 @@
+package fr.insa.crypto.benchmark;
+
+import javax.mail.Session;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Properties;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+
+/**
+ * Serveur SMTP minimal en mémoire, pour tester la file d'envoi des OTP sans réseau.
+ * Accepte tout expéditeur et tout destinataire, ne stocke rien sur disque et peut simuler
+ * la latence d'un vrai serveur (par connexion et par message).
+ */
+public class LocalSmtpServer implements AutoCloseable {
+    private final ServerSocket serverSocket;
+    private final ExecutorService connectionExecutor = Executors.newCachedThreadPool(r -> {
+        Thread thread = new Thread(r, "local-smtp");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final long connectDelayMs;
+    private final long messageDelayMs;
+    private volatile BiConsumer<String, String> messageListener = (recipient, data) -> { };
+    private volatile boolean running = true;
+
+    private final AtomicLong connectionCount = new AtomicLong();
+    private final AtomicLong messageCount = new AtomicLong();
+
+    /**
+     * @param connectDelayMs Latence simulée à l'ouverture de chaque connexion (négociation TLS, authentification)
+     * @param messageDelayMs Latence simulée pour chaque message accepté
+     */
+    public LocalSmtpServer(long connectDelayMs, long messageDelayMs) throws IOException {
+        this(InetAddress.getLoopbackAddress(), 0, connectDelayMs, messageDelayMs);
+    }
+
+    /**
+     * @param bindAddress Adresse d'écoute (toutes les interfaces si null, pour une autorité distante)
+     * @param port        Port d'écoute (0: port libre quelconque)
+     */
+    public LocalSmtpServer(InetAddress bindAddress, int port, long connectDelayMs, long messageDelayMs) throws IOException {
+        this.serverSocket = new ServerSocket(port, 128, bindAddress);
+        this.connectDelayMs = connectDelayMs;
+        this.messageDelayMs = messageDelayMs;
+
+        Thread acceptor = new Thread(this::acceptLoop, "local-smtp-accept");
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    public String getHost() {
+        return serverSocket.getInetAddress().getHostAddress();
+    }
+
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    /**
+     * Crée une session SMTP vers ce serveur, sans authentification ni TLS
+     */
+    public Session createSession() {
+        Properties props = new Properties();
+        props.put("mail.smtp.host", getHost());
+        props.put("mail.smtp.port", String.valueOf(getPort()));
+        props.put("mail.smtp.auth", "false");
+        props.put("mail.smtp.connectiontimeout", "5000");
+        props.put("mail.smtp.timeout", "5000");
+        return Session.getInstance(props);
+    }
+
+    /**
+     * Définit le traitement appliqué à chaque message reçu (destinataire, contenu brut)
+     */
+    public void setMessageListener(BiConsumer<String, String> messageListener) {
+        this.messageListener = messageListener;
+    }
+
+    public long getConnectionCount() {
+        return connectionCount.get();
+    }
+
+    public long getMessageCount() {
+        return messageCount.get();
+    }
+
+    private void acceptLoop() {
+        while (running) {
+            try {
+                Socket socket = serverSocket.accept();
+                connectionExecutor.execute(() -> handleConnection(socket));
+            } catch (IOException e) {
+                if (running) {
+                    System.err.println("Erreur du serveur SMTP local: " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    /**
+     * Dialogue SMTP d'une connexion (sous-ensemble suffisant pour JavaMail)
+     */
+    private void handleConnection(Socket socket) {
+        connectionCount.incrementAndGet();
+        try (socket;
+             BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.US_ASCII));
+             OutputStream out = socket.getOutputStream()) {
+            pause(connectDelayMs);
+            reply(out, "220 localhost ESMTP local");
+
+            String recipient = null;
+            String line;
+            while ((line = in.readLine()) != null) {
+                String command = line.length() >= 4 ? line.substring(0, 4).toUpperCase() : line.toUpperCase();
+                switch (command) {
+                    case "EHLO":
+                        reply(out, "250-localhost\r\n250 8BITMIME");
+                        break;
+                    case "HELO":
+                        reply(out, "250 localhost");
+                        break;
+                    case "MAIL":
+                        recipient = null;
+                        reply(out, "250 OK");
+                        break;
+                    case "RCPT":
+                        if (recipient == null) {
+                            int start = line.indexOf('<');
+                            int end = line.indexOf('>');
+                            recipient = start >= 0 && end > start ? line.substring(start + 1, end) : line.substring(8).trim();
+                        }
+                        reply(out, "250 OK");
+                        break;
+                    case "DATA":
+                        reply(out, "354 End data with <CR><LF>.<CR><LF>");
+                        StringBuilder data = new StringBuilder();
+                        while ((line = in.readLine()) != null && !line.equals(".")) {
+                            data.append(line.startsWith("..") ? line.substring(1) : line).append("\r\n");
+                        }
+                        pause(messageDelayMs);
+                        messageCount.incrementAndGet();
+                        messageListener.accept(recipient, data.toString());
+                        reply(out, "250 OK queued");
+                        break;
+                    case "RSET":
+                        recipient = null;
+                        reply(out, "250 OK");
+                        break;
+                    case "NOOP":
+                        reply(out, "250 OK");
+                        break;
+                    case "QUIT":
+                        reply(out, "221 Bye");
+                        return;
+                    default:
+                        reply(out, "502 Command not implemented");
+                }
+            }
+        } catch (IOException e) {
+            // Connexion fermée par le client
+        }
+    }
+
+    private static void reply(OutputStream out, String response) throws IOException {
+        out.write((response + "\r\n").getBytes(StandardCharsets.US_ASCII));
+        out.flush();
+    }
+
+    private static void pause(long delayMs) {
+        if (delayMs <= 0) {
+            return;
+        }
+        try {
+            Thread.sleep(delayMs);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        running = false;
+        serverSocket.close();
+        connectionExecutor.shutdownNow();
+    }
+}
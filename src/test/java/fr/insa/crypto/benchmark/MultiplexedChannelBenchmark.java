@@ -0,0 +1,90 @@
+package fr.insa.crypto.benchmark;
+
+import fr.insa.crypto.trustAuthority.TrustAuthority;
+import fr.insa.crypto.trustAuthority.TrustAuthorityClient;
+import fr.insa.crypto.trustAuthority.TrustAuthorityServer;
+import fr.insa.crypto.trustAuthority.metrics.LatencyHistogram;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Banc d'essai du transport client-autorité: mêmes requêtes sécurisées (/auth/check-account) envoyées
+ * par plusieurs threads d'un même client, d'abord par HTTP (une connexion par requête), puis sur le
+ * canal TCP multiplexé (une seule connexion, requêtes en pipeline). Serveur et client sont locaux:
+ * l'écart mesuré est celui de l'établissement des connexions et de la pile HTTP.
+ *
+ * Usage: MultiplexedChannelBenchmark [requêtes par mesure] [threads] [port HTTP] [port du canal]
+ * (TA_USER_STORE=memory pour ne rien écrire sur le disque)
+ */
+public class MultiplexedChannelBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int requests = args.length > 0 ? Integer.parseInt(args[0]) : 20_000;
+        int threads = args.length > 1 ? Integer.parseInt(args[1]) : 16;
+        int httpPort = args.length > 2 ? Integer.parseInt(args[2]) : 18080;
+        int channelPort = args.length > 3 ? Integer.parseInt(args[3]) : 18081;
+
+        System.out.println("\n======= BANC D'ESSAI DU CANAL MULTIPLEXÉ (HTTP / TCP) =======\n");
+        System.out.println(requests + " requêtes par mesure, " + threads + " threads\n");
+
+        // Toutes les requêtes viennent de la boucle locale: mesurer le transport, pas les limites de débit
+        TrustAuthorityServer server = new TrustAuthorityServer.Builder(new TrustAuthority(), httpPort)
+                .otpDispatcher(null).multiplexedChannel(channelPort).rateLimits("").build();
+        server.start();
+        try {
+            TrustAuthorityClient client = new TrustAuthorityClient("http://127.0.0.1:" + httpPort, null);
+            // Établir le canal sécurisé avant les mesures
+            client.checkAccountStatus("bench@example.com");
+
+            run("HTTP", client, requests / 10, threads);
+            run("HTTP", client, requests, threads);
+
+            if (!client.openMultiplexedChannel()) {
+                System.out.println("Canal multiplexé indisponible (format binaire requis)");
+                return;
+            }
+            run("TCP multiplexé", client, requests / 10, threads);
+            run("TCP multiplexé", client, requests, threads);
+            client.closeMultiplexedChannel();
+        } finally {
+            server.stop();
+        }
+    }
+
+    /**
+     * Envoie les requêtes depuis plusieurs threads et affiche débit et latences
+     */
+    private static void run(String label, TrustAuthorityClient client, int requests, int threads) throws InterruptedException {
+        LatencyHistogram latency = new LatencyHistogram();
+        AtomicInteger next = new AtomicInteger();
+        AtomicInteger errors = new AtomicInteger();
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+
+        long start = System.nanoTime();
+        for (int t = 0; t < threads; t++) {
+            pool.execute(() -> {
+                int i;
+                while ((i = next.getAndIncrement()) < requests) {
+                    long t0 = System.nanoTime();
+                    try {
+                        client.checkAccountStatus("user" + i + "@example.com");
+                        latency.recordNanos(System.nanoTime() - t0);
+                    } catch (Exception e) {
+                        errors.incrementAndGet();
+                    }
+                }
+            });
+        }
+        pool.shutdown();
+        pool.awaitTermination(10, TimeUnit.MINUTES);
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        long[] percentiles = latency.percentilesMicros(0.5, 0.99);
+        System.out.printf("%-16s %8.0f req/s  p50 %7.2f ms  p99 %7.2f ms  max %7.2f ms  erreurs %d%n",
+                label, requests / seconds, percentiles[0] / 1000.0, percentiles[1] / 1000.0,
+                latency.getMaxMicros() / 1000.0, errors.get());
+    }
+}
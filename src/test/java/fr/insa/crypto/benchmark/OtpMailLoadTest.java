@@ -0,0 +1,87 @@
+package fr.insa.crypto.benchmark;
+
+import fr.insa.crypto.trustAuthority.auth.OtpMailDispatcher;
+import fr.insa.crypto.trustAuthority.metrics.LatencyHistogram;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Test de charge de la file d'envoi des OTP contre le serveur SMTP local.
+ * Mesure le temps de dépôt vu par le handler HTTP, le débit d'envoi et la latence de livraison,
+ * avec une latence SMTP simulée proche d'un serveur distant (connexion + STARTTLS coûteux).
+ *
+ * Usage: OtpMailLoadTest [nombre d'OTP] [threads émetteurs] [connexions SMTP] [latence connexion ms] [latence message ms]
+ */
+public class OtpMailLoadTest {
+
+    public static void main(String[] args) throws Exception {
+        int otpCount = args.length > 0 ? Integer.parseInt(args[0]) : 2000;
+        int producers = args.length > 1 ? Integer.parseInt(args[1]) : 16;
+        int poolSize = args.length > 2 ? Integer.parseInt(args[2]) : 2;
+        long connectDelayMs = args.length > 3 ? Long.parseLong(args[3]) : 300;
+        long messageDelayMs = args.length > 4 ? Long.parseLong(args[4]) : 5;
+
+        System.out.println("\n======= TEST DE CHARGE DE LA FILE D'ENVOI DES OTP =======\n");
+        System.out.println(otpCount + " OTP, " + producers + " threads émetteurs, " + poolSize + " connexion(s) SMTP");
+        System.out.println("Latence simulée: " + connectDelayMs + " ms par connexion, " + messageDelayMs + " ms par message\n");
+
+        try (LocalSmtpServer smtpServer = new LocalSmtpServer(connectDelayMs, messageDelayMs)) {
+            CountDownLatch received = new CountDownLatch(otpCount);
+            smtpServer.setMessageListener((recipient, data) -> received.countDown());
+
+            OtpMailDispatcher dispatcher = new OtpMailDispatcher(
+                    smtpServer.createSession(),
+                    "noreply@trust.authority", poolSize, otpCount, 20, 5);
+
+            ExecutorService producerPool = Executors.newFixedThreadPool(producers);
+            AtomicInteger next = new AtomicInteger();
+            AtomicLong totalEnqueueNanos = new AtomicLong();
+            AtomicLong maxEnqueueNanos = new AtomicLong();
+            AtomicInteger maxQueueDepth = new AtomicInteger();
+
+            long start = System.nanoTime();
+            for (int p = 0; p < producers; p++) {
+                producerPool.execute(() -> {
+                    int i;
+                    while ((i = next.getAndIncrement()) < otpCount) {
+                        long t0 = System.nanoTime();
+                        dispatcher.enqueue("user" + i + "@example.com", String.format("%06d", i % 1_000_000));
+                        long elapsed = System.nanoTime() - t0;
+                        totalEnqueueNanos.addAndGet(elapsed);
+                        maxEnqueueNanos.accumulateAndGet(elapsed, Math::max);
+                        maxQueueDepth.accumulateAndGet(dispatcher.getQueueDepth(), Math::max);
+                    }
+                });
+            }
+            producerPool.shutdown();
+            producerPool.awaitTermination(1, TimeUnit.MINUTES);
+            long enqueuedAt = System.nanoTime();
+
+            boolean complete = received.await(5, TimeUnit.MINUTES);
+            long end = System.nanoTime();
+            dispatcher.shutdown(5000);
+
+            double totalSeconds = (end - start) / 1e9;
+            System.out.printf("Dépôt de %d OTP en %.1f ms (moyenne %.3f ms, max %.3f ms par requête)%n",
+                    otpCount, (enqueuedAt - start) / 1e6, totalEnqueueNanos.get() / 1e6 / otpCount, maxEnqueueNanos.get() / 1e6);
+            System.out.printf("Envoi %s en %.2f s: %.0f emails/s%n",
+                    complete ? "terminé" : "INCOMPLET", totalSeconds, dispatcher.getDeliveredCount() / totalSeconds);
+            LatencyHistogram latency = dispatcher.getDeliveryLatency();
+            long[] percentiles = latency.percentilesMicros(0.5, 0.99);
+            System.out.printf("Latence de livraison: moyenne %.1f ms, p50 %.1f ms, p99 %.1f ms, max %.1f ms%n",
+                    latency.getMeanMicros() / 1000, percentiles[0] / 1000.0, percentiles[1] / 1000.0, latency.getMaxMicros() / 1000.0);
+            System.out.println("Profondeur maximale de la file: " + maxQueueDepth.get());
+            System.out.println("Connexions SMTP ouvertes: " + dispatcher.getConnectionCount()
+                    + " (serveur: " + smtpServer.getConnectionCount() + ")");
+            System.out.println("Réessais: " + dispatcher.getRetryCount() + ", échecs: " + dispatcher.getFailedCount()
+                    + ", rejets: " + dispatcher.getRejectedCount());
+            System.out.printf("Envoi synchrone équivalent (une connexion par OTP): ~%.0f ms par requête%n",
+                    (double) (connectDelayMs + messageDelayMs));
+        }
+    }
+}
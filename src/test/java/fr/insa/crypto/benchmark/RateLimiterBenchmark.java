@@ -0,0 +1,124 @@
+package fr.insa.crypto.benchmark;
+
+import fr.insa.crypto.trustAuthority.ratelimit.RateLimit;
+import fr.insa.crypto.trustAuthority.ratelimit.TokenBucketLimiter;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Banc d'essai des seaux à jetons de l'autorité:
+ * - précision: de nombreux threads frappent la même clé, le nombre de jetons accordés doit être
+ *   exactement la capacité plus le remplissage pendant la mesure;
+ * - coût: ns par décision sur une clé unique (contention maximale) et sur des clés distinctes.
+ *
+ * Usage: RateLimiterBenchmark [threads] [décisions par thread]
+ */
+public class RateLimiterBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int threads = args.length > 0 ? Integer.parseInt(args[0]) : 16;
+        int perThread = args.length > 1 ? Integer.parseInt(args[1]) : 1_000_000;
+
+        System.out.println("\n======= BANC D'ESSAI DE LA LIMITATION DE DÉBIT =======\n");
+        System.out.println(threads + " threads, " + perThread + " décisions par thread\n");
+
+        checkPrecision(threads);
+        // Le premier passage sert de chauffe au JIT
+        measure("clé unique", threads, perThread / 10, false);
+        measure("clé unique", threads, perThread, false);
+        measure("clés distinctes", threads, perThread / 10, true);
+        measure("clés distinctes", threads, perThread, true);
+    }
+
+    /**
+     * Rafale concurrente sur une seule clé: aucun jeton ne doit être accordé deux fois
+     */
+    private static void checkPrecision(int threads) throws InterruptedException {
+        RateLimit limit = new RateLimit(1000, 1, TimeUnit.SECONDS);
+        TokenBucketLimiter limiter = new TokenBucketLimiter(limit);
+        AtomicLong granted = new AtomicLong();
+        long durationNanos = TimeUnit.MILLISECONDS.toNanos(500);
+
+        CountDownLatch ready = new CountDownLatch(threads);
+        CountDownLatch go = new CountDownLatch(1);
+        Thread[] workers = new Thread[threads];
+        for (int t = 0; t < threads; t++) {
+            workers[t] = new Thread(() -> {
+                ready.countDown();
+                try {
+                    go.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                long end = System.nanoTime() + durationNanos;
+                while (System.nanoTime() < end) {
+                    if (limiter.tryAcquire("hot") == 0) {
+                        granted.incrementAndGet();
+                    }
+                }
+            });
+            workers[t].start();
+        }
+        ready.await();
+        long start = System.nanoTime();
+        go.countDown();
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        double elapsed = System.nanoTime() - start;
+
+        // Borne haute: rafale initiale plus un jeton par intervalle écoulé (fenêtre des threads incluse)
+        long expectedMax = limit.getCapacity() + (long) Math.ceil(elapsed * limit.getCapacity() / limit.getPeriodNanos());
+        System.out.printf("Précision: %d jetons accordés en %.0f ms, au plus %d attendus (%s)%n%n",
+                granted.get(), elapsed / 1e6, expectedMax, granted.get() <= expectedMax ? "OK" : "DÉPASSEMENT");
+    }
+
+    /**
+     * Débit de décisions, accordées ou refusées
+     */
+    private static void measure(String label, int threads, int perThread, boolean distinctKeys) throws InterruptedException {
+        TokenBucketLimiter limiter = new TokenBucketLimiter(RateLimit.parse("100/1s"));
+        String[][] keys = new String[threads][];
+        for (int t = 0; t < threads; t++) {
+            keys[t] = new String[1024];
+            for (int k = 0; k < keys[t].length; k++) {
+                keys[t][k] = distinctKeys ? "10.0." + t + "." + k : "10.0.0.1";
+            }
+        }
+
+        AtomicLong granted = new AtomicLong();
+        CountDownLatch go = new CountDownLatch(1);
+        Thread[] workers = new Thread[threads];
+        for (int t = 0; t < threads; t++) {
+            String[] own = keys[t];
+            workers[t] = new Thread(() -> {
+                try {
+                    go.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                long accepted = 0;
+                for (int i = 0; i < perThread; i++) {
+                    if (limiter.tryAcquire(own[i & (own.length - 1)]) == 0) {
+                        accepted++;
+                    }
+                }
+                granted.addAndGet(accepted);
+            });
+            workers[t].start();
+        }
+        long start = System.nanoTime();
+        go.countDown();
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        long elapsed = System.nanoTime() - start;
+
+        long decisions = (long) threads * perThread;
+        System.out.printf("%-16s %12d décisions  %7.1f ns/décision/thread  %10.0f décisions/s  accordées %d  seaux %d%n",
+                label, decisions, (double) elapsed * threads / decisions, decisions * 1e9 / elapsed,
+                granted.get(), limiter.getBucketCount());
+    }
+}
@@ -0,0 +1,130 @@
+package fr.insa.crypto.benchmark;
+
+import fr.insa.crypto.trustAuthority.user.InMemoryUserStore;
+import fr.insa.crypto.trustAuthority.user.ReplicatedUserStore;
+import fr.insa.crypto.trustAuthority.user.UserAccount;
+import fr.insa.crypto.trustAuthority.user.UserManager;
+
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Démonstration de la réplication des comptes entre plusieurs nœuds sur localhost:
+ * inscription sur un nœud et validation de l'OTP sur un autre, propagation d'un lot d'écritures,
+ * convergence d'écritures concurrentes, rattrapage d'un nœud démarré plus tard et refus d'un nœud
+ * qui ne connaît pas le secret de réplication.
+ *
+ * Usage: ReplicationDemo [port de base] [nombre de comptes du lot]
+ */
+public class ReplicationDemo {
+    private static final int NODE_COUNT = 4;
+    private static final String SECRET = "demo-replication-secret";
+
+    public static void main(String[] args) throws Exception {
+        int basePort = args.length > 0 ? Integer.parseInt(args[0]) : 17400;
+        int batchSize = args.length > 1 ? Integer.parseInt(args[1]) : 2000;
+
+        System.out.println("\n======= DÉMONSTRATION DE LA RÉPLICATION DES COMPTES =======\n");
+
+        // Les trois premiers nœuds démarrent tout de suite, le dernier rejoindra le groupe plus tard
+        ReplicatedUserStore[] stores = new ReplicatedUserStore[NODE_COUNT];
+        UserManager[] nodes = new UserManager[NODE_COUNT];
+        for (int i = 0; i < NODE_COUNT - 1; i++) {
+            stores[i] = startNode(i, basePort);
+            nodes[i] = new UserManager(stores[i]);
+        }
+        waitFor("rattrapage initial", () -> stores[0].getSubscriberCount() == NODE_COUNT - 2
+                && stores[1].getSubscriberCount() == NODE_COUNT - 2 && stores[2].getSubscriberCount() == NODE_COUNT - 2);
+
+        // 1. Inscription sur le nœud 0, validation de l'OTP sur le nœud 1
+        UserAccount account = nodes[0].createOrGetUser("alice@example.com");
+        long start = System.nanoTime();
+        nodes[0].storePendingOtp(account, "123456", 300);
+        waitFor("OTP visible sur le nœud 1", () -> {
+            UserAccount replica = nodes[1].getUser("alice@example.com");
+            return replica != null && replica.hasPendingOtp();
+        });
+        System.out.printf("OTP enregistré sur le nœud 0 visible sur le nœud 1 après %.2f ms%n", (System.nanoTime() - start) / 1e6);
+
+        boolean valid = nodes[1].validateOtp(nodes[1].getUser("alice@example.com"), "123456");
+        nodes[1].verifyUserAndSetTotpSecret("alice@example.com", "JBSWY3DPEHPK3PXP");
+        System.out.println("OTP validé sur le nœud 1: " + valid);
+        waitFor("compte vérifié sur le nœud 0", () -> nodes[0].isUserVerified("alice@example.com"));
+        boolean replay = nodes[0].validateOtp(nodes[0].getUser("alice@example.com"), "123456");
+        System.out.println("Compte vérifié visible sur le nœud 0, rejeu de l'OTP refusé: " + !replay);
+
+        // 2. Propagation d'un lot d'écritures
+        start = System.nanoTime();
+        for (int i = 0; i < batchSize; i++) {
+            nodes[0].createOrGetUser("user" + i + "@example.com");
+        }
+        long written = System.nanoTime();
+        waitFor("lot répliqué", () -> nodes[2].getUserCount() == batchSize + 1);
+        System.out.printf("%d comptes écrits sur le nœud 0 en %.1f ms, tous présents sur le nœud 2 %.1f ms plus tard%n",
+                batchSize, (written - start) / 1e6, (System.nanoTime() - written) / 1e6);
+
+        // 3. Écritures concurrentes sur le même compte: tous les nœuds convergent vers la même version
+        for (int round = 0; round < 50; round++) {
+            int index = round;
+            Thread a = new Thread(() -> nodes[0].verifyUserAndSetTotpSecret("user0@example.com", "SECRETA" + index));
+            Thread b = new Thread(() -> nodes[1].verifyUserAndSetTotpSecret("user0@example.com", "SECRETB" + index));
+            a.start();
+            b.start();
+            a.join();
+            b.join();
+        }
+        waitFor("convergence", () -> {
+            String secret = nodes[0].getUser("user0@example.com").getTotpSecret();
+            return secret.equals(nodes[1].getUser("user0@example.com").getTotpSecret())
+                    && secret.equals(nodes[2].getUser("user0@example.com").getTotpSecret());
+        });
+        System.out.println("Écritures concurrentes convergées: " + nodes[2].getUser("user0@example.com").getTotpSecret());
+
+        // 4. Un nouveau nœud rattrape l'état complet depuis ses pairs
+        start = System.nanoTime();
+        int last = NODE_COUNT - 1;
+        stores[last] = startNode(last, basePort);
+        nodes[last] = new UserManager(stores[last]);
+        waitFor("rattrapage du nouveau nœud", () -> stores[last].isCaughtUp());
+        System.out.printf("Nouveau nœud à jour en %.1f ms: %d comptes, alice vérifiée: %s%n",
+                (System.nanoTime() - start) / 1e6, nodes[last].getUserCount(), nodes[last].isUserVerified("alice@example.com"));
+
+        nodes[last].createOrGetUser("late@example.com");
+        waitFor("écriture du nouveau nœud", () -> nodes[0].isUserRegistered("late@example.com"));
+        System.out.println("Écriture du nouveau nœud visible sur le nœud 0");
+
+        // 5. Un nœud sans le bon secret n'obtient aucun compte
+        ReplicatedUserStore intruder = new ReplicatedUserStore(new InMemoryUserStore(), "intruder", "127.0.0.1", 0,
+                List.of(new InetSocketAddress("127.0.0.1", basePort)), "wrong-replication-secret");
+        Thread.sleep(2000);
+        System.out.println("Nœud sans le secret refusé: " + (intruder.size() == 0 && !intruder.isCaughtUp()
+                && stores[0].getSubscriberCount() == NODE_COUNT - 1));
+        intruder.close();
+
+        for (UserManager node : nodes) {
+            node.close();
+        }
+    }
+
+    private static ReplicatedUserStore startNode(int index, int basePort) throws Exception {
+        List<InetSocketAddress> peers = new ArrayList<>();
+        for (int i = 0; i < NODE_COUNT; i++) {
+            if (i != index) {
+                peers.add(new InetSocketAddress("127.0.0.1", basePort + i));
+            }
+        }
+        return new ReplicatedUserStore(new InMemoryUserStore(), "node-" + index, "127.0.0.1", basePort + index, peers, SECRET);
+    }
+
+    private static void waitFor(String description, BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 30000;
+        while (!condition.getAsBoolean()) {
+            if (System.currentTimeMillis() > deadline) {
+                throw new IllegalStateException("Délai dépassé: " + description);
+            }
+            Thread.sleep(1);
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package fr.insa.crypto.benchmark;
+
+import fr.insa.crypto.trustAuthority.SecureChannelPool;
+import fr.insa.crypto.trustAuthority.TrustAuthority;
+import fr.insa.crypto.trustAuthority.TrustAuthorityClient;
+import fr.insa.crypto.trustAuthority.TrustAuthorityServer;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Démonstration de la durée de vie des sessions sécurisées côté serveur: un pool de canaux rétabli
+ * très souvent (quelques dizaines de requêtes par clé) garde un nombre borné de sessions sur le serveur,
+ * car chaque session remplacée est fermée une fois sa dernière requête terminée; les sessions inactives
+ * sont retirées par le serveur, et la requête suivante du client rétablit un canal sans erreur.
+ *
+ * Usage: SecureSessionEvictionDemo [requêtes] [port HTTP]
+ * (TA_USER_STORE=memory pour ne rien écrire sur le disque)
+ */
+public class SecureSessionEvictionDemo {
+    private static final int POOL_SIZE = 4;
+    private static final int THREADS = 8;
+    private static final long MAX_MESSAGES = 40;
+    private static final long IDLE_TIMEOUT_MS = 1500;
+
+    public static void main(String[] args) throws Exception {
+        int requests = args.length > 0 ? Integer.parseInt(args[0]) : 3000;
+        int httpPort = args.length > 1 ? Integer.parseInt(args[1]) : 18090;
+
+        System.out.println("\n======= DÉMONSTRATION DE L'EXPIRATION DES SESSIONS SÉCURISÉES =======\n");
+
+        TrustAuthorityServer server = new TrustAuthorityServer.Builder(new TrustAuthority(), httpPort)
+                .otpDispatcher(null).rateLimits("").sessionTimeouts(IDLE_TIMEOUT_MS, 60_000).build();
+        server.start();
+        try {
+            TrustAuthorityClient client = new TrustAuthorityClient("http://127.0.0.1:" + httpPort, null);
+
+            // 1. Rétablissements répétés du pool: le nombre de sessions du serveur reste borné
+            SecureChannelPool pool = client.openChannelPool(POOL_SIZE, 60_000, MAX_MESSAGES);
+            AtomicInteger maxSessions = new AtomicInteger();
+            int errors = runRequests(client, requests, () -> maxSessions.accumulateAndGet(server.getSecureSessionCount(), Math::max));
+            // Une session remplacée est fermée sans attendre la réponse: laisser passer les dernières fermetures
+            waitFor("fermeture des sessions remplacées", () -> server.getSecureSessionCount() == POOL_SIZE);
+            System.out.printf("%d requêtes, %d rétablissements du pool, au plus %d sessions sur le serveur (pool de %d), %d erreurs%n",
+                    requests, pool.getRenewalCount(), maxSessions.get(), POOL_SIZE, errors);
+            check("erreurs pendant les rétablissements", errors == 0);
+            check("rétablissements attendus", pool.getRenewalCount() >= requests / MAX_MESSAGES / 2);
+            // Chaque canal compte au plus sa session courante et celle qu'il vient de remplacer
+            check("sessions bornées", maxSessions.get() <= 2 * POOL_SIZE);
+
+            // 2. Sessions du pool retirées pour inactivité: la requête suivante rétablit son canal
+            waitFor("expiration des sessions inactives", () -> server.getSecureSessionCount() == 0);
+            System.out.println("Sessions inactives retirées par le serveur après " + IDLE_TIMEOUT_MS + " ms");
+            client.checkAccountStatus("after-idle@example.com");
+            System.out.println("Requête après expiration acceptée sur un nouveau canal du pool");
+            check("session rétablie", server.getSecureSessionCount() == 1);
+
+            // 3. Même chose sur le canal unique du client, pool fermé (ses sessions sont fermées avec lui)
+            client.closeChannelPool();
+            waitFor("fermeture du pool", () -> server.getSecureSessionCount() == 0);
+            client.checkAccountStatus("single@example.com");
+            waitFor("expiration du canal unique", () -> server.getSecureSessionCount() == 0);
+            client.checkAccountStatus("single-after-idle@example.com");
+            System.out.println("Requête après expiration acceptée sur un nouveau canal unique");
+            check("canal unique rétabli", server.getSecureSessionCount() == 1);
+        } finally {
+            server.stop();
+        }
+    }
+
+    /**
+     * Envoie les requêtes depuis plusieurs threads en relevant le nombre de sessions après chacune
+     *
+     * @return Nombre de requêtes en échec
+     */
+    private static int runRequests(TrustAuthorityClient client, int requests, Runnable sample) throws InterruptedException {
+        AtomicInteger next = new AtomicInteger();
+        AtomicInteger errors = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        for (int t = 0; t < THREADS; t++) {
+            executor.execute(() -> {
+                int i;
+                while ((i = next.getAndIncrement()) < requests) {
+                    try {
+                        client.checkAccountStatus("user" + i + "@example.com");
+                    } catch (Exception e) {
+                        errors.incrementAndGet();
+                    }
+                    sample.run();
+                }
+            });
+        }
+        executor.shutdown();
+        executor.awaitTermination(10, TimeUnit.MINUTES);
+        return errors.get();
+    }
+
+    private static void check(String description, boolean condition) {
+        if (!condition) {
+            throw new IllegalStateException("Échec: " + description);
+        }
+    }
+
+    private static void waitFor(String description, BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 30000;
+        while (!condition.getAsBoolean()) {
+            if (System.currentTimeMillis() > deadline) {
+                throw new IllegalStateException("Délai dépassé: " + description);
+            }
+            Thread.sleep(10);
+        }
+    }
+}
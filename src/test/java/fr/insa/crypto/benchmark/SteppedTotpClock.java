@@ -0,0 +1,40 @@
+package fr.insa.crypto.benchmark;
+
+import dev.samstevens.totp.time.TimeProvider;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Horloge TOTP contrôlée, partagée par l'autorité et les clients virtuels d'un test de charge.
+ * Elle reste au milieu d'une période de 30 s et n'avance que d'une période entière à la demande:
+ * un code calculé par un client reste valide quelle que soit la latence de la requête.
+ */
+public class SteppedTotpClock implements TimeProvider {
+    public static final long PERIOD_SECONDS = 30;
+
+    private final AtomicLong seconds;
+
+    public SteppedTotpClock() {
+        long now = System.currentTimeMillis() / 1000;
+        this.seconds = new AtomicLong(now - now % PERIOD_SECONDS + PERIOD_SECONDS / 2);
+    }
+
+    @Override
+    public long getTime() {
+        return seconds.get();
+    }
+
+    /**
+     * @return Compteur de la période courante, tel qu'utilisé pour générer les codes
+     */
+    public long getCounter() {
+        return seconds.get() / PERIOD_SECONDS;
+    }
+
+    /**
+     * Passe à la période suivante
+     */
+    public void advance() {
+        seconds.addAndGet(PERIOD_SECONDS);
+    }
+}
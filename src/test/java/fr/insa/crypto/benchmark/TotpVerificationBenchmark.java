@@ -0,0 +1,101 @@
+package fr.insa.crypto.benchmark;
+
+import dev.samstevens.totp.code.CodeGenerator;
+import dev.samstevens.totp.code.CodeVerifier;
+import dev.samstevens.totp.code.DefaultCodeGenerator;
+import dev.samstevens.totp.code.DefaultCodeVerifier;
+import fr.insa.crypto.trustAuthority.auth.TOTPManager;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Banc d'essai de la vérification TOTP lors d'une vague de connexions: vérificateur de la bibliothèque
+ * (secret décodé et HMAC recréé à chaque période de la fenêtre) contre le chemin rapide du TOTPManager.
+ * Vérifie aussi la compatibilité des codes, le refus des rejeux et l'enchaînement configuration puis
+ * première connexion dans la même période (échec du banc d'essai sinon).
+ *
+ * Usage: TotpVerificationBenchmark [utilisateurs] [threads]
+ */
+public class TotpVerificationBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int users = args.length > 0 ? Integer.parseInt(args[0]) : 200_000;
+        int threads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+
+        System.out.println("\n======= BANC D'ESSAI DE LA VÉRIFICATION TOTP =======\n");
+        System.out.println(users + " utilisateurs, " + threads + " threads\n");
+
+        SteppedTotpClock clock = new SteppedTotpClock();
+        CodeGenerator generator = new DefaultCodeGenerator();
+        String[] secrets = new String[users];
+        String[] previousCodes = new String[users];
+        String[] currentCodes = new String[users];
+        TOTPManager setup = new TOTPManager(clock);
+        for (int i = 0; i < users; i++) {
+            secrets[i] = setup.generateSecret();
+            // Code de la période précédente: le pire cas du vérificateur de la bibliothèque (toute la fenêtre)
+            previousCodes[i] = generator.generate(secrets[i], clock.getCounter() - 1);
+            currentCodes[i] = generator.generate(secrets[i], clock.getCounter());
+        }
+
+        // Compatibilité et anti-rejeu
+        TOTPManager check = new TOTPManager(clock);
+        boolean accepted = check.verifyCode("alice@example.com", currentCodes[0], secrets[0]);
+        boolean replayed = check.verifyCode("ALICE@example.com", currentCodes[0], secrets[0]);
+        boolean older = check.verifyCode("alice@example.com", previousCodes[0], secrets[0]);
+        System.out.println("Code de la bibliothèque accepté: " + accepted + ", rejeu refusé: " + !replayed
+                + ", code antérieur refusé: " + !older);
+
+        // Configuration confirmée puis première connexion avec le même code: seule la connexion le consomme
+        TOTPManager onboarding = new TOTPManager(clock);
+        boolean confirmed = onboarding.confirmSetup("bob@example.com", currentCodes[0], secrets[0]);
+        boolean firstLogin = onboarding.verifyCode("bob@example.com", currentCodes[0], secrets[0]);
+        boolean loginReplayed = onboarding.verifyCode("bob@example.com", currentCodes[0], secrets[0]);
+        boolean confirmAfterLogin = onboarding.confirmSetup("bob@example.com", currentCodes[0], secrets[0]);
+        System.out.println("Configuration confirmée: " + confirmed + ", première connexion avec le même code acceptée: "
+                + firstLogin + ", rejeu refusé: " + !loginReplayed + ", confirmation après connexion refusée: "
+                + !confirmAfterLogin + "\n");
+        if (!accepted || replayed || older || !confirmed || !firstLogin || loginReplayed || confirmAfterLogin) {
+            throw new IllegalStateException("Vérification TOTP incorrecte");
+        }
+
+        CodeVerifier libraryVerifier = new DefaultCodeVerifier(generator, clock);
+        for (int round = 0; round < 2; round++) {
+            // Le premier tour sert de chauffe au JIT
+            String label = round == 0 ? " (chauffe)" : "";
+            run("Bibliothèque" + label, users, threads, i -> libraryVerifier.isValidCode(secrets[i], previousCodes[i]));
+            TOTPManager manager = new TOTPManager(clock);
+            run("TOTPManager" + label, users, threads,
+                    i -> manager.verifyCode("user" + i + "@example.com", previousCodes[i], secrets[i]));
+        }
+    }
+
+    private interface Verification {
+        boolean verify(int user);
+    }
+
+    private static void run(String label, int users, int threads, Verification verification) throws InterruptedException {
+        AtomicInteger next = new AtomicInteger();
+        AtomicInteger valid = new AtomicInteger();
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        long start = System.nanoTime();
+        for (int t = 0; t < threads; t++) {
+            pool.execute(() -> {
+                int i;
+                while ((i = next.getAndIncrement()) < users) {
+                    if (verification.verify(i)) {
+                        valid.incrementAndGet();
+                    }
+                }
+            });
+        }
+        pool.shutdown();
+        pool.awaitTermination(10, TimeUnit.MINUTES);
+        long elapsed = System.nanoTime() - start;
+        System.out.printf("%-26s %10.0f vérifications/s  %7.2f µs/vérification/thread  valides %d/%d%n",
+                label, users * 1e9 / elapsed, elapsed / 1000.0 * threads / users, valid.get(), users);
+    }
+}
@@ -0,0 +1,360 @@
+package fr.insa.crypto.benchmark;
+
+import dev.samstevens.totp.code.CodeGenerator;
+import dev.samstevens.totp.code.DefaultCodeGenerator;
+import dev.samstevens.totp.time.SystemTimeProvider;
+import dev.samstevens.totp.time.TimeProvider;
+import fr.insa.crypto.trustAuthority.TrustAuthority;
+import fr.insa.crypto.trustAuthority.TrustAuthorityClient;
+import fr.insa.crypto.trustAuthority.TrustAuthorityServer;
+import fr.insa.crypto.trustAuthority.auth.OtpMailDispatcher;
+import fr.insa.crypto.trustAuthority.metrics.LatencyHistogram;
+import fr.insa.crypto.utils.Config;
+import fr.insa.crypto.utils.Logger;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * Test de charge de bout en bout de l'autorité et rapport de capacité.
+ *
+ * Chaque arrivée est un utilisateur virtuel qui déroule le parcours complet: paramètres publics,
+ * établissement du canal, vérification du compte, inscription, réception de l'OTP par email,
+ * vérification de l'OTP, vérification du TOTP puis demande de la clé privée. Les arrivées suivent
+ * un débit fixe (boucle ouverte): un serveur saturé ne ralentit pas la charge, et la latence d'un
+ * parcours est mesurée depuis son instant d'arrivée prévu.
+ *
+ * En mode local, l'autorité tourne dans le même processus avec un serveur SMTP en mémoire et une
+ * horloge TOTP contrôlée (les clients partagent alors le CPU du serveur). Avec une URL, le puits
+ * SMTP écoute sur le port donné: l'autorité cible doit y envoyer ses OTP (SMTP_HOST, SMTP_PORT,
+ * EMAIL_USERNAME et EMAIL_PASSWORD quelconques) et ses limites de débit (TA_RATE_LIMITS) doivent
+ * laisser passer la charge venue d'une seule adresse.
+ *
+ * Pour chaque palier: débit atteint, erreurs et percentiles par endpoint; puis la courbe de capacité
+ * et le débit à partir duquel le p99 d'un endpoint dépasse le SLO.
+ *
+ * Usage: TrustAuthorityLoadTest [local ou URL de l'autorité] [paliers en parcours/s, ex. 2,5,10,20]
+ *        [durée par palier en s] [SLO p99 en ms] [port du puits SMTP (mode URL)]
+ * (TA_USER_STORE=memory pour ne rien écrire sur le disque en mode local)
+ */
+public class TrustAuthorityLoadTest {
+    private static final String OTP_DELIVERY = "email OTP";
+    private static final String[] STEPS = {"/public-parameters", "/establish-secure-channel", "/auth/check-account",
+            "/auth/register", OTP_DELIVERY, "/auth/verify-otp", "/auth/verify-totp", "/get-private-key"};
+    private static final int REQUESTS_PER_FLOW = STEPS.length - 1;
+    private static final int MAX_VIRTUAL_CLIENTS = 512;
+    private static final long OTP_TIMEOUT_SECONDS = 30;
+    private static final double MAX_ERROR_RATE = 0.01;
+    private static final int LOCAL_PORT = 18100;
+
+    // Latence SMTP simulée en mode local, proche d'un serveur distant
+    private static final long SMTP_CONNECT_DELAY_MS = 300;
+    private static final long SMTP_MESSAGE_DELAY_MS = 5;
+
+    // Le code figure seul dans le titre de l'email (corps éventuellement en quoted-printable)
+    private static final Pattern OTP_PATTERN = Pattern.compile("(\\d{6})</h1>");
+
+    private final String serverUrl;
+    private final TimeProvider totpClock;
+    private final CodeGenerator codeGenerator = new DefaultCodeGenerator();
+    private final Map<String, CompletableFuture<String>> pendingOtps = new ConcurrentHashMap<>();
+    // Adresses uniques d'un lancement à l'autre: une autorité distante garde ses comptes
+    private final String runId = Long.toString(System.currentTimeMillis(), 36);
+    private final AtomicLong userIds = new AtomicLong();
+
+    /**
+     * Une étape du parcours; null ou false signalent un échec
+     */
+    private interface Step<T> {
+        T run() throws Exception;
+    }
+
+    private static class FlowAbortedException extends Exception {
+        FlowAbortedException() {
+            super(null, null, false, false);
+        }
+    }
+
+    private static class StepResult {
+        final LatencyHistogram latency = new LatencyHistogram();
+        final LongAdder errors = new LongAdder();
+    }
+
+    /**
+     * Mesures d'un palier de charge
+     */
+    private static class LevelResult {
+        final double flowsPerSecond;
+        final Map<String, StepResult> steps = new LinkedHashMap<>();
+        final LatencyHistogram flowLatency = new LatencyHistogram();
+        final LongAdder startedFlows = new LongAdder();
+        final LongAdder completedFlows = new LongAdder();
+        long elapsedNanos;
+
+        LevelResult(double flowsPerSecond) {
+            this.flowsPerSecond = flowsPerSecond;
+            for (String step : STEPS) {
+                steps.put(step, new StepResult());
+            }
+        }
+
+        long requestCount() {
+            return requestSteps().mapToLong(step -> step.latency.getCount()).sum();
+        }
+
+        long errorCount() {
+            return requestSteps().mapToLong(step -> step.errors.sum()).sum();
+        }
+
+        Stream<StepResult> requestSteps() {
+            return steps.entrySet().stream().filter(e -> !OTP_DELIVERY.equals(e.getKey())).map(Map.Entry::getValue);
+        }
+
+        /**
+         * @return L'endpoint au p99 le plus élevé (hors livraison de l'email, asynchrone)
+         */
+        Map.Entry<String, StepResult> worstEndpoint() {
+            Map.Entry<String, StepResult> worst = null;
+            for (Map.Entry<String, StepResult> entry : steps.entrySet()) {
+                if (OTP_DELIVERY.equals(entry.getKey()) || entry.getValue().latency.getCount() == 0) {
+                    continue;
+                }
+                if (worst == null || entry.getValue().latency.percentileMicros(0.99) > worst.getValue().latency.percentileMicros(0.99)) {
+                    worst = entry;
+                }
+            }
+            return worst;
+        }
+    }
+
+    private TrustAuthorityLoadTest(String serverUrl, TimeProvider totpClock) {
+        this.serverUrl = serverUrl;
+        this.totpClock = totpClock;
+    }
+
+    public static void main(String[] args) throws Exception {
+        String target = args.length > 0 ? args[0] : "local";
+        String[] levels = (args.length > 1 ? args[1] : "2,5,10,20,40").split(",");
+        long durationSeconds = args.length > 2 ? Long.parseLong(args[2]) : 20;
+        long sloMs = args.length > 3 ? Long.parseLong(args[3]) : 200;
+        int smtpPort = args.length > 4 ? Integer.parseInt(args[4]) : 2525;
+
+        System.out.println("\n======= TEST DE CHARGE ET CAPACITÉ DE L'AUTORITÉ =======\n");
+        // Les échecs sont comptés par étape: inutile de journaliser chaque requête
+        Logger.setLevel(Logger.Level.ERROR);
+
+        boolean local = "local".equals(target);
+        LocalSmtpServer smtpServer = local
+                ? new LocalSmtpServer(SMTP_CONNECT_DELAY_MS, SMTP_MESSAGE_DELAY_MS)
+                : new LocalSmtpServer(null, smtpPort, 0, 0);
+        TrustAuthorityServer server = null;
+        ScheduledExecutorService clockTicker = null;
+        try {
+            TrustAuthorityLoadTest loadTest;
+            if (local) {
+                SteppedTotpClock clock = new SteppedTotpClock();
+                OtpMailDispatcher dispatcher = new OtpMailDispatcher(
+                        smtpServer.createSession(),
+                        "noreply@trust.authority", Config.TA_SMTP_POOL_SIZE, Config.TA_OTP_QUEUE_CAPACITY,
+                        Config.TA_OTP_BATCH_SIZE, Config.TA_OTP_MAX_ATTEMPTS);
+                // Tous les clients virtuels partagent la boucle locale: seules les limites de la cible comptent
+                server = new TrustAuthorityServer.Builder(new TrustAuthority(), LOCAL_PORT)
+                        .otpDispatcher(dispatcher).totpTimeProvider(clock).rateLimits("").build();
+                server.start();
+                server.warmUp();
+
+                // L'horloge avance au rythme réel, par périodes entières
+                clockTicker = Executors.newSingleThreadScheduledExecutor();
+                clockTicker.scheduleAtFixedRate(clock::advance, SteppedTotpClock.PERIOD_SECONDS,
+                        SteppedTotpClock.PERIOD_SECONDS, TimeUnit.SECONDS);
+                loadTest = new TrustAuthorityLoadTest("http://127.0.0.1:" + LOCAL_PORT, clock);
+                System.out.println("Autorité locale sur le port " + LOCAL_PORT + ", SMTP simulé: "
+                        + SMTP_CONNECT_DELAY_MS + " ms par connexion, " + SMTP_MESSAGE_DELAY_MS + " ms par message");
+            } else {
+                loadTest = new TrustAuthorityLoadTest(target, new SystemTimeProvider());
+                System.out.println("Autorité cible " + target + ", puits SMTP sur le port " + smtpServer.getPort());
+            }
+            smtpServer.setMessageListener(loadTest::onMail);
+            System.out.println(levels.length + " paliers de " + durationSeconds + " s, SLO: p99 <= " + sloMs
+                    + " ms par requête, " + REQUESTS_PER_FLOW + " requêtes par parcours");
+
+            List<LevelResult> results = new ArrayList<>();
+            for (String level : levels) {
+                LevelResult result = loadTest.runLevel(Double.parseDouble(level.trim()), durationSeconds);
+                printLevel(result);
+                results.add(result);
+            }
+            printCapacityCurve(results, sloMs);
+        } finally {
+            if (clockTicker != null) {
+                clockTicker.shutdownNow();
+            }
+            if (server != null) {
+                server.stop();
+            }
+            smtpServer.close();
+        }
+    }
+
+    /**
+     * Lance les arrivées du palier à intervalle fixe, puis attend la fin des parcours en cours
+     */
+    private LevelResult runLevel(double flowsPerSecond, long durationSeconds) throws InterruptedException {
+        LevelResult level = new LevelResult(flowsPerSecond);
+        ExecutorService clients = Executors.newFixedThreadPool(MAX_VIRTUAL_CLIENTS);
+        long interval = (long) (1e9 / flowsPerSecond);
+        long start = System.nanoTime();
+        long end = start + TimeUnit.SECONDS.toNanos(durationSeconds);
+
+        for (long arrival = start; arrival < end; arrival += interval) {
+            long wait;
+            while ((wait = arrival - System.nanoTime()) > 0) {
+                LockSupport.parkNanos(wait);
+            }
+            long scheduledAt = arrival;
+            level.startedFlows.increment();
+            // Un client virtuel indisponible retarde le parcours: ce retard est compté dans sa latence
+            clients.execute(() -> runFlow(level, scheduledAt));
+        }
+        clients.shutdown();
+        clients.awaitTermination(5, TimeUnit.MINUTES);
+        level.elapsedNanos = System.nanoTime() - start;
+        return level;
+    }
+
+    /**
+     * Parcours complet d'un nouvel utilisateur, interrompu à la première étape en échec
+     */
+    private void runFlow(LevelResult level, long scheduledAt) {
+        String email = "load-" + runId + "-" + userIds.incrementAndGet() + "@example.com";
+        CompletableFuture<String> otpMail = new CompletableFuture<>();
+        pendingOtps.put(email, otpMail);
+        try {
+            TrustAuthorityClient client = step(level, "/public-parameters", () -> new TrustAuthorityClient(serverUrl, null));
+            step(level, "/establish-secure-channel", client::establishSecureChannel);
+            step(level, "/auth/check-account", () -> client.checkAccountStatus(email));
+            step(level, "/auth/register", () -> client.requestRegistration(email));
+            String otp = step(level, OTP_DELIVERY, () -> otpMail.get(OTP_TIMEOUT_SECONDS, TimeUnit.SECONDS));
+            step(level, "/auth/verify-otp", () -> client.setupTOTP(email, otp));
+
+            // Les codes sont calculés comme le ferait l'application d'authentification, sur l'horloge de l'autorité.
+            // Un code accepté ne l'est qu'une fois: la demande de clé utilise celui de la période suivante
+            // (dans la fenêtre de tolérance), comme un utilisateur qui attendrait le code suivant.
+            long counter = totpClock.getTime() / SteppedTotpClock.PERIOD_SECONDS;
+            String secret = client.getTotpSecret();
+            step(level, "/auth/verify-totp", () -> client.verifyTOTP(email, codeGenerator.generate(secret, counter)));
+            step(level, "/get-private-key", () -> client.requestPrivateKey(email, codeGenerator.generate(secret, counter + 1)));
+
+            level.flowLatency.recordNanos(System.nanoTime() - scheduledAt);
+            level.completedFlows.increment();
+        } catch (FlowAbortedException e) {
+            // Échec déjà compté pour son étape
+        } finally {
+            pendingOtps.remove(email);
+        }
+    }
+
+    private static <T> T step(LevelResult level, String name, Step<T> action) throws FlowAbortedException {
+        StepResult result = level.steps.get(name);
+        long start = System.nanoTime();
+        T value;
+        try {
+            value = action.run();
+        } catch (Exception e) {
+            value = null;
+        }
+        result.latency.recordNanos(System.nanoTime() - start);
+        if (value == null || Boolean.FALSE.equals(value)) {
+            result.errors.increment();
+            throw new FlowAbortedException();
+        }
+        return value;
+    }
+
+    /**
+     * Extrait l'OTP d'un email reçu par le puits SMTP et le remet au client virtuel qui l'attend
+     */
+    private void onMail(String recipient, String data) {
+        CompletableFuture<String> otpMail = recipient != null ? pendingOtps.get(recipient) : null;
+        if (otpMail == null) {
+            return;
+        }
+        // Recoller les lignes coupées par le quoted-printable avant de chercher le code
+        Matcher matcher = OTP_PATTERN.matcher(data.replace("=\r\n", ""));
+        if (matcher.find()) {
+            otpMail.complete(matcher.group(1));
+        }
+    }
+
+    private static void printLevel(LevelResult level) {
+        double seconds = level.elapsedNanos / 1e9;
+        System.out.printf("%n--- %.1f parcours/s offerts (%.0f req/s) ---%n", level.flowsPerSecond,
+                level.flowsPerSecond * REQUESTS_PER_FLOW);
+        System.out.printf("%-28s %9s %8s %9s %9s %9s%n", "Étape", "requêtes", "erreurs", "p50 ms", "p99 ms", "max ms");
+        for (Map.Entry<String, StepResult> entry : level.steps.entrySet()) {
+            LatencyHistogram latency = entry.getValue().latency;
+            long[] percentiles = latency.percentilesMicros(0.5, 0.99);
+            System.out.printf("%-28s %9d %8d %9.2f %9.2f %9.2f%n", entry.getKey(), latency.getCount(),
+                    entry.getValue().errors.sum(), percentiles[0] / 1000.0, percentiles[1] / 1000.0,
+                    latency.getMaxMicros() / 1000.0);
+        }
+        long[] flow = level.flowLatency.percentilesMicros(0.5, 0.99);
+        System.out.printf("Parcours terminés: %d/%d en %.1f s, %.0f req/s, parcours p50 %.0f ms, p99 %.0f ms%n",
+                level.completedFlows.sum(), level.startedFlows.sum(), seconds, level.requestCount() / seconds,
+                flow[0] / 1000.0, flow[1] / 1000.0);
+    }
+
+    /**
+     * Courbe débit offert / p99 du pire endpoint, et débit à partir duquel le SLO est rompu
+     */
+    private static void printCapacityCurve(List<LevelResult> results, long sloMs) {
+        System.out.println("\n======= COURBE DE CAPACITÉ (SLO: p99 <= " + sloMs + " ms, erreurs < "
+                + (int) (MAX_ERROR_RATE * 100) + " %) =======\n");
+        System.out.printf("%14s %15s %12s  %-28s %9s  %s%n", "Offert req/s", "Atteint req/s", "p99 ms", "Pire endpoint", "Erreurs", "SLO");
+
+        LevelResult lastWithinSlo = null;
+        LevelResult firstBreaking = null;
+        for (LevelResult level : results) {
+            Map.Entry<String, StepResult> worst = level.worstEndpoint();
+            double p99Ms = worst != null ? worst.getValue().latency.percentileMicros(0.99) / 1000.0 : 0;
+            long requests = level.requestCount();
+            double errorRate = requests > 0 ? (double) level.errorCount() / requests : 1;
+            boolean withinSlo = worst != null && p99Ms <= sloMs && errorRate < MAX_ERROR_RATE;
+            System.out.printf("%14.0f %15.0f %12.2f  %-28s %8.2f%%  %s%n", level.flowsPerSecond * REQUESTS_PER_FLOW,
+                    requests / (level.elapsedNanos / 1e9), p99Ms, worst != null ? worst.getKey() : "-",
+                    errorRate * 100, withinSlo ? "respecté" : "ROMPU");
+
+            if (withinSlo && firstBreaking == null) {
+                lastWithinSlo = level;
+            } else if (!withinSlo && firstBreaking == null) {
+                firstBreaking = level;
+            }
+        }
+
+        System.out.println();
+        if (lastWithinSlo == null) {
+            System.out.println("SLO rompu dès le premier palier: réduire les débits");
+        } else if (firstBreaking == null) {
+            System.out.printf("SLO respecté jusqu'au dernier palier (%.0f req/s): augmenter les débits pour trouver la limite%n",
+                    lastWithinSlo.flowsPerSecond * REQUESTS_PER_FLOW);
+        } else {
+            System.out.printf("Capacité estimée: %.0f req/s (%.1f parcours/s), SLO rompu à %.0f req/s%n",
+                    lastWithinSlo.flowsPerSecond * REQUESTS_PER_FLOW, lastWithinSlo.flowsPerSecond,
+                    firstBreaking.flowsPerSecond * REQUESTS_PER_FLOW);
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package fr.insa.crypto.benchmark;
+
+import fr.insa.crypto.trustAuthority.user.UserManager;
+import fr.insa.crypto.trustAuthority.user.WalUserStore;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+/**
+ * Banc d'essai du stockage persistant des comptes: débit d'écriture avec group commit,
+ * puis temps de restauration depuis le journal seul et depuis un instantané compacté.
+ *
+ * Usage: UserStoreBenchmark [nombre de comptes] [threads écrivains]
+ */
+public class UserStoreBenchmark {
+    private static final long SEGMENT_BYTES = 64L * 1024 * 1024;
+
+    public static void main(String[] args) throws Exception {
+        int accountCount = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        int writers = args.length > 1 ? Integer.parseInt(args[1]) : 64;
+        Path directory = Files.createTempDirectory("user-store-bench");
+
+        System.out.println("\n======= BANC D'ESSAI DU STOCKAGE DES COMPTES =======\n");
+        System.out.println(accountCount + " comptes, " + writers + " threads écrivains, répertoire " + directory + "\n");
+
+        try {
+            // Écriture: création puis vérification de chaque compte (deux enregistrements par compte)
+            WalUserStore store = new WalUserStore(directory, Long.MAX_VALUE, 0);
+            UserManager userManager = new UserManager(store);
+            ExecutorService pool = Executors.newFixedThreadPool(writers);
+            AtomicInteger next = new AtomicInteger();
+            long start = System.nanoTime();
+            for (int w = 0; w < writers; w++) {
+                pool.execute(() -> {
+                    int i;
+                    while ((i = next.getAndIncrement()) < accountCount) {
+                        String email = "user" + i + "@example.com";
+                        userManager.createOrGetUser(email);
+                        userManager.verifyUserAndSetTotpSecret(email, "JBSWY3DPEHPK3PXP" + i);
+                    }
+                });
+            }
+            pool.shutdown();
+            pool.awaitTermination(1, TimeUnit.HOURS);
+            double writeSeconds = (System.nanoTime() - start) / 1e9;
+            System.out.printf("Écriture: %d enregistrements durables en %.2f s (%.0f écritures/s)%n",
+                    2L * accountCount, writeSeconds, 2 * accountCount / writeSeconds);
+            store.close();
+
+            // Restauration depuis le journal seul
+            start = System.nanoTime();
+            store = new WalUserStore(directory, SEGMENT_BYTES, 0);
+            System.out.printf("Restauration depuis le journal: %d comptes en %.0f ms%n",
+                    store.size(), (System.nanoTime() - start) / 1e6);
+
+            // Compaction puis restauration depuis l'instantané
+            store.requestSnapshot();
+            store.close();
+            start = System.nanoTime();
+            store = new WalUserStore(directory, SEGMENT_BYTES, 0);
+            System.out.printf("Restauration depuis l'instantané: %d comptes en %.0f ms%n",
+                    store.size(), (System.nanoTime() - start) / 1e6);
+            store.close();
+        } finally {
+            deleteRecursively(directory);
+        }
+    }
+
+    private static void deleteRecursively(Path directory) throws IOException {
+        try (Stream<Path> paths = Files.walk(directory)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+}
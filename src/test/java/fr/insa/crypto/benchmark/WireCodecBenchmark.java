@@ -0,0 +1,142 @@
+package fr.insa.crypto.benchmark;
+
+import fr.insa.crypto.trustAuthority.protocol.Message;
+import fr.insa.crypto.trustAuthority.protocol.MessageType;
+import fr.insa.crypto.trustAuthority.protocol.WireCodec;
+import fr.insa.crypto.utils.SecureChannelManager;
+
+import java.security.SecureRandom;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Banc d'essai des formats d'échange avec l'autorité: taille des messages (en clair et dans
+ * l'enveloppe chiffrée du canal sécurisé) et temps d'encodage et de décodage, JSON contre binaire,
+ * pour chaque type de message. Les éléments ont la taille de ceux de la courbe de type A (128 octets).
+ *
+ * Usage: WireCodecBenchmark [itérations par mesure]
+ */
+public class WireCodecBenchmark {
+
+    private static final int G1_ELEMENT_BYTES = 128;
+    private static final int X25519_PUBLIC_KEY_BYTES = 44;
+    private static final SecureRandom random = new SecureRandom();
+
+    /**
+     * Une opération mesurée
+     */
+    private interface Operation {
+        int run();
+    }
+
+    public static void main(String[] args) throws Exception {
+        int iterations = args.length > 0 ? Integer.parseInt(args[0]) : 200_000;
+
+        System.out.println("\n======= BANC D'ESSAI DES FORMATS D'ÉCHANGE (JSON / BINAIRE) =======\n");
+
+        SecureChannelManager channel = new SecureChannelManager();
+        channel.setSessionKey(channel.generateAESKey());
+        Map<String, Message> messages = sampleMessages(channel);
+
+        System.out.printf("%-20s %8s %8s %6s | %10s %10s %6s%n",
+                "Message", "JSON", "Binaire", "Gain", "JSON chif.", "Bin. chif.", "Gain");
+        for (Map.Entry<String, Message> entry : messages.entrySet()) {
+            Message message = entry.getValue();
+            int json = WireCodec.JSON.encode(message).length;
+            int binary = WireCodec.BINARY.encode(message).length;
+            int jsonSecured = WireCodec.JSON.wrapSecure(channel.encrypt(WireCodec.JSON.encode(message))).length;
+            int binarySecured = WireCodec.BINARY.wrapSecure(channel.encrypt(WireCodec.BINARY.encode(message))).length;
+            System.out.printf("%-20s %8d %8d %5.0f%% | %10d %10d %5.0f%%%n", entry.getKey(), json, binary,
+                    100.0 * (json - binary) / json, jsonSecured, binarySecured, 100.0 * (jsonSecured - binarySecured) / jsonSecured);
+        }
+
+        System.out.printf("%n%-20s %12s %12s %12s %12s%n", "Message (ns/op)", "enc. JSON", "enc. bin.", "déc. JSON", "déc. bin.");
+        for (Map.Entry<String, Message> entry : messages.entrySet()) {
+            Message message = entry.getValue();
+            MessageType type = message.getType();
+            byte[] json = WireCodec.JSON.encode(message);
+            byte[] binary = WireCodec.BINARY.encode(message);
+
+            double jsonEncode = measure(() -> WireCodec.JSON.encode(message).length, iterations);
+            double binaryEncode = measure(() -> WireCodec.BINARY.encode(message).length, iterations);
+            double jsonDecode = measure(() -> WireCodec.JSON.decode(type, json).getType().getId(), iterations);
+            double binaryDecode = measure(() -> WireCodec.BINARY.decode(type, binary).getType().getId(), iterations);
+            System.out.printf("%-20s %12.0f %12.0f %12.0f %12.0f%n", entry.getKey(), jsonEncode, binaryEncode, jsonDecode, binaryDecode);
+        }
+    }
+
+    /**
+     * Un exemple réaliste de chaque type de message
+     */
+    private static Map<String, Message> sampleMessages(SecureChannelManager channel) throws Exception {
+        Map<String, Message> messages = new LinkedHashMap<>();
+        String email = "alice.martin@insa-toulouse.fr";
+
+        messages.put("TEXT", Message.text("OTP sent successfully"));
+        messages.put("EMAIL_REQUEST", Message.of(MessageType.EMAIL_REQUEST).put("email", email));
+        messages.put("OTP_REQUEST", Message.of(MessageType.OTP_REQUEST).put("email", email).put("otp", "482913"));
+        messages.put("TOTP_REQUEST", Message.of(MessageType.TOTP_REQUEST).put("email", email).put("totpCode", "093127"));
+        messages.put("ACCOUNT_STATUS", Message.of(MessageType.ACCOUNT_STATUS).put("exists", true).put("verified", true));
+        messages.put("TOTP_SETUP", Message.of(MessageType.TOTP_SETUP)
+                .put("status", "success")
+                .put("message", "OTP verified successfully")
+                .put("totpSecret", "JBSWY3DPEHPK3PXPJBSWY3DPEHPK3PXP")
+                .put("qrCodeUri", "data:image/png;base64," + java.util.Base64.getEncoder().encodeToString(randomBytes(1800))));
+        messages.put("AUTHENTICATION", Message.of(MessageType.AUTHENTICATION).put("authenticated", true));
+        messages.put("PRIVATE_KEY", Message.of(MessageType.PRIVATE_KEY)
+                .put("authenticated", true).put("identity", email).put("privateKey", randomBytes(G1_ELEMENT_BYTES)));
+        messages.put("PUBLIC_PARAMETERS", Message.of(MessageType.PUBLIC_PARAMETERS)
+                .put("publicKey", randomBytes(G1_ELEMENT_BYTES))
+                .put("generator", randomBytes(G1_ELEMENT_BYTES))
+                .put("pairingParams", "params/curves/a.properties")
+                .put("channelPublicKey", randomBytes(X25519_PUBLIC_KEY_BYTES))
+                .put("channelKeyBinding", randomBytes(G1_ELEMENT_BYTES))
+                .put("handshakeMethods", List.of(SecureChannelManager.HANDSHAKE_X25519, SecureChannelManager.HANDSHAKE_IBE))
+                .put("wireFormats", List.of("binary", "json")));
+
+        // Établissement IBE avec requête anticipée (la plus grosse requête du client)
+        Message earlyRequest = messages.get("TOTP_REQUEST");
+        messages.put("KEY_EXCHANGE (ibe)", Message.of(MessageType.KEY_EXCHANGE)
+                .put("encryptedKey", randomBytes(48))
+                .put("u", randomBytes(G1_ELEMENT_BYTES))
+                .put("v", randomBytes(32))
+                .put("earlyRequest", Message.of(MessageType.EARLY_REQUEST)
+                        .put("endpoint", "/auth/verify-totp-and-get-key")
+                        .put("encryptedContent", channel.encrypt(WireCodec.BINARY.encode(earlyRequest)))));
+        messages.put("KEY_EXCHANGE (x25519)", Message.of(MessageType.KEY_EXCHANGE)
+                .put("method", SecureChannelManager.HANDSHAKE_X25519)
+                .put("ephemeralPublicKey", randomBytes(X25519_PUBLIC_KEY_BYTES)));
+        messages.put("HANDSHAKE_RESPONSE", Message.of(MessageType.HANDSHAKE_RESPONSE)
+                .put("status", "secure-channel-established")
+                .put("earlyResponse", Message.of(MessageType.EARLY_RESPONSE)
+                        .put("statusCode", 200)
+                        .put("body", channel.encrypt(WireCodec.BINARY.encode(messages.get("PRIVATE_KEY"))))));
+        return messages;
+    }
+
+    private static byte[] randomBytes(int length) {
+        byte[] bytes = new byte[length];
+        random.nextBytes(bytes);
+        return bytes;
+    }
+
+    /**
+     * @return Le temps moyen par opération en nanosecondes, après une passe de préchauffage
+     */
+    private static double measure(Operation operation, int iterations) {
+        int sink = 0;
+        for (int i = 0; i < iterations; i++) {
+            sink += operation.run();
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            sink += operation.run();
+        }
+        long elapsed = System.nanoTime() - start;
+        if (sink == 42) {
+            System.out.print("");
+        }
+        return (double) elapsed / iterations;
+    }
+}
@@ -0,0 +1,99 @@
+package fr.insa.crypto.trustAuthority;
+
+import fr.insa.crypto.trustAuthority.protocol.Message;
+import fr.insa.crypto.trustAuthority.protocol.MessageType;
+import fr.insa.crypto.utils.SecureChannelManager;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.security.KeyPair;
+import java.security.PublicKey;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Liaison de la clé X25519 du serveur à l'autorité: seule une liaison signée par la clé maître de ces
+ * paramètres, sur la clé annoncée, fait retenir X25519 ; sinon le client se replie sur l'échange IBE
+ */
+class AuthorityParametersTest {
+
+    @TempDir
+    Path directory;
+
+    private TrustAuthority authority(String name) {
+        // Sans phrase secrète: paramètres éphémères, rien n'est écrit
+        return new TrustAuthority(directory.resolve(name), null);
+    }
+
+    /**
+     * Paramètres publics tels que les annonce le serveur (voir TrustAuthorityServer.buildPublicParameters)
+     */
+    private static Message capabilities(TrustAuthority authority, byte[] channelKey, byte[] binding) {
+        return Message.of(MessageType.PUBLIC_PARAMETERS)
+                .put("publicKey", authority.getParameters().getPublicKey().toBytes())
+                .put("generator", authority.getParameters().getGenerator().toBytes())
+                .put("pairingParams", SettingParameters.CURVE_PARAMETERS_PATH)
+                .put("channelPublicKey", channelKey)
+                .put("channelKeyBinding", binding)
+                .put("handshakeMethods", List.of(SecureChannelManager.HANDSHAKE_X25519, SecureChannelManager.HANDSHAKE_IBE));
+    }
+
+    @Test
+    void acceptsKeyBoundByMasterKey() throws Exception {
+        TrustAuthority authority = authority("authority");
+        byte[] channelKey = SecureChannelManager.generateX25519KeyPair().getPublic().getEncoded();
+
+        AuthorityParameters parameters = AuthorityParameters.fromServer(
+                capabilities(authority, channelKey, authority.bindChannelKey(channelKey).toBytes()), null);
+        assertTrue(parameters.isChannelKeyVerified());
+        PublicKey negotiated = TrustAuthorityClient.negotiateServerChannelKey(parameters);
+        assertNotNull(negotiated);
+        assertArrayEquals(channelKey, negotiated.getEncoded());
+    }
+
+    @Test
+    void rejectsBindingOverAnotherKey() throws Exception {
+        TrustAuthority authority = authority("authority");
+        byte[] boundKey = SecureChannelManager.generateX25519KeyPair().getPublic().getEncoded();
+        byte[] announcedKey = SecureChannelManager.generateX25519KeyPair().getPublic().getEncoded();
+
+        AuthorityParameters parameters = AuthorityParameters.fromServer(
+                capabilities(authority, announcedKey, authority.bindChannelKey(boundKey).toBytes()), null);
+        assertFalse(parameters.isChannelKeyVerified());
+        assertNull(TrustAuthorityClient.negotiateServerChannelKey(parameters));
+    }
+
+    @Test
+    void rejectsBindingFromAnotherMasterKey() throws Exception {
+        TrustAuthority authority = authority("authority");
+        TrustAuthority other = authority("other");
+        byte[] channelKey = SecureChannelManager.generateX25519KeyPair().getPublic().getEncoded();
+
+        AuthorityParameters parameters = AuthorityParameters.fromServer(
+                capabilities(authority, channelKey, other.bindChannelKey(channelKey).toBytes()), null);
+        assertFalse(parameters.isChannelKeyVerified());
+        assertNull(TrustAuthorityClient.negotiateServerChannelKey(parameters));
+    }
+
+    @Test
+    void keepsIbeWhenNoBindingIsAnnounced() throws Exception {
+        TrustAuthority authority = authority("authority");
+        KeyPair channelKeyPair = SecureChannelManager.generateX25519KeyPair();
+        Message capabilities = Message.of(MessageType.PUBLIC_PARAMETERS)
+                .put("publicKey", authority.getParameters().getPublicKey().toBytes())
+                .put("generator", authority.getParameters().getGenerator().toBytes())
+                .put("pairingParams", SettingParameters.CURVE_PARAMETERS_PATH)
+                .put("channelPublicKey", channelKeyPair.getPublic().getEncoded())
+                .put("handshakeMethods", List.of(SecureChannelManager.HANDSHAKE_X25519, SecureChannelManager.HANDSHAKE_IBE));
+
+        AuthorityParameters parameters = AuthorityParameters.fromServer(capabilities, null);
+        assertFalse(parameters.isChannelKeyVerified());
+        assertNull(TrustAuthorityClient.negotiateServerChannelKey(parameters));
+    }
+}
@@ -0,0 +1,165 @@
+package fr.insa.crypto.trustAuthority;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Identités réservées à l'autorité, dont l'extraction par lots est refusée ; extraction partagée entre
+ * appelants concurrents (single-flight) et cache borné des clés extraites
+ */
+class KeyDistributorTest {
+    private static final String EMAIL = "alice@example.com";
+    private static final int CALLERS = 8;
+
+    @TempDir
+    Path directory;
+
+    // Extractions demandées à l'autorité (hors clé du serveur), retenues jusqu'à l'ouverture de la barrière
+    private final AtomicInteger generations = new AtomicInteger();
+    private volatile CountDownLatch gate = new CountDownLatch(0);
+    private volatile RuntimeException failure;
+
+    private final ExecutorService executor = Executors.newFixedThreadPool(CALLERS);
+
+    @AfterEach
+    void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private KeyDistributor distributor(long cacheTtlMillis, int cacheMaxSize) {
+        // Sans phrase secrète: paramètres éphémères, rien n'est écrit
+        TrustAuthority authority = new TrustAuthority(directory.resolve("parameters.snapshot"), null) {
+            @Override
+            public KeyPair generatePrivateKey(String id) {
+                if (TrustAuthority.SERVER_IDENTITY.equals(id)) {
+                    return super.generatePrivateKey(id);
+                }
+                generations.incrementAndGet();
+                try {
+                    gate.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException(e);
+                }
+                if (failure != null) {
+                    throw failure;
+                }
+                return super.generatePrivateKey(id);
+            }
+        };
+        return new KeyDistributor(authority, cacheTtlMillis, cacheMaxSize);
+    }
+
+    /**
+     * Lance les appelants concurrents et n'ouvre la barrière qu'une fois tous les autres rattachés à l'extraction
+     */
+    private List<Future<KeyPair>> distributeConcurrently(KeyDistributor distributor) throws InterruptedException {
+        gate = new CountDownLatch(1);
+        List<Future<KeyPair>> results = new ArrayList<>();
+        for (int i = 0; i < CALLERS; i++) {
+            results.add(executor.submit(() -> distributor.distributePrivateKey(EMAIL)));
+        }
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (distributor.getCoalescedCallCount() < CALLERS - 1 && System.nanoTime() < deadline) {
+            Thread.sleep(1);
+        }
+        gate.countDown();
+        return results;
+    }
+
+    @Test
+    void reservesWholeAuthorityDomainWhateverTheCase() {
+        assertTrue(KeyDistributor.isReservedIdentity("server@trust.authority"));
+        assertTrue(KeyDistributor.isReservedIdentity(" server@TRUST.authority "));
+        assertTrue(KeyDistributor.isReservedIdentity("backup@trust.authority"));
+    }
+
+    @Test
+    void leavesOtherIdentitiesDistributable() {
+        assertFalse(KeyDistributor.isReservedIdentity("server@trust.authority.example.com"));
+        assertFalse(KeyDistributor.isReservedIdentity("alice@example.com"));
+        assertFalse(KeyDistributor.isReservedIdentity(null));
+    }
+
+    @Test
+    void concurrentCallersShareOneExtraction() throws Exception {
+        KeyDistributor distributor = distributor(60_000, 16);
+
+        List<Future<KeyPair>> results = distributeConcurrently(distributor);
+        KeyPair first = results.get(0).get(10, TimeUnit.SECONDS);
+        for (Future<KeyPair> result : results) {
+            assertSame(first, result.get(10, TimeUnit.SECONDS));
+        }
+        assertEquals(1, generations.get());
+        assertEquals(1, distributor.getExtractionCount());
+        assertEquals(CALLERS - 1, distributor.getCoalescedCallCount());
+    }
+
+    @Test
+    void failureReachesEveryWaiterAndIsNotCached() throws Exception {
+        KeyDistributor distributor = distributor(60_000, 16);
+        failure = new IllegalStateException("extraction impossible");
+
+        for (Future<KeyPair> result : distributeConcurrently(distributor)) {
+            ExecutionException e = assertThrows(ExecutionException.class, () -> result.get(10, TimeUnit.SECONDS));
+            assertSame(failure, e.getCause());
+        }
+        assertEquals(1, generations.get());
+        assertEquals(0, distributor.getCacheSize());
+
+        // L'échec n'est pas retenu: l'appel suivant relance l'extraction
+        failure = null;
+        distributor.distributePrivateKey(EMAIL);
+        assertEquals(2, generations.get());
+        assertEquals(1, distributor.getExtractionCount());
+    }
+
+    @Test
+    void cachedKeysExpireAfterTtl() throws InterruptedException {
+        KeyDistributor distributor = distributor(100, 16);
+
+        KeyPair extracted = distributor.distributePrivateKey(EMAIL);
+        assertSame(extracted, distributor.distributePrivateKey(EMAIL));
+        assertEquals(1, distributor.getCacheHitCount());
+
+        Thread.sleep(200);
+        distributor.distributePrivateKey(EMAIL);
+        assertEquals(1, distributor.getCacheHitCount());
+        assertEquals(2, generations.get());
+    }
+
+    @Test
+    void cacheNeverExceedsMaxSize() {
+        KeyDistributor distributor = distributor(60_000, 3);
+
+        for (int i = 0; i < 10; i++) {
+            distributor.distributePrivateKey("user" + i + "@example.com");
+            assertTrue(distributor.getCacheSize() <= 3);
+        }
+        assertEquals(3, distributor.getCacheSize());
+        // Les plus anciennes sont évincées, les plus récentes servies par le cache
+        distributor.distributePrivateKey("user9@example.com");
+        assertEquals(1, distributor.getCacheHitCount());
+        distributor.distributePrivateKey("user0@example.com");
+        assertEquals(1, distributor.getCacheHitCount());
+        assertEquals(11, generations.get());
+    }
+}
@@ -0,0 +1,137 @@
+package fr.insa.crypto.trustAuthority;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Instantané des paramètres: aller-retour, phrase secrète erronée, clé publique altérée, clé maître
+ * ne correspondant pas à P_pub et nombre d'itérations forgé
+ */
+class ParametersSnapshotTest {
+    private static final String PASSPHRASE = "correct horse battery staple";
+    private static final int DIGEST_LENGTH = 32;
+
+    // Champs préfixés par leur longueur après [MAGIC][version]: courbe, générateur, clé publique, sel
+    private static final int PUBLIC_KEY_FIELD = 2;
+    private static final int SALT_FIELD = 3;
+
+    @TempDir
+    Path directory;
+
+    private Path snapshot() {
+        return directory.resolve("parameters.snapshot");
+    }
+
+    @Test
+    void restoresSavedParameters() throws Exception {
+        TrustAuthority authority = new TrustAuthority(snapshot(), PASSPHRASE);
+
+        ParametersSnapshot restored = ParametersSnapshot.load(snapshot(), PASSPHRASE.toCharArray());
+        SettingParameters parameters = restored.getParameters();
+        assertTrue(authority.getParameters().getGenerator().isEqual(parameters.getGenerator()));
+        assertTrue(authority.getParameters().getPublicKey().isEqual(parameters.getPublicKey()));
+        assertTrue(authority.getParameters().getMasterKey().isEqual(parameters.getMasterKey()));
+        assertTrue(authority.getServerDecryptionContext().getPrivateKey()
+                .isEqual(restored.getServerContext().getPrivateKey()));
+    }
+
+    @Test
+    void rejectsWrongPassphrase() {
+        new TrustAuthority(snapshot(), PASSPHRASE);
+
+        assertThrows(GeneralSecurityException.class,
+                () -> ParametersSnapshot.load(snapshot(), "wrong passphrase".toCharArray()));
+    }
+
+    @Test
+    void rejectsTamperedPublicKey() throws IOException {
+        new TrustAuthority(snapshot(), PASSPHRASE);
+
+        // Un autre point valide de G1 (le générateur) à la place de P_pub, empreinte finale recalculée:
+        // seules les données associées du scellement peuvent le détecter
+        byte[] body = body();
+        int generatorOffset = fieldOffset(body, PUBLIC_KEY_FIELD - 1);
+        int publicKeyOffset = fieldOffset(body, PUBLIC_KEY_FIELD);
+        int length = ByteBuffer.wrap(body, publicKeyOffset, 4).getInt();
+        System.arraycopy(body, generatorOffset + 4, body, publicKeyOffset + 4, length);
+        rewrite(body);
+
+        assertThrows(GeneralSecurityException.class,
+                () -> ParametersSnapshot.load(snapshot(), PASSPHRASE.toCharArray()));
+    }
+
+    @Test
+    void rejectsMasterKeyNotMatchingPublicKey() throws Exception {
+        TrustAuthority authority = new TrustAuthority(snapshot(), PASSPHRASE);
+        SettingParameters parameters = authority.getParameters();
+
+        // Scellement valide, mais P_pub != sP: instantané assemblé à partir de paramètres différents
+        SettingParameters mismatched = new SettingParameters(parameters.getPairing(), parameters.getGenerator(),
+                parameters.getPairing().getG1().newRandomElement().getImmutable(), parameters.getMasterKey(),
+                parameters.getGeneratorPowTable());
+        ParametersSnapshot.save(snapshot(), PASSPHRASE.toCharArray(), mismatched, authority.getServerDecryptionContext());
+
+        GeneralSecurityException e = assertThrows(GeneralSecurityException.class,
+                () -> ParametersSnapshot.load(snapshot(), PASSPHRASE.toCharArray()));
+        assertEquals("La clé maître ne correspond pas à la clé publique de l'instantané", e.getMessage());
+    }
+
+    @Test
+    void refusesForgedIterationCountBeforeDerivation() throws IOException {
+        new TrustAuthority(snapshot(), PASSPHRASE);
+
+        // Un nombre d'itérations démesuré bloquerait le démarrage dans PBKDF2 s'il était accepté
+        byte[] body = body();
+        int iterationsOffset = fieldOffset(body, SALT_FIELD + 1);
+        ByteBuffer.wrap(body).putInt(iterationsOffset, Integer.MAX_VALUE);
+        rewrite(body);
+
+        long start = System.nanoTime();
+        assertThrows(IOException.class, () -> ParametersSnapshot.load(snapshot(), PASSPHRASE.toCharArray()));
+        assertTrue(System.nanoTime() - start < 5_000_000_000L);
+    }
+
+    private byte[] body() throws IOException {
+        byte[] bytes = Files.readAllBytes(snapshot());
+        return Arrays.copyOf(bytes, bytes.length - DIGEST_LENGTH);
+    }
+
+    /**
+     * Réécrit le fichier avec une empreinte finale cohérente: seule la vérification cryptographique peut refuser
+     */
+    private void rewrite(byte[] body) throws IOException {
+        byte[] digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256").digest(body);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+        byte[] bytes = Arrays.copyOf(body, body.length + DIGEST_LENGTH);
+        System.arraycopy(digest, 0, bytes, body.length, DIGEST_LENGTH);
+        Files.write(snapshot(), bytes);
+    }
+
+    /**
+     * @return Position du préfixe de longueur du champ d'indice donné (ou de ce qui suit le dernier champ)
+     */
+    private static int fieldOffset(byte[] body, int field) {
+        ByteBuffer buffer = ByteBuffer.wrap(body);
+        int offset = 8;
+        for (int i = 0; i < field; i++) {
+            offset += 4 + buffer.getInt(offset);
+        }
+        return offset;
+    }
+}
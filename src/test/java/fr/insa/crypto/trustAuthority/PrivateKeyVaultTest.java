@@ -0,0 +1,137 @@
+package fr.insa.crypto.trustAuthority;
+
+import it.unisa.dia.gas.jpbc.Pairing;
+import it.unisa.dia.gas.plaf.jpbc.pairing.PairingFactory;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Coffre local des clés privées: aller-retour, mot de passe erroné, entrée expirée ou d'autres paramètres,
+ * en-tête altéré, entrée d'une autre identité et nombre d'itérations forgé
+ */
+class PrivateKeyVaultTest {
+    private static final Pairing PAIRING = PairingFactory.getPairing(SettingParameters.CURVE_PARAMETERS_PATH);
+    private static final String SERVER_URL = "https://authority.example.com";
+    private static final String PASSWORD = "correct horse battery staple";
+    private static final String VERSION = "v1";
+    private static final long TTL_MS = 60_000;
+
+    // Position des champs de l'en-tête: [MAGIC][version][sel][itérations][IV][expiration]
+    private static final int ITERATIONS_OFFSET = 4 + 4 + 16;
+    private static final int EXPIRATION_OFFSET = ITERATIONS_OFFSET + 4 + 12;
+
+    @TempDir
+    Path directory;
+
+    private static KeyPair keyPair(String identity) {
+        return new KeyPair(identity, PAIRING.getG1().newRandomElement().getImmutable());
+    }
+
+    @Test
+    void opensStoredKey() {
+        PrivateKeyVault vault = new PrivateKeyVault(directory, SERVER_URL, TTL_MS);
+        KeyPair stored = keyPair("alice@example.com");
+        vault.store(stored, PASSWORD, VERSION);
+
+        KeyPair opened = vault.open("alice@example.com", PASSWORD, VERSION, PAIRING);
+        assertNotNull(opened);
+        assertEquals("alice@example.com", opened.getPk());
+        assertTrue(stored.getSk().isEqual(opened.getSk()));
+    }
+
+    @Test
+    void wrongPasswordOpensNothing() throws IOException {
+        PrivateKeyVault vault = new PrivateKeyVault(directory, SERVER_URL, TTL_MS);
+        vault.store(keyPair("alice@example.com"), PASSWORD, VERSION);
+
+        assertNull(vault.open("alice@example.com", "wrong password", VERSION, PAIRING));
+        // L'entrée reste en place: elle sera remplacée après la prochaine extraction
+        assertEquals(1, keyFiles().size());
+    }
+
+    @Test
+    void dropsExpiredEntry() throws IOException {
+        PrivateKeyVault vault = new PrivateKeyVault(directory, SERVER_URL, -1);
+        vault.store(keyPair("alice@example.com"), PASSWORD, VERSION);
+
+        assertNull(vault.open("alice@example.com", PASSWORD, VERSION, PAIRING));
+        assertTrue(keyFiles().isEmpty());
+    }
+
+    @Test
+    void dropsEntryFromOtherParameters() throws IOException {
+        PrivateKeyVault vault = new PrivateKeyVault(directory, SERVER_URL, TTL_MS);
+        vault.store(keyPair("alice@example.com"), PASSWORD, VERSION);
+
+        assertNull(vault.open("alice@example.com", PASSWORD, "v2", PAIRING));
+        assertTrue(keyFiles().isEmpty());
+    }
+
+    @Test
+    void rejectsTamperedHeader() throws IOException {
+        PrivateKeyVault vault = new PrivateKeyVault(directory, SERVER_URL, TTL_MS);
+        vault.store(keyPair("alice@example.com"), PASSWORD, VERSION);
+
+        // Expiration repoussée: l'en-tête est authentifié comme données associées
+        Path file = keyFiles().get(0);
+        byte[] bytes = Files.readAllBytes(file);
+        ByteBuffer.wrap(bytes).putLong(EXPIRATION_OFFSET, Long.MAX_VALUE);
+        Files.write(file, bytes);
+
+        assertNull(vault.open("alice@example.com", PASSWORD, VERSION, PAIRING));
+    }
+
+    @Test
+    void rejectsEntryOfAnotherIdentity() throws IOException {
+        PrivateKeyVault vault = new PrivateKeyVault(directory, SERVER_URL, TTL_MS);
+        vault.store(keyPair("alice@example.com"), PASSWORD, VERSION);
+        Path alice = keyFiles().get(0);
+        vault.store(keyPair("bob@example.com"), PASSWORD, VERSION);
+        Path bob = keyFiles().stream().filter(path -> !path.equals(alice)).findFirst().orElseThrow();
+
+        // Une autre écriture de l'identité n'a pas d'entrée: la clé est celle des octets exacts
+        assertNull(vault.open("Alice@Example.com", PASSWORD, VERSION, PAIRING));
+
+        // L'entrée d'Alice copiée à la place de celle de Bob ne s'ouvre pas pour Bob
+        Files.copy(alice, bob, StandardCopyOption.REPLACE_EXISTING);
+        assertNull(vault.open("bob@example.com", PASSWORD, VERSION, PAIRING));
+    }
+
+    @Test
+    void refusesForgedIterationCountBeforeDerivation() throws IOException {
+        PrivateKeyVault vault = new PrivateKeyVault(directory, SERVER_URL, TTL_MS);
+        vault.store(keyPair("alice@example.com"), PASSWORD, VERSION);
+
+        // Avec Integer.MAX_VALUE itérations, une dérivation ne se terminerait pas dans la durée du test
+        Path file = keyFiles().get(0);
+        byte[] bytes = Files.readAllBytes(file);
+        ByteBuffer.wrap(bytes).putInt(ITERATIONS_OFFSET, Integer.MAX_VALUE);
+        Files.write(file, bytes);
+
+        assertNull(vault.open("alice@example.com", PASSWORD, VERSION, PAIRING));
+        assertFalse(Files.exists(file));
+    }
+
+    private List<Path> keyFiles() throws IOException {
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "*.key")) {
+            stream.forEach(files::add);
+        }
+        return files;
+    }
+}
@@ -0,0 +1,174 @@
+package fr.insa.crypto.trustAuthority;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Pool de canaux sécurisés, sans serveur: les sessions sont fabriquées localement et leurs fermetures
+ * enregistrées. Vérifie le rétablissement par nombre de messages, la fermeture différée d'une session
+ * remplacée pendant un emprunt, l'expiration de l'attente d'un canal et la fermeture du pool, y compris
+ * après un démarrage en échec.
+ */
+class SecureChannelPoolTest {
+    private static final long LIFETIME_MS = TimeUnit.HOURS.toMillis(1);
+
+    private final List<TrustAuthorityClient.SecureSession> established = new CopyOnWriteArrayList<>();
+    private final List<TrustAuthorityClient.SecureSession> closed = new CopyOnWriteArrayList<>();
+    private SecureChannelPool pool;
+
+    private SecureChannelPool start(int size, long maxMessages, long leaseTimeoutMillis) throws Exception {
+        pool = new SecureChannelPool(() -> {
+            TrustAuthorityClient.SecureSession session = new TrustAuthorityClient.SecureSession(UUID.randomUUID().toString(), null);
+            established.add(session);
+            return CompletableFuture.completedFuture(session);
+        }, closed::add, size, LIFETIME_MS, maxMessages, leaseTimeoutMillis);
+        pool.start().get(5, TimeUnit.SECONDS);
+        return pool;
+    }
+
+    @AfterEach
+    void closePool() {
+        if (pool != null) {
+            pool.close();
+        }
+    }
+
+    @Test
+    void establishesEveryChannelOnStart() throws Exception {
+        start(4, 1_000, 1_000);
+        assertEquals(4, established.size());
+        assertEquals(4, pool.getAvailableChannels());
+    }
+
+    @Test
+    void closesEstablishedSessionsWhenStartFails() {
+        AtomicInteger attempts = new AtomicInteger();
+        pool = new SecureChannelPool(() -> {
+            if (attempts.incrementAndGet() == 2) {
+                return CompletableFuture.failedFuture(new IOException("Autorité injoignable"));
+            }
+            TrustAuthorityClient.SecureSession session = new TrustAuthorityClient.SecureSession(UUID.randomUUID().toString(), null);
+            established.add(session);
+            return CompletableFuture.completedFuture(session);
+        }, closed::add, 3, LIFETIME_MS, 1_000, 1_000);
+
+        assertThrows(ExecutionException.class, () -> pool.start().get(5, TimeUnit.SECONDS));
+        assertEquals(2, established.size());
+        assertEquals(established, closed);
+        assertThrows(ExecutionException.class, () -> pool.acquire().get());
+    }
+
+    @Test
+    void renewsSessionAfterMessageBudget() throws Exception {
+        start(1, 4, 1_000);
+        TrustAuthorityClient.SecureSession first = established.get(0);
+
+        // Renouvellement aux trois quarts du budget de messages, au moment où le canal est rendu
+        for (int i = 0; i < 3; i++) {
+            SecureChannelPool.Slot slot = pool.acquire().get();
+            assertSame(first, slot.session());
+            pool.release(slot);
+        }
+        SecureChannelPool.Slot slot = pool.acquire().get();
+        assertNotSame(first, slot.session());
+        assertEquals(List.of(first), closed);
+        assertEquals(1, pool.getRenewalCount());
+        pool.release(slot);
+    }
+
+    @Test
+    void closesSupersededSessionOnlyAfterRelease() throws Exception {
+        start(1, 1_000, 1_000);
+        TrustAuthorityClient.SecureSession first = established.get(0);
+        SecureChannelPool.Slot slot = pool.acquire().get();
+
+        pool.invalidate();
+        waitFor(() -> slot.session() != first);
+        // La requête en cours peut encore utiliser l'ancienne session
+        assertFalse(closed.contains(first));
+
+        pool.release(slot);
+        assertEquals(List.of(first), closed);
+    }
+
+    @Test
+    void replacesExpiredSessionOnce() throws Exception {
+        start(1, 1_000, 1_000);
+        TrustAuthorityClient.SecureSession first = established.get(0);
+        SecureChannelPool.Slot slot = pool.acquire().get();
+
+        TrustAuthorityClient.SecureSession replacement = pool.replace(slot, first).get();
+        assertNotSame(first, replacement);
+        // Une seconde requête qui constate la même expiration réutilise la session déjà rétablie
+        assertSame(replacement, pool.replace(slot, first).get());
+        assertEquals(2, established.size());
+        pool.release(slot);
+    }
+
+    @Test
+    void failsLeaseAfterTimeout() throws Exception {
+        start(1, 1_000, 50);
+        SecureChannelPool.Slot slot = pool.acquire().get();
+
+        ExecutionException error = assertThrows(ExecutionException.class, () -> pool.acquire().get(5, TimeUnit.SECONDS));
+        assertTrue(error.getCause().getMessage().contains("Aucun canal sécurisé libre"));
+        assertEquals(1, pool.getLeaseTimeoutCount());
+
+        // Le canal rendu reste utilisable
+        pool.release(slot);
+        assertEquals(1, pool.getAvailableChannels());
+    }
+
+    @Test
+    void handsReleasedChannelToWaiter() throws Exception {
+        start(1, 1_000, 5_000);
+        SecureChannelPool.Slot slot = pool.acquire().get();
+        CompletableFuture<SecureChannelPool.Slot> waiting = pool.acquire();
+        assertFalse(waiting.isDone());
+
+        pool.release(slot);
+        assertSame(slot, waiting.get(5, TimeUnit.SECONDS));
+        assertEquals(0, pool.getAvailableChannels());
+        pool.release(slot);
+    }
+
+    @Test
+    void closeClosesIdleSessionsAndLeasedOnesOnRelease() throws Exception {
+        start(2, 1_000, 1_000);
+        SecureChannelPool.Slot slot = pool.acquire().get();
+
+        pool.close();
+        assertEquals(1, closed.size());
+        assertFalse(closed.contains(slot.session()));
+        assertThrows(ExecutionException.class, () -> pool.acquire().get());
+
+        pool.release(slot);
+        assertEquals(2, closed.size());
+        assertTrue(closed.containsAll(established));
+    }
+
+    private static void waitFor(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.currentTimeMillis() < deadline, "Délai dépassé");
+            Thread.sleep(10);
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package fr.insa.crypto.trustAuthority;
+
+import fr.insa.crypto.utils.SecureChannelManager;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Retrait des sessions sécurisées: inactivité, fin de vie et fermeture par le client
+ */
+class SecureSessionRegistryTest {
+    private SecureSessionRegistry registry;
+
+    @AfterEach
+    void closeRegistry() {
+        if (registry != null) {
+            registry.close();
+        }
+    }
+
+    @Test
+    void evictsIdleSessions() throws InterruptedException {
+        registry = new SecureSessionRegistry(200, 60_000);
+        SecureChannelManager idle = new SecureChannelManager();
+        SecureChannelManager active = new SecureChannelManager();
+        registry.put("idle", idle);
+        registry.put("active", active);
+
+        for (int i = 0; i < 6; i++) {
+            Thread.sleep(60);
+            assertSame(active, registry.get("active"));
+        }
+        assertNull(registry.get("idle"));
+        assertSame(active, registry.get("active"));
+        assertTrue(registry.getEvictedCount() >= 1);
+    }
+
+    @Test
+    void evictsSessionsAtEndOfLifetimeEvenIfActive() throws InterruptedException {
+        registry = new SecureSessionRegistry(60_000, 200);
+        registry.put("session", new SecureChannelManager());
+
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (registry.get("session") != null) {
+            assertTrue(System.currentTimeMillis() < deadline, "Session jamais retirée");
+            Thread.sleep(20);
+        }
+        assertEquals(0, registry.size());
+    }
+
+    @Test
+    void removeRequiresTheSessionChannel() {
+        registry = new SecureSessionRegistry(60_000, 60_000);
+        SecureChannelManager channel = new SecureChannelManager();
+        registry.put("session", channel);
+
+        assertFalse(registry.remove("session", new SecureChannelManager()));
+        assertSame(channel, registry.get("session"));
+        assertTrue(registry.remove("session", channel));
+        assertNull(registry.get("session"));
+        assertFalse(registry.remove("session", channel));
+        assertEquals(1, registry.getClosedCount());
+    }
+}
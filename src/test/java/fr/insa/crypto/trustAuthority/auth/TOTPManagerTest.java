@@ -0,0 +1,164 @@
+package fr.insa.crypto.trustAuthority.auth;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongPredicate;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Vérification TOTP sur les vecteurs de la RFC 6238 (SHA-1, 6 chiffres) et protection contre le rejeu
+ */
+class TOTPManagerTest {
+    // Clé de test de la RFC 6238 ("12345678901234567890") en Base32
+    private static final String SECRET = "GEZDGNBVGY3TQOJQGEZDGNBVGY3TQOJQ";
+    private static final String EMAIL = "alice@example.com";
+
+    private final AtomicLong now = new AtomicLong();
+    private final TOTPManager totp = new TOTPManager(now::get);
+
+    @AfterEach
+    void close() {
+        totp.close();
+    }
+
+    @Test
+    void acceptsRfc6238Vectors() {
+        now.set(59);
+        assertTrue(totp.verifyCode(EMAIL, "287082", SECRET));
+        now.set(1111111109);
+        assertTrue(totp.verifyCode(EMAIL, "081804", SECRET));
+        now.set(1111111111);
+        assertTrue(totp.verifyCode(EMAIL, "050471", SECRET));
+    }
+
+    @Test
+    void acceptsAdjacentPeriodsOnly() {
+        // 081804 est le code de la période 37037036
+        now.set(1111111109 + 30);
+        assertTrue(new TOTPManager(now::get).verifyCode(EMAIL, "081804", SECRET));
+        now.set(1111111109 - 30);
+        assertTrue(new TOTPManager(now::get).verifyCode(EMAIL, "081804", SECRET));
+        now.set(1111111109 + 60);
+        assertFalse(new TOTPManager(now::get).verifyCode(EMAIL, "081804", SECRET));
+    }
+
+    @Test
+    void refusesReplayedCode() {
+        now.set(1111111109);
+        assertTrue(totp.verifyCode(EMAIL, "081804", SECRET));
+        assertFalse(totp.verifyCode(EMAIL, "081804", SECRET));
+        // Même refus quelle que soit la casse de l'adresse
+        assertFalse(totp.verifyCode("Alice@Example.COM", "081804", SECRET));
+    }
+
+    @Test
+    void refusesOlderCodeAfterNewerOne() {
+        // 050471 (période 37037037) accepté avant 081804 (période 37037036), encore dans la fenêtre
+        now.set(1111111111);
+        assertTrue(totp.verifyCode(EMAIL, "050471", SECRET));
+        assertFalse(totp.verifyCode(EMAIL, "081804", SECRET));
+    }
+
+    @Test
+    void refusesCodeAlreadyConsumedOnAnotherNode() {
+        // Période consommée partagée par deux nœuds, comme le compte répliqué (compare-and-set croissant)
+        AtomicLong lastUsedStep = new AtomicLong();
+        LongPredicate consumeStep = step -> {
+            long last = lastUsedStep.get();
+            return step > last && lastUsedStep.compareAndSet(last, step);
+        };
+        AtomicInteger storeCalls = new AtomicInteger();
+        LongPredicate countedConsumeStep = step -> {
+            storeCalls.incrementAndGet();
+            return consumeStep.test(step);
+        };
+        now.set(1111111109);
+        try (TOTPManager otherNode = new TOTPManager(now::get)) {
+            assertTrue(totp.verifyCode(EMAIL, "081804", SECRET, countedConsumeStep));
+            assertEquals(37037036, lastUsedStep.get());
+            assertFalse(otherNode.verifyCode(EMAIL, "081804", SECRET, countedConsumeStep));
+            // Le rejeu sur le nœud qui l'a accepté est refusé par le cache, sans toucher au stockage
+            assertFalse(totp.verifyCode(EMAIL, "081804", SECRET, countedConsumeStep));
+            assertEquals(2, storeCalls.get());
+            // L'autre nœud a retenu la période: son prochain rejeu n'atteint plus le stockage non plus
+            assertFalse(otherNode.verifyCode(EMAIL, "081804", SECRET, countedConsumeStep));
+            assertEquals(2, storeCalls.get());
+        }
+    }
+
+    @Test
+    void setupConfirmationDoesNotConsumeCode() {
+        now.set(1111111109);
+        assertTrue(totp.confirmSetup(EMAIL, "081804", SECRET));
+        assertTrue(totp.verifyCode(EMAIL, "081804", SECRET));
+        assertFalse(totp.confirmSetup(EMAIL, "081804", SECRET));
+    }
+
+    @Test
+    void evictsUsersWithoutRecentCode() {
+        now.set(1111111109);
+        assertTrue(totp.verifyCode(EMAIL, "081804", SECRET));
+        totp.evictStale();
+        assertEquals(1, totp.getCachedUserCount());
+
+        // Deux périodes plus tard, le code accepté est hors fenêtre: l'état n'est plus utile
+        now.set(1111111109 + 60);
+        totp.evictStale();
+        assertEquals(0, totp.getCachedUserCount());
+    }
+
+    @Test
+    void concurrentVerificationsAcceptCodeOnce() throws InterruptedException {
+        now.set(1111111109);
+        int threads = 16;
+        for (int round = 0; round < 50; round++) {
+            String email = "user" + round + "@example.com";
+            CountDownLatch start = new CountDownLatch(1);
+            AtomicInteger accepted = new AtomicInteger();
+            ExecutorService executor = Executors.newFixedThreadPool(threads);
+            for (int t = 0; t < threads; t++) {
+                executor.execute(() -> {
+                    try {
+                        start.await();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    if (totp.verifyCode(email, "081804", SECRET)) {
+                        accepted.incrementAndGet();
+                    }
+                });
+            }
+            start.countDown();
+            executor.shutdown();
+            assertTrue(executor.awaitTermination(30, TimeUnit.SECONDS));
+            assertEquals(1, accepted.get(), "Code accepté plusieurs fois");
+        }
+    }
+
+    @Test
+    void refusesMalformedCodes() {
+        now.set(1111111109);
+        assertFalse(totp.verifyCode(EMAIL, "81804", SECRET));
+        assertFalse(totp.verifyCode(EMAIL, "0818040", SECRET));
+        assertFalse(totp.verifyCode(EMAIL, "08180a", SECRET));
+        assertFalse(totp.verifyCode(EMAIL, "+81804", SECRET));
+        assertFalse(totp.verifyCode(EMAIL, null, SECRET));
+        assertFalse(totp.verifyCode(EMAIL, "081804", null));
+    }
+
+    @Test
+    void decodesBase32Secrets() {
+        assertEquals("12345678901234567890", new String(TOTPManager.decodeBase32(SECRET)));
+        assertEquals("12345678901234567890", new String(TOTPManager.decodeBase32("gezd gnbv gy3t qojq gezd gnbv gy3t qojq")));
+    }
+}
@@ -0,0 +1,63 @@
+package fr.insa.crypto.trustAuthority.channel;
+
+import fr.insa.crypto.trustAuthority.metrics.MetricsRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Limites de connexions du canal multiplexé: une connexion au-delà est fermée dès son acceptation
+ */
+class MultiplexedChannelServerTest {
+    private MultiplexedChannelServer server;
+
+    @AfterEach
+    void closeServer() throws IOException {
+        if (server != null) {
+            server.close();
+        }
+    }
+
+    private MultiplexedChannelServer start(int maxConnections, int maxPendingHellos) throws IOException {
+        return new MultiplexedChannelServer(0, sessionId -> null, (address, endpoint, body) -> null, Set.of(),
+                Runnable::run, 1, maxConnections, maxPendingHellos, new MetricsRegistry());
+    }
+
+    private Socket connect() throws IOException {
+        Socket socket = new Socket(InetAddress.getLoopbackAddress(), server.getPort());
+        socket.setSoTimeout(2000);
+        return socket;
+    }
+
+    @Test
+    void closesConnectionsBeyondPendingHelloLimit() throws IOException {
+        server = start(8, 1);
+        try (Socket waiting = connect(); Socket rejected = connect()) {
+            // Fermée sans réponse: fin de flux côté client
+            assertEquals(-1, rejected.getInputStream().read());
+            assertEquals(1, server.getRejectedConnectionCount());
+            // La première attend toujours son HELLO
+            waiting.setSoTimeout(200);
+            assertThrows(SocketTimeoutException.class, () -> waiting.getInputStream().read());
+        }
+    }
+
+    @Test
+    void closesConnectionsBeyondTotalLimit() throws IOException {
+        server = start(1, 8);
+        try (Socket waiting = connect(); Socket rejected = connect()) {
+            assertEquals(-1, rejected.getInputStream().read());
+            assertEquals(1, server.getRejectedConnectionCount());
+            waiting.setSoTimeout(200);
+            assertThrows(SocketTimeoutException.class, () -> waiting.getInputStream().read());
+        }
+    }
+}
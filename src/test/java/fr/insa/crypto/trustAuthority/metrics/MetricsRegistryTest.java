@@ -0,0 +1,33 @@
+package fr.insa.crypto.trustAuthority.metrics;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Rendu Prometheus: une valeur d'étiquette ne peut ni fermer son étiquette ni ajouter de ligne
+ */
+class MetricsRegistryTest {
+
+    @Test
+    void escapesLabelValues() {
+        assertEquals("/auth/login", MetricsRegistry.escapeLabel("/auth/login"));
+        assertEquals("a\\\\b\\\"c\\nd", MetricsRegistry.escapeLabel("a\\b\"c\nd"));
+    }
+
+    @Test
+    void rendersInjectedEndpointOnItsOwnLines() {
+        MetricsRegistry registry = new MetricsRegistry();
+        EndpointMetrics metrics = registry.endpoint("tcp:x\"} 1\nta_fake_total 42");
+        metrics.requestStarted();
+        metrics.requestCompleted(1_000_000, 200, 10, 20);
+
+        String rendered = registry.renderPrometheus();
+        for (String line : rendered.split("\n")) {
+            assertFalse(line.startsWith("ta_fake_total"), line);
+        }
+        assertTrue(rendered.contains("endpoint=\"tcp:x\\\"} 1\\nta_fake_total 42\""));
+    }
+}
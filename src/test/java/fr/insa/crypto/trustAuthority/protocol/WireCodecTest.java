@@ -0,0 +1,122 @@
+package fr.insa.crypto.trustAuthority.protocol;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Aller-retour des messages sur les deux formats de transport et refus des corps invalides
+ */
+class WireCodecTest {
+    private static final List<WireCodec> CODECS = List.of(WireCodec.JSON, WireCodec.BINARY);
+
+    @Test
+    void roundTripsNestedMessage() {
+        byte[] encryptedKey = {1, 2, 3, (byte) 0xff};
+        byte[] content = new byte[300];
+        Arrays.fill(content, (byte) 7);
+        Message message = Message.of(MessageType.KEY_EXCHANGE)
+                .put("method", "x25519")
+                .put("encryptedKey", encryptedKey)
+                .put("earlyRequest", Message.of(MessageType.EARLY_REQUEST)
+                        .put("endpoint", "/get-private-key")
+                        .put("encryptedContent", content));
+
+        for (WireCodec codec : CODECS) {
+            Message decoded = codec.decode(MessageType.KEY_EXCHANGE, codec.encode(message));
+            assertSame(MessageType.KEY_EXCHANGE, decoded.getType());
+            assertEquals("x25519", decoded.getString("method"));
+            assertArrayEquals(encryptedKey, decoded.getBytes("encryptedKey"));
+            assertFalse(decoded.has("u"), codec.getName());
+            Message early = decoded.getMessage("earlyRequest");
+            assertEquals("/get-private-key", early.getString("endpoint"));
+            assertArrayEquals(content, early.getBytes("encryptedContent"));
+        }
+    }
+
+    @Test
+    void roundTripsListsIntegersAndBooleans() {
+        Message message = Message.of(MessageType.PUBLIC_PARAMETERS)
+                .put("pairingParams", "type a\nq 8780710799663312522437781984754049815806883199414208211028653399266475630880222957078625179422662221423155858769582317459277713367317481324925129998224791\n")
+                .put("handshakeMethods", List.of("x25519", "ibe"))
+                .put("wireFormats", List.of())
+                .put("channelPort", 8443);
+
+        for (WireCodec codec : CODECS) {
+            Message decoded = codec.decode(MessageType.PUBLIC_PARAMETERS, codec.encode(message));
+            assertEquals(message.getString("pairingParams"), decoded.getString("pairingParams"));
+            assertEquals(List.of("x25519", "ibe"), decoded.getStrings("handshakeMethods"));
+            assertTrue(decoded.getStrings("wireFormats").isEmpty(), codec.getName());
+            assertEquals(8443, decoded.getInt("channelPort"));
+            assertNull(decoded.optString("parametersVersion", null));
+        }
+
+        Message status = Message.of(MessageType.ACCOUNT_STATUS).put("exists", true).put("verified", false);
+        for (WireCodec codec : CODECS) {
+            Message decoded = codec.decode(MessageType.ACCOUNT_STATUS, codec.encode(status));
+            assertTrue(decoded.getBoolean("exists"));
+            assertFalse(decoded.getBoolean("verified"));
+        }
+
+        Message response = Message.of(MessageType.EARLY_RESPONSE).put("statusCode", 429);
+        for (WireCodec codec : CODECS) {
+            assertEquals(429, codec.decode(MessageType.EARLY_RESPONSE, codec.encode(response)).getInt("statusCode"));
+        }
+    }
+
+    @Test
+    void acceptsTextInPlaceOfExpectedType() {
+        for (WireCodec codec : CODECS) {
+            Message decoded = codec.decode(MessageType.PRIVATE_KEY, codec.encode(Message.text("Erreur: accès refusé")));
+            assertSame(MessageType.TEXT, decoded.getType());
+            assertEquals("Erreur: accès refusé", decoded.getString("message"));
+        }
+    }
+
+    @Test
+    void refusesOtherBinaryMessageType() {
+        // Seul le format binaire porte le type du message; JSON est validé champ par champ
+        byte[] body = WireCodec.BINARY.encode(Message.of(MessageType.EMAIL_REQUEST).put("email", "alice@example.com"));
+        assertThrows(IllegalArgumentException.class, () -> WireCodec.BINARY.decode(MessageType.OTP_REQUEST, body));
+    }
+
+    @Test
+    void refusesJsonFieldOfWrongKind() {
+        byte[] body = "{\"email\": 42}".getBytes(StandardCharsets.UTF_8);
+        assertThrows(IllegalArgumentException.class, () -> WireCodec.JSON.decode(MessageType.EMAIL_REQUEST, body));
+    }
+
+    @Test
+    void refusesTrailingOrTruncatedBinaryBody() {
+        byte[] body = WireCodec.BINARY.encode(Message.of(MessageType.EMAIL_REQUEST).put("email", "alice@example.com"));
+        byte[] trailing = Arrays.copyOf(body, body.length + 1);
+        byte[] truncated = Arrays.copyOf(body, body.length - 1);
+
+        assertThrows(IllegalArgumentException.class, () -> WireCodec.BINARY.decode(MessageType.EMAIL_REQUEST, trailing));
+        assertThrows(IllegalArgumentException.class, () -> WireCodec.BINARY.decode(MessageType.EMAIL_REQUEST, truncated));
+    }
+
+    @Test
+    void refusesValueOfWrongKind() {
+        assertThrows(IllegalArgumentException.class, () -> Message.of(MessageType.EMAIL_REQUEST).put("email", 42));
+        assertThrows(IllegalArgumentException.class, () -> Message.of(MessageType.EMAIL_REQUEST).put("otp", "123456"));
+    }
+
+    @Test
+    void negotiatesFormatFromHeaders() {
+        assertSame(WireCodec.BINARY, WireCodec.forContentType(WireCodec.BINARY_MEDIA_TYPE));
+        assertSame(WireCodec.JSON, WireCodec.forContentType(null));
+        assertSame(WireCodec.BINARY, WireCodec.forAccept("application/json, " + WireCodec.BINARY_MEDIA_TYPE));
+        assertSame(WireCodec.JSON, WireCodec.forAccept("*/*"));
+    }
+}
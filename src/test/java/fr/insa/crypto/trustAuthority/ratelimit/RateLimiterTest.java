@@ -0,0 +1,74 @@
+package fr.insa.crypto.trustAuthority.ratelimit;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Configuration des limites par endpoint et application par portée (IP, identité)
+ */
+class RateLimiterTest {
+
+    @Test
+    void emptySpecDisablesAllLimits() {
+        try (RateLimiter limiter = RateLimiter.fromSpec("")) {
+            assertFalse(limiter.hasLimit("/auth/register", RateLimiter.Scope.IP));
+            for (int i = 0; i < 100; i++) {
+                assertEquals(0, limiter.check("/auth/register", RateLimiter.Scope.IP, "10.0.0.1"));
+            }
+            assertEquals(0, limiter.getBucketCount());
+        }
+    }
+
+    @Test
+    void appliesEachScopeSeparately() {
+        try (RateLimiter limiter = RateLimiter.fromSpec("/auth/register=ip:2/1h,identity:1/1h")) {
+            assertTrue(limiter.hasLimit("/auth/register", RateLimiter.Scope.IP));
+            assertTrue(limiter.hasLimit("/auth/register", RateLimiter.Scope.IDENTITY));
+            assertFalse(limiter.hasLimit("/auth/login", RateLimiter.Scope.IP));
+
+            assertEquals(0, limiter.check("/auth/register", RateLimiter.Scope.IDENTITY, "alice@example.com"));
+            assertTrue(limiter.check("/auth/register", RateLimiter.Scope.IDENTITY, "alice@example.com") > 0);
+            assertEquals(0, limiter.check("/auth/register", RateLimiter.Scope.IP, "10.0.0.1"));
+            assertEquals(0, limiter.check("/auth/register", RateLimiter.Scope.IP, "10.0.0.1"));
+            assertTrue(limiter.check("/auth/register", RateLimiter.Scope.IP, "10.0.0.1") > 0);
+            assertEquals(2, limiter.getRejectedCount(RateLimiter.Scope.IP) + limiter.getRejectedCount(RateLimiter.Scope.IDENTITY));
+        }
+    }
+
+    @Test
+    void normalizesIdentityCase() {
+        try (RateLimiter limiter = RateLimiter.fromSpec("/auth/login=identity:1/1h")) {
+            assertEquals(0, limiter.check("/auth/login", RateLimiter.Scope.IDENTITY, "Alice@Example.com"));
+            assertTrue(limiter.check("/auth/login", RateLimiter.Scope.IDENTITY, " alice@example.COM ") > 0);
+        }
+    }
+
+    @Test
+    void groupedEndpointsShareBuckets() {
+        try (RateLimiter limiter = RateLimiter.fromSpec("/auth/verify-totp|/get-private-key=identity:2/1h")) {
+            assertEquals(0, limiter.check("/auth/verify-totp", RateLimiter.Scope.IDENTITY, "alice@example.com"));
+            assertEquals(0, limiter.check("/get-private-key", RateLimiter.Scope.IDENTITY, "alice@example.com"));
+            assertTrue(limiter.check("/auth/verify-totp", RateLimiter.Scope.IDENTITY, "alice@example.com") > 0);
+            assertTrue(limiter.check("/get-private-key", RateLimiter.Scope.IDENTITY, "alice@example.com") > 0);
+        }
+    }
+
+    @Test
+    void rejectsMalformedSpecs() {
+        assertThrows(IllegalArgumentException.class, () -> RateLimiter.fromSpec("/auth/register"));
+        assertThrows(IllegalArgumentException.class, () -> RateLimiter.fromSpec("/auth/register=10/1m"));
+        assertThrows(IllegalArgumentException.class, () -> RateLimiter.fromSpec("/auth/register=host:10/1m"));
+        assertThrows(IllegalArgumentException.class, () -> RateLimiter.fromSpec("/auth/register=ip:10/1m,ip:5/1m"));
+    }
+
+    @Test
+    void roundsRetryAfterUp() {
+        assertEquals(1, RateLimiter.retryAfterSeconds(1));
+        assertEquals(1, RateLimiter.retryAfterSeconds(1_000_000_000L));
+        assertEquals(2, RateLimiter.retryAfterSeconds(1_000_000_001L));
+    }
+}
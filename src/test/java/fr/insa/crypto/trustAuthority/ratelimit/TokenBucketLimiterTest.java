@@ -0,0 +1,98 @@
+package fr.insa.crypto.trustAuthority.ratelimit;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Seaux GCRA: rafale bornée par la capacité, même sous concurrence, et seaux indépendants par clé
+ */
+class TokenBucketLimiterTest {
+
+    @Test
+    void acceptsBurstUpToCapacityThenRejects() {
+        TokenBucketLimiter limiter = new TokenBucketLimiter(RateLimit.parse("5/1h"));
+        for (int i = 0; i < 5; i++) {
+            assertEquals(0, limiter.tryAcquire("10.0.0.1"), "Requête " + i + " refusée");
+        }
+        long waitNanos = limiter.tryAcquire("10.0.0.1");
+        assertTrue(waitNanos > 0);
+        // Le prochain jeton arrive au plus un intervalle (1h / 5) plus tard
+        assertTrue(waitNanos <= TimeUnit.MINUTES.toNanos(12));
+    }
+
+    @Test
+    void keysHaveIndependentBuckets() {
+        TokenBucketLimiter limiter = new TokenBucketLimiter(RateLimit.parse("1/1h"));
+        assertEquals(0, limiter.tryAcquire("a"));
+        assertTrue(limiter.tryAcquire("a") > 0);
+        assertEquals(0, limiter.tryAcquire("b"));
+        assertEquals(2, limiter.getBucketCount());
+    }
+
+    @Test
+    void refillsAfterEmissionInterval() throws InterruptedException {
+        TokenBucketLimiter limiter = new TokenBucketLimiter(RateLimit.parse("2/1s"));
+        assertEquals(0, limiter.tryAcquire("a"));
+        assertEquals(0, limiter.tryAcquire("a"));
+        assertTrue(limiter.tryAcquire("a") > 0);
+        Thread.sleep(600);
+        assertEquals(0, limiter.tryAcquire("a"));
+    }
+
+    @Test
+    void concurrentRequestsNeverExceedCapacity() throws InterruptedException {
+        int capacity = 100;
+        TokenBucketLimiter limiter = new TokenBucketLimiter(RateLimit.parse(capacity + "/1h"));
+        int threads = 16;
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicInteger accepted = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        for (int t = 0; t < threads; t++) {
+            executor.execute(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (int i = 0; i < 50; i++) {
+                    if (limiter.tryAcquire("shared") == 0) {
+                        accepted.incrementAndGet();
+                    }
+                }
+            });
+        }
+        start.countDown();
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(30, TimeUnit.SECONDS));
+        assertEquals(capacity, accepted.get());
+    }
+
+    @Test
+    void evictsOnlyFullBuckets() throws InterruptedException {
+        TokenBucketLimiter limiter = new TokenBucketLimiter(RateLimit.parse("1/1s"));
+        limiter.tryAcquire("idle");
+        Thread.sleep(1100);
+        limiter.tryAcquire("busy");
+
+        assertEquals(1, limiter.evictIdle());
+        assertEquals(1, limiter.getBucketCount());
+        // Un seau évincé est recréé plein
+        assertEquals(0, limiter.tryAcquire("idle"));
+    }
+
+    @Test
+    void rejectsInvalidLimits() {
+        assertThrows(IllegalArgumentException.class, () -> RateLimit.parse("10"));
+        assertThrows(IllegalArgumentException.class, () -> RateLimit.parse("10/1d"));
+        assertThrows(IllegalArgumentException.class, () -> RateLimit.parse("0/1m"));
+    }
+}
@@ -0,0 +1,76 @@
+package fr.insa.crypto.trustAuthority.user;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+/**
+ * Application des comptes reçus des pairs: la dernière période TOTP consommée ne recule jamais,
+ * même quand une écriture concurrente d'un autre nœud l'emporte
+ */
+class ReplicatedUserStoreTest {
+    private static final String SECRET = "replication-test-secret";
+    private static final String TOTP_SECRET = "JBSWY3DPEHPK3PXP";
+
+    private ReplicatedUserStore store;
+
+    @BeforeEach
+    void open() throws IOException {
+        store = new ReplicatedUserStore(new InMemoryUserStore(), "node-a", "127.0.0.1", 0, List.of(), SECRET);
+    }
+
+    @AfterEach
+    void close() throws IOException {
+        store.close();
+    }
+
+    // Version d'une écriture d'un pair postérieure à toutes celles de ce nœud (horloge hybride)
+    private static long later() {
+        return (System.currentTimeMillis() + 60_000) << 16;
+    }
+
+    private static UserAccount verified() {
+        return new UserAccount("alice@example.com").verifiedWithTotpSecret(TOTP_SECRET);
+    }
+
+    @Test
+    void newerRemoteWriteKeepsLocallyConsumedStep() {
+        UserManager users = new UserManager(store);
+        store.save("alice@example.com", verified());
+        users.consumeTotpStep("alice@example.com", 100);
+
+        // Écrite sur le nœud B avant d'avoir reçu la consommation: plus récente, mais sans la période
+        store.applyRemote(verified().withPendingOtp("123456", 300).withVersion(later(), "node-b"));
+
+        UserAccount account = store.get("alice@example.com");
+        assertEquals("node-b", account.getOriginNode());
+        assertEquals(100, account.getLastTotpStep());
+        assertFalse(users.consumeTotpStep("alice@example.com", 100));
+    }
+
+    @Test
+    void olderRemoteWriteStillBringsItsConsumedStep() {
+        store.save("alice@example.com", verified());
+
+        store.applyRemote(verified().withTotpStepUsed(100).withVersion(1, "node-b"));
+
+        UserAccount account = store.get("alice@example.com");
+        assertEquals("node-a", account.getOriginNode());
+        assertEquals(100, account.getLastTotpStep());
+    }
+
+    @Test
+    void newSecretStartsWithoutConsumedStep() {
+        store.save("alice@example.com", verified().withTotpStepUsed(100));
+
+        store.applyRemote(verified().verifiedWithTotpSecret("KRSXG5CTMVRXEZLU").withVersion(later(), "node-b"));
+
+        assertEquals(0, store.get("alice@example.com").getLastTotpStep());
+    }
+}
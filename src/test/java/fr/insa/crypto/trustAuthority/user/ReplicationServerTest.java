@@ -0,0 +1,82 @@
+package fr.insa.crypto.trustAuthority.user;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Limites de connexions de l'émetteur de réplication: une connexion au-delà est fermée dès son acceptation
+ */
+class ReplicationServerTest {
+    private static final byte[] SECRET = "secret-partage-de-test-assez-long".getBytes(StandardCharsets.UTF_8);
+
+    private ReplicationServer server;
+
+    @AfterEach
+    void closeServer() throws IOException {
+        if (server != null) {
+            server.close();
+        }
+    }
+
+    private Socket connect() throws IOException {
+        Socket socket = new Socket(InetAddress.getLoopbackAddress(), server.getPort());
+        socket.setSoTimeout(2000);
+        return socket;
+    }
+
+    @Test
+    void closesConnectionsBeyondPendingHandshakeLimit() throws IOException {
+        server = new ReplicationServer(null, "127.0.0.1", 0, SECRET, 8, 1);
+        try (Socket waiting = connect(); Socket rejected = connect()) {
+            // Fermée sans réponse: fin de flux côté client
+            assertEquals(-1, rejected.getInputStream().read());
+            assertEquals(1, server.getRejectedConnectionCount());
+            // La première attend toujours sa poignée de main
+            waiting.setSoTimeout(200);
+            assertThrows(SocketTimeoutException.class, () -> waiting.getInputStream().read());
+        }
+    }
+
+    @Test
+    void closesConnectionsBeyondTotalLimit() throws IOException {
+        server = new ReplicationServer(null, "127.0.0.1", 0, SECRET, 1, 8);
+        try (Socket waiting = connect(); Socket rejected = connect()) {
+            assertEquals(-1, rejected.getInputStream().read());
+            assertEquals(1, server.getRejectedConnectionCount());
+            waiting.setSoTimeout(200);
+            assertThrows(SocketTimeoutException.class, () -> waiting.getInputStream().read());
+        }
+    }
+
+    @Test
+    void releasesHandshakeSlotWhenConnectionCloses() throws Exception {
+        server = new ReplicationServer(null, "127.0.0.1", 0, SECRET, 8, 1);
+        connect().close();
+
+        // La place libérée par la première connexion est réutilisable
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (true) {
+            try (Socket next = connect()) {
+                next.setSoTimeout(200);
+                try {
+                    next.getInputStream().read();
+                } catch (SocketTimeoutException e) {
+                    return;
+                }
+            }
+            if (System.currentTimeMillis() > deadline) {
+                throw new AssertionError("Place de poignée de main jamais libérée");
+            }
+            Thread.sleep(20);
+        }
+    }
+}
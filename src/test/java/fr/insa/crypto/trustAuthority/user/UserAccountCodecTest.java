@@ -0,0 +1,76 @@
+package fr.insa.crypto.trustAuthority.user;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Encodage binaire des comptes (journal, instantanés, réplication): aller-retour de chaque champ optionnel
+ */
+class UserAccountCodecTest {
+
+    private static UserAccount roundTrip(UserAccount account) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        UserAccountCodec.write(new DataOutputStream(bytes), account);
+        ByteBuffer buffer = ByteBuffer.wrap(bytes.toByteArray());
+        UserAccount decoded = UserAccountCodec.read(buffer);
+        assertFalse(buffer.hasRemaining(), "Octets non lus après le compte");
+        return decoded;
+    }
+
+    @Test
+    void roundTripsNewAccount() throws IOException {
+        UserAccount decoded = roundTrip(new UserAccount("alice@example.com"));
+
+        assertEquals("alice@example.com", decoded.getEmail());
+        assertNull(decoded.getTotpSecret());
+        assertFalse(decoded.isVerified());
+        assertFalse(decoded.hasPendingOtp());
+        assertEquals(0, decoded.getVersion());
+        assertNull(decoded.getOriginNode());
+    }
+
+    @Test
+    void roundTripsPendingOtpAndVersion() throws IOException {
+        UserAccount account = new UserAccount("bob@example.com", null, false, false, 0, "123456", 1_700_000_000L, 42, "node-1");
+        UserAccount decoded = roundTrip(account);
+
+        assertEquals("123456", decoded.getPendingOtp());
+        assertEquals(1_700_000_000L, decoded.getOtpExpirationTime());
+        assertEquals(42, decoded.getVersion());
+        assertEquals("node-1", decoded.getOriginNode());
+    }
+
+    @Test
+    void roundTripsVerifiedAccount() throws IOException {
+        UserAccount decoded = roundTrip(new UserAccount("Élodie@example.com").verifiedWithTotpSecret("JBSWY3DPEHPK3PXP"));
+
+        assertEquals("Élodie@example.com", decoded.getEmail());
+        assertTrue(decoded.isVerified());
+        assertTrue(decoded.isTotpSetupPending());
+        assertEquals("JBSWY3DPEHPK3PXP", decoded.getTotpSecret());
+        assertFalse(decoded.hasPendingOtp());
+        assertFalse(roundTrip(decoded.withTotpSetupConfirmed()).isTotpSetupPending());
+    }
+
+    @Test
+    void roundTripsLastTotpStep() throws IOException {
+        UserAccount account = new UserAccount("carol@example.com").verifiedWithTotpSecret("JBSWY3DPEHPK3PXP")
+                .withTotpStepUsed(56_666_667L).withVersion(7, "node-2");
+        UserAccount decoded = roundTrip(account);
+
+        assertEquals(56_666_667L, decoded.getLastTotpStep());
+        assertFalse(decoded.isTotpSetupPending());
+        assertEquals(7, decoded.getVersion());
+        // Un nouveau secret repart sans période consommée
+        assertEquals(0, roundTrip(decoded.verifiedWithTotpSecret("KRSXG5CTMVRXEZLU")).getLastTotpStep());
+    }
+}
@@ -0,0 +1,114 @@
+package fr.insa.crypto.trustAuthority.user;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Transitions des comptes par compare-and-set: un OTP n'est consommé qu'une fois, même par des
+ * requêtes concurrentes, et un compte n'est jamais vérifié sans son secret TOTP
+ */
+class UserManagerTest {
+
+    @Test
+    void concurrentValidationsConsumeTheOtpOnce() throws Exception {
+        UserManager users = new UserManager(new InMemoryUserStore());
+        int threads = 16;
+        for (int round = 0; round < 50; round++) {
+            String email = "user" + round + "@example.com";
+            users.storePendingOtp(users.createOrGetUser(email), "123456", 300);
+
+            CountDownLatch start = new CountDownLatch(1);
+            AtomicInteger accepted = new AtomicInteger();
+            ExecutorService executor = Executors.newFixedThreadPool(threads);
+            for (int t = 0; t < threads; t++) {
+                executor.execute(() -> {
+                    try {
+                        start.await();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    if (users.verifyOtpAndSetTotpSecret(email, "123456", "JBSWY3DPEHPK3PXP")) {
+                        accepted.incrementAndGet();
+                    }
+                });
+            }
+            start.countDown();
+            executor.shutdown();
+            assertTrue(executor.awaitTermination(30, TimeUnit.SECONDS));
+            assertEquals(1, accepted.get(), "OTP accepté plusieurs fois");
+            assertTrue(users.isUserVerified(email));
+        }
+    }
+
+    @Test
+    void wrongOtpKeepsThePendingOtp() {
+        UserManager users = new UserManager(new InMemoryUserStore());
+        users.storePendingOtp(users.createOrGetUser("alice@example.com"), "123456", 300);
+
+        assertFalse(users.validateOtp(users.getUser("alice@example.com"), "654321"));
+        assertTrue(users.getUser("alice@example.com").hasPendingOtp());
+        assertTrue(users.validateOtp(users.getUser("alice@example.com"), "123456"));
+        assertFalse(users.getUser("alice@example.com").hasPendingOtp());
+    }
+
+    @Test
+    void expiredOtpIsRemovedAndRefused() {
+        UserManager users = new UserManager(new InMemoryUserStore());
+        users.storePendingOtp(users.createOrGetUser("alice@example.com"), "123456", -1);
+
+        assertFalse(users.verifyOtpAndSetTotpSecret("alice@example.com", "123456", "JBSWY3DPEHPK3PXP"));
+        UserAccount account = users.getUser("alice@example.com");
+        assertFalse(account.hasPendingOtp());
+        assertFalse(account.isVerified());
+        assertNull(account.getTotpSecret());
+    }
+
+    @Test
+    void totpSetupStaysPendingUntilConfirmed() {
+        UserManager users = new UserManager(new InMemoryUserStore());
+        users.storePendingOtp(users.createOrGetUser("alice@example.com"), "123456", 300);
+
+        assertTrue(users.verifyOtpAndSetTotpSecret("alice@example.com", "123456", "JBSWY3DPEHPK3PXP"));
+        assertTrue(users.getUser("alice@example.com").isTotpSetupPending());
+        users.confirmTotpSetup("Alice@Example.com");
+        assertFalse(users.getUser("alice@example.com").isTotpSetupPending());
+        assertTrue(users.isUserVerified("alice@example.com"));
+    }
+
+    @Test
+    void totpStepIsConsumedOnceAndConfirmsSetup() {
+        UserManager users = new UserManager(new InMemoryUserStore());
+        users.storePendingOtp(users.createOrGetUser("alice@example.com"), "123456", 300);
+        assertTrue(users.verifyOtpAndSetTotpSecret("alice@example.com", "123456", "JBSWY3DPEHPK3PXP"));
+
+        assertTrue(users.consumeTotpStep("Alice@Example.com", 100));
+        assertFalse(users.getUser("alice@example.com").isTotpSetupPending());
+        assertEquals(100, users.getUser("alice@example.com").getLastTotpStep());
+        // Même période ou antérieure: rejeu refusé
+        assertFalse(users.consumeTotpStep("alice@example.com", 100));
+        assertFalse(users.consumeTotpStep("alice@example.com", 99));
+        assertTrue(users.consumeTotpStep("alice@example.com", 101));
+        assertFalse(users.consumeTotpStep("bob@example.com", 102));
+    }
+
+    @Test
+    void emailsAreCaseInsensitiveKeys() {
+        UserManager users = new UserManager(new InMemoryUserStore());
+        users.createOrGetUser("Alice@Example.com");
+
+        assertTrue(users.isUserRegistered("alice@example.com"));
+        assertEquals(1, users.getUserCount());
+        users.createOrGetUser("ALICE@EXAMPLE.COM");
+        assertEquals(1, users.getUserCount());
+    }
+}
@@ -0,0 +1,179 @@
+package fr.insa.crypto.trustAuthority.user;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Journal des comptes: restauration après redémarrage, depuis le journal seul ou un instantané suivi
+ * du journal, coupure d'une fin de journal tronquée, persistance des écritures concurrentes et
+ * fichiers réservés au propriétaire
+ */
+class WalUserStoreTest {
+    private static final long SEGMENT_BYTES = 1 << 20;
+
+    @TempDir
+    Path directory;
+
+    private WalUserStore store;
+
+    @AfterEach
+    void closeStore() throws IOException {
+        if (store != null) {
+            store.close();
+        }
+    }
+
+    private WalUserStore reopen() throws IOException {
+        if (store != null) {
+            store.close();
+        }
+        store = new WalUserStore(directory, SEGMENT_BYTES, 0);
+        return store;
+    }
+
+    @Test
+    void recoversAccountsFromLogAfterRestart() throws IOException {
+        UserManager users = new UserManager(reopen());
+        users.createOrGetUser("Alice@Example.com");
+        users.verifyUserAndSetTotpSecret("alice@example.com", "JBSWY3DPEHPK3PXP");
+        users.storePendingOtp(users.createOrGetUser("bob@example.com"), "123456", 300);
+
+        UserManager restored = new UserManager(reopen());
+        assertEquals(2, restored.getUserCount());
+        UserAccount alice = restored.getUser("alice@example.com");
+        assertTrue(alice.isVerified());
+        assertEquals("JBSWY3DPEHPK3PXP", alice.getTotpSecret());
+        assertEquals("Alice@Example.com", alice.getEmail());
+        // L'OTP en attente survit au redémarrage et reste à usage unique
+        assertTrue(restored.validateOtp(restored.getUser("bob@example.com"), "123456"));
+        assertFalse(restored.validateOtp(restored.getUser("bob@example.com"), "123456"));
+    }
+
+    @Test
+    void recoversFromSnapshotAndLaterRecords() throws Exception {
+        UserManager users = new UserManager(reopen());
+        for (int i = 0; i < 100; i++) {
+            users.createOrGetUser("before" + i + "@example.com");
+        }
+        store.requestSnapshot();
+        waitFor(() -> Files.exists(directory.resolve("users.snapshot")));
+        for (int i = 0; i < 50; i++) {
+            users.createOrGetUser("after" + i + "@example.com");
+        }
+        users.verifyUserAndSetTotpSecret("before0@example.com", "JBSWY3DPEHPK3PXP");
+
+        UserManager restored = new UserManager(reopen());
+        assertEquals(150, restored.getUserCount());
+        assertTrue(restored.isUserVerified("before0@example.com"));
+        assertNotNull(restored.getUser("after49@example.com"));
+    }
+
+    @Test
+    void truncatesTornTailOnRecovery() throws IOException {
+        UserManager users = new UserManager(reopen());
+        users.createOrGetUser("alice@example.com");
+        users.createOrGetUser("bob@example.com");
+        store.close();
+        store = null;
+
+        // Arrêt brutal au milieu d'un enregistrement: longueur annoncée, contenu absent
+        Path segment = lastSegment();
+        long validLength = Files.size(segment);
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+            channel.write(ByteBuffer.allocate(12).putInt(64).putInt(0).putInt(42).flip());
+        }
+
+        users = new UserManager(reopen());
+        assertEquals(2, users.getUserCount());
+        assertEquals(validLength, Files.size(segment));
+
+        // Les écritures suivantes ne sont pas perdues derrière la fin coupée
+        users.createOrGetUser("carol@example.com");
+        assertNotNull(new UserManager(reopen()).getUser("carol@example.com"));
+    }
+
+    @Test
+    void concurrentWritersAreAllDurable() throws Exception {
+        UserManager users = new UserManager(reopen());
+        int threads = 8;
+        int perThread = 200;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        for (int t = 0; t < threads; t++) {
+            int thread = t;
+            executor.execute(() -> {
+                for (int i = 0; i < perThread; i++) {
+                    String email = "user" + thread + "-" + i + "@example.com";
+                    users.createOrGetUser(email);
+                    users.verifyUserAndSetTotpSecret(email, "SECRET" + i);
+                }
+            });
+        }
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(1, TimeUnit.MINUTES));
+
+        UserManager restored = new UserManager(reopen());
+        assertEquals(threads * perThread, restored.getUserCount());
+        assertEquals("SECRET199", restored.getUser("user7-199@example.com").getTotpSecret());
+        assertNull(restored.getUser("user8-0@example.com"));
+    }
+
+    @Test
+    void dataFilesAreReadableByOwnerOnly() throws Exception {
+        assumeTrue(FileSystems.getDefault().supportedFileAttributeViews().contains("posix"));
+        Path data = directory.resolve("data");
+        store = new WalUserStore(data, SEGMENT_BYTES, 0);
+        UserManager users = new UserManager(store);
+        users.storePendingOtp(users.createOrGetUser("alice@example.com"), "123456", 300);
+        store.requestSnapshot();
+        waitFor(() -> Files.exists(data.resolve("users.snapshot")));
+
+        assertEquals("rwx------", PosixFilePermissions.toString(Files.getPosixFilePermissions(data)));
+        assertEquals("rw-------", PosixFilePermissions.toString(Files.getPosixFilePermissions(data.resolve("users.snapshot"))));
+        try (DirectoryStream<Path> segments = Files.newDirectoryStream(data, "users-*.wal")) {
+            for (Path segment : segments) {
+                assertEquals("rw-------", PosixFilePermissions.toString(Files.getPosixFilePermissions(segment)));
+            }
+        }
+    }
+
+    private Path lastSegment() throws IOException {
+        List<Path> segments = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "users-*.wal")) {
+            stream.forEach(segments::add);
+        }
+        segments.sort(null);
+        return segments.get(segments.size() - 1);
+    }
+
+    private static void waitFor(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.currentTimeMillis() < deadline, "Délai dépassé");
+            Thread.sleep(10);
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package fr.insa.crypto.utils;
+
+import org.junit.jupiter.api.Test;
+
+import javax.crypto.AEADBadTagException;
+import java.nio.charset.StandardCharsets;
+import java.security.KeyPair;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Échange X25519 + HKDF: les deux côtés dérivent la même clé de session, liée à la clé statique du serveur ;
+ * entrée de liaison de cette clé séparée des identités par son préfixe de domaine
+ */
+class SecureChannelManagerTest {
+    private static final byte[] MESSAGE = "alice@example.com".getBytes(StandardCharsets.UTF_8);
+
+    @Test
+    void bothSidesDeriveSameSessionKey() throws Exception {
+        KeyPair serverKeyPair = SecureChannelManager.generateX25519KeyPair();
+        SecureChannelManager client = new SecureChannelManager();
+        SecureChannelManager server = new SecureChannelManager();
+
+        byte[] ephemeralPublic = client.createX25519EphemeralKey(
+                SecureChannelManager.decodeX25519PublicKey(serverKeyPair.getPublic().getEncoded()));
+        server.deriveX25519SessionKey(ephemeralPublic, serverKeyPair);
+
+        assertArrayEquals(MESSAGE, server.decrypt(client.encrypt(MESSAGE)));
+        assertArrayEquals(MESSAGE, client.decrypt(server.encrypt(MESSAGE)));
+    }
+
+    @Test
+    void sessionKeyIsBoundToServerStaticKey() throws Exception {
+        KeyPair serverKeyPair = SecureChannelManager.generateX25519KeyPair();
+        KeyPair otherKeyPair = SecureChannelManager.generateX25519KeyPair();
+        SecureChannelManager client = new SecureChannelManager();
+        SecureChannelManager impostor = new SecureChannelManager();
+
+        byte[] ephemeralPublic = client.createX25519EphemeralKey(serverKeyPair.getPublic());
+        impostor.deriveX25519SessionKey(ephemeralPublic, otherKeyPair);
+
+        byte[] encrypted = client.encrypt(MESSAGE);
+        assertThrows(AEADBadTagException.class, () -> impostor.decrypt(encrypted));
+    }
+
+    @Test
+    void bindingInputIsDomainSeparatedFromIdentities() throws Exception {
+        byte[] key = SecureChannelManager.generateX25519KeyPair().getPublic().getEncoded();
+        byte[] otherKey = SecureChannelManager.generateX25519KeyPair().getPublic().getEncoded();
+
+        byte[] input = SecureChannelManager.channelKeyBindingInput(key);
+        byte[] prefix = "ta-channel-key\0".getBytes(StandardCharsets.UTF_8);
+        assertEquals(prefix.length + key.length, input.length);
+        assertArrayEquals(prefix, Arrays.copyOf(input, prefix.length));
+        assertArrayEquals(key, Arrays.copyOfRange(input, prefix.length, input.length));
+        assertFalse(Arrays.equals(input, SecureChannelManager.channelKeyBindingInput(otherKey)));
+    }
+}